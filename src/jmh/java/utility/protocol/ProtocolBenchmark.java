@@ -0,0 +1,99 @@
+package utility.protocol;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import utility.protocol.gmp.MessageApplicance;
+import utility.protocol.gmp.MessageCorrelator;
+import utility.protocol.gmp.messages.Header;
+import utility.protocol.gmp.messages.Message;
+import utility.protocol.gmp.messages.MessageCategory;
+import utility.protocol.gmp.messages.MessageType;
+import utility.protocol.gmp.messages.Response;
+
+/**
+ * Benchmarks of GMP {@link Message}s passing through a pair of {@link Protocol}s, whose TX chains
+ * feed each other's RX chains directly, on the calling thread.
+ * <p>
+ * {@code roundTrip} sends a correlated request from the client, which the server echoes back; {@code oneWay}
+ * sends a message from the client to the server, which consumes it.
+ * </p>
+ * @author Rob
+ */
+@State ( Scope.Thread )
+@BenchmarkMode ( { Mode.Throughput, Mode.SampleTime } )
+@OutputTimeUnit ( TimeUnit.MICROSECONDS )
+@Warmup ( iterations = 5, time = 1 )
+@Measurement ( iterations = 5, time = 1 )
+@Fork ( 2 )
+public class ProtocolBenchmark
+{
+	@Param ( { "64", "1024" } )
+	private int			payloadSize;
+
+	private Protocol	client;
+	private Protocol	server;
+	private byte[]		payload;
+	private int			id;
+	private Blackhole	consumer;
+
+	@Setup
+	public void setup ( Blackhole blackhole )
+	{
+		consumer = blackhole;
+		payload  = new byte [ payloadSize ];
+		client   = endpoint();
+		server   = endpoint();
+
+		client.getTxChain().add ( data -> { server.receive ( data ); return null; } );
+		server.getTxChain().add ( data -> { client.receive ( data ); return null; } );
+
+		client.setCorrelator ( new MessageCorrelator() );
+
+		server.registerDataListener ( data ->
+		{
+			if ( ( ( Message ) data ).getHeader().getType() == MessageType.REQUEST )
+				server.sendAsync ( data );
+			else
+				consumer.consume ( data );
+		} );
+	}
+
+	private static Protocol endpoint()
+	{
+		MessageApplicance messageAppliance = new MessageApplicance ( ( h, p ) -> new Response ( h, p ) );
+		Protocol protocol = new Protocol();
+
+		protocol.getTxChain().add ( messageAppliance::encodeMessage );
+		protocol.getRxChain().add ( messageAppliance::decodeMessage );
+
+		return protocol;
+	}
+
+	@Benchmark
+	public Object roundTrip() throws Exception
+	{
+		Message request = new Response ( new Header ( false, MessageType.REQUEST, MessageCategory.OPERATION, id++ ), payload );
+
+		// The loopback is synchronous, so the response has been received by the time the request is sent.
+		return client.sendRequest ( request ).getNow ( null );
+	}
+
+	@Benchmark
+	public void oneWay() throws Exception
+	{
+		client.sendAsync ( new Response ( new Header ( false, MessageType.COMMAND, MessageCategory.OPERATION, id++ ), payload ) );
+	}
+}
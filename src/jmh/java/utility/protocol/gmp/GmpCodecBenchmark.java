@@ -0,0 +1,108 @@
+package utility.protocol.gmp;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import utility.protocol.ByteBufferPool;
+import utility.protocol.Protocol.ProtocolException;
+import utility.protocol.gmp.messages.Header;
+import utility.protocol.gmp.messages.Message;
+import utility.protocol.gmp.messages.MessageCategory;
+import utility.protocol.gmp.messages.MessageType;
+import utility.protocol.gmp.messages.Response;
+
+/**
+ * Benchmarks of the GMP {@link HeaderAppliance} and {@link MessageApplicance} codecs.
+ * @author Rob
+ */
+@State ( Scope.Thread )
+@BenchmarkMode ( { Mode.Throughput, Mode.SampleTime } )
+@OutputTimeUnit ( TimeUnit.MICROSECONDS )
+@Warmup ( iterations = 5, time = 1 )
+@Measurement ( iterations = 5, time = 1 )
+@Fork ( 2 )
+public class GmpCodecBenchmark
+{
+	@Param ( { "0", "64", "1024" } )
+	private int					payloadSize;
+
+	private HeaderAppliance		headerAppliance;
+	private MessageApplicance	messageAppliance;
+	private MessageApplicance	pooledMessageAppliance;
+	private ByteBufferPool		pool;
+	private Header				header;
+	private Message				message;
+	private ByteBuffer			headerBuffer;
+	private ByteBuffer			encodedHeader;
+	private ByteBuffer			encodedMessage;
+
+	@Setup
+	public void setup() throws ProtocolException
+	{
+		headerAppliance        = new HeaderAppliance();
+		messageAppliance       = new MessageApplicance ( ( h, p ) -> new Response ( h, p ) );
+		pool                   = new ByteBufferPool ( HeaderAppliance.HEADER_LENGTH + payloadSize, 16 );
+		pooledMessageAppliance = new MessageApplicance ( ( h, p ) -> new Response ( h, p ), pool );
+
+		header  = new Header ( true, MessageType.REQUEST, MessageCategory.STATUS, 0x12345678 );
+		message = new Response ( header, new byte [ payloadSize ] );
+
+		headerBuffer   = ByteBuffer.allocate ( HeaderAppliance.HEADER_LENGTH );
+		encodedHeader  = ByteBuffer.wrap ( headerAppliance.encodeHeader ( header ) );
+		encodedMessage = ByteBuffer.wrap ( ( byte[] ) messageAppliance.encodeMessage ( message ) );
+	}
+
+	@Benchmark
+	public byte[] headerEncodeArray() throws ProtocolException
+	{
+		return headerAppliance.encodeHeader ( header );
+	}
+
+	@Benchmark
+	public ByteBuffer headerEncodeBuffer() throws ProtocolException
+	{
+		headerBuffer.clear();
+		headerAppliance.encodeHeader ( header, headerBuffer );
+		return headerBuffer;
+	}
+
+	@Benchmark
+	public Header headerDecode() throws ProtocolException
+	{
+		encodedHeader.rewind();
+		return headerAppliance.decodeHeader ( encodedHeader );
+	}
+
+	@Benchmark
+	public Object messageEncode() throws ProtocolException
+	{
+		return messageAppliance.encodeMessage ( message );
+	}
+
+	@Benchmark
+	public Object messageEncodePooled() throws ProtocolException
+	{
+		ByteBuffer buffer = ( ByteBuffer ) pooledMessageAppliance.encodeMessage ( message );
+		pool.release ( buffer );
+		return buffer;
+	}
+
+	@Benchmark
+	public Message messageDecode() throws ProtocolException
+	{
+		encodedMessage.rewind();
+		return messageAppliance.decodeMessage ( encodedMessage );
+	}
+}
@@ -0,0 +1,172 @@
+package utility.state.context;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import utility.state.Event;
+import utility.state.EventType;
+
+/**
+ * Benchmarks of the {@link MpscMailbox}es against the {@link LinkedBlockingQueue} the active execution context used
+ * before them.
+ * <p>
+ * {@code pingPong} offers and polls one {@link Event} on a single thread, measuring the uncontended cost (and, with
+ * {@code -prof gc}, the allocation per {@link Event}).  The {@code mpsc} group runs three producers against one consumer,
+ * which drains in batches where the mailbox supports it, as a busy state machine would.
+ * </p>
+ * <p>
+ * The score of the {@code mpsc} group counts invocations, including offers rejected by a full mailbox and empty drains,
+ * so compare its {@code offered} and {@code drained} counters instead: the {@link Event}s actually transferred per
+ * microsecond.
+ * </p>
+ * @author Rob Duff
+ */
+@State ( Scope.Group )
+@BenchmarkMode ( Mode.Throughput )
+@OutputTimeUnit ( TimeUnit.MICROSECONDS )
+@Warmup ( iterations = 5, time = 1 )
+@Measurement ( iterations = 5, time = 1 )
+@Fork ( 2 )
+public class MailboxBenchmark
+{
+	private static final Event EVENT = new Event ( EventType.of ( "benchmark" ) );
+	private static final int CAPACITY = 1 << 14;
+	private static final int BATCH = 64;
+	
+	@Param ( { "LinkedBlockingQueue", "MpscBounded", "MpscUnbounded" } )
+	private String mailboxType;
+	
+	private LinkedBlockingQueue<Event> queue;
+	private MpscMailbox<Event> mailbox;
+	
+	@Setup
+	public void setup()
+	{
+		switch ( mailboxType )
+		{
+			case "LinkedBlockingQueue":
+				queue = new LinkedBlockingQueue<>();
+				break;
+				
+			case "MpscBounded":
+				mailbox = MpscMailbox.bounded ( CAPACITY );
+				break;
+				
+			case "MpscUnbounded":
+				mailbox = MpscMailbox.unbounded ( 1024 );
+				break;
+				
+			default:
+				throw new IllegalArgumentException ( mailboxType );
+		}
+	}
+	
+	private boolean offer()
+	{
+		// The unbounded queues are held to the same capacity as the bounded one, so a slow consumer does not exhaust the heap.
+		if ( queue != null )
+			return queue.size() < CAPACITY && queue.offer ( EVENT );
+		
+		return mailbox.size() < CAPACITY && mailbox.offer ( EVENT );
+	}
+	
+	@Benchmark
+	@Group ( "pingPong" )
+	@GroupThreads ( 1 )
+	public Object pingPong()
+	{
+		offer();
+		
+		return ( queue != null ) ? queue.poll() : mailbox.poll();
+	}
+	
+	@Benchmark
+	@Group ( "mpsc" )
+	@GroupThreads ( 3 )
+	public void produce ( ProducerCounters counters )
+	{
+		if ( offer() )
+			++counters.offered;
+	}
+	
+	@Benchmark
+	@Group ( "mpsc" )
+	@GroupThreads ( 1 )
+	public void consume ( ConsumerState consumer )
+	{
+		if ( queue != null )
+		{
+			int count = 0;
+			Event event;
+			
+			while ( count < BATCH && ( event = queue.poll() ) != null )
+			{
+				consumer.blackhole.consume ( event );
+				++count;
+			}
+			
+			consumer.drained += count;
+		}
+		else
+			consumer.drained += mailbox.drain ( consumer.sink, BATCH );
+	}
+	
+	/**
+	 * The {@link Event}s a producer offered successfully.
+	 */
+	@State ( Scope.Thread )
+	@AuxCounters ( AuxCounters.Type.OPERATIONS )
+	public static class ProducerCounters
+	{
+		public long offered;
+		
+		@Setup ( Level.Iteration )
+		public void reset()
+		{
+			offered = 0;
+		}
+	}
+	
+	/**
+	 * The consumer's sink, and the {@link Event}s it drained.
+	 */
+	@State ( Scope.Thread )
+	@AuxCounters ( AuxCounters.Type.OPERATIONS )
+	public static class ConsumerState
+	{
+		public long drained;
+		Blackhole blackhole;
+		Consumer<Event> sink;
+		
+		@Setup
+		public void setup ( Blackhole blackhole )
+		{
+			this.blackhole = blackhole;
+			this.sink = blackhole::consume;
+		}
+		
+		@Setup ( Level.Iteration )
+		public void reset()
+		{
+			drained = 0;
+		}
+	}
+}
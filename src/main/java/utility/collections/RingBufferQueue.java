@@ -0,0 +1,240 @@
+package utility.collections;
+
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded, lock-free, multi-producer multi-consumer {@link java.util.Queue} backed by a ring buffer.
+ * <p>
+ * Each slot of the ring carries a sequence number which tells producers and consumers whether the
+ * slot is free for the current lap.  Neither {@link #offer(Object)} nor {@link #poll()} allocates.
+ * The ring is sized to the next power of two, but the queue never holds more than its capacity.
+ * </p>
+ * <p>
+ * {@link #iterator()} is weakly consistent: it returns the elements queued when it was created that
+ * have not since been taken, and never throws {@link java.util.ConcurrentModificationException}.
+ * Removing an arbitrary element ({@link #remove(Object)}, {@link Iterator#remove()}) is not supported;
+ * the queue is intended as a hand-off between threads.
+ * </p>
+ *
+ * @param <E> The type of the queued elements.
+ */
+public class RingBufferQueue<E> extends AbstractQueue<E>
+{
+    private final int                     capacity;
+    private final int                     mask;
+    private final AtomicReferenceArray<E> elements;
+    private final AtomicLongArray         sequences;
+    private final AtomicLong              tail = new AtomicLong();
+    private final AtomicLong              head = new AtomicLong();
+
+    /**
+     * Construct a new {@code RingBufferQueue}.
+     * @param capacity The capacity of the queue.
+     */
+    public RingBufferQueue ( int capacity )
+    {
+        if ( capacity < 1 || capacity > ( 1 << 30 ) )
+            throw new IllegalArgumentException ( "Capacity must be between 1 and 2^30: " + capacity );
+
+        // A single slot cannot distinguish a full queue from an empty one, so at least two are used.
+        int size = Integer.highestOneBit ( Math.max ( capacity, 2 ) );
+
+        if ( size < capacity )
+            size <<= 1;
+
+        this.capacity = capacity;
+        mask      = size - 1;
+        elements  = new AtomicReferenceArray<> ( size );
+        sequences = new AtomicLongArray ( size );
+
+        for ( int n=0; n<size; n++ )
+            sequences.set ( n, n );
+    }
+
+    /**
+     * @return The capacity of the queue.
+     */
+    public int capacity()
+    {
+        return capacity;
+    }
+
+    @Override
+    public boolean offer ( E e )
+    {
+        if ( e == null )
+            throw new NullPointerException();
+
+        long position = tail.get();
+        int  index;
+
+        while ( true )
+        {
+            index = ( int ) ( position & mask );
+            long difference = sequences.get ( index ) - position;
+
+            if ( difference == 0 )
+            {
+                // The ring may have more slots than the capacity, so the bound is checked against the head.
+                if ( position - head.get() >= capacity )
+                    return false;
+
+                if ( tail.compareAndSet ( position, position + 1 ) )
+                    break;
+
+                position = tail.get();
+            }
+            else if ( difference < 0 )
+                return false;
+            else
+                position = tail.get();
+        }
+
+        elements.lazySet ( index, e );
+        sequences.lazySet ( index, position + 1 );
+        return true;
+    }
+
+    @Override
+    public E poll()
+    {
+        long position = head.get();
+        int  index;
+
+        while ( true )
+        {
+            index = ( int ) ( position & mask );
+            long difference = sequences.get ( index ) - ( position + 1 );
+
+            if ( difference == 0 )
+            {
+                if ( head.compareAndSet ( position, position + 1 ) )
+                    break;
+
+                position = head.get();
+            }
+            else if ( difference < 0 )
+                return null;
+            else
+                position = head.get();
+        }
+
+        E e = elements.get ( index );
+        elements.lazySet ( index, null );
+        sequences.lazySet ( index, position + mask + 1 );
+        return e;
+    }
+
+    @Override
+    public E peek()
+    {
+        while ( true )
+        {
+            long position = head.get();
+            int  index    = ( int ) ( position & mask );
+
+            if ( sequences.get ( index ) - ( position + 1 ) < 0 )
+                return null;
+
+            E e = elements.get ( index );
+
+            if ( e != null && head.get() == position )
+                return e;
+        }
+    }
+
+    @Override
+    public int size()
+    {
+        while ( true )
+        {
+            long before = head.get();
+            long size   = tail.get() - before;
+
+            if ( head.get() == before )
+                return ( int ) Math.max ( 0, Math.min ( size, capacity() ) );
+        }
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        return tail.get() == head.get();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "RingBufferQueue[" + size() + "/" + capacity() + "]";
+    }
+
+    @Override
+    public Iterator<E> iterator()
+    {
+        return new Itr();
+    }
+
+    /**
+     * A weakly consistent iterator over the positions between the head and the tail when it was
+     * created, skipping those taken (or not yet filled) as it reaches them.
+     */
+    private final class Itr implements Iterator<E>
+    {
+        private final long end;
+        private long       position;
+        private E          next;
+
+        Itr()
+        {
+            position = head.get();
+            end      = tail.get();
+            advance();
+        }
+
+        private void advance()
+        {
+            next     = null;
+            position = Math.max ( position, head.get() );
+
+            while ( next == null && position < end )
+            {
+                int  index    = ( int ) ( position & mask );
+                long sequence = position + 1;
+
+                // The slot holds this position's element only while its sequence is unchanged.
+                if ( sequences.get ( index ) == sequence )
+                {
+                    E e = elements.get ( index );
+
+                    if ( sequences.get ( index ) == sequence )
+                        next = e;
+                }
+
+                position++;
+            }
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return next != null;
+        }
+
+        @Override
+        public E next()
+        {
+            if ( next == null )
+                throw new NoSuchElementException();
+
+            E e = next;
+
+            advance();
+            return e;
+        }
+    }
+}
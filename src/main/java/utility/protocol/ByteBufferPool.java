@@ -0,0 +1,99 @@
+package utility.protocol;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.LongAdder;
+
+import utility.collections.RingBufferQueue;
+
+/**
+ * A Pool of equally sized {@link ByteBuffer}s.
+ * <p>
+ * Buffers may be acquired on one thread and released on another (for instance, acquired by a TX chain
+ * and released by the transport once written).  In the steady state, neither acquiring nor releasing a
+ * buffer allocates.  When the pool is empty a new buffer is allocated, and when the pool is full a
+ * released buffer is left to the garbage collector.
+ * </p>
+ * @author Rob
+ */
+public class ByteBufferPool
+{
+	private final int							bufferSize;
+	private final boolean						direct;
+	private final RingBufferQueue<ByteBuffer>	buffers;
+	private final LongAdder						allocations	= new LongAdder();
+
+	/**
+	 * Constructs a new {@code ByteBufferPool} of heap buffers.
+	 * @param bufferSize The capacity of each buffer.
+	 * @param maxPooled The maximum number of idle buffers retained by the pool.
+	 */
+	public ByteBufferPool ( int bufferSize, int maxPooled )
+	{
+		this ( bufferSize, maxPooled, false );
+	}
+
+	/**
+	 * Constructs a new {@code ByteBufferPool}.
+	 * @param bufferSize The capacity of each buffer.
+	 * @param maxPooled The maximum number of idle buffers retained by the pool.
+	 * @param direct {@code true} to pool direct buffers.
+	 */
+	public ByteBufferPool ( int bufferSize, int maxPooled, boolean direct )
+	{
+		if ( bufferSize < 1 )
+			throw new IllegalArgumentException ( "Buffer Size must be positive" );
+
+		this.bufferSize = bufferSize;
+		this.direct     = direct;
+		this.buffers    = new RingBufferQueue<> ( maxPooled );
+	}
+
+	public int getBufferSize()
+	{
+		return bufferSize;
+	}
+
+	public boolean isDirect()
+	{
+		return direct;
+	}
+
+	/**
+	 * @return The number of buffers allocated by the pool since its construction.
+	 */
+	public long getAllocations()
+	{
+		return allocations.sum();
+	}
+
+	/**
+	 * @return A cleared, big-endian buffer of {@link #getBufferSize()} bytes.
+	 */
+	public ByteBuffer acquire()
+	{
+		ByteBuffer buffer = buffers.poll();
+
+		if ( buffer == null )
+		{
+			allocations.increment();
+			buffer = direct ? ByteBuffer.allocateDirect ( bufferSize ) : ByteBuffer.allocate ( bufferSize );
+		}
+
+		return buffer;
+	}
+
+	/**
+	 * Returns a buffer to the pool.  Buffers which were not acquired from a pool of this size and kind are ignored.
+	 * @param buffer The buffer to return.  (Must no longer be used by the caller).
+	 */
+	public void release ( ByteBuffer buffer )
+	{
+		if ( buffer == null || buffer.capacity() != bufferSize || buffer.isDirect() != direct || buffer.isReadOnly() )
+			return;
+
+		buffer.clear();
+		buffer.order ( ByteOrder.BIG_ENDIAN );
+		buffers.offer ( buffer );
+	}
+}
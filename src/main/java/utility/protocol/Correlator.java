@@ -0,0 +1,26 @@
+package utility.protocol;
+
+/**
+ * Matches the responses received by a {@link Protocol} to the requests which it sent.
+ * <p>
+ * When a {@code Protocol} has a {@code Correlator}, each request sent via {@link Protocol#sendRequest(Object)}
+ * is recorded in the {@code Protocol}'s table of pending requests under its request key, and each unit
+ * of data produced by the RX chain whose response key matches a pending request completes that request.
+ * </p>
+ * @author Rob
+ */
+public interface Correlator
+{
+	/**
+	 * @param request The data sent, as passed to the TX chain.
+	 * @return The key identifying the request.  (Must not be {@code null}).
+	 * @throws Exception If the request cannot be correlated.
+	 */
+	Object requestKey ( Object request ) throws Exception;
+
+	/**
+	 * @param response The data received, as produced by the RX chain.
+	 * @return The key of the request which {@code response} answers, or {@code null} if it is unsolicited.
+	 */
+	Object responseKey ( Object response );
+}
@@ -0,0 +1,16 @@
+package utility.protocol;
+
+/**
+ * Receives the output of a processing step, and passes it on to the next.
+ *
+ * @param <T> The type of data emitted.
+ */
+@FunctionalInterface
+public interface Emitter<T>
+{
+	/**
+	 * @param data The data produced by the previous processing step.
+	 * @throws Exception Allows throw of application exceptions.
+	 */
+	void emit ( T data ) throws Exception;
+}
@@ -0,0 +1,364 @@
+package utility.protocol;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import utility.protocol.Protocol.ProtocolException;
+
+/**
+ * Splits a Byte Stream into Frames, each preceded by its length.
+ * <p>
+ * The TX side, {@link #encodeFrame(Object)}, prefixes each frame with its length.  The RX side, {@link #decoder()},
+ * is a {@link SplittingAppliance} which accepts the data read from the stream in arbitrarily sized pieces and emits
+ * each complete frame down the RX chain, as many per read as the read contains.
+ * </p>
+ * <p>
+ * Frames which lie wholly within a single read are emitted as views of the read buffer, without copying.  Only the
+ * bytes of a frame which is split across reads are copied, once, into a reassembly buffer which grows as needed (up
+ * to the maximum frame length).  An emitted frame is a {@link ByteBuffer} positioned at the start of the frame and
+ * limited at its end, which is only valid for the duration of the {@link Emitter#emit(Object)} call.
+ * </p>
+ * <p>
+ * The RX side holds the state of a partially received frame, so each {@code LengthPrefixFramer} serves a single stream.
+ * A failure further down the RX chain affects only the frame which caused it: the remaining frames of the read are
+ * still emitted, and the stream stays aligned on frame boundaries.
+ * </p>
+ * @author Rob
+ */
+public class LengthPrefixFramer
+{
+	/**
+	 * The Encoding of the Length Prefix.
+	 */
+	public enum Prefix
+	{
+		/**
+		 * A 4 byte, big-endian length.
+		 */
+		FIXED32,
+
+		/**
+		 * An unsigned LEB128 variable length integer (1 to 5 bytes).
+		 */
+		VARINT,
+	}
+
+	private static final int			INITIAL_BUFFER_SIZE	= 256;
+
+	private final Prefix				prefix;
+	private final int					maxFrameLength;
+	private final SplittingAppliance	decoder				= this::decodeFrames;
+	private ByteBuffer					pending				= ByteBuffer.allocate ( INITIAL_BUFFER_SIZE );
+
+	/**
+	 * Constructs a new {@code LengthPrefixFramer}.
+	 * @param prefix The encoding of the length prefix.
+	 * @param maxFrameLength The length of the longest acceptable frame.
+	 */
+	public LengthPrefixFramer ( Prefix prefix, int maxFrameLength )
+	{
+		if ( prefix == null )
+			throw new IllegalArgumentException ( "Prefix may not be null" );
+
+		if ( maxFrameLength < 0 )
+			throw new IllegalArgumentException ( "Max Frame Length must not be negative" );
+
+		this.prefix         = prefix;
+		this.maxFrameLength = maxFrameLength;
+	}
+
+	/**
+	 * @return The RX side {@link SplittingAppliance}.
+	 */
+	public SplittingAppliance decoder()
+	{
+		return decoder;
+	}
+
+	/**
+	 * @return The RX side as a typed {@link Stage}.
+	 */
+	public Stage<Object,ByteBuffer> stage()
+	{
+		return this::decodeFrames;
+	}
+
+	/**
+	 * @param length A frame length.
+	 * @return The number of bytes in the length prefix of a frame of {@code length} bytes.
+	 */
+	public int prefixLength ( int length )
+	{
+		if ( prefix == Prefix.FIXED32 )
+			return 4;
+
+		int count = 1;
+
+		while ( ( length >>>= 7 ) != 0 )
+			++count;
+
+		return count;
+	}
+
+	/**
+	 * Frames data for transmission.
+	 * @param data A {@code byte[]} or {@link ByteBuffer} (from its position to its limit) containing one frame.
+	 * @return A new, flipped {@link ByteBuffer} containing the length prefix and the frame.
+	 * @throws ProtocolException If the frame is too long.
+	 */
+	public Object encodeFrame ( Object data ) throws ProtocolException
+	{
+		ByteBuffer frame = asBuffer ( data );
+		ByteBuffer buffer = ByteBuffer.allocate ( prefixLength ( frame.remaining() ) + frame.remaining() );
+
+		encodeFrame ( frame, buffer );
+		buffer.flip();
+
+		return buffer;
+	}
+
+	/**
+	 * Writes a length prefixed frame into a buffer, at the buffer's position.
+	 * @param frame The frame, from its position to its limit.  (Its position is left unchanged).
+	 * @param buffer The buffer to write to.
+	 * @throws ProtocolException If the frame is too long, or does not fit in the buffer.
+	 */
+	public void encodeFrame ( ByteBuffer frame, ByteBuffer buffer ) throws ProtocolException
+	{
+		int length = frame.remaining();
+
+		if ( length > maxFrameLength )
+			throw new ProtocolException ( "Frame Length " + length + " exceeds maximum of " + maxFrameLength );
+
+		if ( buffer.remaining() < prefixLength ( length ) + length )
+			throw new ProtocolException ( "Framed data exceeds buffer" );
+
+		writePrefix ( length, buffer );
+
+		int position = frame.position();
+		buffer.put ( frame );
+		frame.position ( position );
+	}
+
+	/**
+	 * Splits the data read from the stream into frames.
+	 * @param data A {@code byte[]} or {@link ByteBuffer} (from its position to its limit) read from the stream.
+	 * @param downstream The {@link Emitter} to which each complete frame is emitted.
+	 * @throws Exception If a frame is too long, or the downstream chain fails for any frame.  (Every complete frame is
+	 * emitted before the first downstream failure is thrown, with any later ones suppressed).
+	 */
+	public void decodeFrames ( Object data, Emitter<? super ByteBuffer> downstream ) throws Exception
+	{
+		ByteBuffer input = asBuffer ( data );
+		Exception failure = null;
+
+		try
+		{
+			if ( pending.position() > 0 )
+			{
+				// Complete the frame split across reads, copying no more of the input than it needs.
+				while ( input.hasRemaining() )
+				{
+					int needed = pendingNeeded();
+
+					if ( needed == 0 )
+						break;
+
+					copyToPending ( input, Math.min ( needed, input.remaining() ) );
+				}
+
+				if ( pendingNeeded() > 0 )
+					return;
+
+				pending.flip();
+
+				try
+				{
+					failure = extractFrames ( pending, downstream, failure );
+				}
+				finally
+				{
+					pending.clear();
+				}
+			}
+
+			failure = extractFrames ( input, downstream, failure );
+		}
+		catch ( ProtocolException e )
+		{
+			// The stream is corrupt, so the rest of the read is discarded along with any partial frame.
+			input.position ( input.limit() );
+			throw e;
+		}
+		finally
+		{
+			// The unconsumed remainder starts the next frame, however the frames before it fared downstream.
+			if ( input.hasRemaining() )
+				copyToPending ( input, input.remaining() );
+		}
+
+		if ( failure != null )
+			throw failure;
+	}
+
+	/**
+	 * Emits each complete frame in a buffer, leaving the buffer positioned at the start of the first incomplete frame.
+	 * @param failure The first downstream failure so far, or {@code null}.
+	 * @return The first downstream failure, with any later ones suppressed, or {@code null}.
+	 * @throws ProtocolException If a frame is too long.
+	 */
+	private Exception extractFrames ( ByteBuffer buffer, Emitter<? super ByteBuffer> downstream, Exception failure ) throws ProtocolException
+	{
+		int limit = buffer.limit();
+
+		while ( buffer.hasRemaining() )
+		{
+			int start  = buffer.position();
+			int length = readPrefix ( buffer, start, limit );
+
+			if ( length < 0 )
+				break;
+
+			int frameStart = start + prefixLength ( length );
+			int frameEnd   = frameStart + length;
+
+			if ( frameEnd > limit )
+				break;
+
+			buffer.limit ( frameEnd );
+			buffer.position ( frameStart );
+
+			try
+			{
+				downstream.emit ( buffer );
+			}
+			catch ( Exception e )
+			{
+				if ( failure == null )
+					failure = e;
+				else
+					failure.addSuppressed ( e );
+			}
+			finally
+			{
+				buffer.limit ( limit );
+				buffer.position ( frameEnd );
+			}
+		}
+
+		return failure;
+	}
+
+	/**
+	 * @return The number of bytes still needed to complete the pending frame (or at least its prefix).
+	 */
+	private int pendingNeeded() throws ProtocolException
+	{
+		int have   = pending.position();
+		int length = readPrefix ( pending, 0, have );
+
+		if ( length < 0 )
+			return ( prefix == Prefix.FIXED32 ) ? 4 - have : 1;
+
+		return prefixLength ( length ) + length - have;
+	}
+
+	private void copyToPending ( ByteBuffer input, int count )
+	{
+		if ( pending.remaining() < count )
+		{
+			int capacity = pending.capacity();
+
+			while ( capacity - pending.position() < count )
+				capacity *= 2;
+
+			ByteBuffer grown = ByteBuffer.allocate ( capacity );
+			pending.flip();
+			grown.put ( pending );
+			pending = grown;
+		}
+
+		int limit = input.limit();
+		input.limit ( input.position() + count );
+		pending.put ( input );
+		input.limit ( limit );
+	}
+
+	/**
+	 * Reads a length prefix, without moving the buffer's position.
+	 * @return The frame length, or -1 if the prefix is incomplete.
+	 */
+	private int readPrefix ( ByteBuffer buffer, int start, int limit ) throws ProtocolException
+	{
+		long length;
+
+		if ( prefix == Prefix.FIXED32 )
+		{
+			if ( limit - start < 4 )
+				return -1;
+
+			length = buffer.order ( ByteOrder.BIG_ENDIAN ).getInt ( start ) & 0x0FFFFFFFFL;
+		}
+		else
+		{
+			length = 0;
+
+			for ( int n = 0; ; ++n )
+			{
+				if ( start + n >= limit )
+					return -1;
+
+				if ( n == 5 )
+					throw corrupt ( "Malformed Length Prefix" );
+
+				int b = buffer.get ( start + n );
+				length |= ( long ) ( b & 0x7F ) << ( 7 * n );
+
+				if ( ( b & 0x80 ) == 0 )
+					break;
+			}
+		}
+
+		if ( length > maxFrameLength )
+			throw corrupt ( "Frame Length " + length + " exceeds maximum of " + maxFrameLength );
+
+		return ( int ) length;
+	}
+
+	private void writePrefix ( int length, ByteBuffer buffer )
+	{
+		if ( prefix == Prefix.FIXED32 )
+		{
+			buffer.order ( ByteOrder.BIG_ENDIAN ).putInt ( length );
+			return;
+		}
+
+		while ( ( length & ~0x7F ) != 0 )
+		{
+			buffer.put ( ( byte ) ( ( length & 0x7F ) | 0x80 ) );
+			length >>>= 7;
+		}
+
+		buffer.put ( ( byte ) length );
+	}
+
+	/**
+	 * Discards any partially received frame, as the stream can no longer be trusted, and creates the exception to throw.
+	 */
+	private ProtocolException corrupt ( String message )
+	{
+		pending.clear();
+		return new ProtocolException ( message );
+	}
+
+	private static ByteBuffer asBuffer ( Object data ) throws ProtocolException
+	{
+		if ( data instanceof ByteBuffer )
+			return ( ByteBuffer ) data;
+
+		if ( data instanceof byte[] )
+			return ByteBuffer.wrap ( ( byte[] ) data );
+
+		throw new ProtocolException ( "Argument must be a byte[] or ByteBuffer" );
+	}
+}
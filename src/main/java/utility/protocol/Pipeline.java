@@ -0,0 +1,251 @@
+package utility.protocol;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An Immutable Sequence of {@link Stage}s.
+ * <p>
+ * A {@code Pipeline} is assembled one {@link Stage} at a time, with the output type of each {@code Stage} checked
+ * against the input type of the next, and then {@link #connect(Emitter) connected} to a final {@link Emitter}.  Connecting
+ * fuses the {@code Stage}s into a fixed chain of {@link Emitter}s, once; running data through the chain then involves
+ * no casts, no list traversal, and no allocation by the {@code Pipeline} itself.
+ * </p>
+ * <p>
+ * Each of the first {@value #SPECIALISED} positions of a chain is linked by a class of its own, so the call into the
+ * {@code Stage} at each position is a separate call site, which the JIT sees as monomorphic (and so may inline) as long
+ * as every connected chain holds the same {@code Stage} class at that position.  Positions beyond those share one call
+ * site.  (Calls from a {@code Stage} to its downstream {@link Emitter} are the {@code Stage}'s own, and are only
+ * monomorphic if the {@code Stage} class is used at one position).
+ * </p>
+ *
+ * @param <I> The type of the input to the first {@link Stage}.
+ * @param <O> The type of the output of the last {@link Stage}.
+ */
+public final class Pipeline<I,O>
+{
+	/**
+	 * The number of leading positions which are linked by a class of their own.
+	 */
+	public static final int SPECIALISED = 8;
+
+	private final List<Stage<?,?>> stages;
+
+	private Pipeline ( List<Stage<?,?>> stages )
+	{
+		this.stages = stages;
+	}
+
+	/**
+	 * @param first The first {@link Stage}.
+	 * @return A {@code Pipeline} consisting of the one {@link Stage}.
+	 */
+	public static <I,O> Pipeline<I,O> of ( Stage<I,O> first )
+	{
+		if ( first == null )
+			throw new IllegalArgumentException ( "Stage may not be null" );
+
+		return new Pipeline<> ( Collections.singletonList ( first ) );
+	}
+
+	/**
+	 * @param next The {@link Stage} to append.
+	 * @return A new {@code Pipeline} consisting of this {@code Pipeline}'s {@link Stage}s followed by {@code next}.
+	 */
+	public <R> Pipeline<I,R> then ( Stage<? super O, R> next )
+	{
+		if ( next == null )
+			throw new IllegalArgumentException ( "Stage may not be null" );
+
+		List<Stage<?,?>> appended = new ArrayList<> ( stages.size() + 1 );
+		appended.addAll ( stages );
+		appended.add ( next );
+
+		return new Pipeline<> ( Collections.unmodifiableList ( appended ) );
+	}
+
+	/**
+	 * @return The number of {@link Stage}s.
+	 */
+	public int size()
+	{
+		return stages.size();
+	}
+
+	/**
+	 * Fuses the {@link Stage}s into a chain ending with {@code sink}.
+	 * @param sink The {@link Emitter} which receives the output of the last {@link Stage}.
+	 * @return The {@link Emitter} which feeds the first {@link Stage}.
+	 */
+	@SuppressWarnings ( "unchecked" )
+	public Emitter<I> connect ( Emitter<? super O> sink )
+	{
+		Emitter<Object> next = ( Emitter<Object> ) sink;
+
+		for ( int n = stages.size() - 1; n >= 0; --n )
+			next = link ( n, ( Stage<Object,Object> ) stages.get ( n ), next );
+
+		return ( Emitter<I> ) next;
+	}
+
+	/**
+	 * @return The {@link Link} binding the {@link Stage} at a position to its successor.
+	 */
+	private static Link link ( int position, Stage<Object,Object> stage, Emitter<Object> next )
+	{
+		switch ( position )
+		{
+			case 0:		return new Link0 ( stage, next );
+			case 1:		return new Link1 ( stage, next );
+			case 2:		return new Link2 ( stage, next );
+			case 3:		return new Link3 ( stage, next );
+			case 4:		return new Link4 ( stage, next );
+			case 5:		return new Link5 ( stage, next );
+			case 6:		return new Link6 ( stage, next );
+			case 7:		return new Link7 ( stage, next );
+			default:	return new LinkN ( stage, next );
+		}
+	}
+
+	/**
+	 * A {@link Stage} bound to its successor.  Each subclass repeats {@link #emit(Object)}, so that each has its own call site.
+	 */
+	private abstract static class Link implements Emitter<Object>
+	{
+		final Stage<Object,Object>	stage;
+		final Emitter<Object>		next;
+
+		Link ( Stage<Object,Object> stage, Emitter<Object> next )
+		{
+			this.stage = stage;
+			this.next  = next;
+		}
+	}
+
+	private static final class Link0 extends Link
+	{
+		Link0 ( Stage<Object,Object> stage, Emitter<Object> next )
+		{
+			super ( stage, next );
+		}
+
+		@Override
+		public void emit ( Object data ) throws Exception
+		{
+			stage.process ( data, next );
+		}
+	}
+
+	private static final class Link1 extends Link
+	{
+		Link1 ( Stage<Object,Object> stage, Emitter<Object> next )
+		{
+			super ( stage, next );
+		}
+
+		@Override
+		public void emit ( Object data ) throws Exception
+		{
+			stage.process ( data, next );
+		}
+	}
+
+	private static final class Link2 extends Link
+	{
+		Link2 ( Stage<Object,Object> stage, Emitter<Object> next )
+		{
+			super ( stage, next );
+		}
+
+		@Override
+		public void emit ( Object data ) throws Exception
+		{
+			stage.process ( data, next );
+		}
+	}
+
+	private static final class Link3 extends Link
+	{
+		Link3 ( Stage<Object,Object> stage, Emitter<Object> next )
+		{
+			super ( stage, next );
+		}
+
+		@Override
+		public void emit ( Object data ) throws Exception
+		{
+			stage.process ( data, next );
+		}
+	}
+
+	private static final class Link4 extends Link
+	{
+		Link4 ( Stage<Object,Object> stage, Emitter<Object> next )
+		{
+			super ( stage, next );
+		}
+
+		@Override
+		public void emit ( Object data ) throws Exception
+		{
+			stage.process ( data, next );
+		}
+	}
+
+	private static final class Link5 extends Link
+	{
+		Link5 ( Stage<Object,Object> stage, Emitter<Object> next )
+		{
+			super ( stage, next );
+		}
+
+		@Override
+		public void emit ( Object data ) throws Exception
+		{
+			stage.process ( data, next );
+		}
+	}
+
+	private static final class Link6 extends Link
+	{
+		Link6 ( Stage<Object,Object> stage, Emitter<Object> next )
+		{
+			super ( stage, next );
+		}
+
+		@Override
+		public void emit ( Object data ) throws Exception
+		{
+			stage.process ( data, next );
+		}
+	}
+
+	private static final class Link7 extends Link
+	{
+		Link7 ( Stage<Object,Object> stage, Emitter<Object> next )
+		{
+			super ( stage, next );
+		}
+
+		@Override
+		public void emit ( Object data ) throws Exception
+		{
+			stage.process ( data, next );
+		}
+	}
+
+	private static final class LinkN extends Link
+	{
+		LinkN ( Stage<Object,Object> stage, Emitter<Object> next )
+		{
+			super ( stage, next );
+		}
+
+		@Override
+		public void emit ( Object data ) throws Exception
+		{
+			stage.process ( data, next );
+		}
+	}
+}
@@ -0,0 +1,276 @@
+package utility.protocol;
+
+import java.util.Queue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+import utility.collections.RingBufferQueue;
+import utility.protocol.Protocol.ProtocolException;
+
+/**
+ * A Priority Aware Scheduler for a {@link Protocol}'s TX chain.
+ * <p>
+ * Data submitted to the scheduler is classified as high or normal priority, and held in a bounded
+ * queue for its class.  A single TX processor (see {@link #getTxProcessor()}) takes data from the
+ * queues and sends it via {@link Protocol#sendAsync(Object)}, preferring high priority data: with
+ * a weight of {@link #STRICT}, normal priority data is only sent when no high priority data is waiting;
+ * with a weight of <i>n</i>, one waiting normal priority item is sent after every <i>n</i>
+ * consecutive high priority items, so normal traffic cannot be starved entirely.
+ * </p>
+ * <p>
+ * For GMP, the classifier is typically {@code data -> ( ( Message ) data ).getHeader().isHighPriority()}.
+ * </p>
+ * @author Rob
+ */
+public class PriorityTxScheduler
+{
+	/**
+	 * A weight which gives high priority data strict precedence.
+	 */
+	public static final int STRICT = Integer.MAX_VALUE;
+
+	/**
+	 * The Priority Classes.
+	 */
+	public enum Priority
+	{
+		HIGH,
+		NORMAL,
+	}
+
+	private final Protocol				protocol;
+	private final Predicate<Object>		highPriority;
+	private final int					highWeight;
+	private final Queue<Entry>			highQueue;
+	private final Queue<Entry>			normalQueue;
+	private final Semaphore				available		= new Semaphore ( 0 );
+	private final Stats					highStats		= new Stats();
+	private final Stats					normalStats		= new Stats();
+	private int							highStreak;
+
+	/**
+	 * Constructs a new {@code PriorityTxScheduler}.
+	 * @param protocol The {@link Protocol} through which to send the scheduled data.
+	 * @param highPriority Classifies data as high ({@code true}) or normal priority.
+	 * @param highDepth The maximum number of high priority items waiting to be sent.
+	 * @param normalDepth The maximum number of normal priority items waiting to be sent.
+	 * @param highWeight The number of consecutive high priority items sent before a waiting normal priority item, or {@link #STRICT}.
+	 */
+	public PriorityTxScheduler ( Protocol protocol, Predicate<Object> highPriority, int highDepth, int normalDepth, int highWeight )
+	{
+		if ( protocol == null || highPriority == null )
+			throw new IllegalArgumentException ( "Protocol and Priority Classifier may not be null" );
+
+		if ( highWeight < 1 )
+			throw new IllegalArgumentException ( "High Priority Weight must be positive" );
+
+		if ( highDepth < 1 || normalDepth < 1 )
+			throw new IllegalArgumentException ( "Queue Depths must be positive" );
+
+		this.protocol     = protocol;
+		this.highPriority = highPriority;
+		this.highWeight   = highWeight;
+		this.highQueue    = new RingBufferQueue<> ( highDepth );
+		this.normalQueue  = new RingBufferQueue<> ( normalDepth );
+	}
+
+	/**
+	 * Queues data to be sent, without waiting.
+	 * @param data The data to send.
+	 * @return {@code false} if the queue for the data's priority class is full.
+	 */
+	public boolean offer ( Object data )
+	{
+		boolean high = highPriority.test ( data );
+		Stats stats = high ? highStats : normalStats;
+
+		if ( ! ( high ? highQueue : normalQueue ).offer ( new Entry ( data ) ) )
+		{
+			stats.rejected.increment();
+			return false;
+		}
+
+		stats.queued.increment();
+		available.release();
+		return true;
+	}
+
+	/**
+	 * Queues data to be sent.
+	 * @param data The data to send.
+	 * @throws ProtocolException If the queue for the data's priority class is full.
+	 */
+	public void submit ( Object data ) throws ProtocolException
+	{
+		if ( !offer ( data ) )
+			throw new ProtocolException ( "TX Queue Full" );
+	}
+
+	/**
+	 * @param priority A priority class.
+	 * @return The number of items of the priority class waiting to be sent.
+	 */
+	public int getQueueDepth ( Priority priority )
+	{
+		return ( priority == Priority.HIGH ? highQueue : normalQueue ).size();
+	}
+
+	/**
+	 * @param priority A priority class.
+	 * @return The queueing statistics of the priority class.
+	 */
+	public Stats getStats ( Priority priority )
+	{
+		return ( priority == Priority.HIGH ) ? highStats : normalStats;
+	}
+
+	/**
+	 * @return A {@code Runnable} which can be executed by an {@code Executor} or {@code Thread} to send the queued data.
+	 * Only one TX processor may be run per scheduler.
+	 */
+	public Runnable getTxProcessor()
+	{
+		return new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				while ( true )
+				{
+					try
+					{
+						available.acquire();
+					}
+					catch ( InterruptedException e )
+					{
+						return;
+					}
+
+					sendNext();
+				}
+			}
+		};
+	}
+
+	/**
+	 * Sends the next queued item, if any.  (Called only by the TX processor).
+	 * @return {@code true} if an item was sent.
+	 */
+	boolean sendNext()
+	{
+		Entry entry = null;
+		Stats stats = highStats;
+
+		if ( highStreak < highWeight )
+			entry = highQueue.poll();
+
+		if ( entry == null )
+		{
+			highStreak = 0;
+			stats = normalStats;
+			entry = normalQueue.poll();
+
+			if ( entry == null )
+			{
+				stats = highStats;
+				entry = highQueue.poll();
+			}
+		}
+
+		if ( entry == null )
+			return false;
+
+		if ( stats == highStats )
+			++highStreak;
+
+		stats.record ( System.nanoTime() - entry.queuedAt );
+
+		try
+		{
+			protocol.sendAsync ( entry.data );
+		}
+		catch ( Exception e )
+		{
+			protocol.reportException ( e );
+		}
+
+		return true;
+	}
+
+	private static final class Entry
+	{
+		private final Object	data;
+		private final long		queuedAt	= System.nanoTime();
+
+		Entry ( Object data )
+		{
+			this.data = data;
+		}
+	}
+
+	/**
+	 * Queueing Statistics for a Priority Class.
+	 */
+	public static final class Stats
+	{
+		private final LongAdder		queued		= new LongAdder();
+		private final LongAdder		rejected	= new LongAdder();
+		private final LongAdder		sent		= new LongAdder();
+		private final LongAdder		totalNanos	= new LongAdder();
+		private final AtomicLong	maxNanos	= new AtomicLong();
+
+		private void record ( long latency )
+		{
+			sent.increment();
+			totalNanos.add ( latency );
+
+			long max;
+
+			while ( latency > ( max = maxNanos.get() ) && !maxNanos.compareAndSet ( max, latency ) )
+				;
+		}
+
+		/**
+		 * @return The number of items accepted into the queue.
+		 */
+		public long getQueued()
+		{
+			return queued.sum();
+		}
+
+		/**
+		 * @return The number of items rejected because the queue was full.
+		 */
+		public long getRejected()
+		{
+			return rejected.sum();
+		}
+
+		/**
+		 * @return The number of items taken from the queue and sent.
+		 */
+		public long getSent()
+		{
+			return sent.sum();
+		}
+
+		/**
+		 * @return The mean time spent in the queue, in nanoseconds.
+		 */
+		public double getMeanLatencyNanos()
+		{
+			long count = sent.sum();
+			return ( count == 0 ) ? 0 : ( double ) totalNanos.sum() / count;
+		}
+
+		/**
+		 * @return The longest time spent in the queue, in nanoseconds.
+		 */
+		public long getMaxLatencyNanos()
+		{
+			return maxNanos.get();
+		}
+	}
+}
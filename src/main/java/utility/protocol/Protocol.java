@@ -1,7 +1,19 @@
 package utility.protocol;
 
-import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Function;
 
 import javafx.beans.property.ObjectProperty;
@@ -23,16 +35,50 @@ import javafx.beans.property.SimpleObjectProperty;
  * The RX chain consists of a sequence of {@code Function}s, (most often
  * the inverse operations as those in the TX chain, and in reverse order).
  * </p>
+ * <p>
+ * An {@link Appliance} ends the processing of its input by returning {@code null}.  A
+ * {@link SplittingAppliance} may instead pass any number of outputs down the remainder of
+ * its chain (for instance, each of the frames contained in a single read).
+ * </p>
+ * <p>
+ * Either chain may be extended with a typed {@link Pipeline}, which is fused once when it is set.
+ * Received data passes through the RX chain and then the RX {@code Pipeline}; transmitted data
+ * passes through the TX {@code Pipeline} and then the TX chain (which, when the {@code Protocol}
+ * is bound to a transport, ends with the transport's transmitter).
+ * </p>
+ * <p>
+ * When a {@link Correlator} is set, any number of requests may be outstanding at once.  Each
+ * request sent via {@link #sendRequest(Object)} is tracked in a table of pending requests, and is
+ * completed by the received data which the {@code Correlator} matches to it, or by its timeout.
+ * </p>
+ * <p>
+ * A {@code Protocol} blocks only on {@link ReentrantLock}s, never on monitors, so it may be driven by
+ * Virtual Threads (see {@link ProtocolThreads}) without pinning them to their carrier threads.
+ * </p>
  * 
  * @author Rob
  *
  */
 public class Protocol
 {
-	private List<Appliance>					txChain					= new LinkedList<> ();
-	private List<Appliance>					rxChain					= new LinkedList<> ();
+	private List<Appliance>					txChain					= new CopyOnWriteArrayList<> ();
+	private List<Appliance>					rxChain					= new CopyOnWriteArrayList<> ();
 	private ObjectProperty<Object>			receivedDataProperty	= new SimpleObjectProperty<> ();
-	private List<ProtocolExceptionListener>	exceptionListeners		= new LinkedList<> ();
+	private List<ProtocolExceptionListener>	exceptionListeners		= new CopyOnWriteArrayList<> ();
+	private List<ProtocolDataListener>		dataListeners			= new CopyOnWriteArrayList<> ();
+	private ConcurrentMap<Object,PendingRequest>	pendingRequests	= new ConcurrentHashMap<> ();
+	private volatile Correlator				correlator;
+	private volatile long					requestTimeoutNanos;
+	private final Emitter<Object>			receiver				= this::deliver;
+	private final Emitter<Object>			transmitted				= data -> {};
+	private final Emitter<Object>			txChainRunner			= data -> process ( txChain, 0, data, transmitted );
+	private volatile Emitter<Object>		rxSink					= receiver;
+	private volatile Emitter<Object>		txSource				= txChainRunner;
+	private final ReentrantLock				txLock					= new ReentrantLock();
+	private final ReentrantLock				sendLock				= new ReentrantLock();
+	private final ReentrantLock				receivedLock			= new ReentrantLock();
+	private final Condition					receivedCondition		= receivedLock.newCondition();
+	private long							receivedCount;
 
 	/**
 	 * Constructs a new {@code Protocol}
@@ -56,6 +102,74 @@ public class Protocol
 		exceptionListeners.remove ( listener );
 	}
 
+	/**
+	 * @param listener The listener to register to receive all unsolicited data produced by the {@code Protocol}'s RX chain.
+	 */
+	public void registerDataListener ( ProtocolDataListener listener )
+	{
+		dataListeners.add ( listener );
+	}
+
+	/**
+	 * @param listener The listener to remove.
+	 */
+	public void unregisterDataListener ( ProtocolDataListener listener )
+	{
+		dataListeners.remove ( listener );
+	}
+
+	/**
+	 * @param correlator The {@link Correlator} used to match responses to requests, or {@code null} to send one request at a time.
+	 */
+	public void setCorrelator ( Correlator correlator )
+	{
+		this.correlator = correlator;
+	}
+
+	public Correlator getCorrelator()
+	{
+		return correlator;
+	}
+
+	/**
+	 * Sets the default timeout of requests sent via {@link #sendRequest(Object)}.
+	 * @param timeout The timeout, or zero for no timeout.
+	 * @param unit The unit of {@code timeout}.
+	 */
+	public void setRequestTimeout ( long timeout, TimeUnit unit )
+	{
+		if ( timeout < 0 )
+			throw new IllegalArgumentException ( "Timeout must not be negative" );
+
+		requestTimeoutNanos = unit.toNanos ( timeout );
+	}
+
+	/**
+	 * @return The number of requests awaiting a response.
+	 */
+	public int getOutstandingRequests()
+	{
+		return pendingRequests.size();
+	}
+
+	/**
+	 * Sets the typed {@link Pipeline} which processes the output of the RX chain.
+	 * @param pipeline The {@link Pipeline}, or {@code null} to deliver the output of the RX chain directly.
+	 */
+	public void setRxPipeline ( Pipeline<Object,?> pipeline )
+	{
+		rxSink = ( pipeline == null ) ? receiver : pipeline.connect ( receiver );
+	}
+
+	/**
+	 * Sets the typed {@link Pipeline} which processes data sent, before the TX chain.
+	 * @param pipeline The {@link Pipeline}, or {@code null} to pass data sent directly to the TX chain.
+	 */
+	public void setTxPipeline ( Pipeline<Object,?> pipeline )
+	{
+		txSource = ( pipeline == null ) ? txChainRunner : pipeline.connect ( txChainRunner );
+	}
+
 	public List<Appliance> getTxChain()
 	{
 		return txChain;
@@ -67,7 +181,8 @@ public class Protocol
 	}
 
 	/**
-	 * @return A {@code Runnable} which can be executed by an {@code Executor} or {@code Thread} to process the RX chain.
+	 * @return A {@code Runnable} which can be executed by an {@code Executor} or {@code Thread} to process the RX chain,
+	 * until its thread is interrupted.
 	 */
 	public Runnable getRxChainProcessor()
 	{
@@ -76,34 +191,154 @@ public class Protocol
 			@Override
 			public void run()
 			{
-				while ( true )
+				while ( !Thread.currentThread().isInterrupted() )
+					receive ( null );
+			}
+		};
+	}
+
+	/**
+	 * Starts a thread running the RX processor (see {@link #getRxChainProcessor()}).
+	 * @param factory The factory of the thread, such as {@link ProtocolThreads#factory(String)}.
+	 * @return The started thread.
+	 */
+	public Thread startRxChainProcessor ( ThreadFactory factory )
+	{
+		Thread thread = factory.newThread ( getRxChainProcessor() );
+		thread.start();
+		return thread;
+	}
+
+	/**
+	 * Processes a single unit of received data through the RX chain.
+	 * <p>
+	 * The first {@link Appliance} in the RX chain is handed {@code data} (which is {@code null} when the RX chain
+	 * is driven by {@link #getRxChainProcessor()}, and the raw data read from the link when the RX chain is driven
+	 * by a transport such as {@link utility.protocol.nio.ProtocolReactor}).  Exceptions are reported to the
+	 * registered {@link ProtocolExceptionListener}s.
+	 * </p>
+	 * @param data The data to process.
+	 */
+	public void receive ( Object data )
+	{
+		receive ( data, 0 );
+	}
+
+	/**
+	 * Processes a single unit of received data through the RX chain, from a given {@link Appliance} (for instance, to
+	 * inject frames which have already been framed).  Exceptions are reported as by {@link #receive(Object)}.
+	 * @param data The data to process.
+	 * @param index The index of the first {@link Appliance} to apply.
+	 */
+	public void receive ( Object data, int index )
+	{
+		try
+		{
+			process ( rxChain, index, data, rxSink );
+		}
+
+		catch ( Exception e )
+		{
+			if ( e instanceof InterruptedException )
+				Thread.currentThread().interrupt();
+
+			reportException ( e );
+		}
+	}
+
+	/**
+	 * Runs data through a chain, from a given {@link Appliance}.
+	 * @param chain The chain.
+	 * @param index The index of the first {@link Appliance} to apply.
+	 * @param data The data to process.
+	 * @param sink The {@link Emitter} to which the output of the chain is emitted.
+	 * @throws Exception Allows throw of application exceptions.
+	 */
+	private static void process ( List<Appliance> chain, int index, Object data, Emitter<Object> sink ) throws Exception
+	{
+		for ( int n = index, size = chain.size(); n < size; ++n )
+		{
+			Appliance operator = chain.get ( n );
+
+			if ( operator instanceof SplittingAppliance )
+			{
+				int next = n + 1;
+				( ( SplittingAppliance ) operator ).apply ( data, output -> process ( chain, next, output, sink ) );
+				return;
+			}
+
+			if ( ( data = operator.apply ( data ) ) == null )
+				return;
+		}
+
+		sink.emit ( data );
+	}
+
+	/**
+	 * Delivers the output of the RX chain, to the request it answers, or otherwise as unsolicited data
+	 * (to each {@link ProtocolDataListener}, in the order received, and then to any thread waiting in {@link #send(Object)}).
+	 * @param data The received data.
+	 */
+	private void deliver ( Object data )
+	{
+		if ( !completeRequest ( data ) )
+		{
+			for ( ProtocolDataListener listener : dataListeners )
+			{
+				try
+				{
+					listener.handleReceivedData ( data );
+				}
+				catch ( Exception e )
 				{
-					Object data = null;
-
-					try
-					{
-						for ( Appliance operator : rxChain )
-							if ( ( data = operator.apply ( data ) ) == null )
-								break;
-
-						if ( data != null )
-						{
-							synchronized ( receivedDataProperty )
-							{
-								receivedDataProperty.setValue ( data );
-								receivedDataProperty.notifyAll();
-							}
-						}
-					}				
-
-					catch ( Exception e )
-					{
-						for ( ProtocolExceptionListener listener : exceptionListeners )
-							listener.handleProtocolException ( e );
-					}
+					reportException ( e );
 				}
 			}
-		};
+
+			receivedLock.lock();
+
+			try
+			{
+				receivedDataProperty.setValue ( data );
+				++receivedCount;
+				receivedCondition.signalAll();
+			}
+			finally
+			{
+				receivedLock.unlock();
+			}
+		}
+	}
+
+	private boolean completeRequest ( Object data )
+	{
+		Correlator correlator = this.correlator;
+
+		if ( correlator == null )
+			return false;
+
+		Object key = correlator.responseKey ( data );
+
+		if ( key == null )
+			return false;
+
+		PendingRequest request = pendingRequests.remove ( key );
+
+		if ( request == null )
+			return false;
+
+		request.complete ( data );
+		return true;
+	}
+
+	/**
+	 * Reports an Exception to the registered {@link ProtocolExceptionListener}s.
+	 * @param e The exception that occurred.
+	 */
+	public void reportException ( Exception e )
+	{
+		for ( ProtocolExceptionListener listener : exceptionListeners )
+			listener.handleProtocolException ( e );
 	}
 
 	/**
@@ -111,42 +346,262 @@ public class Protocol
 	 * @param data The data to transmit/process.
 	 * @throws Exception Allows throw of application exceptions.
 	 */
-	public synchronized void sendAsync ( Object data ) throws Exception
+	public void sendAsync ( Object data ) throws Exception
 	{
-		for ( Appliance operator : txChain )
-			if ( ( data = operator.apply ( data ) ) == null )
-				break;
+		txLock.lock();
+
+		try
+		{
+			txSource.emit ( data );
+		}
+		finally
+		{
+			txLock.unlock();
+		}
+	}
+
+	/**
+	 * Sends Data via the TX chain, from a given {@link Appliance} (for instance, to hand frames which have already been
+	 * encoded straight to the transmitter), bypassing the TX {@link Pipeline}.
+	 * @param data The data to transmit/process.
+	 * @param index The index of the first {@link Appliance} to apply.
+	 * @throws Exception Allows throw of application exceptions.
+	 */
+	public void sendAsync ( Object data, int index ) throws Exception
+	{
+		txLock.lock();
+
+		try
+		{
+			process ( txChain, index, data, transmitted );
+		}
+		finally
+		{
+			txLock.unlock();
+		}
+	}
+
+	/**
+	 * Sends a batch of Data via the TX chain, one item after another, acquiring the TX chain only once.
+	 * @param batch The data to transmit/process.
+	 * @throws Exception Allows throw of application exceptions.  Items after the one which failed are not sent.
+	 */
+	public void sendBatchAsync ( Iterable<?> batch ) throws Exception
+	{
+		txLock.lock();
+
+		try
+		{
+			Emitter<Object> source = txSource;
+
+			for ( Object data : batch )
+				source.emit ( data );
+		}
+		finally
+		{
+			txLock.unlock();
+		}
 	}
 
 	/**
 	 * Sends Data via the TX chain, and then wait's for a response.
+	 * <p>
+	 * If a {@link Correlator} is set, this is equivalent to waiting for the result of {@link #sendRequest(Object)}, and
+	 * may be called by many threads at once.  Otherwise, only one request may be in progress at a time, and the
+	 * next data received is taken to be the response.
+	 * </p>
 	 * @param data The data to transmit/process
 	 * @return The response.
 	 * @throws Exception Allows throw of application exceptions.
 	 */
-	public synchronized Object send ( Object data ) throws Exception
+	public Object send ( Object data ) throws Exception
 	{
-		sendAsync ( data );
+		if ( correlator != null )
+		{
+			try
+			{
+				return sendRequest ( data ).get();
+			}
+			catch ( ExecutionException e )
+			{
+				if ( e.getCause() instanceof Exception )
+					throw ( Exception ) e.getCause();
 
-		boolean done = false;
+				throw e;
+			}
+		}
 
-		synchronized ( receivedDataProperty )
+		sendLock.lock();
+
+		try
 		{
-			while ( !done )
+			long sent;
+
+			receivedLock.lock();
+
+			try
 			{
-				try
-				{
-					receivedDataProperty.wait();
-					done = true;
-				}
-				catch ( InterruptedException e )
-				{
-					// Try Again.
-				}
+				sent = receivedCount;
+			}
+			finally
+			{
+				receivedLock.unlock();
+			}
+
+			sendAsync ( data );
+
+			receivedLock.lock();
+
+			try
+			{
+				// Counting the received data, rather than waiting for the next signal, catches a response received before the wait begins.
+				while ( receivedCount == sent )
+					receivedCondition.awaitUninterruptibly();
+
+				return receivedDataProperty.getValue();
+			}
+			finally
+			{
+				receivedLock.unlock();
 			}
 		}
+		finally
+		{
+			sendLock.unlock();
+		}
+	}
 
-		return receivedDataProperty.getValue();
+	/**
+	 * Sends Data via the TX chain, and waits for the response on a thread of an {@link Executor}.
+	 * @param data The data to transmit/process
+	 * @param executor The {@link Executor} on which to wait, such as {@link ProtocolThreads#executor(String)}.
+	 * @return A {@link CompletableFuture} completed with the result of {@link #send(Object)}.
+	 */
+	public CompletableFuture<Object> sendOn ( Object data, Executor executor )
+	{
+		CompletableFuture<Object> response = new CompletableFuture<>();
+
+		executor.execute ( () ->
+		{
+			try
+			{
+				response.complete ( send ( data ) );
+			}
+			catch ( Exception e )
+			{
+				response.completeExceptionally ( e );
+			}
+		} );
+
+		return response;
+	}
+
+	/**
+	 * Sends a request via the TX chain, using the default request timeout.
+	 * @param data The request to transmit/process.
+	 * @return A {@link CompletableFuture} completed with the correlated response.
+	 * @throws ProtocolException If no {@link Correlator} has been set.
+	 * @see #sendRequest(Object, long, TimeUnit)
+	 */
+	public CompletableFuture<Object> sendRequest ( Object data ) throws ProtocolException
+	{
+		return sendRequest ( data, requestTimeoutNanos, TimeUnit.NANOSECONDS );
+	}
+
+	/**
+	 * Sends a request via the TX chain, without waiting for the response.
+	 * <p>
+	 * The returned future is completed with the received data which the {@link Correlator} matches to the
+	 * request, or exceptionally: with a {@link TimeoutException} if no response arrives within the timeout,
+	 * or with the exception thrown by the TX chain.
+	 * </p>
+	 * @param data The request to transmit/process.
+	 * @param timeout The time to wait for the response, or zero to wait indefinitely.
+	 * @param unit The unit of {@code timeout}.
+	 * @return A {@link CompletableFuture} completed with the correlated response.
+	 * @throws ProtocolException If no {@link Correlator} has been set.
+	 */
+	public CompletableFuture<Object> sendRequest ( Object data, long timeout, TimeUnit unit ) throws ProtocolException
+	{
+		Correlator correlator = this.correlator;
+
+		if ( correlator == null )
+			throw new ProtocolException ( "No Correlator has been set" );
+
+		PendingRequest request = new PendingRequest();
+		Object key;
+
+		try
+		{
+			key = correlator.requestKey ( data );
+		}
+		catch ( Exception e )
+		{
+			request.completeExceptionally ( e );
+			return request;
+		}
+
+		if ( pendingRequests.putIfAbsent ( key, request ) != null )
+		{
+			request.completeExceptionally ( new ProtocolException ( "A request with key " + key + " is already outstanding" ) );
+			return request;
+		}
+
+		if ( timeout > 0 )
+			request.timeout = RequestTimer.TIMER.schedule ( () -> 
+			{
+				if ( pendingRequests.remove ( key, request ) )
+					request.completeExceptionally ( new TimeoutException ( "No response to request " + key ) );
+			}, timeout, unit );
+
+		try
+		{
+			sendAsync ( data );
+		}
+		catch ( Exception e )
+		{
+			pendingRequests.remove ( key, request );
+			request.completeExceptionally ( e );
+		}
+
+		return request;
+	}
+
+	/**
+	 * A request awaiting its response.
+	 */
+	private static class PendingRequest extends CompletableFuture<Object>
+	{
+		private volatile ScheduledFuture<?> timeout;
+
+		@Override
+		public boolean complete ( Object value )
+		{
+			ScheduledFuture<?> timeout = this.timeout;
+
+			if ( timeout != null )
+				timeout.cancel ( false );
+
+			return super.complete ( value );
+		}
+	}
+
+	/**
+	 * The timer shared by all {@code Protocol}s for expiring requests.
+	 */
+	private static class RequestTimer
+	{
+		private static final ScheduledThreadPoolExecutor TIMER = new ScheduledThreadPoolExecutor ( 1, r ->
+		{
+			Thread thread = new Thread ( r, "Protocol-RequestTimer" );
+			thread.setDaemon ( true );
+			return thread;
+		} );
+
+		static
+		{
+			TIMER.setRemoveOnCancelPolicy ( true );
+		}
 	}
 
 	/**
@@ -198,6 +653,20 @@ public class Protocol
 		 */
 		void handleProtocolException ( Exception e );
 	}
+
+	/**
+	 * A Listener for the unsolicited data produced by the {@code Protocol}'s RX chain.
+	 * @author Rob
+	 */
+	public static interface ProtocolDataListener
+	{
+		/**
+		 * Handles data received by the {@code Protocol}.  Called on the thread processing the RX chain, so should not block.
+		 * @param data The data received.
+		 * @throws Exception Reported to the {@code Protocol}'s {@link ProtocolExceptionListener}s, without affecting other listeners.
+		 */
+		void handleReceivedData ( Object data ) throws Exception;
+	}
 	
 	
 }
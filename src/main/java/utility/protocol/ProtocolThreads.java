@@ -0,0 +1,123 @@
+package utility.protocol;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Threads for running {@link Protocol}s: Virtual Threads where the JVM provides them, and daemon platform threads otherwise.
+ * <p>
+ * Virtual threads make it cheap to dedicate a thread to each link's RX processor (see {@link Protocol#startRxChainProcessor(ThreadFactory)}),
+ * to each request in flight, and to each blocking {@link Protocol#send(Object)} (see {@link Protocol#sendOn(Object, java.util.concurrent.Executor)}),
+ * so tens of thousands of simulated devices can run in one JVM.  The {@code Protocol} itself blocks only on
+ * {@code java.util.concurrent} locks, which do not pin a virtual thread to its carrier.
+ * </p>
+ * <p>
+ * This library is built for Java 8, so the Java 21 API is reached reflectively, once, when this class is initialized.
+ * </p>
+ * @author Rob
+ */
+public final class ProtocolThreads
+{
+	private static final Method	OF_VIRTUAL;
+	private static final Method	NAME;
+	private static final Method	FACTORY;
+	private static final Method	PER_TASK_EXECUTOR;
+
+	static
+	{
+		Method ofVirtual = null, name = null, factory = null, perTaskExecutor = null;
+
+		try
+		{
+			ofVirtual       = Thread.class.getMethod ( "ofVirtual" );
+			Class<?> builder = ofVirtual.getReturnType();
+			name            = builder.getMethod ( "name", String.class, long.class );
+			factory         = builder.getMethod ( "factory" );
+			perTaskExecutor = Executors.class.getMethod ( "newThreadPerTaskExecutor", ThreadFactory.class );
+		}
+		catch ( ReflectiveOperationException | RuntimeException e )
+		{
+			ofVirtual = null;
+		}
+
+		OF_VIRTUAL        = ofVirtual;
+		NAME              = name;
+		FACTORY           = factory;
+		PER_TASK_EXECUTOR = perTaskExecutor;
+	}
+
+	private ProtocolThreads()
+	{}
+
+	/**
+	 * @return {@code true} if the JVM provides Virtual Threads.
+	 */
+	public static boolean isVirtualAvailable()
+	{
+		return OF_VIRTUAL != null;
+	}
+
+	/**
+	 * @param prefix The prefix of the thread names, which are numbered from zero.
+	 * @return A factory of Virtual Threads, or of daemon platform threads if the JVM does not provide Virtual Threads.
+	 */
+	public static ThreadFactory factory ( String prefix )
+	{
+		if ( OF_VIRTUAL != null )
+		{
+			try
+			{
+				return ( ThreadFactory ) FACTORY.invoke ( NAME.invoke ( OF_VIRTUAL.invoke ( null ), prefix, 0L ) );
+			}
+			catch ( ReflectiveOperationException e )
+			{
+				// Fall back to platform threads.
+			}
+		}
+
+		return platformFactory ( prefix );
+	}
+
+	/**
+	 * @param prefix The prefix of the thread names, which are numbered from zero.
+	 * @return A factory of daemon platform threads.
+	 */
+	public static ThreadFactory platformFactory ( String prefix )
+	{
+		AtomicInteger count = new AtomicInteger();
+
+		return task ->
+		{
+			Thread thread = new Thread ( task, prefix + count.getAndIncrement() );
+			thread.setDaemon ( true );
+			return thread;
+		};
+	}
+
+	/**
+	 * @param prefix The prefix of the thread names, which are numbered from zero.
+	 * @return An {@link ExecutorService} which runs each task on a new Virtual Thread, or on a pooled daemon platform
+	 * thread if the JVM does not provide Virtual Threads.
+	 */
+	public static ExecutorService executor ( String prefix )
+	{
+		ThreadFactory factory = factory ( prefix );
+
+		if ( PER_TASK_EXECUTOR != null )
+		{
+			try
+			{
+				return ( ExecutorService ) PER_TASK_EXECUTOR.invoke ( null, factory );
+			}
+			catch ( ReflectiveOperationException e )
+			{
+				// Fall back to a pool.
+			}
+		}
+
+		return Executors.newCachedThreadPool ( factory );
+	}
+}
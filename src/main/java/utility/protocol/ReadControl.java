@@ -0,0 +1,18 @@
+package utility.protocol;
+
+/**
+ * Flow Control of the reads of a transport feeding a {@link Protocol}'s RX chain.
+ * <p>
+ * A transport which is told to suspend its reads stops reading from its link (so the peer is eventually
+ * held up by the link's own flow control), until it is told to resume.  Data already read continues through
+ * the RX chain.
+ * </p>
+ * @author Rob
+ */
+public interface ReadControl
+{
+	/**
+	 * @param suspended {@code true} to stop reading, {@code false} to resume.  Only the most recent setting has any effect.
+	 */
+	void setReadsSuspended ( boolean suspended );
+}
@@ -0,0 +1,226 @@
+package utility.protocol;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import utility.collections.RingBufferQueue;
+
+/**
+ * A Pool of reusable objects, which are explicitly acquired and released.
+ * <p>
+ * Like the {@link ByteBufferPool}, objects may be acquired on one thread and released on another, and in the steady
+ * state neither acquiring nor releasing an object allocates.  When the pool is empty a new object is created, and
+ * when the pool is full a released object is left to the garbage collector.
+ * </p>
+ * <p>
+ * In debug mode (enabled per {@code Recycler}, or for all of them by the {@value #DEBUG_PROPERTY} system property)
+ * each acquired object is tracked, with the stack trace of its acquisition, until it is released.  Releasing an object
+ * which is not outstanding (for instance, releasing it twice) throws an {@link IllegalStateException}, and an object
+ * which is garbage collected without having been released is logged as a leak, with the stack trace of where it was
+ * acquired.  Tracking allocates, so debug mode is for tests and diagnosis, not production.
+ * </p>
+ * @author Rob
+ * @param <T> The type of the objects.
+ */
+public class Recycler<T>
+{
+	/**
+	 * The system property which enables debug mode for all {@code Recycler}s.
+	 */
+	public static final String DEBUG_PROPERTY = "utility.protocol.recycler.debug";
+
+	private static final boolean DEBUG = Boolean.getBoolean ( DEBUG_PROPERTY );
+
+	private static final Logger logger = LogManager.getLogger ( Recycler.class );
+
+	private final Supplier<? extends T>			factory;
+	private final Consumer<? super T>			reset;
+	private final RingBufferQueue<T>			pool;
+	private final LongAdder						allocations	= new LongAdder();
+	private final LongAdder						leaks		= new LongAdder();
+	private final Map<Tracker<T>,Tracker<T>>	outstanding;
+	private final ReferenceQueue<T>				collected;
+
+	/**
+	 * Constructs a new {@code Recycler}, in debug mode if the {@value #DEBUG_PROPERTY} system property is {@code true}.
+	 * @param factory Creates new objects.
+	 * @param reset Resets each released object for reuse, or {@code null} if objects need no reset.
+	 * @param maxPooled The maximum number of idle objects retained by the pool.
+	 */
+	public Recycler ( Supplier<? extends T> factory, Consumer<? super T> reset, int maxPooled )
+	{
+		this ( factory, reset, maxPooled, DEBUG );
+	}
+
+	/**
+	 * Constructs a new {@code Recycler}.
+	 * @param factory Creates new objects.
+	 * @param reset Resets each released object for reuse, or {@code null} if objects need no reset.
+	 * @param maxPooled The maximum number of idle objects retained by the pool.
+	 * @param debug {@code true} to track outstanding objects, and detect leaks.
+	 */
+	public Recycler ( Supplier<? extends T> factory, Consumer<? super T> reset, int maxPooled, boolean debug )
+	{
+		if ( factory == null )
+			throw new IllegalArgumentException ( "Factory may not be null" );
+
+		this.factory     = factory;
+		this.reset       = reset;
+		this.pool        = new RingBufferQueue<> ( maxPooled );
+		this.outstanding = debug ? new ConcurrentHashMap<>() : null;
+		this.collected   = debug ? new ReferenceQueue<>() : null;
+	}
+
+	public boolean isDebug()
+	{
+		return outstanding != null;
+	}
+
+	/**
+	 * @return The number of objects created by the {@code Recycler} since its construction.
+	 */
+	public long getAllocations()
+	{
+		return allocations.sum();
+	}
+
+	/**
+	 * @return The number of leaks detected (always zero unless in debug mode).
+	 */
+	public long getLeaks()
+	{
+		return leaks.sum();
+	}
+
+	/**
+	 * @return The number of objects acquired but not yet released (always zero unless in debug mode).
+	 */
+	public int getOutstanding()
+	{
+		return ( outstanding == null ) ? 0 : outstanding.size();
+	}
+
+	/**
+	 * @return A pooled object, or a new one if the pool is empty.
+	 */
+	public T acquire()
+	{
+		T object = pool.poll();
+
+		if ( object == null )
+		{
+			allocations.increment();
+			object = factory.get();
+		}
+
+		if ( outstanding != null )
+		{
+			detectLeaks();
+
+			Tracker<T> tracker = new Tracker<> ( object, collected );
+			outstanding.put ( tracker, tracker );
+		}
+
+		return object;
+	}
+
+	/**
+	 * Returns an object to the pool.
+	 * @param object The object to return.  (Must no longer be used by the caller).
+	 * @throws IllegalStateException In debug mode, if the object is not outstanding.
+	 */
+	public void release ( T object )
+	{
+		if ( object == null )
+			return;
+
+		if ( outstanding != null )
+		{
+			Tracker<T> tracker = outstanding.remove ( new Tracker<> ( object, null ) );
+
+			if ( tracker == null )
+				throw new IllegalStateException ( "Released an object which is not outstanding: " + object );
+
+			tracker.clear();
+		}
+
+		if ( reset != null )
+			reset.accept ( object );
+
+		pool.offer ( object );
+	}
+
+	/**
+	 * Logs (and counts) the tracked objects which have been garbage collected without being released.
+	 * Called on every {@link #acquire()} in debug mode; may also be called explicitly (for instance, by tests after a GC).
+	 * @return The number of leaks detected by this call.
+	 */
+	public int detectLeaks()
+	{
+		if ( collected == null )
+			return 0;
+
+		int count = 0;
+		Reference<? extends T> reference;
+
+		while ( ( reference = collected.poll() ) != null )
+		{
+			Tracker<?> tracker = ( Tracker<?> ) reference;
+
+			if ( outstanding.remove ( tracker ) != null )
+			{
+				++count;
+				leaks.increment();
+				logger.error ( "Recycled object was garbage collected without being released", tracker.acquisition );
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * A weak reference to an outstanding object, which compares by the identity of its referent.
+	 */
+	private static final class Tracker<T> extends WeakReference<T>
+	{
+		private final int		hash;
+		private final Throwable	acquisition;
+
+		Tracker ( T referent, ReferenceQueue<T> queue )
+		{
+			super ( referent, queue );
+
+			this.hash        = System.identityHashCode ( referent );
+			this.acquisition = ( queue == null ) ? null : new Throwable ( "Acquired at" );
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return hash;
+		}
+
+		@Override
+		public boolean equals ( Object obj )
+		{
+			if ( this == obj )
+				return true;
+
+			if ( ! ( obj instanceof Tracker ) )
+				return false;
+
+			Object referent = get();
+
+			return referent != null && referent == ( ( Tracker<?> ) obj ).get();
+		}
+	}
+}
@@ -0,0 +1,27 @@
+package utility.protocol;
+
+/**
+ * An {@link Appliance} which produces any number of outputs (including none) from each input.
+ * <p>
+ * A {@link Protocol} hands a {@code SplittingAppliance} an {@link Emitter} which runs the remainder of
+ * the chain; each call to {@link Emitter#emit(Object)} passes one output down the chain before returning.
+ * </p>
+ */
+public interface SplittingAppliance extends Appliance
+{
+	/**
+	 * @param data The input data.
+	 * @param downstream The remainder of the chain, to which each output is emitted.
+	 * @throws Exception Allows throw of application exceptions.
+	 */
+	void apply ( Object data, Emitter<Object> downstream ) throws Exception;
+
+	/**
+	 * A {@code SplittingAppliance} may only be applied with a downstream {@link Emitter}.
+	 */
+	@Override
+	default Object apply ( Object data ) throws Exception
+	{
+		throw new UnsupportedOperationException ( "A SplittingAppliance must be applied with a downstream Emitter" );
+	}
+}
@@ -0,0 +1,81 @@
+package utility.protocol;
+
+import java.util.function.Predicate;
+
+/**
+ * A Typed Processing Step of a {@link Pipeline}.
+ * <p>
+ * Unlike an {@link Appliance}, a {@code Stage} is typed, and pushes its output to the next step rather
+ * than returning it: it may emit any number of outputs (including none) for each input, without
+ * allocating intermediate collections, and without relying upon {@code null} to stop processing.
+ * </p>
+ *
+ * @param <I> The type of the input.
+ * @param <O> The type of the output.
+ */
+@FunctionalInterface
+public interface Stage<I,O>
+{
+	/**
+	 * @param input The input data.
+	 * @param downstream The next step, to which each output is emitted.
+	 * @throws Exception Allows throw of application exceptions.
+	 */
+	void process ( I input, Emitter<? super O> downstream ) throws Exception;
+
+	/**
+	 * A Function which may throw.
+	 *
+	 * @param <I> The type of the input.
+	 * @param <O> The type of the output.
+	 */
+	@FunctionalInterface
+	interface Transform<I,O>
+	{
+		O apply ( I input ) throws Exception;
+	}
+
+	/**
+	 * @param transform The transformation.
+	 * @return A {@code Stage} which emits the result of the transformation of each input, unless it is {@code null}.
+	 */
+	static <I,O> Stage<I,O> map ( Transform<? super I, ? extends O> transform )
+	{
+		return ( input, downstream ) ->
+		{
+			O output = transform.apply ( input );
+
+			if ( output != null )
+				downstream.emit ( output );
+		};
+	}
+
+	/**
+	 * @param predicate The condition.
+	 * @return A {@code Stage} which emits each input which meets the condition.
+	 */
+	static <T> Stage<T,T> filter ( Predicate<? super T> predicate )
+	{
+		return ( input, downstream ) ->
+		{
+			if ( predicate.test ( input ) )
+				downstream.emit ( input );
+		};
+	}
+
+	/**
+	 * Adapts an {@link Appliance} (or {@link SplittingAppliance}) to a {@code Stage}.
+	 * @param appliance The {@link Appliance}.
+	 * @return A {@code Stage} which emits the non-{@code null} results of the {@link Appliance}.
+	 */
+	static Stage<Object,Object> of ( Appliance appliance )
+	{
+		if ( appliance instanceof SplittingAppliance )
+		{
+			SplittingAppliance splitter = ( SplittingAppliance ) appliance;
+			return ( input, downstream ) -> splitter.apply ( input, downstream );
+		}
+
+		return map ( appliance::apply );
+	}
+}
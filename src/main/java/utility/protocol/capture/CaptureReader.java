@@ -0,0 +1,304 @@
+package utility.protocol.capture;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+import utility.protocol.Appliance;
+import utility.protocol.Emitter;
+import utility.protocol.Protocol;
+import utility.protocol.metrics.InstrumentedAppliance;
+
+/**
+ * Reads, and replays, a Capture File written by a {@link CaptureWriter}.
+ * <p>
+ * The file is memory-mapped, a region at a time, so frames are read without copying: each {@link Record}'s
+ * frame is a view of the mapped file, which is only valid until the next call to {@link #next()}.
+ * </p>
+ * @author Rob
+ */
+public class CaptureReader implements Closeable
+{
+	/**
+	 * The default size of the mapped regions of the file.
+	 */
+	public static final int DEFAULT_REGION_SIZE = 64 * 1024 * 1024;
+
+	private final FileChannel		channel;
+	private final long				fileSize;
+	private final int				regionSize;
+	private final long				startTimeMillis;
+	private final Record			record		= new Record();
+	private MappedByteBuffer		region;
+	private long					regionStart;
+	private long					position;
+
+	/**
+	 * Opens a Capture File.
+	 * @param path The path of the file.
+	 * @throws IOException If the file cannot be opened, or is not a Capture File.
+	 */
+	public CaptureReader ( Path path ) throws IOException
+	{
+		this ( path, DEFAULT_REGION_SIZE );
+	}
+
+	/**
+	 * Opens a Capture File.
+	 * @param path The path of the file.
+	 * @param regionSize The size of the mapped regions of the file.  (A region is enlarged to hold any larger frame).
+	 * @throws IOException If the file cannot be opened, or is not a Capture File.
+	 */
+	public CaptureReader ( Path path, int regionSize ) throws IOException
+	{
+		if ( regionSize < CaptureWriter.FILE_HEADER_LENGTH )
+			throw new IllegalArgumentException ( "Region Size must be at least " + CaptureWriter.FILE_HEADER_LENGTH );
+
+		this.channel    = FileChannel.open ( path, StandardOpenOption.READ );
+		this.fileSize   = channel.size();
+		this.regionSize = regionSize;
+
+		try
+		{
+			ByteBuffer header = map ( 0, CaptureWriter.FILE_HEADER_LENGTH );
+
+			if ( header.getInt() != CaptureWriter.MAGIC )
+				throw new IOException ( "Not a Capture File: " + path );
+
+			short version = header.getShort();
+
+			if ( version != CaptureWriter.VERSION )
+				throw new IOException ( "Unsupported Capture File Version: " + version );
+
+			header.getShort();
+			startTimeMillis = header.getLong();
+			position = CaptureWriter.FILE_HEADER_LENGTH;
+		}
+		catch ( IOException | RuntimeException e )
+		{
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * @return The time at which the capture started, in milliseconds since the epoch.
+	 */
+	public long getStartTimeMillis()
+	{
+		return startTimeMillis;
+	}
+
+	/**
+	 * Reads the next record.
+	 * @return The next record (the same instance every time), or {@code null} at the end of the capture.
+	 * @throws IOException If the file cannot be read, or its last record is incomplete.
+	 */
+	public Record next() throws IOException
+	{
+		if ( position == fileSize )
+			return null;
+
+		ByteBuffer header = map ( position, CaptureWriter.RECORD_HEADER_LENGTH );
+
+		record.timestampNanos = header.getLong();
+		int direction         = header.get();
+		int length            = header.getInt();
+
+		if ( direction < 0 || direction >= Direction.values().length || length < 0 )
+			throw new IOException ( "Corrupt Capture Record at " + position );
+
+		record.direction = Direction.values() [ direction ];
+		record.frame     = map ( position + CaptureWriter.RECORD_HEADER_LENGTH, length ).slice();
+
+		position += CaptureWriter.RECORD_HEADER_LENGTH + length;
+
+		return record;
+	}
+
+	/**
+	 * Restarts reading from the first record.
+	 */
+	public void rewind()
+	{
+		position = CaptureWriter.FILE_HEADER_LENGTH;
+	}
+
+	/**
+	 * Replays the remaining records, in both directions, into a {@link Protocol}.
+	 * @param protocol The {@link Protocol}.
+	 * @param speed The speed of the replay (see {@link #replay(Protocol, Direction, double)}).
+	 * @return The number of records replayed.
+	 * @throws Exception If the file cannot be read, or the {@link Protocol}'s TX chain fails.
+	 */
+	public long replay ( Protocol protocol, double speed ) throws Exception
+	{
+		return replay ( protocol, null, speed );
+	}
+
+	/**
+	 * Replays the remaining records into a {@link Protocol}, where its taps (see {@link CaptureWriter#tap(Direction)})
+	 * captured them: RX records enter the RX chain just after its RX tap (so, after any framing), and TX records enter
+	 * the TX chain just after its TX tap (so, at the transmitter).  A chain without a tap is entered at its start.  The
+	 * taps themselves are skipped, so they record nothing further.  RX frames are {@link ByteBuffer}s valid only for the
+	 * duration of the call, and TX frames are copies.
+	 * @param protocol The {@link Protocol}.
+	 * @param direction The direction of the records to replay, or {@code null} for both.
+	 * @param speed The speed of the replay (see {@link #replay(Emitter, Emitter, Direction, double)}).
+	 * @return The number of records replayed.
+	 * @throws Exception If the file cannot be read, or the {@link Protocol}'s TX chain fails.
+	 */
+	public long replay ( Protocol protocol, Direction direction, double speed ) throws Exception
+	{
+		int rxIndex = afterTap ( protocol.getRxChain() );
+		int txIndex = afterTap ( protocol.getTxChain() );
+
+		return replay ( frame -> protocol.receive ( frame, rxIndex ), frame -> protocol.sendAsync ( copy ( frame ), txIndex ), direction, speed );
+	}
+
+	/**
+	 * @return A copy of a frame, which (unlike the frame) may be handed to a transport, which takes ownership of it.
+	 */
+	private static ByteBuffer copy ( ByteBuffer frame )
+	{
+		ByteBuffer copy = ByteBuffer.allocate ( frame.remaining() );
+
+		copy.put ( frame.duplicate() ).flip();
+
+		return copy;
+	}
+
+	/**
+	 * @return The index of the {@link Appliance} following the (possibly instrumented) tap of a chain, or 0 if it has none.
+	 */
+	private static int afterTap ( List<Appliance> chain )
+	{
+		for ( int n = 0; n < chain.size(); ++n )
+			if ( InstrumentedAppliance.unwrap ( chain.get ( n ) ) instanceof CaptureWriter.Tap )
+				return n + 1;
+
+		return 0;
+	}
+
+	/**
+	 * Replays the remaining records into the given targets, such as the position of a chain following its tap, and the
+	 * transport's transmitter.  Each frame is a {@link ByteBuffer} valid only for the duration of the call.
+	 * @param rx The target of RX records, or {@code null} to skip them.
+	 * @param tx The target of TX records, or {@code null} to skip them.
+	 * @param direction The direction of the records to replay, or {@code null} for both.
+	 * @param speed The speed of the replay, relative to the original timing (so {@code 1} is the original speed, and
+	 * {@code 2} is twice as fast), or {@link Double#POSITIVE_INFINITY} for as fast as possible.
+	 * @return The number of records replayed.
+	 * @throws Exception If the file cannot be read, or a target fails.
+	 */
+	public long replay ( Emitter<? super ByteBuffer> rx, Emitter<? super ByteBuffer> tx, Direction direction, double speed ) throws Exception
+	{
+		if ( ! ( speed > 0 ) )
+			throw new IllegalArgumentException ( "Speed must be positive" );
+
+		boolean paced = !Double.isInfinite ( speed );
+		long replayStart = System.nanoTime();
+		long captureStart = -1;
+		long count = 0;
+		Record next;
+
+		while ( ( next = next() ) != null )
+		{
+			Emitter<? super ByteBuffer> target = ( next.direction == Direction.RX ) ? rx : tx;
+
+			if ( target == null || direction != null && next.direction != direction )
+				continue;
+
+			if ( paced )
+			{
+				if ( captureStart < 0 )
+					captureStart = next.timestampNanos;
+
+				long due = replayStart + ( long ) ( ( next.timestampNanos - captureStart ) / speed );
+				long wait;
+
+				while ( ( wait = due - System.nanoTime() ) > 0 )
+					LockSupport.parkNanos ( wait );
+			}
+
+			target.emit ( next.frame );
+			++count;
+		}
+
+		return count;
+	}
+
+	/**
+	 * @return A view of {@code length} bytes of the file at {@code offset}, remapping the region if it does not hold them.
+	 */
+	private ByteBuffer map ( long offset, int length ) throws IOException
+	{
+		if ( offset + length > fileSize )
+			throw new IOException ( "Truncated Capture File at " + offset );
+
+		if ( region == null || offset < regionStart || offset + length > regionStart + region.capacity() )
+		{
+			regionStart = offset;
+			region = channel.map ( FileChannel.MapMode.READ_ONLY, offset, Math.min ( fileSize - offset, Math.max ( regionSize, length ) ) );
+			region.order ( ByteOrder.BIG_ENDIAN );
+		}
+
+		ByteBuffer view = region.duplicate().order ( ByteOrder.BIG_ENDIAN );
+		int start = ( int ) ( offset - regionStart );
+
+		view.limit ( start + length ).position ( start );
+
+		return view;
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		region = null;
+		channel.close();
+	}
+
+	/**
+	 * A Captured Frame.
+	 */
+	public static final class Record
+	{
+		private long		timestampNanos;
+		private Direction	direction;
+		private ByteBuffer	frame;
+
+		private Record()
+		{}
+
+		/**
+		 * @return The time at which the frame was captured, in nanoseconds since the start of the capture.
+		 */
+		public long getTimestampNanos()
+		{
+			return timestampNanos;
+		}
+
+		/**
+		 * @return The direction of the frame.
+		 */
+		public Direction getDirection()
+		{
+			return direction;
+		}
+
+		/**
+		 * @return The frame, as a read-only view of the file, valid until the next record is read.
+		 */
+		public ByteBuffer getFrame()
+		{
+			return frame;
+		}
+	}
+}
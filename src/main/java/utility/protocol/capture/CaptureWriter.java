@@ -0,0 +1,232 @@
+package utility.protocol.capture;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.ReentrantLock;
+
+import utility.protocol.Appliance;
+import utility.protocol.Protocol.ProtocolException;
+
+/**
+ * Writes the frames passing through a {@link utility.protocol.Protocol}'s chains to an append-only Capture File.
+ * <p>
+ * A Capture File is a file header followed by one record per frame:
+ * </p>
+ * <pre>
+ *   File Header:  magic (4)  version (2)  reserved (2)  start time, epoch milliseconds (8)
+ *   Record:       time since start, nanoseconds (8)  direction (1)  length (4)  frame (length)
+ * </pre>
+ * <p>
+ * All values are big-endian.  Frames are captured by {@link #tap(Direction) taps}: {@link Appliance}s which
+ * record each {@code byte[]} or {@code ByteBuffer} they are given and pass it on unchanged.  A TX tap belongs
+ * at the end of the TX chain (immediately before the transport's transmitter), and an RX tap at the start of the
+ * RX chain (immediately after any framing), so the capture holds the frames as they were on the wire.
+ * </p>
+ * <p>
+ * Records are buffered, and written when the buffer fills, on {@link #flush()}, and on {@link #close()}.
+ * Taps may be used by any number of threads.
+ * </p>
+ * @author Rob
+ */
+public class CaptureWriter implements Closeable
+{
+	/**
+	 * The magic number at the start of a Capture File ("PRCF").
+	 */
+	public static final int		MAGIC					= 0x50524346;
+
+	/**
+	 * The version of the Capture File format.
+	 */
+	public static final short	VERSION					= 1;
+
+	/**
+	 * The length of the Capture File header.
+	 */
+	public static final int		FILE_HEADER_LENGTH		= 16;
+
+	/**
+	 * The length of the header of each record.
+	 */
+	public static final int		RECORD_HEADER_LENGTH	= 13;
+
+	private static final int	BUFFER_SIZE				= 64 * 1024;
+
+	private final FileChannel	channel;
+	private final ByteBuffer	buffer		= ByteBuffer.allocateDirect ( BUFFER_SIZE ).order ( ByteOrder.BIG_ENDIAN );
+	private final long			startNanos	= System.nanoTime();
+	private final ReentrantLock	lock		= new ReentrantLock();
+	private long				records;
+	private boolean				closed;
+
+	/**
+	 * Creates (or truncates) a Capture File.
+	 * @param path The path of the file.
+	 * @throws IOException If the file cannot be created.
+	 */
+	public CaptureWriter ( Path path ) throws IOException
+	{
+		channel = FileChannel.open ( path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING );
+
+		buffer.putInt ( MAGIC );
+		buffer.putShort ( VERSION );
+		buffer.putShort ( ( short ) 0 );
+		buffer.putLong ( System.currentTimeMillis() );
+	}
+
+	/**
+	 * @param direction The direction of the frames to capture.
+	 * @return An {@link Appliance} which captures each frame it is given, and returns it unchanged.
+	 */
+	public Appliance tap ( Direction direction )
+	{
+		return new Tap ( direction );
+	}
+
+	/**
+	 * Captures a frame.
+	 * @param direction The direction of the frame.
+	 * @param data A {@code byte[]} or {@code ByteBuffer} (from its position to its limit, which are left unchanged).
+	 * @throws ProtocolException If the data is of an unsupported type, or cannot be written.
+	 */
+	public void record ( Direction direction, Object data ) throws ProtocolException
+	{
+		ByteBuffer frame;
+
+		if ( data instanceof byte[] )
+			frame = ByteBuffer.wrap ( ( byte[] ) data );
+		else if ( data instanceof ByteBuffer )
+			frame = ( ( ByteBuffer ) data ).duplicate();
+		else
+			throw new ProtocolException ( "Capture requires a byte[] or ByteBuffer" );
+
+		lock.lock();
+
+		try
+		{
+			if ( closed )
+				throw new ProtocolException ( "Capture is closed" );
+
+			if ( buffer.remaining() < RECORD_HEADER_LENGTH )
+				writeBuffer();
+
+			buffer.putLong ( System.nanoTime() - startNanos );
+			buffer.put ( ( byte ) direction.ordinal() );
+			buffer.putInt ( frame.remaining() );
+
+			while ( frame.hasRemaining() )
+			{
+				if ( !buffer.hasRemaining() )
+					writeBuffer();
+
+				int count = Math.min ( frame.remaining(), buffer.remaining() );
+				int limit = frame.limit();
+
+				frame.limit ( frame.position() + count );
+				buffer.put ( frame );
+				frame.limit ( limit );
+			}
+
+			++records;
+		}
+		catch ( IOException e )
+		{
+			throw new ProtocolException ( e );
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return The number of frames captured.
+	 */
+	public long getRecordCount()
+	{
+		lock.lock();
+
+		try
+		{
+			return records;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Writes the buffered records to the file.
+	 * @throws IOException If the records cannot be written.
+	 */
+	public void flush() throws IOException
+	{
+		lock.lock();
+
+		try
+		{
+			if ( !closed )
+				writeBuffer();
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	private void writeBuffer() throws IOException
+	{
+		buffer.flip();
+
+		while ( buffer.hasRemaining() )
+			channel.write ( buffer );
+
+		buffer.clear();
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		lock.lock();
+
+		try
+		{
+			if ( closed )
+				return;
+
+			closed = true;
+			writeBuffer();
+		}
+		finally
+		{
+			channel.close();
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * A tap, which {@link CaptureReader#replay(utility.protocol.Protocol, Direction, double)} recognises in a chain.
+	 */
+	final class Tap implements Appliance
+	{
+		private final Direction direction;
+
+		Tap ( Direction direction )
+		{
+			this.direction = direction;
+		}
+
+		@Override
+		public Object apply ( Object data ) throws ProtocolException
+		{
+			record ( direction, data );
+			return data;
+		}
+	}
+}
@@ -0,0 +1,18 @@
+package utility.protocol.capture;
+
+/**
+ * The Direction of a captured frame.
+ * @author Rob
+ */
+public enum Direction
+{
+	/**
+	 * A frame which passed through the TX chain.
+	 */
+	TX,
+
+	/**
+	 * A frame which passed through the RX chain.
+	 */
+	RX,
+}
@@ -0,0 +1,435 @@
+package utility.protocol.gmp;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import utility.collections.RingBufferQueue;
+import utility.protocol.Appliance;
+import utility.protocol.ByteBufferPool;
+import utility.protocol.Protocol.ProtocolException;
+import utility.protocol.gmp.messages.MessageCategory;
+
+/**
+ * Compression of the payloads of encoded GMP {@link utility.protocol.gmp.messages.Message}s.
+ * <p>
+ * The {@link #compressor()} belongs in the TX chain immediately after the {@link MessageApplicance}'s encoder, and the
+ * {@link #decompressor()} in the RX chain immediately before its decoder.  The compressor deflates the payloads of
+ * messages of the negotiated {@link MessageCategory}s which are at least the threshold length, and sets the
+ * {@link HeaderAppliance#FLAG_COMPRESSED} flag of their headers; other messages (and those whose payloads do not shrink)
+ * pass through untouched.  The decompressor inflates any payload whose header is flagged, so a peer which can
+ * decompress accepts compressed messages of any category, and the categories negotiated only govern what is sent.
+ * </p>
+ * <p>
+ * A compressed payload is its original length (4 bytes, big-endian) followed by raw deflate data, optionally primed
+ * with a preset dictionary of content typical of the payloads (both peers must use the same dictionary).  Each message
+ * borrows a {@link Deflater} or {@link Inflater} from a bounded pool, which is reset and reused for later messages.  The
+ * native memory of a codec released once the pool is full is freed at once, and that of the pooled codecs by
+ * {@link #close()}.
+ * </p>
+ * <p>
+ * A {@code CompressionAppliance} constructed with a {@link ByteBufferPool} (the pool of the {@link MessageApplicance}'s
+ * encoder) compresses each message into a pooled buffer if it fits, and returns the pooled buffer it was given to the
+ * pool; otherwise a compressed message is a new {@code byte[]}.  A decompressed message is a view of a buffer which is
+ * reused for the next, so the RX chain must be run by one thread at a time (as a framed transport already requires),
+ * and the decoder must not retain it.  Messages passed through are returned as they were given.
+ * </p>
+ * @author Rob
+ */
+public class CompressionAppliance implements Closeable
+{
+	private static final int					LENGTH_PREFIX	= 4;
+	private static final MessageCategory[]		CATEGORIES		= MessageCategory.values();
+
+	private final int							threshold;
+	private final int							maxPayloadLength;
+	private final byte[]						dictionary;
+	private final int							level;
+	private final ByteBufferPool				pool;
+	private final RingBufferQueue<Codec>		codecs;
+	private ByteBuffer							inflated		= ByteBuffer.allocate ( 1024 );
+	private volatile boolean					closed;
+	private final Appliance						compressor		= this::compress;
+	private final Appliance						decompressor	= this::decompress;
+	private final LongAdder						rawBytes		= new LongAdder();
+	private final LongAdder						compressedBytes	= new LongAdder();
+	private volatile Set<MessageCategory>		categories;
+
+	/**
+	 * Constructs a new {@code CompressionAppliance}.
+	 * @param categories The {@link MessageCategory}s whose payloads are compressed.
+	 * @param threshold The length of the shortest payload which is compressed.
+	 * @param dictionary The preset dictionary, or {@code null} for none.
+	 * @param maxPayloadLength The length of the longest payload which is decompressed.
+	 */
+	public CompressionAppliance ( Set<MessageCategory> categories, int threshold, byte[] dictionary, int maxPayloadLength )
+	{
+		this ( categories, threshold, dictionary, maxPayloadLength, Deflater.DEFAULT_COMPRESSION );
+	}
+
+	/**
+	 * Constructs a new {@code CompressionAppliance}.
+	 * @param categories The {@link MessageCategory}s whose payloads are compressed.
+	 * @param threshold The length of the shortest payload which is compressed.
+	 * @param dictionary The preset dictionary, or {@code null} for none.
+	 * @param maxPayloadLength The length of the longest payload which is decompressed.
+	 * @param level The {@link Deflater} compression level.
+	 */
+	public CompressionAppliance ( Set<MessageCategory> categories, int threshold, byte[] dictionary, int maxPayloadLength, int level )
+	{
+		this ( categories, threshold, dictionary, maxPayloadLength, level, null );
+	}
+
+	/**
+	 * Constructs a new {@code CompressionAppliance}.
+	 * @param categories The {@link MessageCategory}s whose payloads are compressed.
+	 * @param threshold The length of the shortest payload which is compressed.
+	 * @param dictionary The preset dictionary, or {@code null} for none.
+	 * @param maxPayloadLength The length of the longest payload which is decompressed.
+	 * @param level The {@link Deflater} compression level.
+	 * @param pool The pool of buffers into which messages are compressed (and to which the buffers they were encoded
+	 * into are returned), or {@code null} to compress into new arrays.
+	 */
+	public CompressionAppliance ( Set<MessageCategory> categories, int threshold, byte[] dictionary, int maxPayloadLength, int level, ByteBufferPool pool )
+	{
+		if ( threshold < 0 || maxPayloadLength < 0 )
+			throw new IllegalArgumentException ( "Threshold and Max Payload Length must not be negative" );
+
+		this.threshold        = threshold;
+		this.maxPayloadLength = maxPayloadLength;
+		this.dictionary       = ( dictionary == null ) ? null : dictionary.clone();
+		this.level            = level;
+		this.pool             = pool;
+		this.codecs           = new RingBufferQueue<> ( Runtime.getRuntime().availableProcessors() );
+
+		setCategories ( categories );
+	}
+
+	/**
+	 * @param categories The {@link MessageCategory}s whose payloads are compressed (as negotiated with the peer).
+	 */
+	public void setCategories ( Set<MessageCategory> categories )
+	{
+		this.categories = Collections.unmodifiableSet ( categories.isEmpty() ? EnumSet.noneOf ( MessageCategory.class ) : EnumSet.copyOf ( categories ) );
+	}
+
+	/**
+	 * @return The {@link MessageCategory}s whose payloads are compressed.
+	 */
+	public Set<MessageCategory> getCategories()
+	{
+		return categories;
+	}
+
+	/**
+	 * @return The TX side {@link Appliance}.
+	 */
+	public Appliance compressor()
+	{
+		return compressor;
+	}
+
+	/**
+	 * @return The RX side {@link Appliance}.
+	 */
+	public Appliance decompressor()
+	{
+		return decompressor;
+	}
+
+	/**
+	 * @return The total length of the payloads compressed.
+	 */
+	public long getRawBytes()
+	{
+		return rawBytes.sum();
+	}
+
+	/**
+	 * @return The total length of the compressed payloads they were compressed to.
+	 */
+	public long getCompressedBytes()
+	{
+		return compressedBytes.sum();
+	}
+
+	/**
+	 * Frees the native memory of the pooled codecs.  Codecs in use are freed as they are released.
+	 */
+	@Override
+	public void close()
+	{
+		closed = true;
+		endIdle();
+	}
+
+	private void endIdle()
+	{
+		for ( Codec codec; ( codec = codecs.poll() ) != null; )
+			codec.end();
+	}
+
+	private Codec acquire()
+	{
+		Codec codec = codecs.poll();
+
+		return ( codec == null ) ? new Codec ( level ) : codec;
+	}
+
+	private void release ( Codec codec )
+	{
+		if ( !codecs.offer ( codec ) )
+			codec.end();
+		else if ( closed )
+			endIdle();
+	}
+
+	/**
+	 * Compresses the payload of an encoded message, if its category is negotiated and it is long enough.
+	 * @param data A {@code byte[]} or {@link ByteBuffer} (from its position to its limit) containing an encoded message.
+	 * @return The message with its payload compressed, or {@code data}.
+	 * @throws ProtocolException If {@code data} is not an encoded message.
+	 */
+	public Object compress ( Object data ) throws ProtocolException
+	{
+		ByteBuffer frame = asBuffer ( data );
+		int start = frame.position();
+		int payloadLength = frame.remaining() - HeaderAppliance.HEADER_LENGTH;
+
+		if ( payloadLength < 0 )
+			throw new ProtocolException ( "Truncated Header: " + frame.remaining() + " bytes" );
+
+		if ( payloadLength < threshold || payloadLength == 0 )
+			return data;
+
+		int category = frame.get ( start + HeaderAppliance.CATEGORY_OFFSET ) & 0x0FF;
+
+		if ( category >= CATEGORIES.length || !categories.contains ( CATEGORIES [ category ] ) )
+			return data;
+
+		Codec codec = acquire();
+
+		try
+		{
+			byte[] payload = codec.input ( frame, start + HeaderAppliance.HEADER_LENGTH, payloadLength );
+			int compressedLength = codec.deflate ( payload, codec.inputOffset, payloadLength, dictionary );
+			int length = HeaderAppliance.HEADER_LENGTH + LENGTH_PREFIX + compressedLength;
+
+			if ( length >= frame.remaining() )
+				return data;
+
+			boolean pooled = ( pool != null && length <= pool.getBufferSize() );
+			ByteBuffer out = pooled ? pool.acquire() : ByteBuffer.allocate ( length ).order ( ByteOrder.BIG_ENDIAN );
+
+			for ( int n = 0; n < HeaderAppliance.HEADER_LENGTH; ++n )
+				out.put ( frame.get ( start + n ) );
+
+			out.put ( 0, ( byte ) ( out.get ( 0 ) | HeaderAppliance.FLAG_COMPRESSED ) );
+			out.putInt ( payloadLength );
+			out.put ( codec.output, 0, compressedLength );
+
+			rawBytes.add ( payloadLength );
+			compressedBytes.add ( compressedLength );
+
+			if ( pool != null && data instanceof ByteBuffer )
+				pool.release ( frame );
+
+			if ( !pooled )
+				return out.array();
+
+			out.flip();
+			return out;
+		}
+		finally
+		{
+			release ( codec );
+		}
+	}
+
+	/**
+	 * Decompresses the payload of an encoded message, if it is compressed.
+	 * @param data A {@code byte[]} or {@link ByteBuffer} (from its position to its limit) containing an encoded message.
+	 * @return The message with its payload decompressed, as a {@link ByteBuffer} which is reused by the next call, or {@code data}.
+	 * @throws ProtocolException If {@code data} is not an encoded message, or its compressed payload is corrupt.
+	 */
+	public Object decompress ( Object data ) throws ProtocolException
+	{
+		ByteBuffer frame = asBuffer ( data );
+		int start = frame.position();
+
+		if ( frame.remaining() < HeaderAppliance.HEADER_LENGTH )
+			throw new ProtocolException ( "Truncated Header: " + frame.remaining() + " bytes" );
+
+		int flags = frame.get ( start );
+
+		if ( ( flags & HeaderAppliance.FLAG_COMPRESSED ) == 0 )
+			return data;
+
+		int compressedLength = frame.remaining() - HeaderAppliance.HEADER_LENGTH - LENGTH_PREFIX;
+
+		if ( compressedLength < 0 )
+			throw new ProtocolException ( "Truncated Compressed Payload" );
+
+		int payloadLength = frame.order ( ByteOrder.BIG_ENDIAN ).getInt ( start + HeaderAppliance.HEADER_LENGTH );
+
+		if ( payloadLength < 0 || payloadLength > maxPayloadLength )
+			throw new ProtocolException ( "Compressed Payload Length " + payloadLength + " exceeds maximum of " + maxPayloadLength );
+
+		int length = HeaderAppliance.HEADER_LENGTH + payloadLength;
+
+		if ( inflated.capacity() < length )
+			inflated = ByteBuffer.allocate ( Math.max ( length, inflated.capacity() * 2 ) );
+
+		byte[] out = inflated.array();
+		Codec codec = acquire();
+
+		try
+		{
+			byte[] compressed = codec.input ( frame, start + HeaderAppliance.HEADER_LENGTH + LENGTH_PREFIX, compressedLength );
+
+			for ( int n = 0; n < HeaderAppliance.HEADER_LENGTH; ++n )
+				out [ n ] = frame.get ( start + n );
+
+			out [ 0 ] &= ~HeaderAppliance.FLAG_COMPRESSED;
+
+			codec.inflate ( compressed, codec.inputOffset, compressedLength, out, HeaderAppliance.HEADER_LENGTH, payloadLength, dictionary );
+		}
+		finally
+		{
+			release ( codec );
+		}
+
+		inflated.clear();
+		inflated.limit ( length );
+
+		return inflated;
+	}
+
+	private static ByteBuffer asBuffer ( Object data ) throws ProtocolException
+	{
+		if ( data instanceof ByteBuffer )
+			return ( ByteBuffer ) data;
+
+		if ( data instanceof byte[] )
+			return ByteBuffer.wrap ( ( byte[] ) data );
+
+		throw new ProtocolException ( "Argument must be a byte[] or ByteBuffer" );
+	}
+
+	/**
+	 * The reusable compression state of a message.
+	 */
+	private static final class Codec
+	{
+		private final Deflater	deflater;
+		private final Inflater	inflater	= new Inflater ( true );
+		private byte[]			input		= new byte [ 1024 ];
+		private int				inputOffset;
+		private byte[]			output		= new byte [ 1024 ];
+
+		Codec ( int level )
+		{
+			deflater = new Deflater ( level, true );
+		}
+
+		/**
+		 * Frees the native memory of the {@link Deflater} and {@link Inflater}.
+		 */
+		void end()
+		{
+			deflater.end();
+			inflater.end();
+		}
+
+		/**
+		 * @return An array holding {@code length} bytes of {@code buffer} from {@code offset}, at {@link #inputOffset}:
+		 * the buffer's own array if it has one, otherwise a copy.
+		 */
+		byte[] input ( ByteBuffer buffer, int offset, int length )
+		{
+			if ( buffer.hasArray() )
+			{
+				inputOffset = buffer.arrayOffset() + offset;
+				return buffer.array();
+			}
+
+			inputOffset = 0;
+
+			if ( input.length < length )
+				input = new byte [ Math.max ( length, input.length * 2 ) ];
+
+			ByteBuffer source = buffer.duplicate();
+			source.limit ( offset + length ).position ( offset );
+			source.get ( input, 0, length );
+
+			return input;
+		}
+
+		/**
+		 * Deflates into {@link #output}.
+		 * @return The compressed length.
+		 */
+		int deflate ( byte[] data, int offset, int length, byte[] dictionary )
+		{
+			deflater.reset();
+
+			if ( dictionary != null )
+				deflater.setDictionary ( dictionary );
+
+			deflater.setInput ( data, offset, length );
+			deflater.finish();
+
+			int count = 0;
+
+			while ( !deflater.finished() )
+			{
+				if ( count == output.length )
+					output = Arrays.copyOf ( output, output.length * 2 );
+
+				count += deflater.deflate ( output, count, output.length - count );
+			}
+
+			return count;
+		}
+
+		void inflate ( byte[] data, int dataOffset, int length, byte[] out, int offset, int expected, byte[] dictionary ) throws ProtocolException
+		{
+			inflater.reset();
+
+			if ( dictionary != null )
+				inflater.setDictionary ( dictionary );
+
+			inflater.setInput ( data, dataOffset, length );
+
+			try
+			{
+				int count = 0;
+
+				while ( count < expected && !inflater.finished() )
+				{
+					int n = inflater.inflate ( out, offset + count, expected - count );
+
+					if ( n == 0 && ( inflater.needsInput() || inflater.needsDictionary() ) )
+						break;
+
+					count += n;
+				}
+
+				if ( count != expected || !inflater.finished() )
+					throw new ProtocolException ( "Corrupt Compressed Payload" );
+			}
+			catch ( DataFormatException e )
+			{
+				throw new ProtocolException ( e );
+			}
+		}
+	}
+}
@@ -10,41 +10,77 @@ import utility.protocol.gmp.messages.MessageType;
 
 public class HeaderAppliance
 {
+	/**
+	 * The length of an encoded {@link Header}, in bytes.
+	 */
+	public static final int HEADER_LENGTH = 7;
+
+	/**
+	 * The flag (in the first byte of an encoded {@link Header}) set for a High Priority message.
+	 */
+	public static final int FLAG_HIGH_PRIORITY = 0x01;
+
+	/**
+	 * The flag (in the first byte of an encoded {@link Header}) set when the payload is compressed (see {@link CompressionAppliance}).
+	 */
+	public static final int FLAG_COMPRESSED = 0x02;
+
+	/**
+	 * The offset of the encoded {@link MessageType} in an encoded {@link Header}.
+	 */
+	public static final int TYPE_OFFSET = 1;
+
+	/**
+	 * The offset of the encoded {@link MessageCategory} in an encoded {@link Header}.
+	 */
+	public static final int CATEGORY_OFFSET = 2;
+
+	/**
+	 * The offset of the encoded id (big-endian) in an encoded {@link Header}.
+	 */
+	public static final int ID_OFFSET = 3;
+
+	/**
+	 * The {@link MessageType}s, indexed by their encoded value (their ordinal).
+	 */
+	private static final MessageType[] TYPES = MessageType.values();
+
+	/**
+	 * The {@link MessageCategory}s, indexed by their encoded value (their ordinal).
+	 */
+	private static final MessageCategory[] CATEGORIES = MessageCategory.values();
+
 	public HeaderAppliance()
 	{}
 
 	public byte[] encodeHeader ( Header header ) throws ProtocolException
 	{		
-		ByteBuffer buffer = ByteBuffer.allocate ( 7 );
+		ByteBuffer buffer = ByteBuffer.allocate ( HEADER_LENGTH );
 		buffer.order ( ByteOrder.BIG_ENDIAN );
 		
-		buffer.put ( ( byte ) ( header.isHighPriority()? 1 : 0 ) );
+		encodeHeader ( header, buffer );
 		
-		switch ( header.getType() )
-		{
-			case REQUEST: buffer.put ( ( byte ) 0 ); break;
-			case COMMAND: buffer.put ( ( byte ) 1 ); break;
-				
-			default:
-				throw new ProtocolException ( "UnHandled Message Type: " + header.getType() );
-		}
+		return buffer.array();
+	}
+
+	/**
+	 * Encodes a {@link Header} into a buffer, at the buffer's position.
+	 * @param header The {@link Header} to encode.
+	 * @param buffer The big-endian buffer to write to.  (At least {@link #HEADER_LENGTH} bytes must remain).
+	 * @throws ProtocolException If the {@link Header} cannot be encoded.
+	 */
+	public void encodeHeader ( Header header, ByteBuffer buffer ) throws ProtocolException
+	{
+		if ( header.getType() == null )
+			throw new ProtocolException ( "UnHandled Message Type: " + header.getType() );
 		
-		switch ( header.getCategory() )
-		{
-			case CAPABILITIES:  buffer.put ( ( byte ) 0 ); break;
-			case CONFIGURATION: buffer.put ( ( byte ) 1 ); break;
-			case OPERATION:     buffer.put ( ( byte ) 2 ); break;
-			case STATUS:        buffer.put ( ( byte ) 3 ); break;
-			case NOTIFICATION:  buffer.put ( ( byte ) 4 ); break;
-			case DEBUG:         buffer.put ( ( byte ) 5 ); break;
-				
-			default:
-				throw new ProtocolException ( "UnHandled Message Category: " + header.getType() );			
-		}
+		if ( header.getCategory() == null )
+			throw new ProtocolException ( "UnHandled Message Category: " + header.getCategory() );
 		
+		buffer.put ( ( byte ) ( header.isHighPriority()? FLAG_HIGH_PRIORITY : 0 ) );
+		buffer.put ( ( byte ) header.getType().ordinal() );
+		buffer.put ( ( byte ) header.getCategory().ordinal() );
 		buffer.putInt ( header.getId() );
-		
-		return buffer.array();
 	}
 	
 
@@ -53,37 +89,55 @@ public class HeaderAppliance
 		if ( ! ( data instanceof ByteBuffer ) )
 			throw new RuntimeException ( "Argument must be a byte[]" );
 		
-		Header header = new Header();
-		
-		ByteBuffer buffer = ( ByteBuffer ) data;
+		return decodeHeader ( ( ByteBuffer ) data );
+	}
+
+	/**
+	 * Decodes a {@link Header} from a buffer, advancing the buffer's position past it.
+	 * @param buffer The big-endian buffer to read from.
+	 * @return The decoded {@link Header}.
+	 * @throws ProtocolException If the buffer does not contain a valid {@link Header}.
+	 */
+	public Header decodeHeader ( ByteBuffer buffer ) throws ProtocolException
+	{
+		return decodeHeader ( buffer, new Header() );
+	}
+
+	/**
+	 * Decodes a {@link Header} from a buffer into an existing {@link Header} (such as a pooled one), advancing the buffer's position past it.
+	 * @param buffer The big-endian buffer to read from.
+	 * @param header The {@link Header} to decode into.
+	 * @return {@code header}
+	 * @throws ProtocolException If the buffer does not contain a valid {@link Header}.
+	 */
+	public Header decodeHeader ( ByteBuffer buffer, Header header ) throws ProtocolException
+	{
+		if ( buffer.remaining() < HEADER_LENGTH )
+			throw new ProtocolException ( "Truncated Header: " + buffer.remaining() + " bytes" );
 		
-		header.setHighPriority ( buffer.get() == 1 );
+		int flags = buffer.get() & 0x0FF;
+
+		if ( ( flags & FLAG_COMPRESSED ) != 0 )
+			throw new ProtocolException ( "Compressed Payload, but no CompressionAppliance in the RX chain" );
+
+		if ( ( flags & ~FLAG_HIGH_PRIORITY ) != 0 )
+			throw new ProtocolException ( "Unknown Header Flags: " + flags );
+
+		header.setHighPriority ( flags == FLAG_HIGH_PRIORITY );
 		
 		int type = buffer.get() & 0x0FF;
 		
-		switch ( type )
-		{
-			case 0: header.setType ( MessageType.REQUEST ); break;
-			case 1: header.setType ( MessageType.COMMAND ); break;
-				
-			default:
-				throw new ProtocolException ( "Unknown Message Type Value: " + type );
-		}
+		if ( type >= TYPES.length )
+			throw new ProtocolException ( "Unknown Message Type Value: " + type );
+		
+		header.setType ( TYPES [ type ] );
 		
 		int category = buffer.get() & 0x0FF;
 		
-		switch ( category )
-		{
-			case 0: header.setCategory ( MessageCategory.CAPABILITIES  ); break;
-			case 1: header.setCategory ( MessageCategory.CONFIGURATION ); break;
-			case 2: header.setCategory ( MessageCategory.OPERATION     ); break;
-			case 3: header.setCategory ( MessageCategory.STATUS        ); break;
-			case 4: header.setCategory ( MessageCategory.NOTIFICATION  ); break;
-			case 5: header.setCategory ( MessageCategory.DEBUG         ); break;
-				
-			default:
-				throw new ProtocolException ( "Unknown Message Category Value: " + category );			
-		}
+		if ( category >= CATEGORIES.length )
+			throw new ProtocolException ( "Unknown Message Category Value: " + category );
+		
+		header.setCategory ( CATEGORIES [ category ] );
 		
 		header.setId ( buffer.getInt() );
 		
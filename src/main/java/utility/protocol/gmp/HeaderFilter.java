@@ -0,0 +1,81 @@
+package utility.protocol.gmp;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+import utility.protocol.Appliance;
+
+/**
+ * An {@link Appliance} which filters encoded GMP frames by their {@link utility.protocol.gmp.messages.Header}s, without decoding them.
+ * <p>
+ * Belongs in the RX chain ahead of the {@link MessageApplicance}'s decoder (and any {@link CompressionAppliance}
+ * decompressor, since the header of a compressed frame is not compressed).  Each frame is wrapped by a {@link HeaderView},
+ * reused per thread, and handed to the predicate: frames it accepts are passed on unchanged, and frames it rejects end
+ * the processing of the chain.  Frames too short to hold a header are passed on, for the decoder to reject.
+ * </p>
+ * @author Rob
+ */
+public class HeaderFilter implements Appliance
+{
+	private final Predicate<? super HeaderView>	predicate;
+	private final ThreadLocal<HeaderView>		view		= ThreadLocal.withInitial ( HeaderView::new );
+	private final LongAdder						accepted	= new LongAdder();
+	private final LongAdder						dropped		= new LongAdder();
+
+	/**
+	 * @param predicate Accepts the frames to pass on.  The {@link HeaderView} it is given is only valid for the duration of the call.
+	 */
+	public HeaderFilter ( Predicate<? super HeaderView> predicate )
+	{
+		if ( predicate == null )
+			throw new IllegalArgumentException ( "Predicate may not be null" );
+
+		this.predicate = predicate;
+	}
+
+	/**
+	 * @return The number of frames passed on.
+	 */
+	public long getAccepted()
+	{
+		return accepted.sum();
+	}
+
+	/**
+	 * @return The number of frames dropped.
+	 */
+	public long getDropped()
+	{
+		return dropped.sum();
+	}
+
+	/**
+	 * @param data A {@code byte[]} or {@link ByteBuffer} (from its position to its limit) containing an encoded message.
+	 * @return {@code data}, or {@code null} if the frame is dropped.
+	 */
+	@Override
+	public Object apply ( Object data ) throws Exception
+	{
+		ByteBuffer frame;
+
+		if ( data instanceof ByteBuffer )
+			frame = ( ByteBuffer ) data;
+		else if ( data instanceof byte[] )
+			frame = ByteBuffer.wrap ( ( byte[] ) data );
+		else
+			throw new IllegalArgumentException ( "Argument must be a byte[] or ByteBuffer" );
+
+		if ( frame.remaining() < HeaderAppliance.HEADER_LENGTH )
+			return data;
+
+		if ( predicate.test ( view.get().wrap ( frame ) ) )
+		{
+			accepted.increment();
+			return data;
+		}
+
+		dropped.increment();
+		return null;
+	}
+}
@@ -0,0 +1,182 @@
+package utility.protocol.gmp;
+
+import java.nio.ByteBuffer;
+
+import utility.protocol.Protocol.ProtocolException;
+import utility.protocol.gmp.messages.Header;
+import utility.protocol.gmp.messages.MessageCategory;
+import utility.protocol.gmp.messages.MessageType;
+
+/**
+ * A Flyweight view of an encoded {@link Header}, within a buffer.
+ * <p>
+ * Each getter reads its field straight from the buffer (using absolute reads, so the buffer's position, limit and byte
+ * order are left alone), so a frame can be routed or filtered by peeking at a few bytes, without decoding it and
+ * without creating any objects.  A {@code HeaderView} is reused by {@link #wrap(ByteBuffer) wrapping} each frame in turn;
+ * it is not thread safe, and is only valid while the underlying buffer is.
+ * </p>
+ * <p>
+ * Unlike {@link HeaderAppliance#decodeHeader(ByteBuffer)}, the getters do not validate: an unknown type or category is
+ * returned as {@code null}.  {@link #toHeader()} validates the view as it decodes it.
+ * </p>
+ * @author Rob
+ */
+public final class HeaderView
+{
+	private static final MessageType[]		TYPES		= MessageType.values();
+	private static final MessageCategory[]	CATEGORIES	= MessageCategory.values();
+
+	private final HeaderAppliance	headerAppliance	= new HeaderAppliance();
+	private ByteBuffer				buffer;
+	private int						offset;
+
+	/**
+	 * Constructs an empty {@code HeaderView}, which must be {@link #wrap(ByteBuffer) wrapped} around a buffer before use.
+	 */
+	public HeaderView()
+	{}
+
+	/**
+	 * Views the {@link Header} at a buffer's position.
+	 * @param buffer The buffer.
+	 * @return {@code this}
+	 * @throws ProtocolException If fewer than {@link HeaderAppliance#HEADER_LENGTH} bytes remain in the buffer.
+	 */
+	public HeaderView wrap ( ByteBuffer buffer ) throws ProtocolException
+	{
+		return wrap ( buffer, buffer.position() );
+	}
+
+	/**
+	 * Views the {@link Header} at an offset within a buffer.
+	 * @param buffer The buffer.
+	 * @param offset The absolute offset of the {@link Header}.
+	 * @return {@code this}
+	 * @throws ProtocolException If the buffer's limit is fewer than {@link HeaderAppliance#HEADER_LENGTH} bytes beyond the offset.
+	 */
+	public HeaderView wrap ( ByteBuffer buffer, int offset ) throws ProtocolException
+	{
+		if ( offset < 0 || buffer.limit() - offset < HeaderAppliance.HEADER_LENGTH )
+			throw new ProtocolException ( "Truncated Header: " + ( buffer.limit() - offset ) + " bytes" );
+
+		this.buffer = buffer;
+		this.offset = offset;
+
+		return this;
+	}
+
+	/**
+	 * @return The flags byte (see {@link HeaderAppliance#FLAG_HIGH_PRIORITY} and {@link HeaderAppliance#FLAG_COMPRESSED}).
+	 */
+	public int getFlags()
+	{
+		return buffer.get ( offset ) & 0x0FF;
+	}
+
+	public boolean isHighPriority()
+	{
+		return ( getFlags() & HeaderAppliance.FLAG_HIGH_PRIORITY ) != 0;
+	}
+
+	public boolean isCompressed()
+	{
+		return ( getFlags() & HeaderAppliance.FLAG_COMPRESSED ) != 0;
+	}
+
+	/**
+	 * @return The encoded value (ordinal) of the {@link MessageType}.
+	 */
+	public int getTypeValue()
+	{
+		return buffer.get ( offset + HeaderAppliance.TYPE_OFFSET ) & 0x0FF;
+	}
+
+	/**
+	 * @return The {@link MessageType}, or {@code null} if the encoded value is unknown.
+	 */
+	public MessageType getType()
+	{
+		int type = getTypeValue();
+
+		return ( type < TYPES.length ) ? TYPES [ type ] : null;
+	}
+
+	/**
+	 * @return The encoded value (ordinal) of the {@link MessageCategory}.
+	 */
+	public int getCategoryValue()
+	{
+		return buffer.get ( offset + HeaderAppliance.CATEGORY_OFFSET ) & 0x0FF;
+	}
+
+	/**
+	 * @return The {@link MessageCategory}, or {@code null} if the encoded value is unknown.
+	 */
+	public MessageCategory getCategory()
+	{
+		int category = getCategoryValue();
+
+		return ( category < CATEGORIES.length ) ? CATEGORIES [ category ] : null;
+	}
+
+	public int getId()
+	{
+		int start = offset + HeaderAppliance.ID_OFFSET;
+
+		return   ( buffer.get ( start     ) & 0x0FF ) << 24
+			   | ( buffer.get ( start + 1 ) & 0x0FF ) << 16
+			   | ( buffer.get ( start + 2 ) & 0x0FF ) << 8
+			   | ( buffer.get ( start + 3 ) & 0x0FF );
+	}
+
+	/**
+	 * @return A new {@link Header} decoded from the view.
+	 * @throws ProtocolException If the view does not contain a valid {@link Header}.
+	 */
+	public Header toHeader() throws ProtocolException
+	{
+		return toHeader ( new Header() );
+	}
+
+	/**
+	 * Decodes the view into an existing {@link Header}.
+	 * @param header The {@link Header} to decode into.
+	 * @return {@code header}
+	 * @throws ProtocolException If the view does not contain a valid {@link Header}.
+	 */
+	public Header toHeader ( Header header ) throws ProtocolException
+	{
+		ByteBuffer view = buffer.duplicate();
+
+		view.limit ( offset + HeaderAppliance.HEADER_LENGTH ).position ( offset );
+
+		return headerAppliance.decodeHeader ( view, header );
+	}
+
+	@Override
+	public String toString()
+	{
+		if ( buffer == null )
+			return "[UNWRAPPED]";
+
+		StringBuilder builder = new StringBuilder();
+
+		builder.append ( "[" );
+
+		if ( isHighPriority() )
+			builder.append ( "HI," );
+
+		if ( isCompressed() )
+			builder.append ( "Z," );
+
+		builder.append ( getType() );
+		builder.append ( "," );
+
+		builder.append ( getCategory() );
+		builder.append ( "," );
+
+		builder.append ( getId() );
+
+		return builder.toString();
+	}
+}
@@ -3,25 +3,107 @@ package utility.protocol.gmp;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 
+import utility.protocol.ByteBufferPool;
 import utility.protocol.Protocol.ProtocolException;
+import utility.protocol.Recycler;
+import utility.protocol.Stage;
 import utility.protocol.gmp.messages.Header;
 import utility.protocol.gmp.messages.Message;
 
+/**
+ * Encodes and Decodes GMP {@link Message}s.
+ * <p>
+ * A {@code MessageApplicance} constructed with a {@link ByteBufferPool} encodes each {@link Message} directly into a
+ * pooled buffer, which it hands down the TX chain; the transport returns the buffer to the pool once written.  Decoding
+ * never copies the payload: the {@link MessageFactory} is handed a view of the payload within the received frame.
+ * </p>
+ * <p>
+ * Decoded {@link Message}s are created by the {@link MessageFactory} registered in the {@link MessageRegistry}
+ * for the {@link Header}'s {@link utility.protocol.gmp.messages.MessageType} and {@link utility.protocol.gmp.messages.MessageCategory}.
+ * </p>
+ * <p>
+ * A {@code MessageApplicance} constructed with a {@link Recycler} of {@link Header}s decodes each {@link Header} into a
+ * pooled instance.  Together with {@link PooledMessageFactory}s, the RX path then does not allocate in the steady state,
+ * provided each decoded {@link Message} is handed back to {@link #release(Message)} once it has been consumed.
+ * </p>
+ */
 public class MessageApplicance
 {
-	//TODO: Use this
-	@SuppressWarnings ("unused" )
-	private MessageFactory factory;
+	private final MessageRegistry registry;
 	private final HeaderAppliance headerAppliance = new HeaderAppliance();
+	private final ByteBufferPool pool;
+	private final Recycler<Header> headers;
 	
 	public MessageApplicance ( MessageFactory factory )
 	{
-		if ( factory == null )
-			throw new IllegalArgumentException ( "Factory may not be null" );
+		this ( factory, null );
+	}
+	
+	/**
+	 * @param factory The factory used to create all decoded {@link Message}s.
+	 * @param pool The pool of buffers into which {@link Message}s are encoded, or {@code null} to encode into new arrays.
+	 */
+	public MessageApplicance ( MessageFactory factory, ByteBufferPool pool )
+	{
+		this ( new MessageRegistry ( factory ), pool );
+	}
+	
+	public MessageApplicance ( MessageRegistry registry )
+	{
+		this ( registry, null );
+	}
+	
+	/**
+	 * @param registry The registry of factories used to create decoded {@link Message}s.
+	 * @param pool The pool of buffers into which {@link Message}s are encoded, or {@code null} to encode into new arrays.
+	 */
+	public MessageApplicance ( MessageRegistry registry, ByteBufferPool pool )
+	{
+		this ( registry, pool, null );
+	}
+	
+	/**
+	 * @param registry The registry of factories used to create decoded {@link Message}s.
+	 * @param pool The pool of buffers into which {@link Message}s are encoded, or {@code null} to encode into new arrays.
+	 * @param headers The {@link Recycler} of decoded {@link Header}s, or {@code null} to decode into new {@link Header}s.
+	 */
+	public MessageApplicance ( MessageRegistry registry, ByteBufferPool pool, Recycler<Header> headers )
+	{
+		if ( registry == null )
+			throw new IllegalArgumentException ( "Registry may not be null" );
 		
-		this.factory = factory;
+		this.registry = registry;
+		this.pool     = pool;
+		this.headers  = headers;
+	}
+	
+	public MessageRegistry getRegistry()
+	{
+		return registry;
+	}
+	
+	/**
+	 * @return The encoder as a typed {@link Stage}, which emits a {@code byte[]} or pooled {@link ByteBuffer} per {@link Message}.
+	 */
+	public Stage<Message,Object> encoder()
+	{
+		return ( message, downstream ) -> downstream.emit ( encodeMessage ( message ) );
+	}
+	
+	/**
+	 * @return The decoder as a typed {@link Stage}, which emits a {@link Message} per frame.
+	 */
+	public Stage<ByteBuffer,Message> decoder()
+	{
+		return ( frame, downstream ) -> downstream.emit ( decodeMessage ( frame ) );
 	}
 
+	/**
+	 * Encodes a {@link Message}.
+	 * @param obj The {@link Message} to encode.
+	 * @return A {@code byte[]}, or a flipped pooled {@link ByteBuffer} if this {@code MessageApplicance} has a {@link ByteBufferPool}.
+	 * @throws ProtocolException If the {@link Message} cannot be encoded.
+	 */
 	public Object encodeMessage ( Object obj ) throws ProtocolException
 	{
 		if ( ! ( obj instanceof Message ) )
@@ -29,31 +111,130 @@ public class MessageApplicance
 		
 		Message msg = ( Message ) obj;
 		
-		byte[] header = ( byte[] ) headerAppliance.encodeHeader ( msg.getHeader () );		
 		msg.encodePayload();
 		
-		ByteBuffer buffer = ByteBuffer.allocate ( header.length + msg.getPayload().length );
-		buffer.order ( ByteOrder.BIG_ENDIAN );
+		if ( pool != null )
+		{
+			ByteBuffer buffer = pool.acquire();
+			
+			try
+			{
+				encodeMessage ( msg, buffer );
+			}
+			catch ( ProtocolException e )
+			{
+				pool.release ( buffer );
+				throw e;
+			}
+			
+			buffer.flip();
+			return buffer;
+		}
 		
-		buffer.put ( header );
-		buffer.put ( msg.getPayload() );
+		byte[] data = new byte [ HeaderAppliance.HEADER_LENGTH + msg.getPayloadLength() ];
+		encodeMessage ( msg, ByteBuffer.wrap ( data ) );
 		
-		return buffer.array();
+		return data;
 	}
 
-	//TODO: Remove This suppression when function is completed
-	@SuppressWarnings ("unused" )
+	/**
+	 * Encodes a {@link Message}'s {@link Header} and (already encoded) payload into a buffer, at the buffer's position.
+	 * @param msg The {@link Message} to encode.
+	 * @param buffer The big-endian buffer to write to.
+	 * @return {@code buffer}
+	 * @throws ProtocolException If the {@link Message} cannot be encoded, or does not fit in the buffer.
+	 */
+	public ByteBuffer encodeMessage ( Message msg, ByteBuffer buffer ) throws ProtocolException
+	{
+		int length = HeaderAppliance.HEADER_LENGTH + msg.getPayloadLength();
+		
+		if ( buffer.remaining() < length )
+			throw new ProtocolException ( "Encoded Message (" + length + " bytes) exceeds buffer (" + buffer.remaining() + " bytes)" );
+		
+		headerAppliance.encodeHeader ( msg.getHeader(), buffer );
+		
+		ByteBuffer payload = msg.getPayloadBuffer();
+		
+		if ( payload != null )
+		{
+			int position = payload.position();
+			buffer.put ( payload );
+			payload.position ( position );
+		}
+		
+		return buffer;
+	}
+
+	/**
+	 * Decodes a {@link Message}.
+	 * @param obj A {@code byte[]} or {@link ByteBuffer} containing exactly one encoded {@link Message}.
+	 * @return The decoded {@link Message}.
+	 * @throws ProtocolException If the data does not contain a valid {@link Message}.
+	 */
 	public Message decodeMessage ( Object obj ) throws ProtocolException
 	{
+		if ( obj instanceof ByteBuffer )
+			return decodeMessage ( ( ByteBuffer ) obj );
+		
 		if ( ! ( obj instanceof byte[] ) )
-			throw new IllegalArgumentException ( "Argument must be a byte[]" );
+			throw new IllegalArgumentException ( "Argument must be a byte[] or ByteBuffer" );
 		
-		byte[] data = ( byte[] ) obj;
-		ByteBuffer buffer = ByteBuffer.wrap ( data );
+		return decodeMessage ( ByteBuffer.wrap ( ( byte[] ) obj ) );
+	}
+
+	/**
+	 * Decodes a {@link Message} from a buffer, from its position to its limit.  On return, the buffer's position is at its limit.
+	 * @param buffer The buffer containing exactly one encoded {@link Message}.
+	 * @return The decoded {@link Message}.
+	 * @throws ProtocolException If the buffer does not contain a valid {@link Message}.
+	 */
+	public Message decodeMessage ( ByteBuffer buffer ) throws ProtocolException
+	{
 		buffer.order ( ByteOrder.BIG_ENDIAN );
 		
-		//TODO: Finish this method
-		Header header = headerAppliance.decodeHeader ( buffer );
-		return null;
+		if ( headers == null )
+			return decodeMessage ( buffer, headerAppliance.decodeHeader ( buffer ) );
+		
+		Header header = headers.acquire();
+		
+		try
+		{
+			return decodeMessage ( buffer, headerAppliance.decodeHeader ( buffer, header ) );
+		}
+		catch ( ProtocolException | RuntimeException e )
+		{
+			headers.release ( header );
+			throw e;
+		}
+	}
+	
+	private Message decodeMessage ( ByteBuffer buffer, Header header ) throws ProtocolException
+	{
+		MessageFactory factory = registry.lookup ( header.getType(), header.getCategory() );
+		
+		if ( factory == null )
+			throw new ProtocolException ( "No MessageFactory registered for " + header );
+		
+		Message message = factory.createMessage ( header, buffer );
+		
+		buffer.position ( buffer.limit() );
+		return message;
+	}
+	
+	/**
+	 * Releases a decoded {@link Message} once it has been consumed: the {@link MessageFactory} which created it is
+	 * {@link MessageFactory#releaseMessage(Message) asked to release it}, and its {@link Header} is recycled.
+	 * @param message A {@link Message} returned by {@link #decodeMessage(ByteBuffer)}.  (Must no longer be used by the caller).
+	 */
+	public void release ( Message message )
+	{
+		Header header = message.getHeader();
+		MessageFactory factory = registry.lookup ( header.getType(), header.getCategory() );
+		
+		if ( factory != null )
+			factory.releaseMessage ( message );
+		
+		if ( headers != null )
+			headers.release ( header );
 	}
 }
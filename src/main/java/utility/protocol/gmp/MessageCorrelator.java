@@ -0,0 +1,43 @@
+package utility.protocol.gmp;
+
+import utility.protocol.Correlator;
+import utility.protocol.Protocol.ProtocolException;
+import utility.protocol.gmp.messages.Message;
+
+/**
+ * Correlates GMP {@link Message}s by their {@link utility.protocol.gmp.messages.Header#getId() Header Id}.
+ * @author Rob
+ */
+public class MessageCorrelator implements Correlator
+{
+	public MessageCorrelator()
+	{}
+
+	/**
+	 * Stamps a request with an id (for instance, as the id assigner of a {@link utility.protocol.transport.ProtocolPool}).
+	 * @param request A {@link Message} with a {@link utility.protocol.gmp.messages.Header}.
+	 * @param id The id.
+	 */
+	public static void setRequestId ( Object request, int id )
+	{
+		( ( Message ) request ).getHeader().setId ( id );
+	}
+
+	@Override
+	public Object requestKey ( Object request ) throws ProtocolException
+	{
+		if ( ! ( request instanceof Message ) || ( ( Message ) request ).getHeader() == null )
+			throw new ProtocolException ( "Request must be a Message with a Header" );
+
+		return ( ( Message ) request ).getHeader().getId();
+	}
+
+	@Override
+	public Object responseKey ( Object response )
+	{
+		if ( ! ( response instanceof Message ) || ( ( Message ) response ).getHeader() == null )
+			return null;
+
+		return ( ( Message ) response ).getHeader().getId();
+	}
+}
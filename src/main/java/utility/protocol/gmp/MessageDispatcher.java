@@ -0,0 +1,457 @@
+package utility.protocol.gmp;
+
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+import utility.collections.RingBufferQueue;
+import utility.protocol.Protocol;
+import utility.protocol.Protocol.ProtocolDataListener;
+import utility.protocol.gmp.messages.Message;
+import utility.protocol.gmp.messages.MessageCategory;
+import utility.protocol.gmp.messages.MessageType;
+
+/**
+ * Dispatches the {@link Message}s received by a {@link Protocol} to any number of {@link Subscription}s.
+ * <p>
+ * Subscriptions are registered by {@link MessageType} and/or {@link MessageCategory}, and held in a dense table
+ * indexed by their ordinals, so finding the subscribers of a message is a single array access.  Each registration
+ * replaces the table, so subscriptions may be added and removed while messages are being dispatched.
+ * </p>
+ * <p>
+ * Each subscription has its own bounded lock-free queue, so a slow subscriber only affects itself.  When its queue
+ * is full, the subscription's {@link OverflowPolicy} decides whether the RX thread waits for space, or which message
+ * is dropped.  Messages are either taken from the subscription by the subscriber ({@link Subscription#poll()},
+ * {@link Subscription#poll(long, TimeUnit)}), or delivered to a {@link Consumer} by an {@link Executor}, in the order
+ * they were received.
+ * </p>
+ * @author Rob
+ */
+public class MessageDispatcher implements ProtocolDataListener
+{
+	/**
+	 * What to do with a message for a subscription whose queue is full.
+	 */
+	public enum OverflowPolicy
+	{
+		/**
+		 * Wait until the subscriber makes space.  (The RX thread is parked until the subscriber takes a message, or the
+		 * subscription is removed, or the RX thread is interrupted, when the message is dropped).
+		 */
+		BLOCK,
+
+		/**
+		 * Drop the oldest queued message to make space.
+		 */
+		DROP_OLDEST,
+
+		/**
+		 * Drop the new message.
+		 */
+		DROP_NEWEST,
+	}
+
+	private static final int			CATEGORY_COUNT		= MessageCategory.values().length;
+	private static final int			TABLE_SIZE			= MessageType.values().length * CATEGORY_COUNT;
+	private static final Subscription[]	NONE				= new Subscription [ 0 ];
+
+	private volatile Subscription[][]	subscriptions;
+	private final LongAdder				unsubscribed		= new LongAdder();
+
+	/**
+	 * Constructs a new {@code MessageDispatcher}.
+	 */
+	public MessageDispatcher()
+	{
+		subscriptions = new Subscription [ TABLE_SIZE ][];
+		Arrays.fill ( subscriptions, NONE );
+	}
+
+	/**
+	 * Constructs a new {@code MessageDispatcher}, and registers it with a {@link Protocol}.
+	 * @param protocol The {@link Protocol} whose received {@link Message}s are dispatched.
+	 */
+	public MessageDispatcher ( Protocol protocol )
+	{
+		this();
+		protocol.registerDataListener ( this );
+	}
+
+	/**
+	 * Subscribes to messages, which the subscriber takes from the returned {@link Subscription}.
+	 * @param type The {@link MessageType} subscribed to, or {@code null} for all types.
+	 * @param category The {@link MessageCategory} subscribed to, or {@code null} for all categories.
+	 * @param capacity The maximum number of messages queued for the subscriber.
+	 * @param policy What to do with a message when the queue is full.
+	 * @return The {@link Subscription}.
+	 */
+	public Subscription subscribe ( MessageType type, MessageCategory category, int capacity, OverflowPolicy policy )
+	{
+		return subscribe ( type, category, capacity, policy, null, null );
+	}
+
+	/**
+	 * Subscribes to messages, which are delivered to a {@link Consumer} by an {@link Executor}.
+	 * <p>
+	 * Messages are delivered in the order received, by at most one task at a time.
+	 * </p>
+	 * @param type The {@link MessageType} subscribed to, or {@code null} for all types.
+	 * @param category The {@link MessageCategory} subscribed to, or {@code null} for all categories.
+	 * @param capacity The maximum number of messages queued for the subscriber.
+	 * @param policy What to do with a message when the queue is full.
+	 * @param consumer The subscriber.
+	 * @param executor The {@link Executor} which runs the delivery tasks.
+	 * @return The {@link Subscription}.
+	 */
+	public Subscription subscribe ( MessageType type, MessageCategory category, int capacity, OverflowPolicy policy, Consumer<? super Message> consumer, Executor executor )
+	{
+		if ( policy == null )
+			throw new IllegalArgumentException ( "Overflow Policy may not be null" );
+
+		if ( ( consumer == null ) != ( executor == null ) )
+			throw new IllegalArgumentException ( "Consumer and Executor must both be given, or neither" );
+
+		Subscription subscription = new Subscription ( type, category, capacity, policy, consumer, executor );
+
+		synchronized ( this )
+		{
+			Subscription[][] table = subscriptions.clone();
+
+			for ( int index : subscription.indices() )
+			{
+				Subscription[] cell = Arrays.copyOf ( table [ index ], table [ index ].length + 1 );
+				cell [ cell.length - 1 ] = subscription;
+				table [ index ] = cell;
+			}
+
+			subscriptions = table;
+		}
+
+		return subscription;
+	}
+
+	/**
+	 * Removes a subscription.  Messages already queued for it may still be taken, or delivered.
+	 * @param subscription The subscription to remove.
+	 */
+	public synchronized void unsubscribe ( Subscription subscription )
+	{
+		if ( subscription.closed )
+			return;
+
+		subscription.closed = true;
+		subscription.signalBlocked();
+
+		Subscription[][] table = subscriptions.clone();
+
+		for ( int index : subscription.indices() )
+		{
+			Subscription[] cell = table [ index ];
+			Subscription[] trimmed = new Subscription [ cell.length - 1 ];
+
+			for ( int i = 0, j = 0; i < cell.length; ++i )
+				if ( cell [ i ] != subscription )
+					trimmed [ j++ ] = cell [ i ];
+
+			table [ index ] = trimmed;
+		}
+
+		subscriptions = table;
+	}
+
+	/**
+	 * @return The number of messages dispatched which had no subscriber.
+	 */
+	public long getUnsubscribed()
+	{
+		return unsubscribed.sum();
+	}
+
+	/**
+	 * Dispatches a {@link Message} to its subscribers.  Data which is not a {@code Message} is ignored.
+	 */
+	@Override
+	public void handleReceivedData ( Object data )
+	{
+		if ( data instanceof Message )
+			dispatch ( ( Message ) data );
+	}
+
+	/**
+	 * Dispatches a {@link Message} to its subscribers.
+	 * @param message The message.
+	 * @return The number of subscribers to which the message was dispatched.
+	 */
+	public int dispatch ( Message message )
+	{
+		Subscription[] cell = subscriptions [ index ( message.getHeader().getType().ordinal(), message.getHeader().getCategory().ordinal() ) ];
+
+		if ( cell.length == 0 )
+			unsubscribed.increment();
+
+		for ( Subscription subscription : cell )
+			subscription.publish ( message );
+
+		return cell.length;
+	}
+
+	private static int index ( int type, int category )
+	{
+		return type * CATEGORY_COUNT + category;
+	}
+
+	/**
+	 * A Subscription to the {@link Message}s dispatched by a {@link MessageDispatcher}.
+	 */
+	public static final class Subscription
+	{
+		private final MessageType				type;
+		private final MessageCategory			category;
+		private final OverflowPolicy			policy;
+		private final Queue<Message>			queue;
+		private final Consumer<? super Message>	consumer;
+		private final Executor					executor;
+		private final AtomicBoolean				scheduled	= new AtomicBoolean();
+		private final Runnable					drainTask	= this::drain;
+		private final LongAdder					published	= new LongAdder();
+		private final LongAdder					dropped		= new LongAdder();
+		private final LongAdder					failed		= new LongAdder();
+		private final Queue<Thread>				blocked		= new ConcurrentLinkedQueue<>();
+		private volatile Thread					waiter;
+		private volatile boolean				closed;
+
+		private Subscription ( MessageType type, MessageCategory category, int capacity, OverflowPolicy policy, Consumer<? super Message> consumer, Executor executor )
+		{
+			this.type     = type;
+			this.category = category;
+			this.policy   = policy;
+			this.queue    = new RingBufferQueue<> ( capacity );
+			this.consumer = consumer;
+			this.executor = executor;
+		}
+
+		private int[] indices()
+		{
+			return Arrays.stream ( MessageType.values() )
+					.filter ( t -> type == null || type == t )
+					.flatMapToInt ( t -> Arrays.stream ( MessageCategory.values() )
+							.filter ( c -> category == null || category == c )
+							.mapToInt ( c -> index ( t.ordinal(), c.ordinal() ) ) )
+					.toArray();
+		}
+
+		private void publish ( Message message )
+		{
+			published.increment();
+
+			switch ( policy )
+			{
+				case BLOCK:
+					if ( !queue.offer ( message ) && !block ( message ) )
+					{
+						dropped.increment();
+						return;
+					}
+					break;
+
+				case DROP_OLDEST:
+					while ( !queue.offer ( message ) )
+						if ( queue.poll() != null )
+							dropped.increment();
+					break;
+
+				case DROP_NEWEST:
+					if ( !queue.offer ( message ) )
+					{
+						dropped.increment();
+						return;
+					}
+					break;
+			}
+
+			if ( executor != null )
+			{
+				if ( scheduled.compareAndSet ( false, true ) )
+					executor.execute ( drainTask );
+			}
+			else
+			{
+				Thread thread = waiter;
+
+				if ( thread != null )
+					LockSupport.unpark ( thread );
+			}
+		}
+
+		/**
+		 * Parks the publishing thread until the message can be queued, being unparked by {@link #take()}.
+		 * @return {@code false} if the subscription was closed, or the thread interrupted, before the message could be queued.
+		 */
+		private boolean block ( Message message )
+		{
+			Thread thread = Thread.currentThread();
+			blocked.add ( thread );
+
+			try
+			{
+				// Offering again after registering means a message taken in between cannot be missed.
+				while ( !queue.offer ( message ) )
+				{
+					if ( closed || thread.isInterrupted() )
+						return false;
+
+					LockSupport.park ( this );
+				}
+
+				return true;
+			}
+			finally
+			{
+				blocked.remove ( thread );
+			}
+		}
+
+		/**
+		 * Takes the next queued message, unparking any thread blocked publishing to the full queue.
+		 */
+		private Message take()
+		{
+			Message message = queue.poll();
+
+			if ( message != null && !blocked.isEmpty() )
+				signalBlocked();
+
+			return message;
+		}
+
+		private void signalBlocked()
+		{
+			for ( Thread thread : blocked )
+				LockSupport.unpark ( thread );
+		}
+
+		/**
+		 * Delivers the queued messages to the consumer.  (Run by the executor, one task at a time).
+		 */
+		private void drain()
+		{
+			while ( true )
+			{
+				Message message;
+
+				while ( ( message = take() ) != null )
+				{
+					try
+					{
+						consumer.accept ( message );
+					}
+					catch ( RuntimeException e )
+					{
+						failed.increment();
+					}
+				}
+
+				scheduled.set ( false );
+
+				// Re-check, in case a message was queued after the queue was found empty, but before the flag was cleared.
+				if ( queue.isEmpty() || !scheduled.compareAndSet ( false, true ) )
+					return;
+			}
+		}
+
+		/**
+		 * Takes the next queued message, without waiting.  (For subscriptions without an {@link Executor}).
+		 * @return The next message, or {@code null} if none is queued.
+		 */
+		public Message poll()
+		{
+			return take();
+		}
+
+		/**
+		 * Takes the next queued message, waiting if necessary.  Only one thread may wait on a subscription at a time.
+		 * @param timeout The longest time to wait.
+		 * @param unit The unit of {@code timeout}.
+		 * @return The next message, or {@code null} if none was queued before the timeout expired.
+		 * @throws InterruptedException If the thread is interrupted while waiting.
+		 */
+		public Message poll ( long timeout, TimeUnit unit ) throws InterruptedException
+		{
+			Message message = take();
+
+			if ( message != null )
+				return message;
+
+			long deadline = System.nanoTime() + unit.toNanos ( timeout );
+			waiter = Thread.currentThread();
+
+			try
+			{
+				while ( ( message = take() ) == null )
+				{
+					long remaining = deadline - System.nanoTime();
+
+					if ( remaining <= 0 )
+						return null;
+
+					LockSupport.parkNanos ( this, remaining );
+
+					if ( Thread.interrupted() )
+						throw new InterruptedException();
+				}
+
+				return message;
+			}
+			finally
+			{
+				waiter = null;
+			}
+		}
+
+		/**
+		 * @return The number of messages waiting to be taken or delivered.
+		 */
+		public int getQueueDepth()
+		{
+			return queue.size();
+		}
+
+		/**
+		 * @return The number of messages dispatched to this subscription.
+		 */
+		public long getPublished()
+		{
+			return published.sum();
+		}
+
+		/**
+		 * @return The number of messages dropped because the queue was full.
+		 */
+		public long getDropped()
+		{
+			return dropped.sum();
+		}
+
+		/**
+		 * @return The number of messages whose delivery to the consumer threw an exception.
+		 */
+		public long getFailed()
+		{
+			return failed.sum();
+		}
+
+		/**
+		 * @return {@code true} if the subscription has been removed from its dispatcher.
+		 */
+		public boolean isClosed()
+		{
+			return closed;
+		}
+	}
+}
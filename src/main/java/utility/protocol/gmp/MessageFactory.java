@@ -1,9 +1,37 @@
 package utility.protocol.gmp;
 
+import java.nio.ByteBuffer;
+
 import utility.protocol.gmp.messages.Header;
 import utility.protocol.gmp.messages.Message;
 
 public interface MessageFactory
 {
 	Message createMessage ( Header header, byte[] payload );
+
+	/**
+	 * Creates a {@link Message} from a decoded {@link Header} and a view of the received payload.
+	 * <p>
+	 * The view is only valid for the duration of the call.  The default implementation copies the payload
+	 * into an array; factories which consume the payload immediately may override this to avoid the copy.
+	 * </p>
+	 * @param header The decoded {@link Header}.
+	 * @param payload The payload, from its position to its limit.
+	 * @return The new {@link Message}.
+	 */
+	default Message createMessage ( Header header, ByteBuffer payload )
+	{
+		byte[] data = new byte [ payload.remaining() ];
+		payload.duplicate().get ( data );
+
+		return createMessage ( header, data );
+	}
+
+	/**
+	 * Releases a {@link Message} created by this factory, once its consumer has finished with it.  The default
+	 * implementation does nothing; pooling factories (see {@link PooledMessageFactory}) return it for reuse.
+	 * @param message The {@link Message}.  (Must no longer be used by the caller).
+	 */
+	default void releaseMessage ( Message message )
+	{}
 }
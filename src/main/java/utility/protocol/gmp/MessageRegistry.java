@@ -0,0 +1,82 @@
+package utility.protocol.gmp;
+
+import utility.protocol.gmp.messages.MessageCategory;
+import utility.protocol.gmp.messages.MessageType;
+
+/**
+ * A Registry of the {@link MessageFactory}s used to create decoded GMP {@link utility.protocol.gmp.messages.Message}s.
+ * <p>
+ * Factories are held in a dense table indexed by the ordinals of the {@link MessageType} and {@link MessageCategory},
+ * so a lookup is a single array access.  Each registration replaces the table, so factories may be registered while
+ * messages are being decoded, although registering everything up front is the common case.
+ * </p>
+ * @author Rob
+ */
+public class MessageRegistry
+{
+	private static final int CATEGORY_COUNT = MessageCategory.values().length;
+	private static final int TABLE_SIZE     = MessageType.values().length * CATEGORY_COUNT;
+
+	private volatile MessageFactory[] factories = new MessageFactory [ TABLE_SIZE ];
+
+	/**
+	 * Constructs an empty {@code MessageRegistry}.
+	 */
+	public MessageRegistry()
+	{}
+
+	/**
+	 * Constructs a {@code MessageRegistry} which uses a single factory for all messages, until others are registered.
+	 * @param defaultFactory The factory for all {@link MessageType}s and {@link MessageCategory}s.
+	 */
+	public MessageRegistry ( MessageFactory defaultFactory )
+	{
+		register ( null, null, defaultFactory );
+	}
+
+	/**
+	 * Registers a {@link MessageFactory}, replacing any previously registered for the same {@link MessageType}s and {@link MessageCategory}s.
+	 * @param type The {@link MessageType} created by the factory, or {@code null} for all types.
+	 * @param category The {@link MessageCategory} created by the factory, or {@code null} for all categories.
+	 * @param factory The factory.
+	 */
+	public synchronized void register ( MessageType type, MessageCategory category, MessageFactory factory )
+	{
+		if ( factory == null )
+			throw new IllegalArgumentException ( "Factory may not be null" );
+
+		MessageFactory[] table = factories.clone();
+
+		for ( MessageType t : MessageType.values() )
+			for ( MessageCategory c : MessageCategory.values() )
+				if ( ( type == null || type == t ) && ( category == null || category == c ) )
+					table [ index ( t.ordinal(), c.ordinal() ) ] = factory;
+
+		factories = table;
+	}
+
+	/**
+	 * @param type The {@link MessageType}.
+	 * @param category The {@link MessageCategory}.
+	 * @return The registered factory, or {@code null} if there is none.
+	 */
+	public MessageFactory lookup ( MessageType type, MessageCategory category )
+	{
+		return lookup ( type.ordinal(), category.ordinal() );
+	}
+
+	/**
+	 * @param type The ordinal of the {@link MessageType}.
+	 * @param category The ordinal of the {@link MessageCategory}.
+	 * @return The registered factory, or {@code null} if there is none.
+	 */
+	public MessageFactory lookup ( int type, int category )
+	{
+		return factories [ index ( type, category ) ];
+	}
+
+	private static int index ( int type, int category )
+	{
+		return type * CATEGORY_COUNT + category;
+	}
+}
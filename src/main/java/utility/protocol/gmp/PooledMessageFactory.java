@@ -0,0 +1,104 @@
+package utility.protocol.gmp;
+
+import java.nio.ByteBuffer;
+import java.util.function.Supplier;
+
+import utility.protocol.ByteBufferPool;
+import utility.protocol.Recycler;
+import utility.protocol.gmp.messages.Header;
+import utility.protocol.gmp.messages.Message;
+
+/**
+ * A {@link MessageFactory} which reuses {@link Message}s, and their payload buffers, once they are released.
+ * <p>
+ * Each payload is copied into a buffer from a {@link ByteBufferPool} (payloads too long for the pool's buffers are
+ * copied into new arrays instead), and the {@link Message} is handed that buffer as its payload view, then asked to
+ * {@link Message#decodePayload() decode} it.  Messages which decode from {@link Message#getPayloadBuffer()} rather than
+ * {@link Message#getPayload()} therefore decode without allocating.
+ * </p>
+ * <p>
+ * Once its consumer has finished with a {@link Message}, it must be released, via {@link MessageApplicance#release(Message)}
+ * (which also recycles its {@link Header}) or {@link #releaseMessage(Message)}.  A released {@link Message} is
+ * {@link Message#clear() cleared}, and must no longer be used.  The {@link Recycler}'s debug mode detects messages
+ * which are released twice, or never released.
+ * </p>
+ * @author Rob
+ */
+public class PooledMessageFactory implements MessageFactory
+{
+	private final Recycler<Message>	messages;
+	private final ByteBufferPool	payloads;
+
+	/**
+	 * Constructs a new {@code PooledMessageFactory}.
+	 * @param factory Creates new, empty, {@link Message}s.
+	 * @param maxPooled The maximum number of idle {@link Message}s retained.
+	 * @param payloads The pool of payload buffers.
+	 */
+	public PooledMessageFactory ( Supplier<? extends Message> factory, int maxPooled, ByteBufferPool payloads )
+	{
+		this ( new Recycler<> ( factory, Message::clear, maxPooled ), payloads );
+	}
+
+	/**
+	 * Constructs a new {@code PooledMessageFactory}.
+	 * @param messages The {@link Recycler} of {@link Message}s, which must {@link Message#clear() clear} them as they are released.
+	 * @param payloads The pool of payload buffers.
+	 */
+	public PooledMessageFactory ( Recycler<Message> messages, ByteBufferPool payloads )
+	{
+		if ( messages == null || payloads == null )
+			throw new IllegalArgumentException ( "Recycler and Pool may not be null" );
+
+		this.messages = messages;
+		this.payloads = payloads;
+	}
+
+	public Recycler<Message> getRecycler()
+	{
+		return messages;
+	}
+
+	@Override
+	public Message createMessage ( Header header, byte[] payload )
+	{
+		return createMessage ( header, ByteBuffer.wrap ( payload ) );
+	}
+
+	@Override
+	public Message createMessage ( Header header, ByteBuffer payload )
+	{
+		Message message = messages.acquire();
+		int length = payload.remaining();
+
+		if ( length <= payloads.getBufferSize() )
+		{
+			ByteBuffer buffer = payloads.acquire();
+
+			buffer.put ( payload.duplicate() );
+			buffer.flip();
+			message.setPayload ( buffer );
+		}
+		else
+		{
+			byte[] data = new byte [ length ];
+
+			payload.duplicate().get ( data );
+			message.setPayload ( data );
+		}
+
+		message.setHeader ( header );
+		message.decodePayload();
+
+		return message;
+	}
+
+	@Override
+	public void releaseMessage ( Message message )
+	{
+		ByteBuffer buffer = ( message.getPayloadLength() <= payloads.getBufferSize() ) ? message.getPayloadBuffer() : null;
+
+		messages.release ( message );
+		payloads.release ( buffer );
+	}
+}
@@ -0,0 +1,97 @@
+package utility.protocol.gmp;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import utility.protocol.Appliance;
+import utility.protocol.gmp.messages.Message;
+
+/**
+ * Allocates the {@link utility.protocol.gmp.messages.Header#getId() Header Ids} of the {@link Message}s sent on one link.
+ * <p>
+ * Ids are consecutive, and wrap from {@link Integer#MAX_VALUE} to {@link Integer#MIN_VALUE}, so a receiver comparing
+ * ids by their signed difference (see {@link #distance(int, int)}) sees an unbroken sequence.  Allocation is a single
+ * atomic increment, so any number of threads may share an allocator without locking.
+ * </p>
+ * <p>
+ * When a {@link utility.protocol.Protocol} correlates requests by their ids (see {@link MessageCorrelator}), the id must be
+ * {@link #assign(Message) assigned} before the request is passed to {@link utility.protocol.Protocol#sendRequest(Object)},
+ * since the request is keyed before it enters the TX chain.  Otherwise the {@link #stamper()} may be placed in the TX chain.
+ * </p>
+ * @author Rob
+ * @see SequenceTracker
+ */
+public class SequenceAllocator
+{
+	private final AtomicInteger	next;
+	private final Appliance		stamper	= this::stamp;
+
+	/**
+	 * Constructs a {@code SequenceAllocator} whose first id is zero.
+	 */
+	public SequenceAllocator()
+	{
+		this ( 0 );
+	}
+
+	/**
+	 * @param first The first id allocated.
+	 */
+	public SequenceAllocator ( int first )
+	{
+		next = new AtomicInteger ( first );
+	}
+
+	/**
+	 * @return The next id.
+	 */
+	public int next()
+	{
+		return next.getAndIncrement();
+	}
+
+	/**
+	 * @return The id which will be allocated next.
+	 */
+	public int peek()
+	{
+		return next.get();
+	}
+
+	/**
+	 * Sets the id of a {@link Message}'s {@link utility.protocol.gmp.messages.Header} to the next id.
+	 * @param message The {@link Message}.
+	 * @return {@code message}
+	 */
+	public Message assign ( Message message )
+	{
+		message.getHeader().setId ( next() );
+		return message;
+	}
+
+	/**
+	 * @return A TX {@link Appliance}, to be placed before the {@link MessageApplicance}'s encoder, which
+	 * {@link #assign(Message) assigns} the next id to each {@link Message} passing through it.
+	 */
+	public Appliance stamper()
+	{
+		return stamper;
+	}
+
+	private Object stamp ( Object data )
+	{
+		if ( ! ( data instanceof Message ) )
+			throw new IllegalArgumentException ( "Argument must extend Message" );
+
+		return assign ( ( Message ) data );
+	}
+
+	/**
+	 * @param from An id.
+	 * @param to Another id.
+	 * @return The number of ids from {@code from} to {@code to}, allowing for wraparound: negative if {@code to} precedes {@code from}.
+	 */
+	public static int distance ( int from, int to )
+	{
+		return to - from;
+	}
+}
@@ -0,0 +1,425 @@
+package utility.protocol.gmp;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import utility.protocol.Appliance;
+import utility.protocol.gmp.messages.Message;
+
+/**
+ * Tracks the {@link utility.protocol.gmp.messages.Header#getId() Header Ids} received on one link, as allocated by the
+ * peer's {@link SequenceAllocator}, to detect duplicates, gaps and reordering.
+ * <p>
+ * The tracker remembers which of the most recent {@link #getWindow() window} ids (up to and including the highest seen)
+ * have arrived, as a bitset.  Each id is classified in constant time (save for a jump far ahead, which clears the
+ * window), without allocating, so every frame can be tracked at line rate, and the counters measure the quality of the
+ * link without logging any frame.  An id which slides out of the window without having arrived is counted as lost;
+ * one which arrives after it has slid out is counted as late.  Ids preceding the first received are counted as late.
+ * </p>
+ * <p>
+ * An id far beyond the window, or a run of late ids, means the peer has restarted its sequence (or the id was corrupted)
+ * rather than that the link lost or delayed the ids: the tracker resynchronizes, starting again from that id as if it
+ * were the first received, and counts the {@link Result#RESYNC resync} instead of the ids it jumped over.
+ * </p>
+ * <p>
+ * A tracker belongs to the RX side of one link, and must only be updated by one thread at a time (such as the link's
+ * RX processor or Event Loop); its counters may be read by any thread.
+ * </p>
+ * @author Rob
+ */
+public class SequenceTracker
+{
+	/**
+	 * The classification of a received id.
+	 */
+	public enum Result
+	{
+		/**
+		 * The first id received, or the successor of the highest id received.
+		 */
+		IN_ORDER,
+
+		/**
+		 * Ahead of the successor of the highest id received: the ids between are missing (so far).
+		 */
+		GAP,
+
+		/**
+		 * A missing id, within the window, which has now arrived.
+		 */
+		REORDERED,
+
+		/**
+		 * An id, within the window, which had already arrived.
+		 */
+		DUPLICATE,
+
+		/**
+		 * An id too old to be tracked (before the window, or before the first id received).
+		 */
+		LATE,
+
+		/**
+		 * An id from which tracking started again, as it was too far ahead, or ended a run of late ids.
+		 */
+		RESYNC,
+	}
+
+	/**
+	 * The default number of ids tracked.
+	 */
+	public static final int DEFAULT_WINDOW = 1024;
+
+	/**
+	 * The default distance ahead of the highest id received beyond which an id causes a resync.
+	 */
+	public static final int DEFAULT_RESYNC_DISTANCE = 1 << 16;
+
+	/**
+	 * The default number of consecutive late ids which causes a resync.
+	 */
+	public static final int DEFAULT_RESYNC_LATE = 8;
+
+	private final long[]		bits;
+	private final int			window;
+	private final int			mask;
+	private final int			resyncDistance;
+	private final int			resyncLate;
+	private boolean				started;
+	private int					lateRun;
+	private int					first;
+	private boolean				firstInWindow;
+	private int					highest;
+	private volatile long		received;
+	private volatile long		inOrder;
+	private volatile long		gaps;
+	private volatile long		skipped;
+	private volatile long		reordered;
+	private volatile long		duplicates;
+	private volatile long		late;
+	private volatile long		lost;
+	private volatile long		resyncs;
+
+	/**
+	 * Constructs a {@code SequenceTracker} of the {@link #DEFAULT_WINDOW default window}.
+	 */
+	public SequenceTracker()
+	{
+		this ( DEFAULT_WINDOW );
+	}
+
+	/**
+	 * Constructs a {@code SequenceTracker} which resyncs after the {@link #DEFAULT_RESYNC_DISTANCE default distance} or
+	 * {@link #DEFAULT_RESYNC_LATE default run of late ids}.
+	 * @param window The number of ids tracked: a power of two, and at least 64.
+	 */
+	public SequenceTracker ( int window )
+	{
+		this ( window, Math.max ( window, DEFAULT_RESYNC_DISTANCE ), DEFAULT_RESYNC_LATE );
+	}
+
+	/**
+	 * @param window The number of ids tracked: a power of two, and at least 64.
+	 * @param resyncDistance The distance ahead of the highest id received beyond which an id causes a resync: at least
+	 * {@code window}, or {@link Integer#MAX_VALUE} never to resync on a jump ahead.
+	 * @param resyncLate The number of consecutive late ids which causes a resync: at least one, or {@link Integer#MAX_VALUE}
+	 * never to resync on late ids.
+	 */
+	public SequenceTracker ( int window, int resyncDistance, int resyncLate )
+	{
+		if ( window < 64 || Integer.bitCount ( window ) != 1 )
+			throw new IllegalArgumentException ( "Window must be a power of two, and at least 64" );
+
+		if ( resyncDistance < window || resyncLate < 1 )
+			throw new IllegalArgumentException ( "Resync Distance must be at least the Window, and Resync Late at least one" );
+
+		this.window         = window;
+		this.mask           = window - 1;
+		this.bits           = new long [ window / 64 ];
+		this.resyncDistance = resyncDistance;
+		this.resyncLate     = resyncLate;
+	}
+
+	/**
+	 * @return The number of ids tracked.
+	 */
+	public int getWindow()
+	{
+		return window;
+	}
+
+	/**
+	 * @return The highest id received (meaningless until an id has been received).
+	 */
+	public int getHighest()
+	{
+		return highest;
+	}
+
+	/**
+	 * @return The number of ids recorded.
+	 */
+	public long getReceived()
+	{
+		return received;
+	}
+
+	/**
+	 * @return The number of ids received {@link Result#IN_ORDER in order}.
+	 */
+	public long getInOrder()
+	{
+		return inOrder;
+	}
+
+	/**
+	 * @return The number of {@link Result#GAP gaps}.
+	 */
+	public long getGaps()
+	{
+		return gaps;
+	}
+
+	/**
+	 * @return The number of ids skipped over by gaps (whether or not they arrived later).
+	 */
+	public long getSkipped()
+	{
+		return skipped;
+	}
+
+	/**
+	 * @return The number of ids received {@link Result#REORDERED out of order}.
+	 */
+	public long getReordered()
+	{
+		return reordered;
+	}
+
+	/**
+	 * @return The number of {@link Result#DUPLICATE duplicate} ids.
+	 */
+	public long getDuplicates()
+	{
+		return duplicates;
+	}
+
+	/**
+	 * @return The number of ids received too {@link Result#LATE late} to be tracked.
+	 */
+	public long getLate()
+	{
+		return late;
+	}
+
+	/**
+	 * @return The number of ids which slid out of the window without having arrived.
+	 */
+	public long getLost()
+	{
+		return lost;
+	}
+
+	/**
+	 * @return The number of times tracking started again from a {@link Result#RESYNC resync}.
+	 */
+	public long getResyncs()
+	{
+		return resyncs;
+	}
+
+	/**
+	 * Late frames are passed on even when duplicates are dropped, as they may not have arrived before.
+	 * @param dropDuplicates {@code true} to drop duplicate frames.
+	 * @return An RX {@link Appliance} which records the id of each {@link Message}, or of each encoded frame ({@code byte[]} or
+	 * {@link ByteBuffer}, read via a {@link HeaderView} without decoding it), and passes it on unless it is dropped.
+	 */
+	public Appliance recorder ( boolean dropDuplicates )
+	{
+		HeaderView view = new HeaderView();
+
+		return data ->
+		{
+			int id;
+
+			if ( data instanceof Message )
+				id = ( ( Message ) data ).getHeader().getId();
+			else if ( data instanceof ByteBuffer )
+				id = view.wrap ( ( ByteBuffer ) data ).getId();
+			else if ( data instanceof byte[] )
+				id = view.wrap ( ByteBuffer.wrap ( ( byte[] ) data ) ).getId();
+			else
+				throw new IllegalArgumentException ( "Argument must be a Message, byte[] or ByteBuffer" );
+
+			Result result = record ( id );
+
+			return ( dropDuplicates && result == Result.DUPLICATE ) ? null : data;
+		};
+	}
+
+	/**
+	 * Classifies a received id, and updates the counters.
+	 * @param id The id.
+	 * @return The classification.
+	 */
+	public Result record ( int id )
+	{
+		received++;
+
+		if ( !started )
+		{
+			started = true;
+			start ( id );
+			inOrder++;
+
+			return Result.IN_ORDER;
+		}
+
+		int ahead = SequenceAllocator.distance ( highest, id );
+
+		if ( ahead > resyncDistance )
+			return resync ( id );
+
+		if ( ahead > 0 )
+		{
+			lateRun = 0;
+
+			advance ( ahead );
+			set ( id );
+
+			if ( ahead == 1 )
+			{
+				inOrder++;
+				return Result.IN_ORDER;
+			}
+
+			gaps++;
+			skipped += ahead - 1;
+
+			return Result.GAP;
+		}
+
+		if ( -ahead >= window || precedesFirst ( id ) )
+		{
+			if ( ++lateRun >= resyncLate )
+				return resync ( id );
+
+			late++;
+			return Result.LATE;
+		}
+
+		lateRun = 0;
+
+		if ( isSet ( id ) )
+		{
+			duplicates++;
+			return Result.DUPLICATE;
+		}
+
+		set ( id );
+		reordered++;
+
+		return Result.REORDERED;
+	}
+
+	/**
+	 * Starts tracking again from an id, forgetting every id received before it.
+	 */
+	private Result resync ( int id )
+	{
+		Arrays.fill ( bits, 0 );
+		start ( id );
+		resyncs++;
+
+		return Result.RESYNC;
+	}
+
+	private void start ( int id )
+	{
+		first   = id;
+		highest = id;
+		lateRun = 0;
+
+		firstInWindow = true;
+
+		set ( id );
+	}
+
+	/**
+	 * Moves the window forward, counting the ids which slide out of it without having arrived as lost.
+	 */
+	private void advance ( int ahead )
+	{
+		long count = 0;
+
+		if ( ahead >= window )
+		{
+			for ( int n = 0; n < window; ++n )
+				if ( !isArrived ( highest - n ) )
+					++count;
+
+			Arrays.fill ( bits, 0 );
+
+			// The ids between the old window and the new one were never tracked at all.
+			count += ahead - window;
+		}
+		else
+		{
+			for ( int n = 1; n <= ahead; ++n )
+			{
+				int id = highest + n;
+
+				// The slot of the id entering the window is that of the id leaving it.
+				if ( !isArrived ( id - window ) )
+					++count;
+
+				clear ( id );
+			}
+		}
+
+		// Once the first id has slid out of the window, no id within it can precede the first (and the distance from the
+		// first would change sign after 2^31 ids).
+		if ( firstInWindow && ( long ) SequenceAllocator.distance ( first, highest ) + ahead >= window )
+			firstInWindow = false;
+
+		lost    += count;
+		highest += ahead;
+	}
+
+	/**
+	 * @return {@code true} if an id within the window has arrived, or precedes the first id received.
+	 */
+	private boolean isArrived ( int id )
+	{
+		return isSet ( id ) || precedesFirst ( id );
+	}
+
+	/**
+	 * @return {@code true} if an id within the window precedes the first id received.
+	 */
+	private boolean precedesFirst ( int id )
+	{
+		return firstInWindow && SequenceAllocator.distance ( first, id ) < 0;
+	}
+
+	private boolean isSet ( int id )
+	{
+		int slot = id & mask;
+
+		return ( bits [ slot >>> 6 ] & ( 1L << slot ) ) != 0;
+	}
+
+	private void set ( int id )
+	{
+		int slot = id & mask;
+
+		bits [ slot >>> 6 ] |= 1L << slot;
+	}
+
+	private void clear ( int id )
+	{
+		int slot = id & mask;
+
+		bits [ slot >>> 6 ] &= ~( 1L << slot );
+	}
+}
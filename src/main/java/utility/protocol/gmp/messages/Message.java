@@ -1,11 +1,13 @@
 package utility.protocol.gmp.messages;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 public abstract class Message
 {
-	private Header header;
-	private byte[] payload;
+	private Header		header;
+	private byte[]		payload;
+	private ByteBuffer	payloadBuffer;
 
 	public Message ( Header header )
 	{
@@ -52,14 +54,68 @@ public abstract class Message
 		this.header = header;
 	}
 
+	/**
+	 * @return The payload.  If the payload was set as a {@link ByteBuffer} view, it is copied into an array on the first call.
+	 */
 	public byte[] getPayload()
 	{
+		if ( payload == null && payloadBuffer != null )
+		{
+			payload = new byte [ payloadBuffer.remaining() ];
+			payloadBuffer.duplicate().get ( payload );
+		}
+
 		return payload;
 	}
 
 	public void setPayload ( byte[] payload )
 	{
-		this.payload = payload;
+		this.payload       = payload;
+		this.payloadBuffer = null;
+	}
+
+	/**
+	 * @return A view of the payload, from its position to its limit, or {@code null} if there is no payload.  The
+	 * position and limit of the returned buffer must be left unchanged.
+	 */
+	public ByteBuffer getPayloadBuffer()
+	{
+		if ( payloadBuffer == null && payload != null )
+			payloadBuffer = ByteBuffer.wrap ( payload );
+
+		return payloadBuffer;
+	}
+
+	/**
+	 * Sets the payload as a view of a buffer, without copying it.
+	 * @param payloadBuffer The payload, from its position to its limit.
+	 */
+	public void setPayload ( ByteBuffer payloadBuffer )
+	{
+		this.payloadBuffer = payloadBuffer;
+		this.payload       = null;
+	}
+
+	/**
+	 * @return The length of the payload in bytes.
+	 */
+	public int getPayloadLength()
+	{
+		if ( payloadBuffer != null )
+			return payloadBuffer.remaining();
+
+		return ( payload == null ) ? 0 : payload.length;
+	}
+
+	/**
+	 * Clears the {@link Header} and payload, so the {@code Message} may be reused (see {@link utility.protocol.gmp.PooledMessageFactory}).
+	 * Subclasses holding decoded state should override this to clear it too.
+	 */
+	public void clear()
+	{
+		this.header        = null;
+		this.payload       = null;
+		this.payloadBuffer = null;
 	}
 
 	@Override
@@ -68,7 +124,7 @@ public abstract class Message
 		final int prime = 31;
 		int result = 1;
 		result = prime * result + ( ( header == null ) ? 0 : header.hashCode () );
-		result = prime * result + Arrays.hashCode ( payload );
+		result = prime * result + Arrays.hashCode ( getPayload() );
 		return result;
 	}
 
@@ -94,7 +150,7 @@ public abstract class Message
 		else if ( !header.equals ( other.header ) )
 			return false;
 		
-		if ( !Arrays.equals ( payload, other.payload ) )
+		if ( !Arrays.equals ( getPayload(), other.getPayload() ) )
 			return false;
 		
 		return true;
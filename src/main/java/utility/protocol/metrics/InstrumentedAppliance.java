@@ -0,0 +1,201 @@
+package utility.protocol.metrics;
+
+import utility.protocol.Appliance;
+import utility.protocol.Emitter;
+import utility.protocol.SplittingAppliance;
+
+/**
+ * An {@link Appliance} which records the {@link StageMetrics} of another.
+ * <p>
+ * The latency recorded for a {@link SplittingAppliance} excludes the time spent in the remainder of the
+ * chain, to which it emits its outputs, so each stage is charged only for its own work.
+ * </p>
+ * @author Rob
+ */
+public class InstrumentedAppliance implements Appliance
+{
+	private volatile Appliance	appliance;
+	private final StageMetrics	metrics;
+
+	private InstrumentedAppliance ( Appliance appliance, StageMetrics metrics )
+	{
+		this.appliance = appliance;
+		this.metrics   = metrics;
+	}
+
+	/**
+	 * @param appliance The {@link Appliance} to instrument.
+	 * @param metrics The metrics to record into.
+	 * @return The instrumented {@link Appliance}, which is a {@link SplittingAppliance} if {@code appliance} is.
+	 */
+	public static InstrumentedAppliance wrap ( Appliance appliance, StageMetrics metrics )
+	{
+		if ( appliance instanceof SplittingAppliance )
+			return new Splitting ( ( SplittingAppliance ) appliance, metrics );
+
+		return new InstrumentedAppliance ( appliance, metrics );
+	}
+
+	/**
+	 * @param appliance An {@link Appliance}, which may be instrumented any number of times, or not at all.
+	 * @return The {@link Appliance} which {@code appliance} instruments, through every layer of instrumentation, or {@code appliance} itself.
+	 */
+	public static Appliance unwrap ( Appliance appliance )
+	{
+		while ( appliance instanceof InstrumentedAppliance )
+			appliance = ( ( InstrumentedAppliance ) appliance ).appliance;
+
+		return appliance;
+	}
+
+	/**
+	 * Removes one layer of instrumentation from an {@link Appliance}, at whatever depth it is nested.  The layers outside
+	 * it are kept, so they go on recording (and may be removed in turn by whoever installed them).
+	 * @param appliance An {@link Appliance}, which may be instrumented any number of times.
+	 * @param wrapper The layer to remove.
+	 * @return The {@link Appliance} which {@code wrapper} instruments, if {@code appliance} is {@code wrapper}, or otherwise
+	 * {@code appliance} itself, from which {@code wrapper} has been removed, if it was found.
+	 */
+	public static Appliance remove ( Appliance appliance, InstrumentedAppliance wrapper )
+	{
+		if ( appliance == wrapper )
+			return wrapper.appliance;
+
+		for ( Appliance layer = appliance; layer instanceof InstrumentedAppliance; )
+		{
+			InstrumentedAppliance outer = ( InstrumentedAppliance ) layer;
+
+			if ( outer.appliance == wrapper )
+			{
+				// A Splitting layer's Appliance is a SplittingAppliance, so is that of a Splitting layer inside it.
+				outer.appliance = wrapper.appliance;
+				break;
+			}
+
+			layer = outer.appliance;
+		}
+
+		return appliance;
+	}
+
+	/**
+	 * @return The instrumented {@link Appliance}.
+	 */
+	public Appliance getAppliance()
+	{
+		return appliance;
+	}
+
+	/**
+	 * @return The metrics recorded.
+	 */
+	public StageMetrics getMetrics()
+	{
+		return metrics;
+	}
+
+	@Override
+	public Object apply ( Object data ) throws Exception
+	{
+		metrics.recordIn ( data );
+
+		long start = System.nanoTime();
+
+		try
+		{
+			Object output = appliance.apply ( data );
+			metrics.recordOut ( output );
+			return output;
+		}
+		catch ( Exception e )
+		{
+			metrics.recordError();
+			throw e;
+		}
+		finally
+		{
+			metrics.recordLatency ( System.nanoTime() - start );
+		}
+	}
+
+	private static final class Splitting extends InstrumentedAppliance implements SplittingAppliance
+	{
+		Splitting ( SplittingAppliance appliance, StageMetrics metrics )
+		{
+			super ( appliance, metrics );
+		}
+
+		@Override
+		public Object apply ( Object data ) throws Exception
+		{
+			return SplittingAppliance.super.apply ( data );
+		}
+
+		@Override
+		public void apply ( Object data, Emitter<Object> downstream ) throws Exception
+		{
+			SplittingAppliance splitting = ( SplittingAppliance ) getAppliance();
+			StageMetrics metrics = getMetrics();
+			Downstream emitter = new Downstream ( downstream, metrics );
+
+			metrics.recordIn ( data );
+
+			long start = System.nanoTime();
+
+			try
+			{
+				splitting.apply ( data, emitter );
+			}
+			catch ( Exception e )
+			{
+				if ( !emitter.failed )
+					metrics.recordError();
+
+				throw e;
+			}
+			finally
+			{
+				metrics.recordLatency ( System.nanoTime() - start - emitter.nanos );
+			}
+		}
+	}
+
+	/**
+	 * Emits to the remainder of the chain, timing it, so it can be excluded from the stage's latency.
+	 */
+	private static final class Downstream implements Emitter<Object>
+	{
+		private final Emitter<Object>	downstream;
+		private final StageMetrics		metrics;
+		private long					nanos;
+		private boolean					failed;
+
+		Downstream ( Emitter<Object> downstream, StageMetrics metrics )
+		{
+			this.downstream = downstream;
+			this.metrics    = metrics;
+		}
+
+		@Override
+		public void emit ( Object data ) throws Exception
+		{
+			metrics.recordOut ( data );
+
+			long start = System.nanoTime();
+
+			try
+			{
+				downstream.emit ( data );
+			}
+			catch ( Exception e )
+			{
+				failed = true;
+				throw e;
+			}
+			finally
+			{
+				nanos += System.nanoTime() - start;
+			}
+		}
+	}
+}
@@ -0,0 +1,130 @@
+package utility.protocol.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A Histogram of latencies, in nanoseconds, which any number of threads may record into without locking.
+ * <p>
+ * Like an HdrHistogram, the buckets are log-linear: values below 64 have a bucket each, and each
+ * power of two above that is divided into 32 equal buckets, so any value is resolved to within about 3%,
+ * with a fixed table of under 2000 counters covering the whole range of {@code long}.
+ * </p>
+ * @author Rob
+ */
+public class LatencyHistogram
+{
+	private static final int	SUB_BUCKET_BITS		= 5;
+	private static final int	SUB_BUCKET_COUNT	= 1 << SUB_BUCKET_BITS;
+	private static final int	BUCKET_COUNT		= ( 64 - SUB_BUCKET_BITS ) * SUB_BUCKET_COUNT;
+
+	private final AtomicLongArray	counts	= new AtomicLongArray ( BUCKET_COUNT );
+	private final LongAdder			count	= new LongAdder();
+	private final LongAdder			total	= new LongAdder();
+	private final AtomicLong		max		= new AtomicLong();
+
+	/**
+	 * Records a latency.
+	 * @param nanos The latency, in nanoseconds.  (Negative values are recorded as zero).
+	 */
+	public void record ( long nanos )
+	{
+		if ( nanos < 0 )
+			nanos = 0;
+
+		counts.incrementAndGet ( bucket ( nanos ) );
+		count.increment();
+		total.add ( nanos );
+
+		long current;
+
+		while ( nanos > ( current = max.get() ) && !max.compareAndSet ( current, nanos ) )
+			;
+	}
+
+	/**
+	 * @return The number of latencies recorded.
+	 */
+	public long getCount()
+	{
+		return count.sum();
+	}
+
+	/**
+	 * @return The mean latency, in nanoseconds.
+	 */
+	public double getMean()
+	{
+		long n = count.sum();
+		return ( n == 0 ) ? 0 : ( double ) total.sum() / n;
+	}
+
+	/**
+	 * @return The longest latency recorded, in nanoseconds.
+	 */
+	public long getMax()
+	{
+		return max.get();
+	}
+
+	/**
+	 * @param percentile A percentile, from 0 to 100.
+	 * @return The latency, in nanoseconds, at or below which {@code percentile} percent of the recorded latencies lie
+	 * (to the resolution of the histogram), or zero if none have been recorded.
+	 */
+	public long getValueAtPercentile ( double percentile )
+	{
+		long[] snapshot = new long [ BUCKET_COUNT ];
+		long recorded = 0;
+
+		for ( int n = 0; n < BUCKET_COUNT; ++n )
+			recorded += ( snapshot [ n ] = counts.get ( n ) );
+
+		if ( recorded == 0 )
+			return 0;
+
+		long target = Math.max ( 1, ( long ) Math.ceil ( recorded * Math.min ( percentile, 100.0 ) / 100.0 ) );
+		long seen = 0;
+
+		for ( int n = 0; n < BUCKET_COUNT; ++n )
+			if ( ( seen += snapshot [ n ] ) >= target )
+				return Math.min ( highestValue ( n ), getMax() );
+
+		return getMax();
+	}
+
+	/**
+	 * Clears the histogram.  Latencies recorded while it is being cleared may or may not be kept.
+	 */
+	public void reset()
+	{
+		for ( int n = 0; n < BUCKET_COUNT; ++n )
+			counts.set ( n, 0 );
+
+		count.reset();
+		total.reset();
+		max.set ( 0 );
+	}
+
+	static int bucket ( long value )
+	{
+		if ( value < 2 * SUB_BUCKET_COUNT )
+			return ( int ) value;
+
+		int shift = 63 - Long.numberOfLeadingZeros ( value ) - SUB_BUCKET_BITS;
+
+		return shift * SUB_BUCKET_COUNT + ( int ) ( value >>> shift );
+	}
+
+	static long highestValue ( int bucket )
+	{
+		if ( bucket < 2 * SUB_BUCKET_COUNT )
+			return bucket;
+
+		int shift = bucket / SUB_BUCKET_COUNT - 1;
+		long sub = bucket % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+
+		return ( ( sub + 1 ) << shift ) - 1;
+	}
+}
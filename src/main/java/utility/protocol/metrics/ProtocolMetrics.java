@@ -0,0 +1,205 @@
+package utility.protocol.metrics;
+
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import utility.protocol.Appliance;
+import utility.protocol.Protocol;
+
+/**
+ * Per-stage Instrumentation of a {@link Protocol}'s TX and RX chains.
+ * <p>
+ * {@link #instrument(Protocol, String)} replaces each {@link Appliance} in the chains with an {@link InstrumentedAppliance}
+ * recording its {@link StageMetrics}, and registers the metrics of each stage as a JMX MBean named
+ * {@code utility.protocol:type=Stage,protocol=<name>,chain=<TX|RX>,index=<n>}.  {@link #close()} restores the original
+ * {@code Appliance}s and unregisters the MBeans.  A {@code Protocol} which is not instrumented carries no instrumentation
+ * code at all.
+ * </p>
+ * <p>
+ * Only the {@code Appliance}s in the chains when the {@code Protocol} is instrumented are instrumented.  An
+ * {@code Appliance} which is already instrumented (by another {@code ProtocolMetrics}, say) is wrapped again, and
+ * {@link #close()} removes only the wrappers this {@code ProtocolMetrics} installed.
+ * </p>
+ * @author Rob
+ */
+public class ProtocolMetrics implements Closeable
+{
+	/**
+	 * The JMX Domain of the MBeans.
+	 */
+	public static final String DOMAIN = "utility.protocol";
+
+	/**
+	 * The Chains of a {@link Protocol}.
+	 */
+	public enum Chain
+	{
+		TX,
+		RX,
+	}
+
+	private final Protocol				protocol;
+	private final String				name;
+	private final List<StageMetrics>	txStages;
+	private final List<StageMetrics>	rxStages;
+	private final List<ObjectName>		registered	= new ArrayList<>();
+	private final Set<Appliance>		installed	= Collections.newSetFromMap ( new IdentityHashMap<>() );
+
+	private ProtocolMetrics ( Protocol protocol, String name )
+	{
+		this.protocol = protocol;
+		this.name     = name;
+		this.txStages = instrument ( protocol.getTxChain(), Chain.TX );
+		this.rxStages = instrument ( protocol.getRxChain(), Chain.RX );
+	}
+
+	/**
+	 * Instruments a {@link Protocol}, and registers its MBeans with the platform MBean Server.
+	 * @param protocol The {@link Protocol} to instrument.
+	 * @param name The name identifying the {@link Protocol} in the MBean names and snapshots.
+	 * @return The {@code ProtocolMetrics}.
+	 * @throws JMException If the MBeans cannot be registered (for instance, if the name is already in use).
+	 */
+	public static ProtocolMetrics instrument ( Protocol protocol, String name ) throws JMException
+	{
+		ProtocolMetrics metrics = new ProtocolMetrics ( protocol, name );
+
+		try
+		{
+			metrics.register ( ManagementFactory.getPlatformMBeanServer() );
+		}
+		catch ( JMException e )
+		{
+			metrics.close();
+			throw e;
+		}
+
+		return metrics;
+	}
+
+	private List<StageMetrics> instrument ( List<Appliance> chain, Chain which )
+	{
+		List<StageMetrics> stages = new ArrayList<>();
+
+		for ( int n = 0; n < chain.size(); ++n )
+		{
+			StageMetrics stage = new StageMetrics ( which + "[" + n + "]" );
+			InstrumentedAppliance instrumented = InstrumentedAppliance.wrap ( chain.get ( n ), stage );
+
+			chain.set ( n, instrumented );
+			installed.add ( instrumented );
+			stages.add ( stage );
+		}
+
+		return Collections.unmodifiableList ( stages );
+	}
+
+	private void register ( MBeanServer server ) throws JMException
+	{
+		for ( Chain chain : Chain.values() )
+		{
+			List<StageMetrics> stages = getStages ( chain );
+
+			for ( int n = 0; n < stages.size(); ++n )
+			{
+				ObjectName objectName = new ObjectName ( DOMAIN + ":type=Stage,protocol=" + ObjectName.quote ( name ) + ",chain=" + chain + ",index=" + n );
+				server.registerMBean ( stages.get ( n ), objectName );
+				registered.add ( objectName );
+			}
+		}
+	}
+
+	/**
+	 * @return The name identifying the {@link Protocol}.
+	 */
+	public String getName()
+	{
+		return name;
+	}
+
+	/**
+	 * @param chain A chain.
+	 * @return The metrics of each stage of the chain, in chain order.
+	 */
+	public List<StageMetrics> getStages ( Chain chain )
+	{
+		return ( chain == Chain.TX ) ? txStages : rxStages;
+	}
+
+	/**
+	 * @return A copy of the current metrics of every stage, keyed by stage name (such as {@code "RX[0]"}), TX stages first.
+	 */
+	public Map<String,StageMetrics.Snapshot> snapshot()
+	{
+		Map<String,StageMetrics.Snapshot> snapshot = new LinkedHashMap<>();
+
+		for ( StageMetrics stage : txStages )
+			snapshot.put ( stage.getName(), stage.snapshot() );
+
+		for ( StageMetrics stage : rxStages )
+			snapshot.put ( stage.getName(), stage.snapshot() );
+
+		return snapshot;
+	}
+
+	/**
+	 * Resets the metrics of every stage.
+	 */
+	public void reset()
+	{
+		txStages.forEach ( StageMetrics::reset );
+		rxStages.forEach ( StageMetrics::reset );
+	}
+
+	/**
+	 * Restores the {@link Protocol}'s original {@link Appliance}s, and unregisters the MBeans.
+	 */
+	@Override
+	public void close()
+	{
+		protocol.getTxChain().replaceAll ( this::uninstall );
+		protocol.getRxChain().replaceAll ( this::uninstall );
+		installed.clear();
+
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+		for ( ObjectName objectName : registered )
+		{
+			try
+			{
+				server.unregisterMBean ( objectName );
+			}
+			catch ( JMException e )
+			{
+				// Already unregistered.
+			}
+		}
+
+		registered.clear();
+	}
+
+	/**
+	 * @return {@code appliance}, without the wrapper this {@code ProtocolMetrics} installed, at whatever depth it is nested.
+	 */
+	private Appliance uninstall ( Appliance appliance )
+	{
+		for ( Appliance layer = appliance; layer instanceof InstrumentedAppliance; layer = ( ( InstrumentedAppliance ) layer ).getAppliance() )
+		{
+			if ( installed.contains ( layer ) )
+				return InstrumentedAppliance.remove ( appliance, ( InstrumentedAppliance ) layer );
+		}
+
+		return appliance;
+	}
+}
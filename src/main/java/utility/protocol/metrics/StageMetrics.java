@@ -0,0 +1,235 @@
+package utility.protocol.metrics;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The Metrics of a single stage of a {@link utility.protocol.Protocol} chain: the number of calls and errors,
+ * the bytes in and out ({@code byte[]} and {@link ByteBuffer} data only), and a {@link LatencyHistogram} of the
+ * time spent in the stage.
+ * @author Rob
+ */
+public class StageMetrics implements StageMetricsMBean
+{
+	private final String			name;
+	private final LongAdder			calls		= new LongAdder();
+	private final LongAdder			errors		= new LongAdder();
+	private final LongAdder			bytesIn		= new LongAdder();
+	private final LongAdder			bytesOut	= new LongAdder();
+	private final LatencyHistogram	latency		= new LatencyHistogram();
+
+	/**
+	 * Constructs a new {@code StageMetrics}.
+	 * @param name The name of the stage.
+	 */
+	public StageMetrics ( String name )
+	{
+		this.name = name;
+	}
+
+	void recordIn ( Object data )
+	{
+		calls.increment();
+		bytesIn.add ( sizeOf ( data ) );
+	}
+
+	void recordOut ( Object data )
+	{
+		bytesOut.add ( sizeOf ( data ) );
+	}
+
+	void recordError()
+	{
+		errors.increment();
+	}
+
+	void recordLatency ( long nanos )
+	{
+		latency.record ( nanos );
+	}
+
+	private static long sizeOf ( Object data )
+	{
+		if ( data instanceof byte[] )
+			return ( ( byte[] ) data ).length;
+
+		if ( data instanceof ByteBuffer )
+			return ( ( ByteBuffer ) data ).remaining();
+
+		return 0;
+	}
+
+	@Override
+	public String getName()
+	{
+		return name;
+	}
+
+	@Override
+	public long getCalls()
+	{
+		return calls.sum();
+	}
+
+	@Override
+	public long getErrors()
+	{
+		return errors.sum();
+	}
+
+	@Override
+	public long getBytesIn()
+	{
+		return bytesIn.sum();
+	}
+
+	@Override
+	public long getBytesOut()
+	{
+		return bytesOut.sum();
+	}
+
+	/**
+	 * @return The histogram of the time spent in the stage.
+	 */
+	public LatencyHistogram getLatency()
+	{
+		return latency;
+	}
+
+	@Override
+	public double getMeanLatencyNanos()
+	{
+		return latency.getMean();
+	}
+
+	@Override
+	public long getMaxLatencyNanos()
+	{
+		return latency.getMax();
+	}
+
+	@Override
+	public long getP50LatencyNanos()
+	{
+		return latency.getValueAtPercentile ( 50 );
+	}
+
+	@Override
+	public long getP99LatencyNanos()
+	{
+		return latency.getValueAtPercentile ( 99 );
+	}
+
+	@Override
+	public long getP999LatencyNanos()
+	{
+		return latency.getValueAtPercentile ( 99.9 );
+	}
+
+	@Override
+	public void reset()
+	{
+		calls.reset();
+		errors.reset();
+		bytesIn.reset();
+		bytesOut.reset();
+		latency.reset();
+	}
+
+	/**
+	 * @return An immutable copy of the current metrics.
+	 */
+	public Snapshot snapshot()
+	{
+		return new Snapshot ( this );
+	}
+
+	/**
+	 * An immutable copy of a {@link StageMetrics}.
+	 */
+	public static final class Snapshot
+	{
+		private final String	name;
+		private final long		calls;
+		private final long		errors;
+		private final long		bytesIn;
+		private final long		bytesOut;
+		private final double	meanLatencyNanos;
+		private final long		maxLatencyNanos;
+		private final long		p50LatencyNanos;
+		private final long		p99LatencyNanos;
+		private final long		p999LatencyNanos;
+
+		private Snapshot ( StageMetrics metrics )
+		{
+			name             = metrics.getName();
+			calls            = metrics.getCalls();
+			errors           = metrics.getErrors();
+			bytesIn          = metrics.getBytesIn();
+			bytesOut         = metrics.getBytesOut();
+			meanLatencyNanos = metrics.getMeanLatencyNanos();
+			maxLatencyNanos  = metrics.getMaxLatencyNanos();
+			p50LatencyNanos  = metrics.getP50LatencyNanos();
+			p99LatencyNanos  = metrics.getP99LatencyNanos();
+			p999LatencyNanos = metrics.getP999LatencyNanos();
+		}
+
+		public String getName()
+		{
+			return name;
+		}
+
+		public long getCalls()
+		{
+			return calls;
+		}
+
+		public long getErrors()
+		{
+			return errors;
+		}
+
+		public long getBytesIn()
+		{
+			return bytesIn;
+		}
+
+		public long getBytesOut()
+		{
+			return bytesOut;
+		}
+
+		public double getMeanLatencyNanos()
+		{
+			return meanLatencyNanos;
+		}
+
+		public long getMaxLatencyNanos()
+		{
+			return maxLatencyNanos;
+		}
+
+		public long getP50LatencyNanos()
+		{
+			return p50LatencyNanos;
+		}
+
+		public long getP99LatencyNanos()
+		{
+			return p99LatencyNanos;
+		}
+
+		public long getP999LatencyNanos()
+		{
+			return p999LatencyNanos;
+		}
+
+		@Override
+		public String toString()
+		{
+			return String.format ( "%s: calls=%d errors=%d in=%dB out=%dB latency(ns) mean=%.0f p50=%d p99=%d p99.9=%d max=%d",
+					name, calls, errors, bytesIn, bytesOut, meanLatencyNanos, p50LatencyNanos, p99LatencyNanos, p999LatencyNanos, maxLatencyNanos );
+		}
+	}
+}
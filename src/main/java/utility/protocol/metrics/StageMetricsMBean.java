@@ -0,0 +1,30 @@
+package utility.protocol.metrics;
+
+/**
+ * The JMX Management Interface of {@link StageMetrics}.
+ * @author Rob
+ */
+public interface StageMetricsMBean
+{
+	String getName();
+
+	long getCalls();
+
+	long getErrors();
+
+	long getBytesIn();
+
+	long getBytesOut();
+
+	double getMeanLatencyNanos();
+
+	long getMaxLatencyNanos();
+
+	long getP50LatencyNanos();
+
+	long getP99LatencyNanos();
+
+	long getP999LatencyNanos();
+
+	void reset();
+}
@@ -0,0 +1,428 @@
+package utility.protocol.nio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.WritableByteChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import utility.protocol.Appliance;
+import utility.protocol.ByteBufferPool;
+import utility.protocol.Protocol;
+import utility.protocol.Protocol.ProtocolException;
+import utility.protocol.ReadControl;
+import utility.protocol.metrics.InstrumentedAppliance;
+import utility.protocol.transport.Connection;
+
+/**
+ * The binding of a {@link Protocol} to a pair of non-blocking Channels, driven by one of the Event Loops of a {@link ProtocolReactor}.
+ * <p>
+ * Data read from the RX Channel is handed to the {@link Protocol}'s RX chain via {@link Protocol#receive(Object)},
+ * as a {@link ByteBuffer} which is only valid for the duration of that call.  Appliances which need to retain
+ * the received bytes must copy them.
+ * </p>
+ * <p>
+ * The link's {@link #transmitter() transmitter} is the final {@link Appliance} of the {@link Protocol}'s TX chain.  It
+ * accepts {@code byte[]} or {@link ByteBuffer} data, queues it, and returns immediately; the queued data is written by the
+ * Event Loop as the Channel becomes writable.  A queued {@code ByteBuffer} must not be modified by the caller after it is sent.
+ * If the link has a {@link ByteBufferPool}, each {@code ByteBuffer} is returned to the pool once it has been written.
+ * </p>
+ * <p>
+ * The queued data is written with gathering writes, up to {@link #MAX_GATHER} buffers per write.  When batching is
+ * enabled (see {@link #setBatching(long, TimeUnit, int)}), the first data queued after a flush starts a batch window,
+ * and the batch is flushed when the window closes, or as soon as the queued data reaches the byte budget, whichever
+ * comes first.
+ * </p>
+ * <p>
+ * A link is the {@link ReadControl} of its {@link Protocol}'s RX side: while its reads are suspended, the RX Channel
+ * is not read, so a consumer which cannot keep up holds up the peer, rather than the data accumulating in memory.
+ * </p>
+ * @author Rob
+ */
+public class ChannelLink implements Connection, ReadControl
+{
+	/**
+	 * The maximum number of buffers written by a single gathering write.
+	 */
+	public static final int MAX_GATHER = 64;
+
+	private final Protocol				protocol;
+	private final SelectorLoop			loop;
+	private final SelectableChannel		rxChannel;
+	private final SelectableChannel		txChannel;
+	private final ByteBuffer			readBuffer;
+	private final Queue<ByteBuffer>		txQueue			= new ConcurrentLinkedQueue<> ();
+	private final AtomicBoolean			flushScheduled	= new AtomicBoolean();
+	private final AtomicBoolean			budgetFlush		= new AtomicBoolean();
+	private final AtomicLong			queuedBytes		= new AtomicLong();
+	private final AtomicLong			batchId			= new AtomicLong();
+	private final ByteBuffer[]			batch			= new ByteBuffer [ MAX_GATHER ];
+	private int							batchCount;
+	private volatile long				batchWindowNanos;
+	private volatile int				batchBudget;
+	private volatile long				writes;
+	private volatile long				bytesWritten;
+	private final Appliance				transmitter		= this::transmit;
+	private final Runnable				flushTask		= this::flush;
+	private SelectionKey				rxKey;
+	private SelectionKey				txKey;
+	private volatile ByteBufferPool		bufferPool;
+	private volatile boolean			readsSuspended;
+	private volatile boolean			closed;
+
+	ChannelLink ( Protocol protocol, SelectorLoop loop, SelectableChannel rxChannel, SelectableChannel txChannel, int readBufferSize )
+	{
+		this.protocol   = protocol;
+		this.loop       = loop;
+		this.rxChannel  = rxChannel;
+		this.txChannel  = txChannel;
+		this.readBuffer = ByteBuffer.allocate ( readBufferSize );
+	}
+
+	/**
+	 * @return The {@link Protocol} bound to this link.
+	 */
+	@Override
+	public Protocol getProtocol()
+	{
+		return protocol;
+	}
+
+	/**
+	 * @return The {@link Appliance} which queues data for transmission on this link.
+	 */
+	public Appliance transmitter()
+	{
+		return transmitter;
+	}
+
+	/**
+	 * @param bufferPool The pool to which transmitted buffers are returned once written, or {@code null}.
+	 */
+	public void setBufferPool ( ByteBufferPool bufferPool )
+	{
+		this.bufferPool = bufferPool;
+	}
+
+	/**
+	 * Enables or disables batching of transmitted data.
+	 * @param window The longest time data waits for the rest of its batch, or zero to disable batching.
+	 * @param unit The unit of {@code window}.
+	 * @param byteBudget The number of queued bytes which causes the batch to be flushed before its window closes.
+	 */
+	public void setBatching ( long window, TimeUnit unit, int byteBudget )
+	{
+		if ( window < 0 || byteBudget < 0 )
+			throw new IllegalArgumentException ( "Batch Window and Budget must not be negative" );
+
+		batchBudget      = byteBudget;
+		batchWindowNanos = unit.toNanos ( window );
+	}
+
+	/**
+	 * @return The number of write operations performed on the TX Channel.
+	 */
+	public long getWrites()
+	{
+		return writes;
+	}
+
+	/**
+	 * @return The number of bytes written to the TX Channel.
+	 */
+	public long getBytesWritten()
+	{
+		return bytesWritten;
+	}
+
+	@Override
+	public void setReadsSuspended ( boolean suspended )
+	{
+		readsSuspended = suspended;
+
+		if ( loop.inLoop() )
+			updateReadInterest();
+		else
+			loop.execute ( this::updateReadInterest );
+	}
+
+	/**
+	 * @return {@code true} if reads from the RX Channel are suspended.
+	 */
+	public boolean isReadsSuspended()
+	{
+		return readsSuspended;
+	}
+
+	/**
+	 * @return {@code true} if this link has been closed.
+	 */
+	@Override
+	public boolean isClosed()
+	{
+		return closed;
+	}
+
+	/**
+	 * Registers the link's Channels with its Event Loop.  (Runs on the Event Loop).
+	 */
+	void open()
+	{
+		try
+		{
+			rxChannel.configureBlocking ( false );
+			txChannel.configureBlocking ( false );
+
+			rxKey = rxChannel.register ( loop.selector(), readsSuspended ? 0 : SelectionKey.OP_READ, this );
+			txKey = ( txChannel == rxChannel ) ? rxKey : txChannel.register ( loop.selector(), 0, this );
+		}
+		catch ( IOException e )
+		{
+			fail ( e );
+		}
+	}
+
+	/**
+	 * Queues data for transmission.
+	 * @param data A {@code byte[]} or {@link ByteBuffer} to transmit.
+	 * @return {@code null}, as this is always the final {@link Appliance} of a TX chain.
+	 * @throws ProtocolException If the link is closed, or the data is of an unsupported type.
+	 */
+	public Object transmit ( Object data ) throws ProtocolException
+	{
+		if ( closed )
+			throw new ProtocolException ( "Link is closed" );
+
+		ByteBuffer buffer;
+
+		if ( data instanceof byte[] )
+			buffer = ByteBuffer.wrap ( ( byte[] ) data );
+		else if ( data instanceof ByteBuffer )
+			buffer = ( ByteBuffer ) data;
+		else
+			throw new ProtocolException ( "Argument must be a byte[] or ByteBuffer" );
+
+		long window = batchWindowNanos;
+		long queued = queuedBytes.addAndGet ( buffer.remaining() );
+
+		txQueue.add ( buffer );
+
+		if ( flushScheduled.compareAndSet ( false, true ) )
+		{
+			if ( window > 0 && queued < batchBudget )
+			{
+				long id = batchId.incrementAndGet();
+				loop.schedule ( () -> flushBatch ( id ), window );
+			}
+			else
+				loop.execute ( flushTask );
+		}
+		else if ( window > 0 && queued >= batchBudget && budgetFlush.compareAndSet ( false, true ) )
+			loop.execute ( flushTask );
+
+		return null;
+	}
+
+	/**
+	 * Handles a selected {@link SelectionKey}.  (Runs on the Event Loop).
+	 * @param key The selected key.
+	 */
+	void handle ( SelectionKey key )
+	{
+		if ( key.isValid() && key.isReadable() )
+			read();
+
+		if ( key.isValid() && key.isWritable() )
+			flush();
+	}
+
+	private void read()
+	{
+		try
+		{
+			int count = ( ( ReadableByteChannel ) rxChannel ).read ( readBuffer );
+
+			if ( count < 0 )
+			{
+				closeNow();
+				protocol.reportException ( new ProtocolException ( "End of Stream" ) );
+				return;
+			}
+
+			if ( count > 0 )
+			{
+				readBuffer.flip();
+				protocol.receive ( readBuffer );
+				readBuffer.clear();
+			}
+		}
+		catch ( IOException e )
+		{
+			fail ( e );
+		}
+	}
+
+	/**
+	 * Flushes the batch whose window has closed, unless a later batch has been started since, which means that the batch
+	 * has already been flushed, as it reached the byte budget.  (Runs on the Event Loop).
+	 * @param id The id of the batch.
+	 */
+	private void flushBatch ( long id )
+	{
+		if ( id == batchId.get() )
+			flush();
+	}
+
+	private void flush()
+	{
+		budgetFlush.set ( false );
+
+		if ( closed || txKey == null || !flushScheduled.get() )
+			return;
+
+		try
+		{
+			while ( true )
+			{
+				ByteBuffer buffer;
+
+				while ( batchCount < batch.length && ( buffer = txQueue.poll() ) != null )
+					batch [ batchCount++ ] = buffer;
+
+				if ( batchCount == 0 )
+				{
+					setWriteInterest ( false );
+					flushScheduled.set ( false );
+
+					// Re-check, in case data was queued after the queue was found empty, but before the flag was cleared.
+					if ( txQueue.isEmpty() || !flushScheduled.compareAndSet ( false, true ) )
+						return;
+
+					continue;
+				}
+
+				long written;
+
+				if ( txChannel instanceof GatheringByteChannel )
+					written = ( ( GatheringByteChannel ) txChannel ).write ( batch, 0, batchCount );
+				else
+					written = ( ( WritableByteChannel ) txChannel ).write ( batch [ 0 ] );
+
+				writes++;
+				bytesWritten += written;
+				queuedBytes.addAndGet ( -written );
+
+				int done = 0;
+				ByteBufferPool pool = bufferPool;
+
+				while ( done < batchCount && !batch [ done ].hasRemaining() )
+				{
+					if ( pool != null )
+						pool.release ( batch [ done ] );
+
+					++done;
+				}
+
+				System.arraycopy ( batch, done, batch, 0, batchCount - done );
+
+				for ( int n = batchCount - done; n < batchCount; ++n )
+					batch [ n ] = null;
+
+				batchCount -= done;
+
+				if ( batchCount > 0 && done == 0 )
+				{
+					// The Channel accepted less than was offered; wait until it is writable.
+					setWriteInterest ( true );
+					return;
+				}
+			}
+		}
+		catch ( IOException e )
+		{
+			fail ( e );
+		}
+	}
+
+	/**
+	 * Applies the most recent {@link #setReadsSuspended(boolean)}.  (Runs on the Event Loop).
+	 */
+	private void updateReadInterest()
+	{
+		if ( closed || rxKey == null || !rxKey.isValid() )
+			return;
+
+		int ops = rxKey.interestOps();
+		int newOps = readsSuspended ? ( ops & ~SelectionKey.OP_READ ) : ( ops | SelectionKey.OP_READ );
+
+		if ( ops != newOps )
+			rxKey.interestOps ( newOps );
+	}
+
+	private void setWriteInterest ( boolean enabled )
+	{
+		int ops = txKey.interestOps();
+		int newOps = enabled ? ( ops | SelectionKey.OP_WRITE ) : ( ops & ~SelectionKey.OP_WRITE );
+
+		if ( ops != newOps )
+			txKey.interestOps ( newOps );
+	}
+
+	private void fail ( IOException e )
+	{
+		closeNow();
+		protocol.reportException ( new ProtocolException ( e ) );
+	}
+
+	/**
+	 * Closes the link, and removes its {@link #transmitter() transmitter} from the {@link Protocol}'s TX chain.
+	 */
+	@Override
+	public void close()
+	{
+		if ( loop.inLoop() )
+			closeNow();
+		else
+			loop.execute ( this::closeNow );
+	}
+
+	/**
+	 * Closes the link.  (Runs on the Event Loop).
+	 */
+	void closeNow()
+	{
+		if ( closed )
+			return;
+
+		closed = true;
+		protocol.getTxChain().removeIf ( appliance -> InstrumentedAppliance.unwrap ( appliance ) == transmitter );
+
+		if ( rxKey != null )
+			rxKey.cancel();
+
+		if ( txKey != null )
+			txKey.cancel();
+
+		closeQuietly ( rxChannel );
+		closeQuietly ( txChannel );
+	}
+
+	private static void closeQuietly ( SelectableChannel channel )
+	{
+		try
+		{
+			channel.close();
+		}
+		catch ( IOException e )
+		{
+			// Nothing more can be done.
+		}
+	}
+}
@@ -0,0 +1,139 @@
+package utility.protocol.nio;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import utility.protocol.Protocol;
+
+/**
+ * A Non-Blocking Transport for {@link Protocol}s.
+ * <p>
+ * A {@code ProtocolReactor} owns a small, fixed pool of Event Loop threads, each multiplexing
+ * many links over a single {@link java.nio.channels.Selector}.  Each registered {@link Protocol}
+ * is bound to a {@link ChannelLink} on one of the loops (assigned round-robin), which drives the
+ * {@code Protocol}'s RX chain as data arrives, and writes the output of its TX chain as the
+ * Channel becomes writable.  No thread is dedicated to any single link.
+ * </p>
+ *
+ * @author Rob
+ */
+public class ProtocolReactor implements Closeable
+{
+	/**
+	 * The default size of each link's read buffer.
+	 */
+	public static final int DEFAULT_READ_BUFFER_SIZE = 16 * 1024;
+
+	private final SelectorLoop[]	loops;
+	private final AtomicInteger		nextLoop		= new AtomicInteger();
+	private int						readBufferSize	= DEFAULT_READ_BUFFER_SIZE;
+
+	/**
+	 * Constructs a new {@code ProtocolReactor} running on daemon threads.
+	 * @param loopCount The number of Event Loop threads.
+	 * @throws IOException If a {@link java.nio.channels.Selector} could not be opened.
+	 */
+	public ProtocolReactor ( int loopCount ) throws IOException
+	{
+		this ( loopCount, new ThreadFactory()
+		{
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread ( Runnable r )
+			{
+				Thread thread = new Thread ( r, "ProtocolReactor-" + count.getAndIncrement() );
+				thread.setDaemon ( true );
+				return thread;
+			}
+		} );
+	}
+
+	/**
+	 * Constructs a new {@code ProtocolReactor}.
+	 * @param loopCount The number of Event Loop threads.
+	 * @param threadFactory The factory used to create the Event Loop threads.
+	 * @throws IOException If a {@link java.nio.channels.Selector} could not be opened.
+	 */
+	public ProtocolReactor ( int loopCount, ThreadFactory threadFactory ) throws IOException
+	{
+		if ( loopCount < 1 )
+			throw new IllegalArgumentException ( "Loop Count must be positive" );
+
+		loops = new SelectorLoop [ loopCount ];
+
+		for ( int i = 0; i < loopCount; ++i )
+		{
+			loops [ i ] = new SelectorLoop();
+			loops [ i ].start ( threadFactory.newThread ( loops [ i ] ) );
+		}
+	}
+
+	/**
+	 * @param readBufferSize The size of the read buffer of links registered after this call.
+	 */
+	public void setReadBufferSize ( int readBufferSize )
+	{
+		if ( readBufferSize < 1 )
+			throw new IllegalArgumentException ( "Read Buffer Size must be positive" );
+
+		this.readBufferSize = readBufferSize;
+	}
+
+	/**
+	 * Binds a {@link Protocol} to a connected {@link SocketChannel}.
+	 * @param protocol The {@link Protocol}.
+	 * @param channel The connected Channel.
+	 * @return The new link.
+	 * @see #register(Protocol, SelectableChannel, SelectableChannel)
+	 */
+	public ChannelLink register ( Protocol protocol, SocketChannel channel )
+	{
+		return register ( protocol, channel, channel );
+	}
+
+	/**
+	 * Binds a {@link Protocol} to a pair of Channels (such as the source and sink of a {@link java.nio.channels.Pipe}).
+	 * <p>
+	 * The link's transmitter is appended to the end of the {@code Protocol}'s TX chain, and the data read from
+	 * {@code rxChannel} is passed to the first {@link utility.protocol.Appliance} of its RX chain.  The {@code Protocol}'s
+	 * chains should be fully assembled before this method is called.
+	 * </p>
+	 * @param protocol The {@link Protocol}.
+	 * @param rxChannel The Channel from which to read received data. (Must be a {@link ReadableByteChannel}).
+	 * @param txChannel The Channel to which to write transmitted data. (Must be a {@link WritableByteChannel}).
+	 * @return The new link.
+	 */
+	public ChannelLink register ( Protocol protocol, SelectableChannel rxChannel, SelectableChannel txChannel )
+	{
+		if ( ! ( rxChannel instanceof ReadableByteChannel ) )
+			throw new IllegalArgumentException ( "RX Channel must be Readable" );
+
+		if ( ! ( txChannel instanceof WritableByteChannel ) )
+			throw new IllegalArgumentException ( "TX Channel must be Writable" );
+
+		SelectorLoop loop = loops [ Math.floorMod ( nextLoop.getAndIncrement(), loops.length ) ];
+		ChannelLink link = new ChannelLink ( protocol, loop, rxChannel, txChannel, readBufferSize );
+
+		protocol.getTxChain().add ( link.transmitter() );
+		loop.execute ( link::open );
+
+		return link;
+	}
+
+	/**
+	 * Stops the Event Loops, and closes all of their links.
+	 */
+	@Override
+	public void close()
+	{
+		for ( SelectorLoop loop : loops )
+			loop.shutdown();
+	}
+}
@@ -0,0 +1,195 @@
+package utility.protocol.nio;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * A single Event Loop Thread of a {@link ProtocolReactor}.
+ * <p>
+ * All Selector, {@link SelectionKey} and Channel I/O operations for the {@link ChannelLink}s
+ * assigned to the loop are performed on the loop's thread.  Other threads hand work to the
+ * loop via {@link #execute(Runnable)}.
+ * </p>
+ * @author Rob
+ */
+final class SelectorLoop implements Runnable
+{
+	private static final Logger logger = LogManager.getLogger ( SelectorLoop.class );
+
+	private final Selector				selector;
+	private final Queue<Runnable>		tasks			= new ConcurrentLinkedQueue<> ();
+	private final Queue<TimedTask>		timedTasks		= new PriorityQueue<> ();
+	private final AtomicBoolean			wakeupPending	= new AtomicBoolean();
+	private volatile boolean			running			= true;
+	private volatile Thread				thread;
+
+	SelectorLoop() throws IOException
+	{
+		selector = Selector.open();
+	}
+
+	Selector selector()
+	{
+		return selector;
+	}
+
+	void start ( Thread thread )
+	{
+		this.thread = thread;
+		thread.start();
+	}
+
+	boolean inLoop()
+	{
+		return Thread.currentThread() == thread;
+	}
+
+	/**
+	 * Queues a task to be run on the loop's thread.
+	 * @param task The task to run.
+	 */
+	void execute ( Runnable task )
+	{
+		tasks.add ( task );
+
+		if ( !inLoop() && wakeupPending.compareAndSet ( false, true ) )
+			selector.wakeup();
+	}
+
+	/**
+	 * Queues a task to be run on the loop's thread after a delay.
+	 * @param task The task to run.
+	 * @param delayNanos The delay, in nanoseconds.
+	 */
+	void schedule ( Runnable task, long delayNanos )
+	{
+		TimedTask timedTask = new TimedTask ( task, System.nanoTime() + delayNanos );
+		execute ( () -> timedTasks.add ( timedTask ) );
+	}
+
+	void shutdown()
+	{
+		running = false;
+		selector.wakeup();
+	}
+
+	@Override
+	public void run()
+	{
+		while ( running )
+		{
+			try
+			{
+				TimedTask next = timedTasks.peek();
+
+				if ( next == null )
+					selector.select();
+				else
+				{
+					long timeout = next.deadline - System.nanoTime();
+
+					if ( timeout > 0 )
+						selector.select ( Math.max ( 1, timeout / 1_000_000 ) );
+					else
+						selector.selectNow();
+				}
+
+				wakeupPending.set ( false );
+
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+
+				while ( keys.hasNext() )
+				{
+					SelectionKey key = keys.next();
+					keys.remove();
+
+					( ( ChannelLink ) key.attachment() ).handle ( key );
+				}
+
+				runTasks();
+				runTimedTasks();
+			}
+
+			catch ( Exception e )
+			{
+				logger.error ( "Selector Loop Failure", e );
+			}
+		}
+
+		for ( SelectionKey key : selector.keys() )
+			( ( ChannelLink ) key.attachment() ).closeNow();
+
+		try
+		{
+			selector.close();
+		}
+		catch ( IOException e )
+		{
+			logger.error ( "Failed to close Selector", e );
+		}
+	}
+
+	private void runTimedTasks()
+	{
+		long now = System.nanoTime();
+		TimedTask next;
+
+		while ( ( next = timedTasks.peek() ) != null && next.deadline - now <= 0 )
+		{
+			timedTasks.poll();
+
+			try
+			{
+				next.task.run();
+			}
+			catch ( Exception e )
+			{
+				logger.error ( "Selector Loop Task Failure", e );
+			}
+		}
+	}
+
+	private static final class TimedTask implements Comparable<TimedTask>
+	{
+		private final Runnable	task;
+		private final long		deadline;
+
+		TimedTask ( Runnable task, long deadline )
+		{
+			this.task     = task;
+			this.deadline = deadline;
+		}
+
+		@Override
+		public int compareTo ( TimedTask other )
+		{
+			return Long.signum ( deadline - other.deadline );
+		}
+	}
+
+	private void runTasks()
+	{
+		Runnable task;
+
+		while ( ( task = tasks.poll() ) != null )
+		{
+			try
+			{
+				task.run();
+			}
+			catch ( Exception e )
+			{
+				logger.error ( "Selector Loop Task Failure", e );
+			}
+		}
+	}
+}
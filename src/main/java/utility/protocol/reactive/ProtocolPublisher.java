@@ -0,0 +1,304 @@
+package utility.protocol.reactive;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import utility.collections.RingBufferQueue;
+import utility.protocol.Protocol;
+import utility.protocol.Protocol.ProtocolDataListener;
+import utility.protocol.ReadControl;
+
+/**
+ * A Reactive Streams {@link Publisher} of the data received by a {@link Protocol}.
+ * <p>
+ * Each subscriber has a bounded buffer, from which items are delivered as the subscriber requests them.
+ * When any subscriber's buffer fills to its high watermark, the publisher suspends the reads of its
+ * {@link ReadControl} (such as a {@link utility.protocol.nio.ChannelLink}), and resumes them once every buffer
+ * has drained to its low watermark; so demand is propagated to the transport, and memory stays bounded however
+ * slowly a subscriber consumes.  Between the high watermark and the capacity, a buffer absorbs the data already
+ * read when the reads are suspended; items which arrive to a full buffer are dropped (see {@link #getDropped()}).
+ * </p>
+ * <p>
+ * Only received data of the published type is published (for instance {@code Message.class}).  The items must
+ * remain valid after the RX chain returns, so a publisher cannot publish the raw {@code ByteBuffer}s of a transport.
+ * On Java 9 and later, {@code org.reactivestreams.FlowAdapters} adapts a {@code ProtocolPublisher} to a
+ * {@code java.util.concurrent.Flow.Publisher}.
+ * </p>
+ * @author Rob
+ * @param <T> The type of data published.
+ */
+public class ProtocolPublisher<T> implements Publisher<T>, ProtocolDataListener
+{
+	private final Class<T>							type;
+	private final int								capacity;
+	private final int								highWatermark;
+	private final int								lowWatermark;
+	private final List<ProtocolSubscription>		subscriptions	= new CopyOnWriteArrayList<>();
+	private final AtomicInteger						congested		= new AtomicInteger();
+	private final LongAdder							dropped			= new LongAdder();
+	private volatile ReadControl					readControl;
+	private volatile boolean						completed;
+	private volatile Throwable						error;
+
+	/**
+	 * Constructs a new {@code ProtocolPublisher}, and registers it with a {@link Protocol}.
+	 * @param protocol The {@link Protocol} whose received data is published.
+	 * @param type The type of data published.
+	 * @param capacity The capacity of each subscriber's buffer.
+	 * @param highWatermark The number of buffered items at which reads are suspended.
+	 * @param lowWatermark The number of buffered items at which reads are resumed.
+	 */
+	public ProtocolPublisher ( Protocol protocol, Class<T> type, int capacity, int highWatermark, int lowWatermark )
+	{
+		if ( lowWatermark < 0 || lowWatermark >= highWatermark || highWatermark > capacity )
+			throw new IllegalArgumentException ( "Watermarks must satisfy 0 <= low < high <= capacity" );
+
+		this.type          = type;
+		this.capacity      = capacity;
+		this.highWatermark = highWatermark;
+		this.lowWatermark  = lowWatermark;
+
+		protocol.registerDataListener ( this );
+	}
+
+	/**
+	 * @param readControl The {@link ReadControl} of the transport feeding the {@link Protocol}, or {@code null}.
+	 */
+	public void setReadControl ( ReadControl readControl )
+	{
+		this.readControl = readControl;
+		updateReads();
+	}
+
+	/**
+	 * @return The number of items dropped because a subscriber's buffer was full.
+	 */
+	public long getDropped()
+	{
+		return dropped.sum();
+	}
+
+	/**
+	 * @return The number of current subscribers.
+	 */
+	public int getSubscriberCount()
+	{
+		return subscriptions.size();
+	}
+
+	@Override
+	public void subscribe ( Subscriber<? super T> subscriber )
+	{
+		if ( subscriber == null )
+			throw new NullPointerException ( "Subscriber may not be null" );
+
+		ProtocolSubscription subscription = new ProtocolSubscription ( subscriber );
+
+		subscriptions.add ( subscription );
+		subscriber.onSubscribe ( subscription );
+
+		if ( completed )
+			subscription.drain();
+	}
+
+	@Override
+	public void handleReceivedData ( Object data )
+	{
+		if ( !type.isInstance ( data ) || completed )
+			return;
+
+		T item = type.cast ( data );
+
+		for ( ProtocolSubscription subscription : subscriptions )
+			subscription.publish ( item );
+	}
+
+	/**
+	 * Signals {@code onComplete} to each subscriber, once it has been delivered the items already buffered for it.
+	 */
+	public void complete()
+	{
+		terminate ( null );
+	}
+
+	/**
+	 * Signals {@code onError} to each subscriber, once it has been delivered the items already buffered for it.
+	 * @param error The error.
+	 */
+	public void error ( Throwable error )
+	{
+		terminate ( error );
+	}
+
+	private void terminate ( Throwable error )
+	{
+		if ( completed )
+			return;
+
+		this.error = error;
+		completed  = true;
+
+		for ( ProtocolSubscription subscription : subscriptions )
+			subscription.drain();
+	}
+
+	private synchronized void updateReads()
+	{
+		ReadControl control = readControl;
+
+		if ( control != null )
+			control.setReadsSuspended ( congested.get() > 0 );
+	}
+
+	/**
+	 * The Subscription of a single {@link Subscriber}.
+	 */
+	private final class ProtocolSubscription implements Subscription
+	{
+		private final Subscriber<? super T>	subscriber;
+		private final Queue<T>				buffer			= new RingBufferQueue<> ( capacity );
+		private final AtomicLong			requested		= new AtomicLong();
+		private final AtomicInteger			wip				= new AtomicInteger();
+		private volatile Throwable			invalidRequest;
+		private volatile boolean			cancelled;
+		private boolean						isCongested;	// Guarded by wip.
+		private boolean						terminated;		// Guarded by wip.
+
+		ProtocolSubscription ( Subscriber<? super T> subscriber )
+		{
+			this.subscriber = subscriber;
+		}
+
+		void publish ( T item )
+		{
+			if ( !buffer.offer ( item ) )
+				dropped.increment();
+
+			drain();
+		}
+
+		@Override
+		public void request ( long n )
+		{
+			if ( n <= 0 )
+			{
+				// The error is signalled by the draining thread, so it cannot overlap an onNext (Reactive Streams rule 1.3).
+				if ( invalidRequest == null )
+					invalidRequest = new IllegalArgumentException ( "Request must be positive (Reactive Streams rule 3.9): " + n );
+
+				subscriptions.remove ( this );
+				drain();
+				return;
+			}
+
+			long current, next;
+
+			do
+			{
+				current = requested.get();
+				next = ( current + n < 0 ) ? Long.MAX_VALUE : current + n;
+			}
+			while ( !requested.compareAndSet ( current, next ) );
+
+			drain();
+		}
+
+		@Override
+		public void cancel()
+		{
+			if ( cancelled )
+				return;
+
+			cancelled = true;
+			subscriptions.remove ( this );
+			drain();
+		}
+
+		/**
+		 * Delivers the buffered items which have been requested.  Only one thread delivers at a time;
+		 * a thread arriving while another is delivering leaves the work to it.
+		 */
+		void drain()
+		{
+			if ( wip.getAndIncrement() != 0 )
+				return;
+
+			int missed = 1;
+
+			do
+			{
+				if ( cancelled )
+				{
+					buffer.clear();
+					setCongested ( false );
+				}
+				else if ( invalidRequest != null )
+				{
+					terminated = true;
+					cancelled  = true;
+					buffer.clear();
+					setCongested ( false );
+					subscriber.onError ( invalidRequest );
+				}
+				else if ( !terminated )
+				{
+					long demand = requested.get();
+					long delivered = 0;
+					T item;
+
+					while ( delivered != demand && !cancelled && invalidRequest == null && ( item = buffer.poll() ) != null )
+					{
+						subscriber.onNext ( item );
+						++delivered;
+					}
+
+					if ( delivered != 0 && demand != Long.MAX_VALUE )
+						requested.addAndGet ( -delivered );
+
+					int buffered = buffer.size();
+
+					if ( buffered >= highWatermark )
+						setCongested ( true );
+					else if ( buffered <= lowWatermark )
+						setCongested ( false );
+
+					if ( completed && buffer.isEmpty() && !cancelled )
+					{
+						terminated = true;
+						subscriptions.remove ( this );
+						setCongested ( false );
+
+						if ( error != null )
+							subscriber.onError ( error );
+						else
+							subscriber.onComplete();
+					}
+				}
+
+				missed = wip.addAndGet ( -missed );
+			}
+			while ( missed != 0 );
+		}
+
+		private void setCongested ( boolean congested )
+		{
+			if ( congested == isCongested )
+				return;
+
+			isCongested = congested;
+
+			int count = congested ? ProtocolPublisher.this.congested.incrementAndGet() : ProtocolPublisher.this.congested.decrementAndGet();
+
+			if ( count == ( congested ? 1 : 0 ) )
+				updateReads();
+		}
+	}
+}
@@ -0,0 +1,111 @@
+package utility.protocol.reactive;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import utility.protocol.Protocol;
+
+/**
+ * A Reactive Streams {@link Subscriber} which sends the items it receives via a {@link Protocol}'s TX chain.
+ * <p>
+ * It requests items in batches of up to {@code prefetch}, requesting more as each half batch is sent, so
+ * the upstream publisher never has more than {@code prefetch} items outstanding.  If sending an item fails,
+ * the failure is reported to the {@link Protocol}'s {@link Protocol.ProtocolExceptionListener}s, the subscription
+ * is cancelled, and {@link #getCompletion()} completes exceptionally.
+ * </p>
+ * <p>
+ * On Java 9 and later, {@code org.reactivestreams.FlowAdapters} adapts a {@code java.util.concurrent.Flow.Publisher}
+ * to subscribe a {@code ProtocolSubscriber}.
+ * </p>
+ * @author Rob
+ */
+public class ProtocolSubscriber implements Subscriber<Object>
+{
+	private final Protocol					protocol;
+	private final int						prefetch;
+	private final int						replenish;
+	private final AtomicBoolean				subscribed	= new AtomicBoolean();
+	private final CompletableFuture<Long>	completion	= new CompletableFuture<>();
+	private Subscription					subscription;
+	private int								sinceRequest;
+	private long							sent;
+
+	/**
+	 * Constructs a new {@code ProtocolSubscriber}.
+	 * @param protocol The {@link Protocol} via which to send the items.
+	 * @param prefetch The largest number of items requested but not yet received.
+	 */
+	public ProtocolSubscriber ( Protocol protocol, int prefetch )
+	{
+		if ( prefetch < 1 )
+			throw new IllegalArgumentException ( "Prefetch must be positive" );
+
+		this.protocol  = protocol;
+		this.prefetch  = prefetch;
+		this.replenish = Math.max ( 1, prefetch / 2 );
+	}
+
+	/**
+	 * @return A future completed with the number of items sent when the upstream publisher completes,
+	 * or exceptionally if it fails, or an item cannot be sent.
+	 */
+	public CompletableFuture<Long> getCompletion()
+	{
+		return completion;
+	}
+
+	@Override
+	public void onSubscribe ( Subscription subscription )
+	{
+		if ( !subscribed.compareAndSet ( false, true ) )
+		{
+			// Reactive Streams rule 2.5: only one Subscription at a time.
+			subscription.cancel();
+			return;
+		}
+
+		this.subscription = subscription;
+		subscription.request ( prefetch );
+	}
+
+	@Override
+	public void onNext ( Object item )
+	{
+		if ( completion.isDone() )
+			return;
+
+		try
+		{
+			protocol.sendAsync ( item );
+			++sent;
+		}
+		catch ( Exception e )
+		{
+			subscription.cancel();
+			protocol.reportException ( e );
+			completion.completeExceptionally ( e );
+			return;
+		}
+
+		if ( ++sinceRequest == replenish )
+		{
+			sinceRequest = 0;
+			subscription.request ( replenish );
+		}
+	}
+
+	@Override
+	public void onError ( Throwable error )
+	{
+		completion.completeExceptionally ( error );
+	}
+
+	@Override
+	public void onComplete()
+	{
+		completion.complete ( sent );
+	}
+}
@@ -0,0 +1,28 @@
+package utility.protocol.transport;
+
+import java.io.Closeable;
+
+import utility.protocol.Protocol;
+
+/**
+ * The binding of a {@link Protocol} to a link made by a {@link Transport}.
+ * @author Rob
+ */
+public interface Connection extends Closeable
+{
+	/**
+	 * @return The {@link Protocol} bound to the link.
+	 */
+	Protocol getProtocol();
+
+	/**
+	 * @return {@code true} if the link has been closed (by either end, or by a failure).
+	 */
+	boolean isClosed();
+
+	/**
+	 * Closes the link, and removes its transmitter from the {@link Protocol}'s TX chain.
+	 */
+	@Override
+	void close();
+}
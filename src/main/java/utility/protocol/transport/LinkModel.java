@@ -0,0 +1,86 @@
+package utility.protocol.transport;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The characteristics of a link simulated by a {@link LoopbackTransport}: its bandwidth, latency, jitter and loss.
+ * <p>
+ * Each frame occupies the link for its serialization time (its length over the bandwidth), so frames sent faster than
+ * the bandwidth allows queue behind each other, then arrives after the latency plus a random jitter of up to
+ * {@link #getJitterNanos()}.  Frames are never reordered: one which would overtake its predecessor arrives with it.
+ * A lost frame still occupies the link, but is never delivered.
+ * </p>
+ * @author Rob
+ */
+public final class LinkModel
+{
+	/**
+	 * A link of unlimited bandwidth, with no latency, jitter or loss.
+	 */
+	public static final LinkModel PERFECT = new LinkModel ( 0, 0, 0, TimeUnit.NANOSECONDS, 0 );
+
+	private final long		bitsPerSecond;
+	private final long		latencyNanos;
+	private final long		jitterNanos;
+	private final double	lossRate;
+
+	/**
+	 * Constructs a new {@code LinkModel}.
+	 * @param bitsPerSecond The bandwidth, or zero for unlimited.
+	 * @param latency The one-way latency.
+	 * @param jitter The greatest random delay added to the latency.
+	 * @param unit The unit of {@code latency} and {@code jitter}.
+	 * @param lossRate The probability that any one frame is lost, from {@code 0} to {@code 1}.
+	 */
+	public LinkModel ( long bitsPerSecond, long latency, long jitter, TimeUnit unit, double lossRate )
+	{
+		if ( bitsPerSecond < 0 || latency < 0 || jitter < 0 )
+			throw new IllegalArgumentException ( "Bandwidth, Latency and Jitter must not be negative" );
+
+		if ( ! ( lossRate >= 0 && lossRate <= 1 ) )
+			throw new IllegalArgumentException ( "Loss Rate must be between 0 and 1" );
+
+		this.bitsPerSecond = bitsPerSecond;
+		this.latencyNanos  = unit.toNanos ( latency );
+		this.jitterNanos   = unit.toNanos ( jitter );
+		this.lossRate      = lossRate;
+	}
+
+	/**
+	 * @return The bandwidth, in bits per second, or zero if unlimited.
+	 */
+	public long getBitsPerSecond()
+	{
+		return bitsPerSecond;
+	}
+
+	public long getLatencyNanos()
+	{
+		return latencyNanos;
+	}
+
+	public long getJitterNanos()
+	{
+		return jitterNanos;
+	}
+
+	public double getLossRate()
+	{
+		return lossRate;
+	}
+
+	/**
+	 * @param length The length of a frame, in bytes.
+	 * @return The time the frame occupies the link, in nanoseconds.
+	 */
+	public long serializationNanos ( int length )
+	{
+		return ( bitsPerSecond == 0 ) ? 0 : length * 8L * TimeUnit.SECONDS.toNanos ( 1 ) / bitsPerSecond;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "LinkModel[" + bitsPerSecond + "bps," + latencyNanos + "ns+" + jitterNanos + "ns," + lossRate + "]";
+	}
+}
@@ -0,0 +1,25 @@
+package utility.protocol.transport;
+
+import java.io.Closeable;
+import java.net.SocketAddress;
+
+/**
+ * A {@link Transport}'s listener for incoming connections.  Closing a {@code Listener} stops accepting new connections,
+ * but leaves those already accepted open.
+ * @author Rob
+ */
+public interface Listener extends Closeable
+{
+	/**
+	 * @return The address on which connections are accepted (with any ephemeral port resolved).
+	 */
+	SocketAddress getLocalAddress();
+
+	/**
+	 * @return The number of connections accepted.
+	 */
+	long getAccepted();
+
+	@Override
+	void close();
+}
@@ -0,0 +1,387 @@
+package utility.protocol.transport;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import utility.protocol.Appliance;
+import utility.protocol.Protocol;
+import utility.protocol.Protocol.ProtocolException;
+import utility.protocol.ProtocolThreads;
+import utility.protocol.metrics.InstrumentedAppliance;
+
+/**
+ * An in-memory {@link Transport}, which connects {@link Protocol}s within the JVM over simulated links.
+ * <p>
+ * Each direction of a connection is a link which behaves as its {@link LinkModel} describes, so the throughput and
+ * tail latency of a {@link Protocol}'s pipelining and batching can be measured on one machine.  The random jitter and
+ * loss of each link are drawn from a generator seeded from the transport's seed and the order in which connections are
+ * made, so a test which connects and sends in the same order sees the same frames lost, and the same delays, every run.
+ * </p>
+ * <p>
+ * As with every {@link Transport}, ownership of the data transmitted passes to the link, which queues it by reference
+ * (without copying it) until it is delivered.  Each link delivers its frames, one at a time and in order, to the
+ * receiving {@link Protocol}'s RX chain on a thread of its own, as a {@link ByteBuffer} which is only valid for the
+ * duration of the call.
+ * </p>
+ * @author Rob
+ */
+public class LoopbackTransport implements Transport
+{
+	private final LinkModel						model;
+	private final long							seed;
+	private final AtomicLong					links		= new AtomicLong();
+	private final Map<Address,LoopbackListener>	listeners	= new ConcurrentHashMap<>();
+	private final ThreadFactory					threads		= ProtocolThreads.factory ( "LoopbackTransport-" );
+
+	/**
+	 * Constructs a {@code LoopbackTransport} of {@link LinkModel#PERFECT perfect} links.
+	 */
+	public LoopbackTransport()
+	{
+		this ( LinkModel.PERFECT, 0 );
+	}
+
+	/**
+	 * Constructs a {@code LoopbackTransport}.
+	 * @param model The behaviour of every link.
+	 * @param seed The seed of the links' jitter and loss.
+	 */
+	public LoopbackTransport ( LinkModel model, long seed )
+	{
+		if ( model == null )
+			throw new IllegalArgumentException ( "Model may not be null" );
+
+		this.model = model;
+		this.seed  = seed;
+	}
+
+	public LinkModel getModel()
+	{
+		return model;
+	}
+
+	@Override
+	public LoopbackConnection connect ( Protocol protocol, SocketAddress address ) throws IOException
+	{
+		LoopbackListener listener = listeners.get ( address );
+
+		if ( listener == null )
+			throw new ConnectException ( "Connection refused: " + address );
+
+		LoopbackConnection connection = connect ( protocol, listener.protocols.get() );
+
+		listener.accepted.increment();
+
+		return connection;
+	}
+
+	/**
+	 * Connects two {@link Protocol}s directly to each other.
+	 * @param protocol The {@link Protocol} at this end.
+	 * @param peer The {@link Protocol} at the other end.
+	 * @return This end's {@link Connection}.  (The other end's is its {@link LoopbackConnection#getPeer() peer}).
+	 */
+	public LoopbackConnection connect ( Protocol protocol, Protocol peer )
+	{
+		long n = links.getAndAdd ( 2 );
+
+		LoopbackConnection connection = new LoopbackConnection ( protocol, new SimulatedLink ( peer, seed + n ) );
+		LoopbackConnection peerConnection = new LoopbackConnection ( peer, new SimulatedLink ( protocol, seed + n + 1 ) );
+
+		connection.peer = peerConnection;
+		peerConnection.peer = connection;
+
+		connection.start();
+		peerConnection.start();
+
+		return connection;
+	}
+
+	@Override
+	public Listener listen ( SocketAddress address, Supplier<? extends Protocol> protocols ) throws IOException
+	{
+		if ( ! ( address instanceof Address ) )
+			throw new IllegalArgumentException ( "Address must be a LoopbackTransport.Address" );
+
+		LoopbackListener listener = new LoopbackListener ( ( Address ) address, protocols );
+
+		if ( listeners.putIfAbsent ( listener.address, listener ) != null )
+			throw new IOException ( "Address already in use: " + address );
+
+		return listener;
+	}
+
+	/**
+	 * The address of a {@link LoopbackTransport} {@link Listener}: simply a name.
+	 */
+	public static final class Address extends SocketAddress
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final String name;
+
+		public Address ( String name )
+		{
+			if ( name == null )
+				throw new IllegalArgumentException ( "Name may not be null" );
+
+			this.name = name;
+		}
+
+		public String getName()
+		{
+			return name;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return name.hashCode();
+		}
+
+		@Override
+		public boolean equals ( Object obj )
+		{
+			return ( obj instanceof Address ) && name.equals ( ( ( Address ) obj ).name );
+		}
+
+		@Override
+		public String toString()
+		{
+			return "loopback:" + name;
+		}
+	}
+
+	/**
+	 * One end of a {@link LoopbackTransport} connection.  Closing either end closes both.
+	 */
+	public static final class LoopbackConnection implements Connection
+	{
+		private final Protocol			protocol;
+		private final SimulatedLink		link;
+		private LoopbackConnection		peer;
+
+		LoopbackConnection ( Protocol protocol, SimulatedLink link )
+		{
+			this.protocol = protocol;
+			this.link     = link;
+		}
+
+		private void start()
+		{
+			protocol.getTxChain().add ( link );
+			link.thread.start();
+		}
+
+		@Override
+		public Protocol getProtocol()
+		{
+			return protocol;
+		}
+
+		/**
+		 * @return The other end of the connection.
+		 */
+		public LoopbackConnection getPeer()
+		{
+			return peer;
+		}
+
+		/**
+		 * @return The number of frames transmitted from this end.
+		 */
+		public long getSent()
+		{
+			return link.sent.sum();
+		}
+
+		/**
+		 * @return The number of frames transmitted from this end which have been delivered to the other.
+		 */
+		public long getDelivered()
+		{
+			return link.delivered.sum();
+		}
+
+		/**
+		 * @return The number of frames transmitted from this end which were lost.
+		 */
+		public long getLost()
+		{
+			return link.lost.sum();
+		}
+
+		@Override
+		public boolean isClosed()
+		{
+			return link.closed;
+		}
+
+		@Override
+		public void close()
+		{
+			closeLink();
+			peer.closeLink();
+		}
+
+		private void closeLink()
+		{
+			if ( link.closed )
+				return;
+
+			link.closed = true;
+			protocol.getTxChain().removeIf ( appliance -> InstrumentedAppliance.unwrap ( appliance ) == link );
+			link.thread.interrupt();
+		}
+	}
+
+	/**
+	 * One direction of a connection: the transmitter at one end, and the thread delivering its frames to the other.
+	 */
+	private final class SimulatedLink implements Appliance, Runnable
+	{
+		private final Protocol					receiver;
+		private final Random					random;
+		private final ReentrantLock				lock		= new ReentrantLock();
+		private final BlockingQueue<Frame>		frames		= new LinkedBlockingQueue<>();
+		private final LongAdder					sent		= new LongAdder();
+		private final LongAdder					delivered	= new LongAdder();
+		private final LongAdder					lost		= new LongAdder();
+		private final Thread					thread;
+		private long							nextDeparture;
+		private long							lastArrival;
+		private volatile boolean				closed;
+
+		SimulatedLink ( Protocol receiver, long seed )
+		{
+			this.receiver = receiver;
+			this.random   = new Random ( seed );
+			this.thread   = threads.newThread ( this );
+		}
+
+		@Override
+		public Object apply ( Object data ) throws Exception
+		{
+			if ( closed )
+				throw new ProtocolException ( "Link is closed" );
+
+			ByteBuffer buffer;
+
+			if ( data instanceof byte[] )
+				buffer = ByteBuffer.wrap ( ( byte[] ) data );
+			else if ( data instanceof ByteBuffer )
+				buffer = ( ByteBuffer ) data;
+			else
+				throw new ProtocolException ( "Argument must be a byte[] or ByteBuffer" );
+
+			lock.lock();
+
+			try
+			{
+				long now = System.nanoTime();
+				long departure = Math.max ( now, nextDeparture ) + model.serializationNanos ( buffer.remaining() );
+				long jitter = ( model.getJitterNanos() == 0 ) ? 0 : ( long ) ( random.nextDouble() * model.getJitterNanos() );
+				boolean isLost = model.getLossRate() > 0 && random.nextDouble() < model.getLossRate();
+
+				nextDeparture = departure;
+				sent.increment();
+
+				if ( isLost )
+					lost.increment();
+				else
+				{
+					lastArrival = Math.max ( lastArrival, departure + model.getLatencyNanos() + jitter );
+					frames.add ( new Frame ( lastArrival, buffer ) );
+				}
+			}
+			finally
+			{
+				lock.unlock();
+			}
+
+			return null;
+		}
+
+		@Override
+		public void run()
+		{
+			try
+			{
+				while ( !closed )
+				{
+					Frame frame = frames.take();
+					long wait;
+
+					while ( ( wait = frame.arrival - System.nanoTime() ) > 0 && !closed )
+						LockSupport.parkNanos ( wait );
+
+					if ( closed )
+						break;
+
+					receiver.receive ( frame.data );
+					delivered.increment();
+				}
+			}
+			catch ( InterruptedException e )
+			{
+				// Closed.
+			}
+		}
+	}
+
+	private static final class Frame
+	{
+		private final long			arrival;
+		private final ByteBuffer	data;
+
+		Frame ( long arrival, ByteBuffer data )
+		{
+			this.arrival = arrival;
+			this.data    = data;
+		}
+	}
+
+	private final class LoopbackListener implements Listener
+	{
+		private final Address						address;
+		private final Supplier<? extends Protocol>	protocols;
+		private final LongAdder						accepted	= new LongAdder();
+
+		LoopbackListener ( Address address, Supplier<? extends Protocol> protocols )
+		{
+			this.address   = address;
+			this.protocols = protocols;
+		}
+
+		@Override
+		public SocketAddress getLocalAddress()
+		{
+			return address;
+		}
+
+		@Override
+		public long getAccepted()
+		{
+			return accepted.sum();
+		}
+
+		@Override
+		public void close()
+		{
+			listeners.remove ( address, this );
+		}
+	}
+}
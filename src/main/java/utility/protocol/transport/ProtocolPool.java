@@ -0,0 +1,491 @@
+package utility.protocol.transport;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ObjIntConsumer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import utility.protocol.Protocol;
+import utility.protocol.Protocol.ProtocolException;
+import utility.protocol.ProtocolThreads;
+
+/**
+ * A client-side Pool of {@link Connection}s to the same peer, over which many threads' requests are multiplexed.
+ * <p>
+ * Each request is sent, via {@link Protocol#sendRequest(Object)}, on the connection with the fewest outstanding
+ * requests, so each connection's {@link Protocol} must have a {@link utility.protocol.Correlator}.  Requests from any
+ * number of threads share each connection: when the pool has an id assigner (such as
+ * {@link utility.protocol.gmp.MessageCorrelator#setRequestId(Object, int)}) each request is first stamped with the next
+ * id of its connection, so the request streams of different threads never collide on the wire.
+ * </p>
+ * <p>
+ * The pool keeps at least its minimum number of connections, and opens another (up to its maximum) whenever every
+ * connection already has its share of outstanding requests.  A maintenance task evicts connections which have closed,
+ * which fail their health check, or which have been idle longer than the idle timeout (while more than the minimum remain),
+ * and then replaces connections to restore the minimum.  A connection is in use from the moment it is selected until its
+ * request has been sent, and is never evicted as idle while in use.
+ * </p>
+ * @author Rob
+ */
+public class ProtocolPool implements Closeable
+{
+	private static final Logger logger = LogManager.getLogger ( ProtocolPool.class );
+
+	/**
+	 * Opens a new {@link Connection}, whose {@link Protocol} is fully assembled (including its {@link utility.protocol.Correlator}).
+	 */
+	@FunctionalInterface
+	public interface Connector
+	{
+		Connection connect() throws Exception;
+	}
+
+	/**
+	 * Checks the health of a connection, typically by sending it a request which the peer answers cheaply.
+	 */
+	@FunctionalInterface
+	public interface HealthCheck
+	{
+		/**
+		 * @param protocol The {@link Protocol} of the connection.
+		 * @param id The next id of the connection, as the pool's id assigner would stamp a request with, so the check's
+		 * request never collides with the requests already outstanding on the connection.
+		 * @return A stage completed normally if the connection is healthy, or exceptionally if not.
+		 * @throws Exception If the connection is unhealthy.
+		 */
+		CompletionStage<?> check ( Protocol protocol, int id ) throws Exception;
+	}
+
+	private final Connector						connector;
+	private final int							minConnections;
+	private final int							maxConnections;
+	private final List<PooledConnection>		connections		= new CopyOnWriteArrayList<>();
+	private final ReentrantLock					growLock		= new ReentrantLock();
+	private final ScheduledExecutorService		maintenance;
+	private final LongAdder						evictions		= new LongAdder();
+	private volatile int						maxRequestsPerConnection	= 16;
+	private volatile ObjIntConsumer<Object>		idAssigner;
+	private volatile long						idleTimeoutNanos;
+	private volatile HealthCheck				healthCheck;
+	private volatile long						healthCheckTimeoutNanos;
+	private volatile boolean					closed;
+
+	/**
+	 * Constructs a new {@code ProtocolPool}, and opens its minimum number of connections.
+	 * @param connector Opens each connection.
+	 * @param minConnections The number of connections kept open, even when idle.
+	 * @param maxConnections The greatest number of connections.
+	 * @param maintenanceInterval The interval between evictions and health checks.
+	 * @param unit The unit of {@code maintenanceInterval}.
+	 * @throws Exception If the minimum number of connections cannot be opened.
+	 */
+	public ProtocolPool ( Connector connector, int minConnections, int maxConnections, long maintenanceInterval, TimeUnit unit ) throws Exception
+	{
+		if ( minConnections < 0 || maxConnections < 1 || minConnections > maxConnections )
+			throw new IllegalArgumentException ( "Connections must satisfy 0 <= min <= max, and 1 <= max" );
+
+		if ( maintenanceInterval <= 0 )
+			throw new IllegalArgumentException ( "Maintenance Interval must be positive" );
+
+		this.connector      = connector;
+		this.minConnections = minConnections;
+		this.maxConnections = maxConnections;
+
+		try
+		{
+			for ( int i = 0; i < minConnections; ++i )
+				connections.add ( new PooledConnection ( connector.connect() ) );
+		}
+		catch ( Exception e )
+		{
+			for ( PooledConnection connection : connections )
+				connection.connection.close();
+
+			throw e;
+		}
+
+		maintenance = Executors.newSingleThreadScheduledExecutor ( ProtocolThreads.platformFactory ( "ProtocolPool-" ) );
+		maintenance.scheduleWithFixedDelay ( this::maintain, maintenanceInterval, maintenanceInterval, unit );
+	}
+
+	/**
+	 * @param maxRequestsPerConnection The number of outstanding requests on every connection which causes another to be opened.
+	 */
+	public void setMaxRequestsPerConnection ( int maxRequestsPerConnection )
+	{
+		if ( maxRequestsPerConnection < 1 )
+			throw new IllegalArgumentException ( "Max Requests Per Connection must be positive" );
+
+		this.maxRequestsPerConnection = maxRequestsPerConnection;
+	}
+
+	/**
+	 * @param idAssigner Stamps each request with an id unique among its connection's outstanding requests, or {@code null}
+	 * if requests are already uniquely keyed.
+	 */
+	public void setIdAssigner ( ObjIntConsumer<Object> idAssigner )
+	{
+		this.idAssigner = idAssigner;
+	}
+
+	/**
+	 * @param timeout The time after which a connection without outstanding requests is evicted, or zero to never evict idle connections.
+	 * @param unit The unit of {@code timeout}.
+	 */
+	public void setIdleTimeout ( long timeout, TimeUnit unit )
+	{
+		if ( timeout < 0 )
+			throw new IllegalArgumentException ( "Timeout must not be negative" );
+
+		idleTimeoutNanos = unit.toNanos ( timeout );
+	}
+
+	/**
+	 * @param healthCheck The check run on each connection by every maintenance pass, or {@code null} for none.
+	 * @param timeout The time within which the check must complete.
+	 * @param unit The unit of {@code timeout}.
+	 */
+	public void setHealthCheck ( HealthCheck healthCheck, long timeout, TimeUnit unit )
+	{
+		if ( timeout <= 0 )
+			throw new IllegalArgumentException ( "Timeout must be positive" );
+
+		this.healthCheckTimeoutNanos = unit.toNanos ( timeout );
+		this.healthCheck             = healthCheck;
+	}
+
+	/**
+	 * @return The number of open connections.
+	 */
+	public int getConnectionCount()
+	{
+		return connections.size();
+	}
+
+	/**
+	 * @return The number of connections evicted since construction.
+	 */
+	public long getEvictions()
+	{
+		return evictions.sum();
+	}
+
+	/**
+	 * @return The total number of requests awaiting responses, across all connections.
+	 */
+	public int getOutstandingRequests()
+	{
+		int count = 0;
+
+		for ( PooledConnection connection : connections )
+			count += connection.protocol.getOutstandingRequests();
+
+		return count;
+	}
+
+	/**
+	 * Sends a request on the least loaded connection.
+	 * @param request The request.
+	 * @return A {@link CompletableFuture} completed with the correlated response (see {@link Protocol#sendRequest(Object)}).
+	 * @throws Exception If the pool is closed, or has no connection and cannot open one.
+	 */
+	public CompletableFuture<Object> sendRequest ( Object request ) throws Exception
+	{
+		PooledConnection connection = select();
+
+		try
+		{
+			ObjIntConsumer<Object> idAssigner = this.idAssigner;
+
+			if ( idAssigner != null )
+				idAssigner.accept ( request, connection.nextId.getAndIncrement() );
+
+			return connection.protocol.sendRequest ( request );
+		}
+		finally
+		{
+			connection.release();
+		}
+	}
+
+	/**
+	 * Sends data, which expects no response, on the least loaded connection.
+	 * @param data The data.
+	 * @throws Exception If the pool is closed, has no connection and cannot open one, or the TX chain fails.
+	 */
+	public void sendAsync ( Object data ) throws Exception
+	{
+		PooledConnection connection = select();
+
+		try
+		{
+			connection.protocol.sendAsync ( data );
+		}
+		finally
+		{
+			connection.release();
+		}
+	}
+
+	/**
+	 * @return The open connection with the fewest outstanding requests (opening another if all are fully loaded), marked
+	 * in use.  The caller must {@link PooledConnection#release() release} it.
+	 */
+	private PooledConnection select() throws Exception
+	{
+		PooledConnection connection;
+
+		// The chosen connection may have been evicted as idle meanwhile.
+		do
+			connection = choose();
+		while ( !connection.acquire() );
+
+		return connection;
+	}
+
+	private PooledConnection choose() throws Exception
+	{
+		if ( closed )
+			throw new ProtocolException ( "Pool is closed" );
+
+		PooledConnection best = leastLoaded();
+
+		if ( best != null && ( best.protocol.getOutstandingRequests() < maxRequestsPerConnection || connections.size() >= maxConnections ) )
+			return best;
+
+		growLock.lock();
+
+		try
+		{
+			// Another thread may have grown the pool while this one waited.
+			best = leastLoaded();
+
+			if ( best != null && best.protocol.getOutstandingRequests() < maxRequestsPerConnection )
+				return best;
+
+			// Closed and retired connections no longer count towards the maximum.
+			for ( PooledConnection connection : connections )
+				if ( connection.connection.isClosed() )
+					evict ( connection, "closed" );
+
+			if ( best != null && liveConnections() >= maxConnections )
+				return best;
+
+			try
+			{
+				PooledConnection connection = new PooledConnection ( connector.connect() );
+
+				connections.add ( connection );
+				return connection;
+			}
+			catch ( Exception e )
+			{
+				if ( best == null )
+					throw e;
+
+				logger.warn ( "Failed to grow the pool", e );
+				return best;
+			}
+		}
+		finally
+		{
+			growLock.unlock();
+		}
+	}
+
+	private int liveConnections()
+	{
+		int count = 0;
+
+		for ( PooledConnection connection : connections )
+			if ( !connection.connection.isClosed() && !connection.isRetired() )
+				++count;
+
+		return count;
+	}
+
+	private PooledConnection leastLoaded()
+	{
+		PooledConnection best = null;
+		int bestCount = Integer.MAX_VALUE;
+
+		for ( PooledConnection connection : connections )
+		{
+			if ( connection.connection.isClosed() || connection.isRetired() )
+				continue;
+
+			int count = connection.protocol.getOutstandingRequests();
+
+			if ( count < bestCount )
+			{
+				best      = connection;
+				bestCount = count;
+			}
+		}
+
+		return best;
+	}
+
+	/**
+	 * Evicts closed, unhealthy and idle connections, then restores the minimum.  (Runs on the maintenance thread).
+	 */
+	private void maintain()
+	{
+		try
+		{
+			List<PooledConnection> checks = new ArrayList<>();
+			List<CompletableFuture<?>> results = new ArrayList<>();
+			HealthCheck healthCheck = this.healthCheck;
+			long idleTimeout = idleTimeoutNanos;
+			long now = System.nanoTime();
+
+			for ( PooledConnection connection : connections )
+			{
+				if ( connection.connection.isClosed() )
+					evict ( connection, "closed" );
+				else if ( idleTimeout > 0 && connections.size() > minConnections && connection.protocol.getOutstandingRequests() == 0 && now - connection.lastUsed > idleTimeout && connection.retire() )
+					evict ( connection, "idle" );
+				else if ( healthCheck != null )
+				{
+					CompletableFuture<?> result;
+
+					try
+					{
+						result = healthCheck.check ( connection.protocol, connection.nextId.getAndIncrement() ).toCompletableFuture();
+					}
+					catch ( Exception e )
+					{
+						result = new CompletableFuture<>();
+						result.completeExceptionally ( e );
+					}
+
+					checks.add ( connection );
+					results.add ( result );
+				}
+			}
+
+			long deadline = System.nanoTime() + healthCheckTimeoutNanos;
+
+			for ( int i = 0; i < checks.size(); ++i )
+			{
+				try
+				{
+					results.get ( i ).get ( Math.max ( 0, deadline - System.nanoTime() ), TimeUnit.NANOSECONDS );
+				}
+				catch ( Exception e )
+				{
+					evict ( checks.get ( i ), "unhealthy" );
+				}
+			}
+
+			growLock.lock();
+
+			try
+			{
+				while ( !closed && connections.size() < minConnections )
+					connections.add ( new PooledConnection ( connector.connect() ) );
+			}
+			finally
+			{
+				growLock.unlock();
+			}
+		}
+		catch ( Exception e )
+		{
+			logger.warn ( "Failed to restore the pool's minimum connections", e );
+		}
+	}
+
+	private void evict ( PooledConnection connection, String reason )
+	{
+		if ( connections.remove ( connection ) )
+		{
+			evictions.increment();
+			logger.debug ( "Evicting {} connection", reason );
+			connection.connection.close();
+		}
+	}
+
+	/**
+	 * Closes all of the pool's connections.
+	 */
+	@Override
+	public void close()
+	{
+		closed = true;
+		maintenance.shutdownNow();
+
+		for ( PooledConnection connection : connections )
+			connection.connection.close();
+
+		connections.clear();
+	}
+
+	private static final class PooledConnection
+	{
+		private final Connection	connection;
+		private final Protocol		protocol;
+		private final AtomicInteger	nextId		= new AtomicInteger();
+		private final AtomicInteger	users		= new AtomicInteger();
+		private volatile long		lastUsed	= System.nanoTime();
+
+		PooledConnection ( Connection connection )
+		{
+			this.connection = connection;
+			this.protocol   = connection.getProtocol();
+		}
+
+		/**
+		 * Marks the connection in use.
+		 * @return {@code false} if it has been retired.
+		 */
+		boolean acquire()
+		{
+			for ( ;; )
+			{
+				int count = users.get();
+
+				if ( count < 0 )
+					return false;
+
+				if ( users.compareAndSet ( count, count + 1 ) )
+				{
+					lastUsed = System.nanoTime();
+					return true;
+				}
+			}
+		}
+
+		void release()
+		{
+			lastUsed = System.nanoTime();
+			users.decrementAndGet();
+		}
+
+		/**
+		 * Retires the connection, so it may be evicted, if it is not in use.
+		 * @return {@code true} if it was retired.
+		 */
+		boolean retire()
+		{
+			return users.compareAndSet ( 0, -1 );
+		}
+
+		boolean isRetired()
+		{
+			return users.get() < 0;
+		}
+	}
+}
@@ -0,0 +1,194 @@
+package utility.protocol.transport;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.channels.Channel;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import utility.protocol.Protocol;
+import utility.protocol.ProtocolThreads;
+import utility.protocol.nio.ProtocolReactor;
+
+/**
+ * A {@link Transport} over stream sockets, driven by a {@link ProtocolReactor}.
+ * <p>
+ * Connecting blocks the caller until the connection is made; thereafter all I/O is performed by the reactor's Event
+ * Loops (see {@link utility.protocol.nio.ChannelLink}).  Each {@link Listener} accepts connections on a thread of its own.
+ * </p>
+ * @author Rob
+ */
+public abstract class SocketTransport implements Transport
+{
+	private static final Logger logger = LogManager.getLogger ( SocketTransport.class );
+
+	private final ProtocolReactor reactor;
+
+	/**
+	 * @param reactor The {@link ProtocolReactor} which drives the connections.
+	 */
+	protected SocketTransport ( ProtocolReactor reactor )
+	{
+		if ( reactor == null )
+			throw new IllegalArgumentException ( "Reactor may not be null" );
+
+		this.reactor = reactor;
+	}
+
+	public ProtocolReactor getReactor()
+	{
+		return reactor;
+	}
+
+	/**
+	 * @return A new, unconnected, blocking {@link SocketChannel} of this transport's protocol family.
+	 * @throws IOException If the Channel cannot be opened.
+	 */
+	protected abstract SocketChannel openChannel() throws IOException;
+
+	/**
+	 * @return A new, unbound, blocking {@link ServerSocketChannel} of this transport's protocol family.
+	 * @throws IOException If the Channel cannot be opened.
+	 */
+	protected abstract ServerSocketChannel openServerChannel() throws IOException;
+
+	/**
+	 * Configures a connected Channel, before it is handed to the reactor.  The default implementation does nothing.
+	 * @param channel The Channel.
+	 * @throws IOException If the Channel cannot be configured.
+	 */
+	protected void configure ( SocketChannel channel ) throws IOException
+	{}
+
+	/**
+	 * Releases an address once its {@link Listener} is closed.  The default implementation does nothing.
+	 * @param address The address.
+	 */
+	protected void unbound ( SocketAddress address )
+	{}
+
+	@Override
+	public Connection connect ( Protocol protocol, SocketAddress address ) throws IOException
+	{
+		SocketChannel channel = openChannel();
+
+		try
+		{
+			channel.connect ( address );
+			configure ( channel );
+		}
+		catch ( IOException | RuntimeException e )
+		{
+			channel.close();
+			throw e;
+		}
+
+		return reactor.register ( protocol, channel );
+	}
+
+	@Override
+	public Listener listen ( SocketAddress address, Supplier<? extends Protocol> protocols ) throws IOException
+	{
+		ServerSocketChannel server = openServerChannel();
+
+		try
+		{
+			server.bind ( address );
+		}
+		catch ( IOException | RuntimeException e )
+		{
+			server.close();
+			throw e;
+		}
+
+		SocketListener listener = new SocketListener ( server, protocols );
+
+		ProtocolThreads.factory ( getClass().getSimpleName() + "-Listener-" ).newThread ( listener ).start();
+
+		return listener;
+	}
+
+	private final class SocketListener implements Listener, Runnable
+	{
+		private final ServerSocketChannel			server;
+		private final SocketAddress					localAddress;
+		private final Supplier<? extends Protocol>	protocols;
+		private final LongAdder						accepted	= new LongAdder();
+
+		SocketListener ( ServerSocketChannel server, Supplier<? extends Protocol> protocols ) throws IOException
+		{
+			this.server       = server;
+			this.localAddress = server.getLocalAddress();
+			this.protocols    = protocols;
+		}
+
+		@Override
+		public void run()
+		{
+			while ( server.isOpen() )
+			{
+				SocketChannel channel = null;
+
+				try
+				{
+					channel = server.accept();
+					configure ( channel );
+					reactor.register ( protocols.get(), channel );
+					accepted.increment();
+				}
+				catch ( ClosedChannelException e )
+				{
+					break;
+				}
+				catch ( IOException | RuntimeException e )
+				{
+					logger.error ( "Failed to accept a connection on " + localAddress, e );
+					closeQuietly ( channel );
+				}
+			}
+		}
+
+		@Override
+		public SocketAddress getLocalAddress()
+		{
+			return localAddress;
+		}
+
+		@Override
+		public long getAccepted()
+		{
+			return accepted.sum();
+		}
+
+		@Override
+		public void close()
+		{
+			if ( !server.isOpen() )
+				return;
+
+			closeQuietly ( server );
+			unbound ( localAddress );
+		}
+	}
+
+	private static void closeQuietly ( Channel channel )
+	{
+		if ( channel == null )
+			return;
+
+		try
+		{
+			channel.close();
+		}
+		catch ( IOException e )
+		{
+			// Nothing more can be done.
+		}
+	}
+}
@@ -0,0 +1,45 @@
+package utility.protocol.transport;
+
+import java.io.IOException;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+import utility.protocol.nio.ProtocolReactor;
+
+/**
+ * A {@link Transport} over TCP, addressed by {@link java.net.InetSocketAddress}es.
+ * <p>
+ * Nagle's algorithm is disabled on every connection, since a {@link utility.protocol.Protocol} which wants its
+ * writes coalesced batches them itself (see {@link utility.protocol.nio.ChannelLink#setBatching(long, java.util.concurrent.TimeUnit, int)}).
+ * </p>
+ * @author Rob
+ */
+public class TcpTransport extends SocketTransport
+{
+	/**
+	 * @param reactor The {@link ProtocolReactor} which drives the connections.
+	 */
+	public TcpTransport ( ProtocolReactor reactor )
+	{
+		super ( reactor );
+	}
+
+	@Override
+	protected SocketChannel openChannel() throws IOException
+	{
+		return SocketChannel.open();
+	}
+
+	@Override
+	protected ServerSocketChannel openServerChannel() throws IOException
+	{
+		return ServerSocketChannel.open();
+	}
+
+	@Override
+	protected void configure ( SocketChannel channel ) throws IOException
+	{
+		channel.setOption ( StandardSocketOptions.TCP_NODELAY, true );
+	}
+}
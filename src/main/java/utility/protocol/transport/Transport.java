@@ -0,0 +1,47 @@
+package utility.protocol.transport;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.util.function.Supplier;
+
+import utility.protocol.Protocol;
+
+/**
+ * A means of connecting {@link Protocol}s to their peers.
+ * <p>
+ * A {@code Transport} binds a {@link Protocol} to a link: it appends the link's transmitter to the end of the
+ * {@code Protocol}'s TX chain, and hands the data received from the link to the {@code Protocol}'s RX chain (via
+ * {@link Protocol#receive(Object)}).  Any framing belongs in the chains, so the chains should be fully assembled before
+ * the {@code Protocol} is connected.  The transmitter accepts {@code byte[]} or {@link java.nio.ByteBuffer} data.
+ * </p>
+ * <p>
+ * Ownership of the data transmitted passes to the transport: the transmitter may queue it, by reference, until it has
+ * been sent, and may then return a pooled {@code ByteBuffer} to its pool.  The caller must not modify, reuse or release
+ * the data once it has been handed to the transmitter.
+ * </p>
+ * <p>
+ * The addresses understood depend on the implementation: {@link TcpTransport} takes {@link java.net.InetSocketAddress}es,
+ * {@link UnixDomainTransport} takes Unix Domain Socket addresses, and {@link LoopbackTransport} takes {@link LoopbackTransport.Address}es.
+ * </p>
+ * @author Rob
+ */
+public interface Transport
+{
+	/**
+	 * Connects a {@link Protocol} to a listening peer.
+	 * @param protocol The {@link Protocol}.
+	 * @param address The address of the peer.
+	 * @return The new {@link Connection}.
+	 * @throws IOException If the connection cannot be made.
+	 */
+	Connection connect ( Protocol protocol, SocketAddress address ) throws IOException;
+
+	/**
+	 * Listens for connections, binding a new {@link Protocol} to each connection accepted.
+	 * @param address The address on which to listen.
+	 * @param protocols Supplies the {@link Protocol} for each accepted connection, with its chains assembled.
+	 * @return The new {@link Listener}.
+	 * @throws IOException If the address cannot be bound.
+	 */
+	Listener listen ( SocketAddress address, Supplier<? extends Protocol> protocols ) throws IOException;
+}
@@ -0,0 +1,162 @@
+package utility.protocol.transport;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import utility.protocol.nio.ProtocolReactor;
+
+/**
+ * A {@link Transport} over Unix Domain Sockets, addressed by {@link #address(Path) socket file}.
+ * <p>
+ * Unix Domain Socket Channels were added in Java 16, and this library is built for Java 8, so that API is reached
+ * reflectively, once, when this class is initialized; on earlier JVMs {@link #isAvailable()} returns {@code false} and
+ * the constructor throws an {@link UnsupportedOperationException}.  A {@link Listener}'s socket file is deleted when it is closed.
+ * </p>
+ * @author Rob
+ */
+public class UnixDomainTransport extends SocketTransport
+{
+	private static final ProtocolFamily	UNIX;
+	private static final Method			OPEN_CHANNEL;
+	private static final Method			OPEN_SERVER_CHANNEL;
+	private static final Method			ADDRESS_OF;
+	private static final Method			GET_PATH;
+
+	static
+	{
+		ProtocolFamily unix = null;
+		Method openChannel = null, openServerChannel = null, addressOf = null, getPath = null;
+
+		try
+		{
+			Class<?> address  = Class.forName ( "java.net.UnixDomainSocketAddress" );
+
+			unix              = StandardProtocolFamily.valueOf ( "UNIX" );
+			openChannel       = SocketChannel.class.getMethod ( "open", ProtocolFamily.class );
+			openServerChannel = ServerSocketChannel.class.getMethod ( "open", ProtocolFamily.class );
+			addressOf         = address.getMethod ( "of", Path.class );
+			getPath           = address.getMethod ( "getPath" );
+		}
+		catch ( ReflectiveOperationException | RuntimeException e )
+		{
+			unix = null;
+		}
+
+		UNIX                = unix;
+		OPEN_CHANNEL        = openChannel;
+		OPEN_SERVER_CHANNEL = openServerChannel;
+		ADDRESS_OF          = addressOf;
+		GET_PATH            = getPath;
+	}
+
+	/**
+	 * @return {@code true} if the JVM provides Unix Domain Socket Channels.
+	 */
+	public static boolean isAvailable()
+	{
+		return UNIX != null;
+	}
+
+	/**
+	 * @param path The path of the socket file.
+	 * @return The address of the socket.
+	 * @throws UnsupportedOperationException If Unix Domain Sockets are not available.
+	 */
+	public static SocketAddress address ( Path path )
+	{
+		requireAvailable();
+
+		return ( SocketAddress ) invoke ( ADDRESS_OF, null, path );
+	}
+
+	/**
+	 * @param reactor The {@link ProtocolReactor} which drives the connections.
+	 * @throws UnsupportedOperationException If Unix Domain Sockets are not available.
+	 */
+	public UnixDomainTransport ( ProtocolReactor reactor )
+	{
+		super ( reactor );
+
+		requireAvailable();
+	}
+
+	@Override
+	protected SocketChannel openChannel() throws IOException
+	{
+		return ( SocketChannel ) invokeIO ( OPEN_CHANNEL, UNIX );
+	}
+
+	@Override
+	protected ServerSocketChannel openServerChannel() throws IOException
+	{
+		return ( ServerSocketChannel ) invokeIO ( OPEN_SERVER_CHANNEL, UNIX );
+	}
+
+	@Override
+	protected void unbound ( SocketAddress address )
+	{
+		try
+		{
+			Files.deleteIfExists ( ( Path ) invoke ( GET_PATH, address ) );
+		}
+		catch ( IOException e )
+		{
+			// The file is left behind.
+		}
+	}
+
+	private static void requireAvailable()
+	{
+		if ( !isAvailable() )
+			throw new UnsupportedOperationException ( "Unix Domain Sockets require Java 16 or later" );
+	}
+
+	private static Object invoke ( Method method, Object target, Object... args )
+	{
+		try
+		{
+			return method.invoke ( target, args );
+		}
+		catch ( IllegalAccessException e )
+		{
+			throw new IllegalStateException ( e );
+		}
+		catch ( InvocationTargetException e )
+		{
+			if ( e.getCause() instanceof RuntimeException )
+				throw ( RuntimeException ) e.getCause();
+
+			throw new IllegalStateException ( e.getCause() );
+		}
+	}
+
+	private static Object invokeIO ( Method method, Object arg ) throws IOException
+	{
+		try
+		{
+			return method.invoke ( null, arg );
+		}
+		catch ( IllegalAccessException e )
+		{
+			throw new IllegalStateException ( e );
+		}
+		catch ( InvocationTargetException e )
+		{
+			if ( e.getCause() instanceof IOException )
+				throw ( IOException ) e.getCause();
+
+			if ( e.getCause() instanceof RuntimeException )
+				throw ( RuntimeException ) e.getCause();
+
+			throw new IllegalStateException ( e.getCause() );
+		}
+	}
+}
@@ -5,13 +5,24 @@ import java.util.Map;
 
 /**
  * A Class representing a State Machine Triggering Event.
+ * <p>
+ * An {@code Event} is identified by its interned {@link EventType}, so {@code Event}s are compared, and compiled
+ * {@link StateModel}s find their {@link Reaction}s, by the type's identity and id rather than by name.  An {@code Event}
+ * may carry a single typed payload, and a {@code Map} of {@link #data() data} which is only allocated when it is used.
+ * </p>
  * @author Rob Duff
  *
  */
 public class Event
 {
+    protected final EventType type;
     protected final String name;
-    protected Map<Object,Object> data = new HashMap<>();
+    private final Object payload;
+    
+    /**
+     * A {@code Map} of user defined data, or {@code null} until it is first {@link #data() used}.
+     */
+    protected Map<Object,Object> data;
     
     /**
      * Construct a new {@code Event}
@@ -19,7 +30,7 @@ public class Event
      */
     public Event ( String name )
     {
-        this ( name, null );
+        this ( EventType.of ( name ), null );
     }
     
     /**
@@ -29,23 +40,90 @@ public class Event
      */
     public Event ( String name, Map<Object,Object> data )
     {
-        if ( name == null || name.isEmpty() )
-            throw new IllegalArgumentException ( "Event Name must not be null or blank." );
+        this ( EventType.of ( name ), null );
         
-        this.name = name;
+        if ( data != null && !data.isEmpty() )
+            data().putAll ( data );
+    }
+    
+    /**
+     * Construct a new {@code Event}
+     * @param type The {@link EventType} of the new {@code Event}.
+     */
+    public Event ( EventType type )
+    {
+        this ( type, null );
+    }
+    
+    /**
+     * Construct a new {@code Event}
+     * @param type The {@link EventType} of the new {@code Event}.
+     * @param payload The payload of the new {@code Event}.  (May be {@code null}).
+     */
+    public Event ( EventType type, Object payload )
+    {
+        if ( type == null )
+            throw new IllegalArgumentException ( "Event Type must not be null." );
         
-        if ( data != null )
-            this.data.putAll ( data );
+        this.type = type;
+        this.name = type.name();
+        this.payload = payload;
+    }
+    
+    /**
+     * @return The {@link EventType} of this {@code Event}.
+     */
+    public final EventType type()
+    {
+        return type;
+    }
+    
+    /**
+     * @return The payload of this {@code Event}.  (May be {@code null}).
+     */
+    public final Object payload()
+    {
+        return payload;
+    }
+    
+    /**
+     * @param payloadClass The class of the payload.
+     * @return The payload of this {@code Event}, cast to {@code payloadClass}.  (May be {@code null}).
+     * @throws ClassCastException If the payload is not an instance of {@code payloadClass}.
+     */
+    public final <T> T payload ( Class<T> payloadClass )
+    {
+        return payloadClass.cast ( payload );
     }
     
     /**
-     * @return A {@code Map} of user defined data attached to this {@code Event}.
+     * @return A {@code Map} of user defined data attached to this {@code Event}, which is allocated on first use.
+     * (The {@code Event} must not be shared between threads until its data has been attached).
      */
     public final Map<Object,Object> data()
     {
+        if ( data == null )
+            data = new HashMap<>();
+        
         return data;
     }
     
+    /**
+     * @return {@code true} if any user defined data is attached to this {@code Event}, without allocating its {@link #data() data} {@code Map}.
+     */
+    public final boolean hasData()
+    {
+        return data != null && !data.isEmpty();
+    }
+    
+    /**
+     * @return The id of this {@code Event}'s {@link EventType}, which compiled {@link StateModel}s map to their own event ordinals.
+     */
+    final int typeId()
+    {
+        return type.id();
+    }
+    
     @Override
     public String toString()
     {
@@ -55,12 +133,7 @@ public class Event
     @Override
     public int hashCode()
     {
-        final int prime = 31;
-        int result = 1;
-        
-        result = prime * result + ( ( name == null ) ? 0 : name.hashCode() );
-        
-        return result;
+        return type.id();
     }
 
     @Override
@@ -78,36 +151,26 @@ public class Event
         if ( getClass () != obj.getClass () )
             return false;
         
-        Event other = ( Event ) obj;
-        
-        if ( name == null )
-        {
-            if ( other.name != null )
-                return false;
-        }
-        else if ( !name.equals ( other.name ) )
-            return false;
-        
-        return true;
+        return type == ( ( Event ) obj ).type;
     }
     
     /**
      * Predefined Event generated upon State Machine Initialization. (For Internal Use Only!)
      */
-    static final Event INITIALIZE_EVENT  = new Event ( "STATE_MODEL_INITIALIZATION_EVENT" );
+    static final Event INITIALIZE_EVENT  = new Event ( EventType.of ( "STATE_MODEL_INITIALIZATION_EVENT" ) );
     
     /**
      * Predefined Event generated upon State Machine Initialization. (For Internal Use Only!)
      */
-    static final Event TERMINATE_EVENT   = new Event ( "STATE_MODEL_TERMINATION_EVENT" );
+    static final Event TERMINATE_EVENT   = new Event ( EventType.of ( "STATE_MODEL_TERMINATION_EVENT" ) );
     
     /**
      * Predefined Event generated upon a {@link Choice} {@link State}'s {@link Predicate} returning {@code true}. (For Internal Use Only!)
      */
-    static final Event TRUE_EVENT        = new Event ( "STATE_MODEL_CHOICE_PREDICATE_TRUE_EVENT" );
+    static final Event TRUE_EVENT        = new Event ( EventType.of ( "STATE_MODEL_CHOICE_PREDICATE_TRUE_EVENT" ) );
     
     /**
      * Predefined Event generated upon a {@link Choice} {@link State}'s {@link Predicate} returning {@code false}. (For Internal Use Only!)
      */
-    static final Event FALSE_EVENT       = new Event ( "STATE_MODEL_CHOICE_PREDICATE_FALSE_EVENT" );
+    static final Event FALSE_EVENT       = new Event ( EventType.of ( "STATE_MODEL_CHOICE_PREDICATE_FALSE_EVENT" ) );
 }
@@ -0,0 +1,110 @@
+package utility.state;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The interned type of an {@link Event}: one instance per name.
+ * <p>
+ * Each {@code EventType} is given a small integer id, in the order in which the types are first interned, which indexes
+ * the transition tables of compiled {@link StateModel}s.  Because types are interned, they are compared by identity.
+ * Hold the {@code EventType}s of frequently sent {@link Event}s in constants, so that creating such an {@link Event}
+ * involves no lookup by name at all.
+ * </p>
+ *
+ * @author Rob Duff
+ */
+public final class EventType
+{
+    private static final Map<String,EventType> types = new ConcurrentHashMap<>();
+    private static final List<EventType> byId = new ArrayList<>();
+
+    private final String name;
+    private final int id;
+
+    private EventType ( String name, int id )
+    {
+        this.name = name;
+        this.id = id;
+    }
+
+    /**
+     * @param name The name of the {@code EventType}.
+     * @return The {@code EventType} of the name, interning a new one if there is none.
+     */
+    public static EventType of ( String name )
+    {
+        if ( name == null || name.isEmpty() )
+            throw new IllegalArgumentException ( "Event Name must not be null or blank." );
+
+        EventType type = types.get ( name );
+
+        if ( type != null )
+            return type;
+
+        synchronized ( byId )
+        {
+            type = types.get ( name );
+
+            if ( type == null )
+            {
+                type = new EventType ( name, byId.size() );
+                byId.add ( type );
+                types.put ( name, type );
+            }
+
+            return type;
+        }
+    }
+
+    /**
+     * @param id The id of an {@code EventType}.
+     * @return The {@code EventType} of the id.
+     * @throws IllegalArgumentException If no {@code EventType} has the id.
+     */
+    public static EventType of ( int id )
+    {
+        synchronized ( byId )
+        {
+            if ( id < 0 || id >= byId.size() )
+                throw new IllegalArgumentException ( "No EventType has the id " + id );
+
+            return byId.get ( id );
+        }
+    }
+
+    /**
+     * @return The number of {@code EventType}s interned (which is one more than the greatest id).
+     */
+    public static int count()
+    {
+        synchronized ( byId )
+        {
+            return byId.size();
+        }
+    }
+
+    /**
+     * @return The name of the {@code EventType}.
+     */
+    public String name()
+    {
+        return name;
+    }
+
+    /**
+     * @return The id of the {@code EventType}.
+     */
+    public int id()
+    {
+        return id;
+    }
+
+    @Override
+    public String toString()
+    {
+        return name;
+    }
+}
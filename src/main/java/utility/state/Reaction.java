@@ -1,13 +1,11 @@
 package utility.state;
 
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.function.Function;
 import java.util.function.Predicate;
 
-import org.apache.logging.log4j.LogManager;
-import org.apache.logging.log4j.Logger;
-
 
 /**
  * Class representing a State reaction to an Event.
@@ -16,8 +14,6 @@ import org.apache.logging.log4j.Logger;
  */
 public class Reaction
 {
-    public static Logger logger = LogManager.getLogger ( Reaction.class );
-    
     protected State destination;
     protected Predicate<Event> guard;
     protected Function<Event,List<Event>> action;
@@ -132,7 +128,6 @@ public class Reaction
         if ( guard == null )
             return true;
         
-        logger.debug ( "Reaction Checking Guard Condition" );
         return guard.test ( event );
     }
     
@@ -145,20 +140,31 @@ public class Reaction
     {
         if ( action != null )
         {
-            logger.debug ( "Reaction Taking Action" );
             List<Event> newEvents = action.apply ( event );
         
             if ( newEvents != null )
-            {
-                logger.debug ( "Reaction Returning New Events [ " + newEvents.toString () + " ]" );
                 return newEvents;
-            }
         }
         
-        logger.debug ( "Reaction Returning No Events" );
         return Collections.emptyList();
     }
     
+    /**
+     * Reacts to a triggering {@link Event}, adding the newly created {@link Event}s to a collection rather than returning a List.
+     * @param event The {@link Event} triggering this {@code Reaction}.
+     * @param newEvents The collection to which to add the {@link Event}s generated by the {@code Reaction}.
+     */
+    final void react ( Event event, Collection<? super Event> newEvents )
+    {
+        if ( action != null )
+        {
+            List<Event> actionEvents = action.apply ( event );
+            
+            if ( actionEvents != null )
+                newEvents.addAll ( actionEvents );
+        }
+    }
+    
     /**
      * A statically defined {@code Reaction} which unconditionally transitions to the Terminated State. (For Internal Use Only!)
      */
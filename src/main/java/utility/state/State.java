@@ -2,14 +2,13 @@ package utility.state;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
 
-import org.apache.logging.log4j.LogManager;
-import org.apache.logging.log4j.Logger;
-
 /**
  * Class representing a {@code State} in a {@link StateMachine}.
  * @author Rob Duff 
@@ -17,13 +16,14 @@ import org.apache.logging.log4j.Logger;
  */
 public class State
 {
-    private static Logger logger = LogManager.getLogger ( State.class );
-    
     protected final String name;
     protected Function<Event,List<Event>> entry;
     protected Function<Event,List<Event>> exit;
     protected Map<Event,Reaction> reactions = new HashMap<Event,Reaction>();
     protected List<StateModel> subModels;
+    private int[] eventOrdinals;
+    private Reaction[] table;
+    private Class<?>[] types;
     
     /**
      * Construct a new {@code State}.
@@ -138,29 +138,34 @@ public class State
      */
     public final List<Event> enter ( Event event )
     {
-        logger.debug ( "State " + name + ": Entering State per Event " + event );
-        
         List<Event> newEvents = new ArrayList<Event>();
         
-        for ( StateModel model : subModels )
-        {
-            logger.debug ( "State " + name + ": Entering SubModel" );
-            newEvents.addAll ( model.enter ( event ) );
-        }
+        enter ( event, newEvents, StateMachineListener.NONE );
+        return newEvents;
+    }
+    
+    /**
+     * Enters the {@code State}, adding the newly created {@link Event}s to a collection rather than allocating a List.
+     * @param event The {@link Event} triggering the {@code Reaction}.
+     * @param newEvents The collection to which to add the {@link Event}s generated by entering this {@code State}.
+     * @param listener The {@link StateMachineListener} of the top-level {@link StateModel}.
+     */
+    final void enter ( Event event, Collection<? super Event> newEvents, StateMachineListener listener )
+    {
+        if ( StateMachineListener.ENABLED )
+            listener.onEnter ( this, event );
+        
+        for ( int i = 0; i < subModels.size(); ++i )
+            subModels.get ( i ).enter ( event, newEvents, listener );
      
         if ( entry != null )
         {        
-            logger.debug ( "State " + name + ": Calling Entry Action" );
-            
             List<Event> actionEvents = entry.apply ( event );
             
             if ( actionEvents != null )
                 newEvents.addAll ( actionEvents );
         }
-
-        logger.debug ( "State " + name + ": Enter Returning New Events [ " + newEvents.toString () + " ]" );
-        return newEvents;
-    };
+    }
     
     /**
      * Exits the {@code State}.
@@ -169,29 +174,34 @@ public class State
      */
     public final List<Event> exit ( Event event )
     {
-        logger.debug ( "State " + name + ": Exiting State per Event " + event );
-        
         List<Event> newEvents = new ArrayList<Event>();
         
-        for ( StateModel model : subModels )
-        {
-            logger.debug ( "State " + name + ": Exiting SubModel" );
-            newEvents.addAll ( model.exit ( event ) );
-        }
+        exit ( event, newEvents, StateMachineListener.NONE );
+        return newEvents;
+    }
+    
+    /**
+     * Exits the {@code State}, adding the newly created {@link Event}s to a collection rather than allocating a List.
+     * @param event The {@link Event} triggering the {@code Reaction}.
+     * @param newEvents The collection to which to add the {@link Event}s generated by exiting this {@code State}.
+     * @param listener The {@link StateMachineListener} of the top-level {@link StateModel}.
+     */
+    final void exit ( Event event, Collection<? super Event> newEvents, StateMachineListener listener )
+    {
+        if ( StateMachineListener.ENABLED )
+            listener.onExit ( this, event );
+        
+        for ( int i = 0; i < subModels.size(); ++i )
+            subModels.get ( i ).exit ( event, newEvents, listener );
      
         if ( exit != null )
         {        
-            logger.debug ( "State " + name + ": Calling Exit Action" );
-            
             List<Event> actionEvents = exit.apply ( event );
             
             if ( actionEvents != null )
                 newEvents.addAll ( actionEvents );
         }
-
-        logger.debug ( "State " + name + ": Exit Returning New Events [ " + newEvents.toString() + " ]" );
-        return newEvents;
-    };
+    }
     
     /**
      * Send an Event to a {@code State}'s sub {@code State}s.
@@ -200,18 +210,91 @@ public class State
      */
     public final List<Event> react ( Event event )
     {
-        logger.debug ( "State " + name + ": Reacting per Event " + event );
-        
         List<Event> newEvents = new ArrayList<>();
         
-        for ( StateModel model : subModels )
+        react ( event, newEvents, StateMachineListener.NONE );
+        return newEvents;
+    }
+    
+    /**
+     * Send an Event to a {@code State}'s sub {@code State}s, adding the newly created {@link Event}s to a collection rather than allocating a List.
+     * @param event The {@link Event} triggering the {@code Reaction}.
+     * @param newEvents The collection to which to add the {@link Event}s generated by reacting to the triggering {@code Event}.
+     * @param listener The {@link StateMachineListener} of the top-level {@link StateModel}.
+     */
+    final void react ( Event event, Collection<? super Event> newEvents, StateMachineListener listener )
+    {
+        for ( int i = 0; i < subModels.size(); ++i )
+            subModels.get ( i ).react ( event, newEvents, listener );
+    }
+    
+    /**
+     * @param event A triggering {@link Event}.
+     * @return The {@link Reaction} of this {@code State} to the {@link Event}, or {@code null} if it has none.  Once the
+     * {@code State} is {@link #compile(int[], int) compiled}, this is an array index by the {@link Event}'s ordinal, rather than a hash lookup.
+     * (As {@link Event}s of the same name but different classes are not equal, an {@link Event} whose class differs from that of
+     * the key in its slot falls back to the hash lookup).
+     */
+    final Reaction reaction ( Event event )
+    {
+        Reaction[] table = this.table;
+        
+        if ( table == null )
+            return reactions.get ( event );
+        
+        int id = event.typeId();
+        
+        if ( id >= eventOrdinals.length )
+            return null;
+        
+        int ordinal = eventOrdinals [ id ];
+        
+        if ( ordinal < 0 )
+            return null;
+        
+        Class<?> type = types [ ordinal ];
+        
+        if ( type == event.getClass() )
+            return table [ ordinal ];
+        
+        return ( type == null ) ? null : reactions.get ( event );
+    }
+    
+    /**
+     * Freezes this {@code State}'s {@link Reaction}s (and those of its sub {@link StateModel}s) into a table indexed by {@link Event} ordinal.
+     * After this, {@link #reactions()} may no longer be modified.  (A {@code State} shared by several {@link StateModel}s keeps
+     * the ordinals of the first to compile it).
+     * @param eventOrdinals The event ordinals of the {@link StateModel}, indexed by {@link EventType} id, which include those of every {@link Reaction}.
+     * @param count The number of event ordinals.
+     */
+    final void compile ( int[] eventOrdinals, int count )
+    {
+        if ( table != null )
+            return;
+        
+        Reaction[] table = new Reaction [ count ];
+        Class<?>[] types = new Class<?> [ count ];
+        
+        // Keys of the same name but different classes share a slot, which holds any one of them.
+        for ( Map.Entry<Event,Reaction> reaction : reactions.entrySet() )
         {
-            logger.debug ( "State " + name + ": SubModel Reacting" );
-            newEvents.addAll ( model.react ( event ) );
+            int ordinal = eventOrdinals [ reaction.getKey().typeId() ];
+            
+            if ( types [ ordinal ] == null )
+            {
+                table [ ordinal ] = reaction.getValue();
+                types [ ordinal ] = reaction.getKey().getClass();
+            }
         }
-
-        logger.debug ( "State " + name + ": React Returning New Events [ " + newEvents.toString () + " ]" );
-        return newEvents;
+        
+        reactions = Collections.unmodifiableMap ( reactions );
+        subModels = Collections.unmodifiableList ( subModels );
+        this.eventOrdinals = eventOrdinals;
+        this.types = types;
+        this.table = table;
+        
+        for ( StateModel model : subModels )
+            model.compile();
     }
     
     @Override
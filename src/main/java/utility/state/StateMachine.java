@@ -50,7 +50,6 @@ public class StateMachine
      */
     public void react ( Event event )
     {
-        logger.debug ( "StateMachine: Reacting to Event " + event );
         executionContext.process ( event );
     }
     
@@ -63,6 +62,14 @@ public class StateMachine
         react ( Event.TERMINATE_EVENT );
     }
 
+    /**
+     * @param listener The {@link StateMachineListener} observing the {@link StateModel}, or {@code null} for none.
+     */
+    public void setListener ( StateMachineListener listener )
+    {
+        model.setListener ( listener );
+    }
+
     /**
      * @return The current {@link State} of the {@link StateModel}.
      */
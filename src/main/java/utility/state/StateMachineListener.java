@@ -0,0 +1,76 @@
+package utility.state;
+
+/**
+ * Observes the processing of {@link Event}s by a {@link StateModel} (and all of its sub {@link StateModel}s), in place of
+ * debug logging on the hot path.
+ * <p>
+ * Every method has an empty default, so a listener implements only what it needs, and the {@link #NONE default}
+ * listener costs no more than an inlined empty call.  When the {@code utility.state.tracing} system property is
+ * {@code false} at startup, {@link #ENABLED} is {@code false} and the JIT removes every call to the listener, as if it had
+ * been compiled out.
+ * </p>
+ * <p>
+ * Listeners are called on the thread processing the {@link Event}, in the middle of a transition, so they must be quick
+ * and must not send {@link Event}s to the {@link StateMachine} themselves.
+ * </p>
+ *
+ * @author Rob Duff
+ */
+public interface StateMachineListener
+{
+    /**
+     * {@code false} if listener calls are elided.  (Set by the {@code utility.state.tracing} system property, default {@code true}).
+     */
+    boolean ENABLED = !"false".equalsIgnoreCase ( System.getProperty ( "utility.state.tracing" ) );
+
+    /**
+     * The listener which ignores everything.
+     */
+    StateMachineListener NONE = new StateMachineListener() {};
+
+    /**
+     * Called as the top-level {@link StateModel} begins to react to an {@link Event}.
+     * @param model The {@link StateModel}.
+     * @param event The triggering {@link Event}.
+     */
+    default void onEvent ( StateModel model, Event event )
+    {
+    }
+
+    /**
+     * Called as a {@link State} is entered, before its sub {@link StateModel}s and its entry action.
+     * @param state The {@link State}.
+     * @param event The triggering {@link Event}.
+     */
+    default void onEnter ( State state, Event event )
+    {
+    }
+
+    /**
+     * Called as a {@link State} is exited, before its sub {@link StateModel}s and its exit action.
+     * @param state The {@link State}.
+     * @param event The triggering {@link Event}.
+     */
+    default void onExit ( State state, Event event )
+    {
+    }
+
+    /**
+     * Called when a {@link State}'s {@link Reaction} to an {@link Event} is allowed to proceed, before any {@link State} is exited.
+     * @param source The reacting {@link State}.
+     * @param event The triggering {@link Event}.
+     * @param destination The {@link State} to which the {@link Reaction} transitions, or {@code null} for an internal {@link Reaction}.
+     */
+    default void onReaction ( State source, Event event, State destination )
+    {
+    }
+
+    /**
+     * Called when a {@link State}'s {@link Reaction} to an {@link Event} is refused by its guard.
+     * @param source The reacting {@link State}.
+     * @param event The triggering {@link Event}.
+     */
+    default void onGuardRejected ( State source, Event event )
+    {
+    }
+}
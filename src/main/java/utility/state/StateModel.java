@@ -1,10 +1,14 @@
 package utility.state;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
 import java.util.List;
-
-import org.apache.logging.log4j.LogManager;
-import org.apache.logging.log4j.Logger;
+import java.util.Set;
 
 /**
  * <p>
@@ -26,12 +30,12 @@ import org.apache.logging.log4j.Logger;
  */
 public class StateModel
 {
-    private static final Logger logger = LogManager.getLogger ( StateModel.class );
-    
     private State initialState;
     private State reentrantState;
     private State currentState;
     private boolean reentrant;
+    private State[] states;
+    private StateMachineListener listener = StateMachineListener.NONE;
     
     /**
      * Constructs a Non-Reentrant {@code StateModel}.
@@ -54,6 +58,23 @@ public class StateModel
         this.reentrant = reentrant;
     }
 
+    /**
+     * @param listener The {@link StateMachineListener} observing this {@code StateModel} and its sub {@link StateModel}s
+     * when it is the top-level {@code StateModel}, or {@code null} for {@link StateMachineListener#NONE none}.
+     */
+    public void setListener ( StateMachineListener listener )
+    {
+        this.listener = ( listener == null ) ? StateMachineListener.NONE : listener;
+    }
+    
+    /**
+     * @return The {@link StateMachineListener} observing this {@code StateModel}.
+     */
+    public StateMachineListener listener()
+    {
+        return listener;
+    }
+    
     /**
      * @return The currently active {@link State}.
      */
@@ -69,10 +90,16 @@ public class StateModel
      */
     public List<Event> enter ( Event event )
     {
-        logger.debug ( "StateModel: Enter per Event " + event );
+        List<Event> newEvents = new ArrayList<>();
         
+        enter ( event, newEvents, listener );
+        return newEvents;
+    }
+    
+    final void enter ( Event event, Collection<? super Event> newEvents, StateMachineListener listener )
+    {
         currentState = reentrantState;
-        return currentState.enter ( event );
+        currentState.enter ( event, newEvents, listener );
     }
     
     /**
@@ -82,55 +109,166 @@ public class StateModel
      */
     public List<Event> exit ( Event event )
     {
-        logger.debug ( "StateModel: Exit Per Event " + event );
+        List<Event> newEvents = new ArrayList<>();
         
+        exit ( event, newEvents, listener );
+        return newEvents;
+    }
+    
+    final void exit ( Event event, Collection<? super Event> newEvents, StateMachineListener listener )
+    {
         if ( reentrant )
             reentrantState = currentState;
         
-        return currentState.exit ( event );
+        currentState.exit ( event, newEvents, listener );
     }
     
     public List<Event> react ( Event event )
     {
-        logger.debug ( "StateModel: React to Event " + event );
+        List<Event> newEvents = new ArrayList<>();
         
-        if ( event.equals ( Event.INITIALIZE_EVENT ) )
+        react ( event, newEvents );
+        return newEvents;
+    }
+    
+    /**
+     * Reacts to an {@link Event}, adding the newly created {@link Event}s to a collection (such as an execution context's
+     * queue) rather than allocating a List.
+     * @param event The triggering {@link Event}.
+     * @param newEvents The collection to which to add the additional {@link Event}s triggered by the triggering {@link Event}.
+     */
+    public void react ( Event event, Collection<? super Event> newEvents )
+    {
+        if ( StateMachineListener.ENABLED )
+            listener.onEvent ( this, event );
+        
+        react ( event, newEvents, listener );
+    }
+    
+    final void react ( Event event, Collection<? super Event> newEvents, StateMachineListener listener )
+    {
+        if ( event.type() == Event.INITIALIZE_EVENT.type() )
         {
             // In the case of an initialization event, do not process the exit of an existing event, or any reactions.
         	reentrantState = initialState;
-            return enter ( event );
+            enter ( event, newEvents, listener );
+            return;
         }
         
-        List<Event> newEvents = new ArrayList<>();
-        
         // Allow Sub-States to react to the Event first.
-        newEvents.addAll ( currentState.react ( event ) );
+        currentState.react ( event, newEvents, listener );
         
         Reaction reaction;
         
-        if ( event.equals ( Event.TERMINATE_EVENT ) )
+        if ( event.type() == Event.TERMINATE_EVENT.type() )
             reaction = Reaction.TERMINATE_REACTION;
         else
-            reaction = currentState.reactions.get ( event );
+            reaction = currentState.reaction ( event );
         
         if ( reaction != null )
         {
             if ( reaction.isAllowed ( event ) )
             {
+                if ( StateMachineListener.ENABLED )
+                    listener.onReaction ( currentState, event, reaction.destination() );
+                
                 if ( reaction.destination() != null )
-                    newEvents.addAll ( currentState.exit ( event ) );
+                    currentState.exit ( event, newEvents, listener );
                 
-                newEvents.addAll ( reaction.react ( event ) );
+                reaction.react ( event, newEvents );
                 
                 if ( reaction.destination() != null )
                 {
                     currentState = reaction.destination();
-                    newEvents.addAll ( currentState.enter ( event ) );
+                    currentState.enter ( event, newEvents, listener );
                 }
             }
+            else if ( StateMachineListener.ENABLED )
+                listener.onGuardRejected ( currentState, event );
         }
+    }
+    
+    /**
+     * Freezes this {@code StateModel}, and its sub {@link StateModel}s, for fast dispatch.  Each {@link EventType} to which
+     * the {@link State}s reachable from the initial {@link State} react is given a dense ordinal within this {@code StateModel},
+     * and each {@link State}'s {@link Reaction}s are compiled into a table indexed by that ordinal, so finding the {@link Reaction}
+     * to an {@link Event} is two array indexes (from its {@link EventType}'s id to its ordinal, and from its ordinal to the
+     * {@link Reaction}) rather than a hash lookup, and reacting allocates nothing.  Each table is only as long as the number of
+     * {@link EventType}s this {@code StateModel} reacts to, however many have been created.  A compiled {@link State}'s {@link State#reactions() reactions} and
+     * {@link State#subModels() sub models} may no longer be modified.
+     * <p>
+     * Compile a {@code StateModel} once it is fully assembled, and before any {@link Event}s are sent to it.  Compiling is
+     * optional: an uncompiled {@code StateModel} behaves identically.
+     * </p>
+     * @return This {@code StateModel}.
+     */
+    public StateModel compile()
+    {
+        if ( states != null )
+            return this;
         
-        return newEvents;
+        Set<State> reached = Collections.newSetFromMap ( new IdentityHashMap<>() );
+        Deque<State> pending = new ArrayDeque<>();
+        List<State> states = new ArrayList<>();
+        
+        reached.add ( initialState );
+        pending.add ( initialState );
+        
+        while ( !pending.isEmpty() )
+        {
+            State state = pending.remove();
+            
+            states.add ( state );
+            
+            for ( Reaction reaction : state.reactions().values() )
+            {
+                State destination = reaction.destination();
+                
+                if ( destination != null && reached.add ( destination ) )
+                    pending.add ( destination );
+            }
+        }
+        
+        int length = 0;
+        
+        for ( State state : states )
+            for ( Event event : state.reactions().keySet() )
+                length = Math.max ( length, event.typeId() + 1 );
+        
+        // The event ordinals of this model, indexed by EventType id (-1 for an EventType to which no State reacts).
+        int[] eventOrdinals = new int [ length ];
+        int count = 0;
+        
+        Arrays.fill ( eventOrdinals, -1 );
+        
+        for ( State state : states )
+            for ( Event event : state.reactions().keySet() )
+                if ( eventOrdinals [ event.typeId() ] < 0 )
+                    eventOrdinals [ event.typeId() ] = count++;
+        
+        for ( State state : states )
+            state.compile ( eventOrdinals, count );
+        
+        this.states = states.toArray ( new State [ states.size() ] );
+        
+        return this;
+    }
+    
+    /**
+     * @return {@code true} if this {@code StateModel} has been {@link #compile() compiled}.
+     */
+    public boolean isCompiled()
+    {
+        return states != null;
+    }
+    
+    /**
+     * @return The {@link State}s of a {@link #compile() compiled} {@code StateModel}, indexed by ordinal (the initial
+     * {@link State} being zero), or an empty list if it has not been compiled.
+     */
+    public List<State> states()
+    {
+        return ( states == null ) ? Collections.emptyList() : Collections.unmodifiableList ( Arrays.asList ( states ) );
     }
     
     @Override
@@ -1,37 +1,130 @@
 package utility.state.context;
 
+import java.util.ArrayDeque;
 import java.util.Queue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
 import utility.state.Event;
 
+/**
+ * An execution context which runs its {@link utility.state.StateMachine} on a thread of its own, taking {@link Event}s
+ * from a lock-free {@link MpscMailbox} in batches, and waiting for more according to an {@link IdleStrategy}.
+ */
 public class ActiveStateMachineExecutionContext extends StateMachineExecutionContext
 {
-	private Queue<Event> eventQueue = new LinkedBlockingQueue<Event>();
+	private static final Logger logger = LogManager.getLogger ( ActiveStateMachineExecutionContext.class );
+	
+	/**
+	 * The default number of {@link Event}s taken from the mailbox at a time.
+	 */
+	public static final int DEFAULT_BATCH = 64;
+	
+	private final MpscMailbox<Event> mailbox;
+	private final IdleStrategy idleStrategy;
+	private final int batch;
+	private final Queue<Event> generated = new ArrayDeque<Event>();
+	private final Consumer<Event> runToCompletion = this::runToCompletion;
+	private final Thread stateThread;
+	private volatile boolean idling;
 	
+	/**
+	 * Constructs an {@code ActiveStateMachineExecutionContext} with an unbounded mailbox, which backs off from spinning
+	 * to parking (until the next {@link Event} arrives) while it is empty.
+	 */
 	public ActiveStateMachineExecutionContext()
 	{
-		Thread stateThread = new Thread()
+		this ( MpscMailbox.unbounded ( 1024 ), IdleStrategy.backoff ( 100, 10 ), DEFAULT_BATCH );
+	}
+	
+	/**
+	 * @param mailbox The mailbox in which {@link Event}s await processing.
+	 * @param idleStrategy How the thread waits while the mailbox is empty.
+	 * @param batch The greatest number of {@link Event}s taken from the mailbox at a time.
+	 */
+	public ActiveStateMachineExecutionContext ( MpscMailbox<Event> mailbox, IdleStrategy idleStrategy, int batch )
+	{
+		if ( batch < 1 )
+			throw new IllegalArgumentException ( "Batch must be positive" );
+		
+		this.mailbox = mailbox;
+		this.idleStrategy = idleStrategy;
+		this.batch = batch;
+		
+		stateThread = new Thread()
 		{
 			@Override
 			public void run()
 			{
-		        while ( true )
-		        {
-		            Event event = eventQueue.remove();
-		            
-		            eventQueue.addAll ( model.react ( event ) );
-		        }            
+				while ( !isInterrupted() )
+				{
+					int count = mailbox.drain ( runToCompletion, batch );
+					
+					if ( count > 0 )
+						idleStrategy.reset();
+					else
+					{
+						// Producers unpark the thread while it is idling, so a parking strategy does not delay new Events.
+						idling = true;
+						
+						if ( mailbox.isEmpty() )
+							idleStrategy.idle();
+						
+						idling = false;
+					}
+				}
 			}
 		};
 		
 		stateThread.setDaemon ( true );
 		stateThread.start();
 	}
+	
+	private void runToCompletion ( Event event )
+	{
+		generated.add ( event );
+		
+		while ( !generated.isEmpty() )
+		{
+			Event next = generated.remove();
+			
+			// A failed reaction must not kill the thread, which would strand every later Event.
+			try
+			{
+				model.react ( next, generated );
+			}
+			catch ( RuntimeException e )
+			{
+				logger.error ( "State Machine failed to react to Event " + next, e );
+				generated.clear();
+			}
+		}
+	}
 
+	/**
+	 * Queues an {@link Event} in the mailbox.
+	 * @param event The {@link Event}.
+	 * @throws RejectedExecutionException If the mailbox is bounded, and full.
+	 */
 	@Override
 	public void process ( Event event )
 	{
-		eventQueue.add ( event );
+		if ( !mailbox.offer ( event ) )
+			throw new RejectedExecutionException ( "State Machine mailbox is full; Event " + event + " rejected" );
+		
+		if ( idling )
+			LockSupport.unpark ( stateThread );
+	}
+	
+	/**
+	 * Stops the thread, abandoning any {@link Event}s not yet processed.
+	 */
+	public void stop()
+	{
+		stateThread.interrupt();
 	}
 }
@@ -0,0 +1,157 @@
+package utility.state.context;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * How the consumer of an {@link MpscMailbox} waits while it is empty: trading CPU for latency.
+ * <p>
+ * The consumer calls {@link #idle(int)} after each attempt to take work, with the amount of work it took, and
+ * {@link #reset()} once it has work again.  A strategy which parks is woken early by {@link LockSupport#unpark(Thread)},
+ * so a producer may unpark an idle consumer rather than waiting for it to wake.
+ * </p>
+ *
+ * @author Rob Duff
+ */
+public interface IdleStrategy
+{
+	/**
+	 * Idles if no work was done; returns at once otherwise.
+	 * @param workCount The amount of work done by the last attempt.
+	 */
+	default void idle ( int workCount )
+	{
+		if ( workCount > 0 )
+			reset();
+		else
+			idle();
+	}
+
+	/**
+	 * Idles once.
+	 */
+	void idle();
+
+	/**
+	 * Resets any backoff state, once there is work again.
+	 */
+	default void reset()
+	{
+	}
+
+	/**
+	 * @return A strategy which busy-spins: the lowest latency, at the cost of a whole core.
+	 */
+	static IdleStrategy spin()
+	{
+		return () -> {};
+	}
+
+	/**
+	 * @return A strategy which yields the processor to other threads on each idle.
+	 */
+	static IdleStrategy yielding()
+	{
+		return Thread::yield;
+	}
+
+	/**
+	 * @param time The time to park for on each idle.
+	 * @param unit The unit of {@code time}.
+	 * @return A strategy which parks on each idle.
+	 */
+	static IdleStrategy parking ( long time, TimeUnit unit )
+	{
+		long nanos = unit.toNanos ( time );
+
+		return () -> LockSupport.parkNanos ( nanos );
+	}
+
+	/**
+	 * @return A strategy which parks on each idle until unparked (by a producer, or by an interrupt): no CPU at all
+	 * while idle, provided producers unpark the idle consumer.
+	 */
+	static IdleStrategy parking()
+	{
+		return LockSupport::park;
+	}
+
+	/**
+	 * @param spins The number of idles spent spinning.
+	 * @param yields The number of further idles spent yielding.
+	 * @return A strategy which spins, then yields, then parks until unparked: low latency when busy, and no CPU when
+	 * idle, provided producers unpark the idle consumer.
+	 */
+	static IdleStrategy backoff ( int spins, int yields )
+	{
+		return new BackoffIdleStrategy ( spins, yields, 0, 0 );
+	}
+
+	/**
+	 * @param spins The number of idles spent spinning.
+	 * @param yields The number of further idles spent yielding.
+	 * @param minPark The time to park for after spinning and yielding, which doubles on each idle after that ...
+	 * @param maxPark ... up to this time.
+	 * @param unit The unit of {@code minPark} and {@code maxPark}.
+	 * @return A strategy which spins, then yields, then parks for increasing times: low latency when busy, and little CPU when idle.
+	 */
+	static IdleStrategy backoff ( int spins, int yields, long minPark, long maxPark, TimeUnit unit )
+	{
+		if ( minPark < 1 )
+			throw new IllegalArgumentException ( "Backoff must satisfy 0 < minPark <= maxPark" );
+
+		return new BackoffIdleStrategy ( spins, yields, unit.toNanos ( minPark ), unit.toNanos ( maxPark ) );
+	}
+
+	/**
+	 * The {@link IdleStrategy#backoff(int, int, long, long, TimeUnit) backoff} strategy, whose parks are untimed if
+	 * its park times are zero.  (Each instance serves one consumer).
+	 */
+	final class BackoffIdleStrategy implements IdleStrategy
+	{
+		private final int spins;
+		private final int yields;
+		private final long minParkNanos;
+		private final long maxParkNanos;
+		private int idles;
+		private long parkNanos;
+
+		BackoffIdleStrategy ( int spins, int yields, long minParkNanos, long maxParkNanos )
+		{
+			if ( spins < 0 || yields < 0 || minParkNanos < 0 || maxParkNanos < minParkNanos || minParkNanos == 0 && maxParkNanos != 0 )
+				throw new IllegalArgumentException ( "Backoff must satisfy 0 <= spins, 0 <= yields, and 0 < minPark <= maxPark" );
+
+			this.spins = spins;
+			this.yields = yields;
+			this.minParkNanos = minParkNanos;
+			this.maxParkNanos = maxParkNanos;
+			this.parkNanos = minParkNanos;
+		}
+
+		@Override
+		public void idle()
+		{
+			if ( idles < spins )
+				++idles;
+			else if ( idles < spins + yields )
+			{
+				++idles;
+				Thread.yield();
+			}
+			else if ( parkNanos == 0 )
+				LockSupport.park();
+			else
+			{
+				LockSupport.parkNanos ( parkNanos );
+				parkNanos = Math.min ( parkNanos << 1, maxParkNanos );
+			}
+		}
+
+		@Override
+		public void reset()
+		{
+			idles = 0;
+			parkNanos = minParkNanos;
+		}
+	}
+}
@@ -0,0 +1,291 @@
+package utility.state.context;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * A lock-free, array-backed, multi-producer single-consumer mailbox, {@link #bounded(int) bounded} or
+ * {@link #unbounded(int) unbounded}.
+ * <p>
+ * Any number of threads may {@link #offer(Object) offer} elements, but only one thread at a time may take them (by
+ * {@link #poll()} or {@link #drain(Consumer, int)}), as only one thread at a time runs a {@link utility.state.StateMachine}.
+ * Producers claim slots with a single atomic increment or compare-and-set, and the consumer takes them with plain
+ * ordered reads and writes (yielding only in the rare case that it finds a slot claimed, but not yet filled), so
+ * neither takes a lock, and neither allocates a node per element (the unbounded mailbox allocates one array per
+ * {@code chunkSize} elements).
+ * </p>
+ *
+ * @param <E> The type of the elements.
+ * @author Rob Duff
+ */
+public abstract class MpscMailbox<E>
+{
+	/**
+	 * The index of the next slot a producer will claim.
+	 */
+	protected final AtomicLong producerIndex = new AtomicLong();
+
+	/**
+	 * The index of the next slot the consumer will take.  (Only written by the consumer).
+	 */
+	protected final AtomicLong consumerIndex = new AtomicLong();
+
+	/**
+	 * @param capacity The greatest number of elements held (rounded up to a power of two).
+	 * @return A bounded mailbox, whose {@link #offer(Object)} fails when it is full.
+	 */
+	public static <E> MpscMailbox<E> bounded ( int capacity )
+	{
+		return new Bounded<> ( capacity );
+	}
+
+	/**
+	 * @param chunkSize The number of elements held by each array the mailbox allocates as it grows (rounded up to a power of two).
+	 * @return An unbounded mailbox, whose {@link #offer(Object)} always succeeds.
+	 */
+	public static <E> MpscMailbox<E> unbounded ( int chunkSize )
+	{
+		return new Unbounded<> ( chunkSize );
+	}
+
+	/**
+	 * Adds an element.  (Any thread).
+	 * @param element The element.
+	 * @return {@code false} if the mailbox is full.
+	 */
+	public abstract boolean offer ( E element );
+
+	/**
+	 * Takes the next element.  (Consumer only).
+	 * @return The element, or {@code null} if the mailbox is empty.
+	 */
+	public abstract E poll();
+
+	/**
+	 * @return The greatest number of elements held, or {@link Integer#MAX_VALUE} if unbounded.
+	 */
+	public abstract int capacity();
+
+	/**
+	 * Takes a batch of elements, passing each to a consumer.  (Consumer only).
+	 * @param consumer Receives each element.
+	 * @param limit The greatest number of elements taken.
+	 * @return The number of elements taken.
+	 */
+	public int drain ( Consumer<? super E> consumer, int limit )
+	{
+		int count = 0;
+
+		for ( E element; count < limit && ( element = poll() ) != null; ++count )
+			consumer.accept ( element );
+
+		return count;
+	}
+
+	/**
+	 * @return {@code true} if no element is waiting to be taken.
+	 */
+	public boolean isEmpty()
+	{
+		return consumerIndex.get() == producerIndex.get();
+	}
+
+	/**
+	 * @return The approximate number of elements waiting to be taken.
+	 */
+	public int size()
+	{
+		long size = producerIndex.get() - consumerIndex.get();
+
+		return ( int ) Math.max ( 0, Math.min ( size, Integer.MAX_VALUE ) );
+	}
+
+	private static int powerOfTwo ( int size )
+	{
+		if ( size < 1 || size > ( 1 << 30 ) )
+			throw new IllegalArgumentException ( "Size must be between 1 and 2^30: " + size );
+
+		return ( Integer.bitCount ( size ) == 1 ) ? size : Integer.highestOneBit ( size ) << 1;
+	}
+
+	/**
+	 * A single ring.  A producer claims a slot by advancing the producer index, once it sees the slot has been taken.
+	 */
+	private static final class Bounded<E> extends MpscMailbox<E>
+	{
+		private final AtomicReferenceArray<E> elements;
+		private final int mask;
+
+		Bounded ( int capacity )
+		{
+			int size = powerOfTwo ( capacity );
+
+			elements = new AtomicReferenceArray<> ( size );
+			mask = size - 1;
+		}
+
+		@Override
+		public int capacity()
+		{
+			return mask + 1;
+		}
+
+		@Override
+		public boolean offer ( E element )
+		{
+			if ( element == null )
+				throw new NullPointerException();
+
+			long index;
+
+			do
+			{
+				index = producerIndex.get();
+
+				if ( index - consumerIndex.get() > mask )
+					return false;
+			}
+			while ( !producerIndex.compareAndSet ( index, index + 1 ) );
+
+			elements.lazySet ( ( int ) index & mask, element );
+			return true;
+		}
+
+		@Override
+		public E poll()
+		{
+			long index = consumerIndex.get();
+			int slot = ( int ) index & mask;
+			E element = elements.get ( slot );
+
+			if ( element == null )
+			{
+				if ( index == producerIndex.get() )
+					return null;
+
+				// A producer has claimed the slot, but not yet filled it.
+				while ( ( element = elements.get ( slot ) ) == null )
+					Thread.yield();
+			}
+
+			elements.lazySet ( slot, null );
+			consumerIndex.lazySet ( index + 1 );
+
+			return element;
+		}
+	}
+
+	/**
+	 * A linked list of rings ("chunks").  A producer claims an index by incrementing the producer index, then finds (or
+	 * appends) the chunk holding it.
+	 */
+	private static final class Unbounded<E> extends MpscMailbox<E>
+	{
+		private final int chunkSize;
+		private final int mask;
+		private final AtomicReference<Chunk<E>> producerChunk;
+		private volatile Chunk<E> consumerChunk;
+
+		Unbounded ( int chunkSize )
+		{
+			this.chunkSize = powerOfTwo ( chunkSize );
+			this.mask = this.chunkSize - 1;
+
+			Chunk<E> first = new Chunk<> ( 0, this.chunkSize );
+
+			producerChunk = new AtomicReference<> ( first );
+			consumerChunk = first;
+		}
+
+		@Override
+		public int capacity()
+		{
+			return Integer.MAX_VALUE;
+		}
+
+		@Override
+		public boolean offer ( E element )
+		{
+			if ( element == null )
+				throw new NullPointerException();
+
+			long index = producerIndex.getAndIncrement();
+			Chunk<E> hint = producerChunk.get();
+
+			// The hint may have been moved past this index by a faster producer: the consumer's chunk never has been.
+			Chunk<E> chunk = chunkOf ( index, ( hint.base <= index ) ? hint : consumerChunk );
+
+			if ( chunk.base > hint.base )
+				producerChunk.compareAndSet ( hint, chunk );
+
+			chunk.elements.lazySet ( ( int ) index & mask, element );
+			return true;
+		}
+
+		private Chunk<E> chunkOf ( long index, Chunk<E> chunk )
+		{
+			while ( index >= chunk.base + chunkSize )
+			{
+				Chunk<E> next = chunk.next.get();
+
+				if ( next == null )
+				{
+					chunk.next.compareAndSet ( null, new Chunk<> ( chunk.base + chunkSize, chunkSize ) );
+					next = chunk.next.get();
+				}
+
+				chunk = next;
+			}
+
+			return chunk;
+		}
+
+		@Override
+		public E poll()
+		{
+			long index = consumerIndex.get();
+
+			if ( index == producerIndex.get() )
+				return null;
+
+			Chunk<E> chunk = consumerChunk;
+
+			if ( index == chunk.base + chunkSize )
+			{
+				Chunk<E> next;
+
+				// The producer of this index may not yet have appended its chunk.
+				while ( ( next = chunk.next.get() ) == null )
+					Thread.yield();
+
+				consumerChunk = chunk = next;
+			}
+
+			int slot = ( int ) index & mask;
+			E element;
+
+			while ( ( element = chunk.elements.get ( slot ) ) == null )
+				Thread.yield();
+
+			chunk.elements.lazySet ( slot, null );
+			consumerIndex.lazySet ( index + 1 );
+
+			return element;
+		}
+	}
+
+	private static final class Chunk<E>
+	{
+		private final long base;
+		private final AtomicReferenceArray<E> elements;
+		private final AtomicReference<Chunk<E>> next = new AtomicReference<>();
+
+		Chunk ( long base, int size )
+		{
+			this.base = base;
+			this.elements = new AtomicReferenceArray<> ( size );
+		}
+	}
+}
@@ -0,0 +1,151 @@
+package utility.state.context;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import utility.state.Event;
+
+/**
+ * An execution context which runs its {@link utility.state.StateMachine} on a shared {@link StateMachineWorkerPool}
+ * rather than a thread of its own, as an actor.
+ * <p>
+ * {@link Event}s sent to the machine, from any thread, are queued in a bounded {@link MpscMailbox}, and the machine is
+ * scheduled on the pool whenever its mailbox becomes non-empty.  At most one worker runs a machine at a time, so the
+ * mailbox has a single consumer, the {@link utility.state.StateModel} has a single writer, and each {@link Event} is run to completion: every {@link Event} it
+ * generates is processed before the next {@link Event} is taken from the mailbox.  A machine yields its worker after
+ * {@link #getThroughput() throughput} {@link Event}s, so that a busy machine cannot starve the others.
+ * </p>
+ * <p>
+ * The machine is initialized asynchronously, like every other {@link Event}, so its current state is {@code null}
+ * until a worker has run it.
+ * </p>
+ *
+ * @author Rob Duff
+ */
+public class PooledStateMachineExecutionContext extends StateMachineExecutionContext implements Runnable
+{
+	private static final Logger logger = LogManager.getLogger ( PooledStateMachineExecutionContext.class );
+	
+	/**
+	 * The default capacity of each mailbox.
+	 */
+	public static final int DEFAULT_MAILBOX_CAPACITY = 64;
+	
+	/**
+	 * The default number of {@link Event}s a machine processes before yielding its worker.
+	 */
+	public static final int DEFAULT_THROUGHPUT = 32;
+	
+	private final StateMachineWorkerPool pool;
+	private final MpscMailbox<Event> mailbox;
+	private final Queue<Event> generated = new ArrayDeque<>();
+	private final Consumer<Event> runToCompletion = this::runToCompletion;
+	private final AtomicBoolean scheduled = new AtomicBoolean();
+	private final int throughput;
+	
+	/**
+	 * Constructs a {@code PooledStateMachineExecutionContext} with the default mailbox capacity and throughput.
+	 * @param pool The pool on which to run the machine.
+	 */
+	public PooledStateMachineExecutionContext ( StateMachineWorkerPool pool )
+	{
+		this ( pool, DEFAULT_MAILBOX_CAPACITY, DEFAULT_THROUGHPUT );
+	}
+	
+	/**
+	 * @param pool The pool on which to run the machine.
+	 * @param mailboxCapacity The number of {@link Event}s which may await processing (rounded up to a power of two).
+	 * @param throughput The number of {@link Event}s the machine processes before yielding its worker.
+	 */
+	public PooledStateMachineExecutionContext ( StateMachineWorkerPool pool, int mailboxCapacity, int throughput )
+	{
+		if ( throughput < 1 )
+			throw new IllegalArgumentException ( "Throughput must be positive" );
+		
+		this.pool = pool;
+		this.mailbox = MpscMailbox.bounded ( mailboxCapacity );
+		this.throughput = throughput;
+	}
+	
+	/**
+	 * @return The number of {@link Event}s the machine processes before yielding its worker.
+	 */
+	public int getThroughput()
+	{
+		return throughput;
+	}
+	
+	/**
+	 * @return The number of {@link Event}s awaiting processing.
+	 */
+	public int getPending()
+	{
+		return mailbox.size();
+	}
+	
+	/**
+	 * Queues an {@link Event} in the machine's mailbox, and schedules the machine if it is idle.
+	 * @param event The {@link Event}.
+	 * @throws RejectedExecutionException If the mailbox is full.
+	 */
+	@Override
+	public void process ( Event event )
+	{
+		if ( !mailbox.offer ( event ) )
+			throw new RejectedExecutionException ( "State Machine mailbox is full; Event " + event + " rejected" );
+		
+		schedule();
+	}
+	
+	private void schedule()
+	{
+		if ( scheduled.compareAndSet ( false, true ) )
+			pool.execute ( this );
+	}
+	
+	/**
+	 * Processes up to {@link #getThroughput() throughput} {@link Event}s from the mailbox.  (Runs on a worker).
+	 */
+	@Override
+	public void run()
+	{
+		try
+		{
+			mailbox.drain ( runToCompletion, throughput );
+		}
+		finally
+		{
+			scheduled.set ( false );
+		}
+		
+		// An Event which arrived after the last poll, but before the flag was cleared, would otherwise be stranded.
+		if ( !mailbox.isEmpty() )
+			schedule();
+	}
+	
+	private void runToCompletion ( Event event )
+	{
+		generated.add ( event );
+		
+		while ( !generated.isEmpty() )
+		{
+			Event next = generated.remove();
+			
+			try
+			{
+				model.react ( next, generated );
+			}
+			catch ( RuntimeException e )
+			{
+				logger.error ( "State Machine failed to react to Event " + next, e );
+				generated.clear();
+			}
+		}
+	}
+}
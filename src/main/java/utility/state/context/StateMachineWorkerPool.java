@@ -0,0 +1,86 @@
+package utility.state.context;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * A fixed pool of worker threads shared by any number of {@link PooledStateMachineExecutionContext}s, so that a great
+ * many {@link utility.state.StateMachine}s (a fleet of simulated devices, say) need only as many threads as there are cores.
+ * <p>
+ * The pool is a {@link ForkJoinPool} in asynchronous (FIFO) mode: a machine scheduled by a worker (because another
+ * machine sent it an {@link utility.state.Event}) is queued on that worker, and idle workers steal from busy ones.
+ * </p>
+ *
+ * @author Rob Duff
+ */
+public class StateMachineWorkerPool implements AutoCloseable
+{
+	private static final Logger logger = LogManager.getLogger ( StateMachineWorkerPool.class );
+	
+	private final ForkJoinPool pool;
+	
+	/**
+	 * Constructs a {@code StateMachineWorkerPool} with a worker per available processor.
+	 */
+	public StateMachineWorkerPool()
+	{
+		this ( Runtime.getRuntime().availableProcessors() );
+	}
+	
+	/**
+	 * @param parallelism The number of worker threads.
+	 */
+	public StateMachineWorkerPool ( int parallelism )
+	{
+		pool = new ForkJoinPool ( parallelism, ForkJoinPool.defaultForkJoinWorkerThreadFactory,
+				( thread, e ) -> logger.error ( "Uncaught exception in State Machine worker " + thread.getName(), e ), true );
+	}
+	
+	/**
+	 * @return The number of worker threads.
+	 */
+	public int getParallelism()
+	{
+		return pool.getParallelism();
+	}
+	
+	/**
+	 * @return An estimate of the number of times a worker has stolen a machine from another's queue.
+	 */
+	public long getStealCount()
+	{
+		return pool.getStealCount();
+	}
+	
+	/**
+	 * Schedules a machine's run.
+	 * @param task The task draining the machine's mailbox.
+	 */
+	void execute ( Runnable task )
+	{
+		pool.execute ( task );
+	}
+	
+	/**
+	 * Waits until no machine is scheduled or running.
+	 * @param timeout The longest time to wait.
+	 * @param unit The unit of {@code timeout}.
+	 * @return {@code true} if the pool became quiescent, {@code false} if the timeout elapsed first.
+	 */
+	public boolean awaitQuiescence ( long timeout, TimeUnit unit )
+	{
+		return pool.awaitQuiescence ( timeout, unit );
+	}
+	
+	/**
+	 * Stops the workers, abandoning any {@link utility.state.Event}s not yet processed.
+	 */
+	@Override
+	public void close()
+	{
+		pool.shutdownNow();
+	}
+}
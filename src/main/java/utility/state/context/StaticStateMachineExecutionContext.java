@@ -19,7 +19,7 @@ public class StaticStateMachineExecutionContext extends StateMachineExecutionCon
         {
             Event event = eventQueue.remove();
             
-            eventQueue.addAll ( model.react ( event ) );
+            model.react ( event, eventQueue );
         }            
     }
 }
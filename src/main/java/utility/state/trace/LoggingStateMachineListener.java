@@ -0,0 +1,69 @@
+package utility.state.trace;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import utility.state.Event;
+import utility.state.State;
+import utility.state.StateMachineListener;
+import utility.state.StateModel;
+
+/**
+ * A {@link StateMachineListener} which logs each step at debug level, as the state machine once did itself.
+ * Install it only while diagnosing a {@link utility.state.StateMachine}: nothing is formatted unless debug logging is enabled.
+ *
+ * @author Rob Duff
+ */
+public class LoggingStateMachineListener implements StateMachineListener
+{
+    private final Logger logger;
+
+    /**
+     * Constructs a {@code LoggingStateMachineListener} which logs to its own {@link Logger}.
+     */
+    public LoggingStateMachineListener()
+    {
+        this ( LogManager.getLogger ( LoggingStateMachineListener.class ) );
+    }
+
+    /**
+     * @param logger The {@link Logger} to which to log.
+     */
+    public LoggingStateMachineListener ( Logger logger )
+    {
+        this.logger = logger;
+    }
+
+    @Override
+    public void onEvent ( StateModel model, Event event )
+    {
+        logger.debug ( "StateModel {}: React to Event {}", model, event );
+    }
+
+    @Override
+    public void onEnter ( State state, Event event )
+    {
+        logger.debug ( "State {}: Entering State per Event {}", state, event );
+    }
+
+    @Override
+    public void onExit ( State state, Event event )
+    {
+        logger.debug ( "State {}: Exiting State per Event {}", state, event );
+    }
+
+    @Override
+    public void onReaction ( State source, Event event, State destination )
+    {
+        if ( destination == null )
+            logger.debug ( "State {}: Internal Reaction to Event {}", source, event );
+        else
+            logger.debug ( "State {}: Transition per Event {} to State {}", source, event, destination );
+    }
+
+    @Override
+    public void onGuardRejected ( State source, Event event )
+    {
+        logger.debug ( "State {}: Guard Rejected Event {}", source, event );
+    }
+}
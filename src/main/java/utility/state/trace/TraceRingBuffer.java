@@ -0,0 +1,233 @@
+package utility.state.trace;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import utility.state.Event;
+import utility.state.State;
+import utility.state.StateMachineListener;
+import utility.state.StateModel;
+
+/**
+ * A {@link StateMachineListener} which records the most recent steps of a {@link utility.state.StateMachine} as
+ * structured entries in a fixed ring, so a trace is always available (for example, to dump when a device misbehaves)
+ * without formatting anything or allocating on the hot path.
+ * <p>
+ * The ring's entries are allocated up front and overwritten in turn.  The buffer must be written by only one thread at a
+ * time (as every execution context processes a {@link utility.state.StateMachine}'s {@link Event}s), but may be
+ * {@link #snapshot() snapshot} by any thread while it is written: entries overwritten during the copy (those whose copied
+ * sequence is not the one expected, or which the writer may have reached by the end of the copy) are discarded.
+ * </p>
+ *
+ * @author Rob Duff
+ */
+public class TraceRingBuffer implements StateMachineListener
+{
+    /**
+     * The kind of step a trace {@link Entry} records.
+     */
+    public enum Kind
+    {
+        EVENT,
+        ENTER,
+        EXIT,
+        REACTION,
+        GUARD_REJECTED,
+    }
+
+    /**
+     * One step of a trace.
+     */
+    public static final class Entry
+    {
+        private long    sequence;
+        private long    timeNanos;
+        private Kind    kind;
+        private State   state;
+        private Event   event;
+        private State   destination;
+
+        private Entry()
+        {
+        }
+
+        private Entry ( Entry entry )
+        {
+            timeNanos   = entry.timeNanos;
+            kind        = entry.kind;
+            state       = entry.state;
+            event       = entry.event;
+            destination = entry.destination;
+
+            // Read last, as the writer writes it first: an entry overwritten during the copy has another sequence.
+            sequence    = entry.sequence;
+        }
+
+        /**
+         * @return The number of entries written before this one.
+         */
+        public long sequence()
+        {
+            return sequence;
+        }
+
+        /**
+         * @return The {@link System#nanoTime()} of the step.
+         */
+        public long timeNanos()
+        {
+            return timeNanos;
+        }
+
+        public Kind kind()
+        {
+            return kind;
+        }
+
+        /**
+         * @return The {@link State} entered, exited or reacting, or the current {@link State} of the top-level
+         * {@link StateModel} for an {@link Kind#EVENT EVENT}.
+         */
+        public State state()
+        {
+            return state;
+        }
+
+        public Event event()
+        {
+            return event;
+        }
+
+        /**
+         * @return The destination of a {@link Kind#REACTION REACTION}, or {@code null}.
+         */
+        public State destination()
+        {
+            return destination;
+        }
+
+        @Override
+        public String toString()
+        {
+            StringBuilder builder = new StringBuilder();
+
+            builder.append ( sequence ).append ( ' ' ).append ( kind ).append ( ' ' ).append ( state ).append ( " per " ).append ( event );
+
+            if ( destination != null )
+                builder.append ( " -> " ).append ( destination );
+
+            return builder.toString();
+        }
+    }
+
+    private final Entry[] entries;
+    private final int mask;
+    private volatile long written;
+
+    /**
+     * @param capacity The number of entries retained: a power of two.
+     */
+    public TraceRingBuffer ( int capacity )
+    {
+        if ( capacity < 1 || Integer.bitCount ( capacity ) != 1 )
+            throw new IllegalArgumentException ( "Capacity must be a power of two" );
+
+        entries = new Entry [ capacity ];
+        mask = capacity - 1;
+
+        for ( int i = 0; i < capacity; ++i )
+            entries [ i ] = new Entry();
+    }
+
+    /**
+     * @return The number of entries retained.
+     */
+    public int capacity()
+    {
+        return entries.length;
+    }
+
+    /**
+     * @return The number of entries written since construction (including those since overwritten).
+     */
+    public long written()
+    {
+        return written;
+    }
+
+    /**
+     * @return Copies of the retained entries, oldest first.
+     */
+    public List<Entry> snapshot()
+    {
+        long end = written;
+        long start = Math.max ( 0, end - entries.length );
+        List<Entry> snapshot = new ArrayList<>( ( int ) ( end - start ) );
+
+        for ( long sequence = start; sequence < end; ++sequence )
+        {
+            Entry entry = new Entry ( entries [ ( int ) sequence & mask ] );
+
+            // The plain reads of the copy may be reordered past the re-read of written below, so check each entry too.
+            if ( entry.sequence == sequence )
+                snapshot.add ( entry );
+        }
+
+        // Discard the entries the writer may have overwritten (or be overwriting) during the copy.
+        long overwritten = written - entries.length + 1;
+
+        int count = 0;
+
+        while ( count < snapshot.size() && snapshot.get ( count ).sequence < overwritten )
+            ++count;
+
+        snapshot.subList ( 0, count ).clear();
+
+        return snapshot;
+    }
+
+    private void record ( Kind kind, State state, Event event, State destination )
+    {
+        long sequence = written;
+        Entry entry = entries [ ( int ) sequence & mask ];
+
+        entry.sequence    = sequence;
+        entry.timeNanos   = System.nanoTime();
+        entry.kind        = kind;
+        entry.state       = state;
+        entry.event       = event;
+        entry.destination = destination;
+
+        written = sequence + 1;
+    }
+
+    @Override
+    public void onEvent ( StateModel model, Event event )
+    {
+        record ( Kind.EVENT, model.currentState(), event, null );
+    }
+
+    @Override
+    public void onEnter ( State state, Event event )
+    {
+        record ( Kind.ENTER, state, event, null );
+    }
+
+    @Override
+    public void onExit ( State state, Event event )
+    {
+        record ( Kind.EXIT, state, event, null );
+    }
+
+    @Override
+    public void onReaction ( State source, Event event, State destination )
+    {
+        record ( Kind.REACTION, source, event, destination );
+    }
+
+    @Override
+    public void onGuardRejected ( State source, Event event )
+    {
+        record ( Kind.GUARD_REJECTED, source, event, null );
+    }
+}
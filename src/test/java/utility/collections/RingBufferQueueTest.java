@@ -0,0 +1,86 @@
+package utility.collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import org.junit.jupiter.api.Test;
+
+class RingBufferQueueTest
+{
+    @Test
+    public void testExactCapacity()
+    {
+        RingBufferQueue<Integer> q = new RingBufferQueue<> ( 5 );
+
+        for ( int n=0; n<5; n++ )
+            assertTrue ( q.offer ( n ), "Offer " + n );
+
+        assertAll (
+                "Full",
+                () -> assertEquals ( 5, q.capacity(), "Capacity" ),
+                () -> assertFalse ( q.offer ( 5 ), "Offer beyond capacity" ),
+                () -> assertEquals ( 5, q.size(), "Size" )
+                );
+
+        assertEquals ( 0, q.poll() );
+        assertTrue ( q.offer ( 5 ), "Offer after poll" );
+        assertFalse ( q.offer ( 6 ), "Offer beyond capacity after wrap" );
+    }
+
+    @Test
+    public void testCapacityOne()
+    {
+        RingBufferQueue<String> q = new RingBufferQueue<> ( 1 );
+
+        assertTrue ( q.offer ( "A" ) );
+        assertFalse ( q.offer ( "B" ) );
+        assertEquals ( "A", q.poll() );
+        assertNull ( q.poll() );
+        assertTrue ( q.offer ( "B" ) );
+        assertEquals ( "B", q.peek() );
+    }
+
+    @Test
+    public void testIteration()
+    {
+        RingBufferQueue<String> q = new RingBufferQueue<> ( 3 );
+
+        // Wrap the ring, so iteration crosses the end of the array.
+        q.addAll ( Arrays.asList ( "A", "B", "C" ) );
+        q.poll();
+        q.poll();
+        q.addAll ( Arrays.asList ( "D", "E" ) );
+
+        assertAll (
+                "Iteration",
+                () -> assertArrayEquals ( new Object[] { "C", "D", "E" }, q.toArray(), "toArray" ),
+                () -> assertTrue ( q.contains ( "D" ), "Contains" ),
+                () -> assertFalse ( q.contains ( "A" ), "Contains taken" ),
+                () -> assertThrows ( UnsupportedOperationException.class, () -> q.remove ( "D" ), "Remove" )
+                );
+    }
+
+    @Test
+    public void testIterationIsWeaklyConsistent()
+    {
+        RingBufferQueue<String> q = new RingBufferQueue<> ( 4 );
+
+        q.addAll ( Arrays.asList ( "A", "B", "C" ) );
+
+        Iterator<String> i = q.iterator();
+
+        assertEquals ( "A", i.next() );
+
+        // The next element ("B") has already been read, but later ones are skipped once taken, and elements added
+        // after creation are not seen.
+        q.poll();
+        q.poll();
+        q.poll();
+        q.offer ( "D" );
+
+        assertEquals ( "B", i.next() );
+        assertFalse ( i.hasNext() );
+    }
+}
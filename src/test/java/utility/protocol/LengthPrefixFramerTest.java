@@ -0,0 +1,134 @@
+package utility.protocol;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import utility.protocol.LengthPrefixFramer.Prefix;
+import utility.protocol.Protocol.ProtocolException;
+
+public class LengthPrefixFramerTest
+{
+	private static final List<String> FRAMES = Arrays.asList ( "one", "", "three", new String ( new char [ 300 ] ).replace ( '\0', 'x' ), "five" );
+
+	private static byte[] stream ( LengthPrefixFramer framer ) throws Exception
+	{
+		ByteBuffer stream = ByteBuffer.allocate ( 1024 );
+
+		for ( String frame : FRAMES )
+			stream.put ( ( ByteBuffer ) framer.encodeFrame ( frame.getBytes ( StandardCharsets.UTF_8 ) ) );
+
+		return Arrays.copyOf ( stream.array(), stream.position() );
+	}
+
+	private static Emitter<Object> collector ( List<String> frames )
+	{
+		return frame -> frames.add ( StandardCharsets.UTF_8.decode ( ( ByteBuffer ) frame ).toString() );
+	}
+
+	@ParameterizedTest
+	@EnumSource ( Prefix.class )
+	public void testCoalesced ( Prefix prefix ) throws Exception
+	{
+		LengthPrefixFramer framer = new LengthPrefixFramer ( prefix, 1024 );
+		List<String> frames = new ArrayList<>();
+
+		framer.decodeFrames ( stream ( framer ), collector ( frames ) );
+
+		Assertions.assertEquals ( FRAMES, frames );
+	}
+
+	@ParameterizedTest
+	@EnumSource ( Prefix.class )
+	public void testFragmented ( Prefix prefix ) throws Exception
+	{
+		LengthPrefixFramer framer = new LengthPrefixFramer ( prefix, 1024 );
+		List<String> frames = new ArrayList<>();
+		byte[] stream = stream ( framer );
+
+		for ( int chunk = 1; chunk <= 7; ++chunk )
+		{
+			frames.clear();
+
+			for ( int n = 0; n < stream.length; n += chunk )
+				framer.decodeFrames ( ByteBuffer.wrap ( stream, n, Math.min ( chunk, stream.length - n ) ), collector ( frames ) );
+
+			Assertions.assertEquals ( FRAMES, frames, "Chunk Size " + chunk );
+		}
+	}
+
+	@Test
+	public void testVarintPrefixLength() throws Exception
+	{
+		LengthPrefixFramer framer = new LengthPrefixFramer ( Prefix.VARINT, Integer.MAX_VALUE );
+
+		Assertions.assertEquals ( 1, framer.prefixLength ( 127 ) );
+		Assertions.assertEquals ( 2, framer.prefixLength ( 128 ) );
+		Assertions.assertEquals ( 5, framer.prefixLength ( Integer.MAX_VALUE ) );
+	}
+
+	@Test
+	public void testOversizedFrame() throws Exception
+	{
+		LengthPrefixFramer framer = new LengthPrefixFramer ( Prefix.FIXED32, 4 );
+
+		Assertions.assertThrows ( ProtocolException.class, () -> framer.encodeFrame ( new byte [ 5 ] ) );
+		Assertions.assertThrows ( ProtocolException.class, () -> framer.decodeFrames ( new byte[] { 0, 0, 0, 5 }, frame -> {} ) );
+	}
+
+	@ParameterizedTest
+	@EnumSource ( Prefix.class )
+	public void testDownstreamFailure ( Prefix prefix ) throws Exception
+	{
+		LengthPrefixFramer framer = new LengthPrefixFramer ( prefix, 1024 );
+		List<String> frames = new ArrayList<>();
+		byte[] stream = stream ( framer );
+		Emitter<Object> collector = collector ( frames );
+		Emitter<Object> failing = frame -> {
+			if ( frames.isEmpty() )
+			{
+				frames.add ( "failed" );
+				throw new IllegalStateException ( "First frame fails" );
+			}
+
+			collector.emit ( frame );
+		};
+
+		// The first read holds several frames, and ends part way through the fourth.
+		int split = stream.length - 100;
+
+		Exception e = Assertions.assertThrows ( IllegalStateException.class, () -> framer.decodeFrames ( ByteBuffer.wrap ( stream, 0, split ), failing ) );
+		Assertions.assertEquals ( "First frame fails", e.getMessage() );
+		Assertions.assertEquals ( Arrays.asList ( "failed", "", "three" ), frames );
+
+		framer.decodeFrames ( ByteBuffer.wrap ( stream, split, stream.length - split ), failing );
+
+		Assertions.assertEquals ( Arrays.asList ( "failed", "", "three", FRAMES.get ( 3 ), "five" ), frames );
+	}
+
+	@Test
+	public void testProtocol() throws Exception
+	{
+		LengthPrefixFramer framer = new LengthPrefixFramer ( Prefix.VARINT, 1024 );
+		List<String> frames = new ArrayList<>();
+		Protocol protocol = new Protocol();
+
+		protocol.getRxChain().add ( framer.decoder() );
+		protocol.getRxChain().add ( b -> StandardCharsets.UTF_8.decode ( ( ByteBuffer ) b ).toString() );
+		protocol.getRxChain().add ( s -> { frames.add ( ( String ) s ); return s; } );
+
+		byte[] stream = stream ( framer );
+
+		protocol.receive ( ByteBuffer.wrap ( stream, 0, 10 ) );
+		protocol.receive ( ByteBuffer.wrap ( stream, 10, stream.length - 10 ) );
+
+		Assertions.assertEquals ( FRAMES, frames );
+	}
+}
@@ -0,0 +1,86 @@
+package utility.protocol;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import utility.protocol.LengthPrefixFramer.Prefix;
+
+public class PipelineTest
+{
+	@Test
+	public void testTyped() throws Exception
+	{
+		Stage<String,String> split = ( line, downstream ) ->
+		{
+			for ( String word : line.split ( " " ) )
+				downstream.emit ( word );
+		};
+
+		Pipeline<String,Integer> pipeline = Pipeline.of ( split )
+				.then ( Stage.filter ( word -> !word.isEmpty() ) )
+				.then ( Stage.map ( String::length ) );
+
+		List<Integer> lengths = new ArrayList<>();
+		Emitter<String> head = pipeline.connect ( lengths::add );
+
+		head.emit ( "a bb  ccc" );
+		head.emit ( "" );
+		head.emit ( "dddd" );
+
+		Assertions.assertEquals ( 3, pipeline.size() );
+		Assertions.assertEquals ( Arrays.asList ( 1, 2, 3, 4 ), lengths );
+	}
+
+	@Test
+	public void testDeepPipeline() throws Exception
+	{
+		// Deeper than the specialised positions, so the shared link is used too.
+		Pipeline<Integer,Integer> pipeline = Pipeline.of ( Stage.<Integer,Integer>map ( i -> i + 1 ) );
+
+		for ( int n = 1; n < Pipeline.SPECIALISED + 3; ++n )
+			pipeline = pipeline.then ( Stage.map ( i -> i * 2 ) );
+
+		List<Integer> results = new ArrayList<>();
+
+		pipeline.connect ( results::add ).emit ( 0 );
+
+		Assertions.assertEquals ( Pipeline.SPECIALISED + 3, pipeline.size() );
+		Assertions.assertEquals ( Arrays.asList ( 1 << ( Pipeline.SPECIALISED + 2 ) ), results );
+	}
+
+	@Test
+	public void testProtocolPipelines() throws Exception
+	{
+		LengthPrefixFramer framer = new LengthPrefixFramer ( Prefix.FIXED32, 64 );
+		List<Object> wire = new ArrayList<>();
+		List<Object> received = new ArrayList<>();
+		Protocol protocol = new Protocol();
+
+		protocol.setTxPipeline ( Pipeline.<Object,String> of ( Stage.map ( s -> ( ( String ) s ).toUpperCase() ) )
+				.then ( Stage.map ( s -> s.getBytes ( StandardCharsets.UTF_8 ) ) )
+				.then ( Stage.of ( framer::encodeFrame ) ) );
+		protocol.getTxChain().add ( b -> { wire.add ( b ); return null; } );
+
+		protocol.setRxPipeline ( Pipeline.of ( framer.stage() )
+				.then ( Stage.map ( b -> StandardCharsets.UTF_8.decode ( b ).toString() ) )
+				.then ( Stage.map ( s -> { received.add ( s ); return s; } ) ) );
+
+		protocol.sendAsync ( "hello" );
+		protocol.sendAsync ( "world" );
+
+		Assertions.assertEquals ( 2, wire.size() );
+
+		ByteBuffer stream = ByteBuffer.allocate ( 64 );
+		stream.put ( ( ByteBuffer ) wire.get ( 0 ) ).put ( ( ByteBuffer ) wire.get ( 1 ) ).flip();
+
+		protocol.receive ( stream );
+
+		Assertions.assertEquals ( Arrays.asList ( "HELLO", "WORLD" ), received );
+	}
+}
@@ -0,0 +1,102 @@
+package utility.protocol;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import utility.protocol.PriorityTxScheduler.Priority;
+
+public class PriorityTxSchedulerTest
+{
+	private static PriorityTxScheduler scheduler ( List<String> sent, int highWeight )
+	{
+		return scheduler ( sent, highWeight, 8, 4 );
+	}
+
+	private static PriorityTxScheduler scheduler ( List<String> sent, int highWeight, int highDepth, int normalDepth )
+	{
+		Protocol protocol = new Protocol();
+		protocol.getTxChain().add ( s -> { sent.add ( ( String ) s ); return null; } );
+
+		return new PriorityTxScheduler ( protocol, s -> ( ( String ) s ).startsWith ( "H" ), highDepth, normalDepth, highWeight );
+	}
+
+	private static void queue ( PriorityTxScheduler scheduler )
+	{
+		for ( String s : Arrays.asList ( "N1", "N2", "H1", "N3", "H2", "H3", "H4", "H5" ) )
+			Assertions.assertTrue ( scheduler.offer ( s ) );
+	}
+
+	@Test
+	public void testStrict()
+	{
+		List<String> sent = new ArrayList<>();
+		PriorityTxScheduler scheduler = scheduler ( sent, PriorityTxScheduler.STRICT );
+
+		queue ( scheduler );
+
+		while ( scheduler.sendNext() )
+			;
+
+		Assertions.assertEquals ( Arrays.asList ( "H1", "H2", "H3", "H4", "H5", "N1", "N2", "N3" ), sent );
+		Assertions.assertEquals ( 5, scheduler.getStats ( Priority.HIGH ).getSent() );
+		Assertions.assertEquals ( 3, scheduler.getStats ( Priority.NORMAL ).getSent() );
+	}
+
+	@Test
+	public void testWeighted()
+	{
+		List<String> sent = new ArrayList<>();
+		PriorityTxScheduler scheduler = scheduler ( sent, 2 );
+
+		queue ( scheduler );
+
+		while ( scheduler.sendNext() )
+			;
+
+		Assertions.assertEquals ( Arrays.asList ( "H1", "H2", "N1", "H3", "H4", "N2", "H5", "N3" ), sent );
+	}
+
+	@Test
+	public void testBounded()
+	{
+		List<String> sent = new ArrayList<>();
+		PriorityTxScheduler scheduler = scheduler ( sent, PriorityTxScheduler.STRICT );
+
+		for ( int i = 0; i < 4; ++i )
+			Assertions.assertTrue ( scheduler.offer ( "N" + i ) );
+
+		Assertions.assertFalse ( scheduler.offer ( "N4" ) );
+		Assertions.assertTrue ( scheduler.offer ( "H0" ) );
+
+		Assertions.assertEquals ( 4, scheduler.getQueueDepth ( Priority.NORMAL ) );
+		Assertions.assertEquals ( 1, scheduler.getStats ( Priority.NORMAL ).getRejected() );
+	}
+
+	@Test
+	public void testBoundedExactDepth()
+	{
+		List<String> sent = new ArrayList<>();
+		PriorityTxScheduler scheduler = scheduler ( sent, PriorityTxScheduler.STRICT, 5, 3 );
+
+		for ( int i = 0; i < 5; ++i )
+			Assertions.assertTrue ( scheduler.offer ( "H" + i ) );
+
+		for ( int i = 0; i < 3; ++i )
+			Assertions.assertTrue ( scheduler.offer ( "N" + i ) );
+
+		// Neither depth is a power of two, so neither may be rounded up.
+		Assertions.assertFalse ( scheduler.offer ( "H5" ) );
+		Assertions.assertFalse ( scheduler.offer ( "N3" ) );
+
+		Assertions.assertEquals ( 5, scheduler.getQueueDepth ( Priority.HIGH ) );
+		Assertions.assertEquals ( 3, scheduler.getQueueDepth ( Priority.NORMAL ) );
+
+		Assertions.assertTrue ( scheduler.sendNext() );
+		Assertions.assertTrue ( scheduler.offer ( "H5" ) );
+		Assertions.assertFalse ( scheduler.offer ( "H6" ) );
+	}
+}
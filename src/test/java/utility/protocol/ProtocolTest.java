@@ -1,7 +1,16 @@
 package utility.protocol;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Disabled;
@@ -71,6 +80,109 @@ public class ProtocolTest
 		Assertions.assertEquals ( "Incoming.received", sp.getValue() );
 	}
 	
+	@Test
+	public void testPipelined() throws Exception
+	{
+		BlockingQueue<String> sent = new LinkedBlockingQueue<>();
+		Protocol protocol = new Protocol();
+
+		protocol.setCorrelator ( new KeyCorrelator() );
+		protocol.getTxChain().add ( s -> { sent.add ( ( String ) s ); return null; } );
+		protocol.getRxChain().add ( s -> s + ".Response" );
+
+		List<CompletableFuture<Object>> responses = new ArrayList<>();
+
+		for ( int i = 0; i < 10; ++i )
+			responses.add ( protocol.sendRequest ( i + ":request" ) );
+
+		Assertions.assertEquals ( 10, protocol.getOutstandingRequests() );
+
+		// Answer in reverse order.
+		List<String> requests = new ArrayList<>();
+		sent.drainTo ( requests );
+
+		for ( int i = requests.size() - 1; i >= 0; --i )
+			protocol.receive ( requests.get ( i ) );
+
+		for ( int i = 0; i < 10; ++i )
+			Assertions.assertEquals ( i + ":request.Response", responses.get ( i ).get ( 1, TimeUnit.SECONDS ) );
+
+		Assertions.assertEquals ( 0, protocol.getOutstandingRequests() );
+	}
+
+	@Test
+	public void testRequestTimeout() throws Exception
+	{
+		Protocol protocol = new Protocol();
+
+		protocol.setCorrelator ( new KeyCorrelator() );
+		protocol.getTxChain().add ( s -> null );
+
+		CompletableFuture<Object> response = protocol.sendRequest ( "1:request", 50, TimeUnit.MILLISECONDS );
+
+		ExecutionException e = Assertions.assertThrows ( ExecutionException.class, () -> response.get ( 1, TimeUnit.SECONDS ) );
+		Assertions.assertTrue ( e.getCause() instanceof TimeoutException );
+		Assertions.assertEquals ( 0, protocol.getOutstandingRequests() );
+		
+		// A late response is treated as unsolicited.
+		protocol.receive ( "1:late" );
+	}
+
+	@Test
+	public void testSimulatedDevices() throws Exception
+	{
+		int deviceCount = ProtocolThreads.isVirtualAvailable() ? 10_000 : 200;
+		ExecutorService senders = ProtocolThreads.executor ( "Sender-" );
+		List<Thread> processors = new ArrayList<>();
+		List<CompletableFuture<Object>> responses = new ArrayList<>();
+
+		try
+		{
+			for ( int i = 0; i < deviceCount; ++i )
+			{
+				BlockingQueue<Object> device = new LinkedBlockingQueue<>();
+				Protocol protocol = new Protocol();
+
+				protocol.getTxChain().add ( s -> { device.add ( s + ".Response" ); return null; } );
+				protocol.getRxChain().add ( o -> device.take() );
+
+				processors.add ( protocol.startRxChainProcessor ( ProtocolThreads.factory ( "Device" + i + "-" ) ) );
+				responses.add ( protocol.sendOn ( "Device" + i, senders ) );
+			}
+
+			for ( int i = 0; i < deviceCount; ++i )
+				Assertions.assertEquals ( "Device" + i + ".Response", responses.get ( i ).get ( 10, TimeUnit.SECONDS ) );
+		}
+		finally
+		{
+			senders.shutdownNow();
+
+			for ( Thread processor : processors )
+				processor.interrupt();
+		}
+
+		for ( Thread processor : processors )
+		{
+			processor.join ( 1000 );
+			Assertions.assertFalse ( processor.isAlive() );
+		}
+	}
+
+	private static class KeyCorrelator implements Correlator
+	{
+		@Override
+		public Object requestKey ( Object request )
+		{
+			return responseKey ( request );
+		}
+
+		@Override
+		public Object responseKey ( Object response )
+		{
+			return ( ( String ) response ).split ( ":" ) [ 0 ];
+		}
+	}
+
 	private static class Bouncer
 	{
 		private Object data;
@@ -0,0 +1,206 @@
+package utility.protocol.capture;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import utility.protocol.LengthPrefixFramer;
+import utility.protocol.LengthPrefixFramer.Prefix;
+import utility.protocol.Protocol;
+import utility.protocol.gmp.MessageApplicance;
+import utility.protocol.gmp.MessageApplicanceTest.TextMessage;
+import utility.protocol.gmp.messages.Header;
+import utility.protocol.gmp.messages.Message;
+import utility.protocol.gmp.messages.MessageCategory;
+import utility.protocol.gmp.messages.MessageType;
+
+public class CaptureTest
+{
+	@TempDir
+	Path directory;
+
+	private static String decode ( Object data )
+	{
+		return StandardCharsets.UTF_8.decode ( ( ( ByteBuffer ) data ).duplicate() ).toString();
+	}
+
+	private static byte[] bytes ( Object data )
+	{
+		ByteBuffer buffer = ( ( ByteBuffer ) data ).duplicate();
+		byte[] bytes = new byte [ buffer.remaining() ];
+
+		buffer.get ( bytes );
+		return bytes;
+	}
+
+	@Test
+	public void testRoundTrip() throws Exception
+	{
+		Path file = directory.resolve ( "roundtrip.cap" );
+		List<Object> wire = new ArrayList<>();
+		Protocol protocol = new Protocol();
+
+		try ( CaptureWriter writer = new CaptureWriter ( file ) )
+		{
+			protocol.getTxChain().add ( s -> ( ( String ) s ).getBytes ( StandardCharsets.UTF_8 ) );
+			protocol.getTxChain().add ( writer.tap ( Direction.TX ) );
+			protocol.getTxChain().add ( b -> { wire.add ( b ); return null; } );
+
+			protocol.getRxChain().add ( writer.tap ( Direction.RX ) );
+			protocol.getRxChain().add ( b -> null );
+
+			for ( int i = 0; i < 1000; ++i )
+			{
+				protocol.sendAsync ( "Request" + i );
+				protocol.receive ( ByteBuffer.wrap ( ( "Response" + i ).getBytes ( StandardCharsets.UTF_8 ) ) );
+			}
+
+			// A frame longer than the write buffer.
+			protocol.sendAsync ( new String ( new char [ 100_000 ] ).replace ( '\0', 'x' ) );
+
+			Assertions.assertEquals ( 2001, writer.getRecordCount() );
+		}
+
+		Assertions.assertEquals ( 1001, wire.size() );
+
+		// A small region size forces records to straddle, and be remapped across, regions.
+		try ( CaptureReader reader = new CaptureReader ( file, 100 ) )
+		{
+			Assertions.assertTrue ( Math.abs ( System.currentTimeMillis() - reader.getStartTimeMillis() ) < TimeUnit.MINUTES.toMillis ( 1 ) );
+
+			long previous = -1;
+
+			for ( int i = 0; i < 1000; ++i )
+			{
+				CaptureReader.Record record = reader.next();
+
+				Assertions.assertEquals ( Direction.TX, record.getDirection() );
+				Assertions.assertEquals ( "Request" + i, decode ( record.getFrame() ) );
+				Assertions.assertTrue ( record.getTimestampNanos() >= previous );
+				previous = record.getTimestampNanos();
+
+				record = reader.next();
+
+				Assertions.assertEquals ( Direction.RX, record.getDirection() );
+				Assertions.assertEquals ( "Response" + i, decode ( record.getFrame() ) );
+			}
+
+			Assertions.assertEquals ( 100_000, reader.next().getFrame().remaining() );
+			Assertions.assertNull ( reader.next() );
+
+			reader.rewind();
+			Assertions.assertEquals ( "Request0", decode ( reader.next().getFrame() ) );
+		}
+	}
+
+	@Test
+	public void testReplay() throws Exception
+	{
+		Path file = directory.resolve ( "replay.cap" );
+
+		try ( CaptureWriter writer = new CaptureWriter ( file ) )
+		{
+			for ( int i = 0; i < 10; ++i )
+			{
+				writer.record ( Direction.RX, ( "Frame" + i ).getBytes ( StandardCharsets.UTF_8 ) );
+				writer.record ( Direction.TX, ( "Sent" + i ).getBytes ( StandardCharsets.UTF_8 ) );
+				Thread.sleep ( 20 );
+			}
+		}
+
+		List<String> received = new ArrayList<>();
+		List<String> sent = new ArrayList<>();
+		Protocol protocol = new Protocol();
+
+		protocol.getRxChain().add ( CaptureTest::decode );
+		protocol.registerDataListener ( data -> received.add ( ( String ) data ) );
+		protocol.getTxChain().add ( b -> { sent.add ( decode ( b ) ); return null; } );
+
+		try ( CaptureReader reader = new CaptureReader ( file ) )
+		{
+			Assertions.assertEquals ( 20, reader.replay ( protocol, Double.POSITIVE_INFINITY ) );
+			Assertions.assertEquals ( 10, received.size() );
+			Assertions.assertEquals ( "Frame9", received.get ( 9 ) );
+			Assertions.assertEquals ( "Sent9", sent.get ( 9 ) );
+
+			// The original timing spans at least 180ms: at half speed, the RX records alone take at least 360ms.
+			reader.rewind();
+			received.clear();
+			long start = System.nanoTime();
+
+			Assertions.assertEquals ( 10, reader.replay ( protocol, Direction.RX, 0.5 ) );
+			Assertions.assertTrue ( System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos ( 360 ) );
+			Assertions.assertEquals ( 10, received.size() );
+			Assertions.assertEquals ( 10, sent.size() );
+		}
+	}
+
+	@Test
+	public void testReplayFramedProtocol() throws Exception
+	{
+		Path file = directory.resolve ( "framed.cap" );
+		LengthPrefixFramer framer = new LengthPrefixFramer ( Prefix.VARINT, 1024 );
+		MessageApplicance messageAppliance = new MessageApplicance ( TextMessage::new );
+		List<byte[]> wire = new ArrayList<>();
+		List<Message> received = new ArrayList<>();
+		Protocol protocol = new Protocol();
+		Message[] requests = new Message [ 5 ];
+		ByteBuffer responses = ByteBuffer.allocate ( 1024 );
+
+		for ( int i = 0; i < requests.length; ++i )
+		{
+			requests [ i ] = new TextMessage ( new Header ( false, MessageType.REQUEST, MessageCategory.OPERATION, i ), "Request" + i );
+			responses.put ( ( ByteBuffer ) framer.encodeFrame ( messageAppliance.encodeMessage ( new TextMessage ( new Header ( false, MessageType.COMMAND, MessageCategory.OPERATION, i ), "Response" + i ) ) ) );
+		}
+
+		responses.flip();
+
+		try ( CaptureWriter writer = new CaptureWriter ( file ) )
+		{
+			protocol.getTxChain().add ( messageAppliance::encodeMessage );
+			protocol.getTxChain().add ( framer::encodeFrame );
+			protocol.getTxChain().add ( writer.tap ( Direction.TX ) );
+			protocol.getTxChain().add ( b -> { wire.add ( bytes ( b ) ); return null; } );
+
+			protocol.getRxChain().add ( framer.decoder() );
+			protocol.getRxChain().add ( writer.tap ( Direction.RX ) );
+			protocol.getRxChain().add ( messageAppliance::decodeMessage );
+			protocol.registerDataListener ( data -> received.add ( ( Message ) data ) );
+
+			for ( Message request : requests )
+				protocol.sendAsync ( request );
+
+			// All of the responses arrive in one read.
+			protocol.receive ( responses );
+
+			Assertions.assertEquals ( 10, writer.getRecordCount() );
+		}
+
+		List<byte[]> sent = new ArrayList<>( wire );
+		List<Message> decoded = new ArrayList<>( received );
+
+		wire.clear();
+		received.clear();
+
+		// The same Protocol replays its own capture: frames re-enter each chain where its tap captured them.
+		try ( CaptureReader reader = new CaptureReader ( file ) )
+		{
+			Assertions.assertEquals ( 10, reader.replay ( protocol, Double.POSITIVE_INFINITY ) );
+		}
+
+		Assertions.assertEquals ( 5, decoded.size() );
+		Assertions.assertEquals ( decoded, received );
+		Assertions.assertEquals ( "Response4", ( ( TextMessage ) received.get ( 4 ) ).getText() );
+		Assertions.assertEquals ( sent.size(), wire.size() );
+
+		for ( int i = 0; i < sent.size(); ++i )
+			Assertions.assertArrayEquals ( sent.get ( i ), wire.get ( i ) );
+	}
+}
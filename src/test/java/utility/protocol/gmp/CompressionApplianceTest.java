@@ -0,0 +1,127 @@
+package utility.protocol.gmp;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.zip.Deflater;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import utility.protocol.ByteBufferPool;
+import utility.protocol.Protocol;
+import utility.protocol.Protocol.ProtocolException;
+import utility.protocol.gmp.MessageApplicanceTest.TextMessage;
+import utility.protocol.gmp.messages.Header;
+import utility.protocol.gmp.messages.Message;
+import utility.protocol.gmp.messages.MessageCategory;
+import utility.protocol.gmp.messages.MessageType;
+
+public class CompressionApplianceTest
+{
+	private static final byte[] DICTIONARY = "temperature=,voltage=,current=,status=OK,status=FAULT,".getBytes ( StandardCharsets.UTF_8 );
+
+	private static String statusText()
+	{
+		StringBuilder text = new StringBuilder();
+
+		for ( int i = 0; i < 50; ++i )
+			text.append ( "temperature=" ).append ( 20 + i % 3 ).append ( ",voltage=12,current=3,status=OK," );
+
+		return text.toString();
+	}
+
+	@Test
+	public void testRoundTrip() throws Exception
+	{
+		CompressionAppliance compression = new CompressionAppliance ( EnumSet.of ( MessageCategory.STATUS, MessageCategory.DEBUG ), 64, DICTIONARY, 64 * 1024 );
+		MessageApplicance messageAppliance = new MessageApplicance ( TextMessage::new );
+		BlockingQueue<Object> received = new LinkedBlockingQueue<>();
+		Protocol protocol = new Protocol();
+
+		protocol.getTxChain().add ( messageAppliance::encodeMessage );
+		protocol.getTxChain().add ( compression.compressor() );
+		protocol.getTxChain().add ( data -> { received.add ( data ); protocol.receive ( data ); return null; } );
+
+		protocol.getRxChain().add ( compression.decompressor() );
+		protocol.getRxChain().add ( messageAppliance::decodeMessage );
+
+		BlockingQueue<Message> messages = new LinkedBlockingQueue<>();
+		protocol.registerDataListener ( data -> messages.add ( ( Message ) data ) );
+
+		String text = statusText();
+
+		Message status    = new TextMessage ( new Header ( true, MessageType.COMMAND, MessageCategory.STATUS, 1 ), text );
+		Message tiny      = new TextMessage ( new Header ( false, MessageType.COMMAND, MessageCategory.STATUS, 2 ), "status=OK" );
+		Message operation = new TextMessage ( new Header ( false, MessageType.COMMAND, MessageCategory.OPERATION, 3 ), text );
+
+		for ( Message message : new Message[] { status, tiny, operation } )
+			protocol.sendAsync ( message );
+
+		byte[] wire = ( byte[] ) received.poll();
+
+		Assertions.assertEquals ( HeaderAppliance.FLAG_COMPRESSED | HeaderAppliance.FLAG_HIGH_PRIORITY, wire [ 0 ] );
+		Assertions.assertTrue ( wire.length < text.length() / 10, "Compressed to " + wire.length + " of " + text.length() );
+
+		// Below the threshold, and not negotiated, are sent raw.
+		Assertions.assertEquals ( HeaderAppliance.HEADER_LENGTH + 9, ( ( byte[] ) received.poll() ).length );
+		Assertions.assertEquals ( HeaderAppliance.HEADER_LENGTH + text.length(), ( ( byte[] ) received.poll() ).length );
+
+		Assertions.assertEquals ( status, messages.poll() );
+		Assertions.assertEquals ( tiny, messages.poll() );
+		Assertions.assertEquals ( operation, messages.poll() );
+
+		Assertions.assertEquals ( text.length(), compression.getRawBytes() );
+	}
+
+	@Test
+	public void testDictionaryMismatch() throws Exception
+	{
+		CompressionAppliance sender = new CompressionAppliance ( EnumSet.allOf ( MessageCategory.class ), 0, DICTIONARY, 64 * 1024 );
+		CompressionAppliance receiver = new CompressionAppliance ( EnumSet.allOf ( MessageCategory.class ), 0, null, 64 * 1024 );
+		MessageApplicance messageAppliance = new MessageApplicance ( TextMessage::new );
+
+		byte[] encoded = ( byte[] ) messageAppliance.encodeMessage ( new TextMessage ( new Header ( false, MessageType.REQUEST, MessageCategory.DEBUG, 0 ), statusText() ) );
+		Object compressed = sender.compress ( encoded );
+
+		Assertions.assertNotSame ( encoded, compressed );
+		Assertions.assertThrows ( ProtocolException.class, () -> receiver.decompress ( compressed ) );
+
+		// Without a decompressor, a compressed message is rejected rather than decoded as garbage.
+		Assertions.assertThrows ( ProtocolException.class, () -> messageAppliance.decodeMessage ( compressed ) );
+
+		ByteBuffer restored = ( ByteBuffer ) sender.decompress ( compressed );
+		byte[] bytes = new byte [ restored.remaining() ];
+
+		restored.get ( bytes );
+		Assertions.assertArrayEquals ( encoded, bytes );
+	}
+
+	@Test
+	public void testPooledBuffers() throws Exception
+	{
+		ByteBufferPool pool = new ByteBufferPool ( 4096, 4 );
+		MessageApplicance messageAppliance = new MessageApplicance ( TextMessage::new, pool );
+		Message status = new TextMessage ( new Header ( false, MessageType.COMMAND, MessageCategory.STATUS, 1 ), statusText() );
+
+		try ( CompressionAppliance compression = new CompressionAppliance ( EnumSet.of ( MessageCategory.STATUS ), 64, DICTIONARY, 64 * 1024, Deflater.DEFAULT_COMPRESSION, pool ) )
+		{
+			for ( int i = 0; i < 10; ++i )
+			{
+				ByteBuffer encoded = ( ByteBuffer ) messageAppliance.encodeMessage ( status );
+				ByteBuffer compressed = ( ByteBuffer ) compression.compress ( encoded );
+
+				Assertions.assertNotSame ( encoded, compressed );
+				Assertions.assertEquals ( status, messageAppliance.decodeMessage ( compression.decompress ( compressed ) ) );
+
+				// As the transport does, once written.
+				pool.release ( compressed );
+			}
+		}
+
+		// The encoded buffer is returned to the pool by the compressor, and the compressed one by the "transport".
+		Assertions.assertEquals ( 2, pool.getAllocations() );
+	}
+}
@@ -0,0 +1,88 @@
+package utility.protocol.gmp;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import utility.protocol.Protocol;
+import utility.protocol.Protocol.ProtocolException;
+import utility.protocol.gmp.MessageApplicanceTest.TextMessage;
+import utility.protocol.gmp.messages.Header;
+import utility.protocol.gmp.messages.Message;
+import utility.protocol.gmp.messages.MessageCategory;
+import utility.protocol.gmp.messages.MessageType;
+
+public class HeaderViewTest
+{
+	@Test
+	public void testView() throws Exception
+	{
+		HeaderAppliance headerAppliance = new HeaderAppliance();
+		ByteBuffer buffer = ByteBuffer.allocate ( 64 );
+		Header first = new Header ( true, MessageType.COMMAND, MessageCategory.NOTIFICATION, 0xCAFEBABE );
+		Header second = new Header ( false, MessageType.REQUEST, MessageCategory.DEBUG, 12345 );
+
+		buffer.position ( 5 );
+		headerAppliance.encodeHeader ( first, buffer );
+		headerAppliance.encodeHeader ( second, buffer );
+		buffer.flip();
+
+		HeaderView view = new HeaderView().wrap ( buffer, 5 );
+
+		Assertions.assertTrue ( view.isHighPriority() );
+		Assertions.assertFalse ( view.isCompressed() );
+		Assertions.assertEquals ( MessageType.COMMAND, view.getType() );
+		Assertions.assertEquals ( MessageCategory.NOTIFICATION, view.getCategory() );
+		Assertions.assertEquals ( 0xCAFEBABE, view.getId() );
+		Assertions.assertEquals ( first, view.toHeader() );
+
+		view.wrap ( buffer, 5 + HeaderAppliance.HEADER_LENGTH );
+
+		Assertions.assertFalse ( view.isHighPriority() );
+		Assertions.assertEquals ( MessageCategory.DEBUG, view.getCategory() );
+		Assertions.assertEquals ( 12345, view.getId() );
+		Assertions.assertEquals ( second, view.toHeader ( new Header() ) );
+
+		// The buffer is left untouched.
+		Assertions.assertEquals ( 0, buffer.position() );
+		Assertions.assertEquals ( 5 + 2 * HeaderAppliance.HEADER_LENGTH, buffer.limit() );
+
+		Assertions.assertThrows ( ProtocolException.class, () -> view.wrap ( buffer, 6 + HeaderAppliance.HEADER_LENGTH ) );
+
+		buffer.put ( 5 + HeaderAppliance.CATEGORY_OFFSET, ( byte ) 99 );
+		view.wrap ( buffer, 5 );
+
+		Assertions.assertNull ( view.getCategory() );
+		Assertions.assertEquals ( 99, view.getCategoryValue() );
+		Assertions.assertThrows ( ProtocolException.class, view::toHeader );
+	}
+
+	@Test
+	public void testFilter() throws Exception
+	{
+		MessageApplicance messageAppliance = new MessageApplicance ( TextMessage::new );
+		HeaderFilter filter = new HeaderFilter ( view -> view.getCategory() != MessageCategory.DEBUG );
+		List<Message> received = new ArrayList<>();
+		Protocol protocol = new Protocol();
+
+		protocol.getRxChain().add ( filter );
+		protocol.getRxChain().add ( messageAppliance::decodeMessage );
+		protocol.registerDataListener ( data -> received.add ( ( Message ) data ) );
+
+		for ( int i = 0; i < 100; ++i )
+		{
+			MessageCategory category = ( i % 10 == 0 ) ? MessageCategory.STATUS : MessageCategory.DEBUG;
+			Message message = new TextMessage ( new Header ( false, MessageType.COMMAND, category, i ), "Message" + i );
+
+			protocol.receive ( ByteBuffer.wrap ( ( byte[] ) messageAppliance.encodeMessage ( message ) ) );
+		}
+
+		Assertions.assertEquals ( 10, received.size() );
+		Assertions.assertEquals ( 10, filter.getAccepted() );
+		Assertions.assertEquals ( 90, filter.getDropped() );
+		Assertions.assertEquals ( "Message90", ( ( TextMessage ) received.get ( 9 ) ).getText() );
+	}
+}
@@ -0,0 +1,169 @@
+package utility.protocol.gmp;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import utility.protocol.ByteBufferPool;
+import utility.protocol.Protocol.ProtocolException;
+import utility.protocol.gmp.messages.Header;
+import utility.protocol.gmp.messages.Message;
+import utility.protocol.gmp.messages.MessageCategory;
+import utility.protocol.gmp.messages.MessageType;
+
+public class MessageApplicanceTest
+{
+	public static class TextMessage extends Message
+	{
+		private String text;
+
+		public TextMessage ( Header header, String text )
+		{
+			super ( header );
+			this.text = text;
+		}
+
+		public TextMessage ( Header header, byte[] payload )
+		{
+			super ( header, payload );
+			decodePayload();
+		}
+
+		public String getText()
+		{
+			return text;
+		}
+
+		@Override
+		public void encodePayload()
+		{
+			setPayload ( text.getBytes ( StandardCharsets.UTF_8 ) );
+		}
+
+		@Override
+		public void decodePayload()
+		{
+			text = new String ( getPayload(), StandardCharsets.UTF_8 );
+		}
+
+		@Override
+		public String payloadString()
+		{
+			return text;
+		}
+	}
+
+	@Test
+	public void testRoundTrip() throws Exception
+	{
+		MessageApplicance appliance = new MessageApplicance ( TextMessage::new );
+		Header header = new Header ( true, MessageType.COMMAND, MessageCategory.STATUS, 0x01020304 );
+
+		byte[] encoded = ( byte[] ) appliance.encodeMessage ( new TextMessage ( header, "Hello" ) );
+
+		Assertions.assertEquals ( HeaderAppliance.HEADER_LENGTH + 5, encoded.length );
+		Assertions.assertArrayEquals ( new byte[] { 1, 1, 3, 1, 2, 3, 4 }, java.util.Arrays.copyOf ( encoded, HeaderAppliance.HEADER_LENGTH ) );
+
+		TextMessage decoded = ( TextMessage ) appliance.decodeMessage ( encoded );
+
+		Assertions.assertEquals ( header, decoded.getHeader() );
+		Assertions.assertEquals ( "Hello", decoded.getText() );
+	}
+
+	@Test
+	public void testPooledEncoding() throws Exception
+	{
+		ByteBufferPool pool = new ByteBufferPool ( 64, 4, true );
+		MessageApplicance appliance = new MessageApplicance ( TextMessage::new, pool );
+
+		for ( int i = 0; i < 100; ++i )
+		{
+			TextMessage message = new TextMessage ( new Header ( false, MessageType.REQUEST, MessageCategory.DEBUG, i ), "Message" + i );
+			ByteBuffer buffer = ( ByteBuffer ) appliance.encodeMessage ( message );
+
+			Assertions.assertTrue ( buffer.isDirect() );
+
+			TextMessage decoded = ( TextMessage ) appliance.decodeMessage ( buffer );
+
+			Assertions.assertEquals ( i, decoded.getHeader().getId() );
+			Assertions.assertEquals ( "Message" + i, decoded.getText() );
+
+			pool.release ( buffer );
+		}
+
+		Assertions.assertEquals ( 1, pool.getAllocations() );
+	}
+
+	@Test
+	public void testPayloadView() throws Exception
+	{
+		ByteBuffer frame = ByteBuffer.wrap ( new byte[] { 0, 0, 4, 0, 0, 0, 9, 'a', 'b', 'c' } );
+
+		MessageApplicance appliance = new MessageApplicance ( new MessageFactory()
+		{
+			@Override
+			public Message createMessage ( Header header, byte[] payload )
+			{
+				throw new AssertionError ( "Payload should not be copied" );
+			}
+
+			@Override
+			public Message createMessage ( Header header, ByteBuffer payload )
+			{
+				Assertions.assertSame ( frame, payload );
+				return new TextMessage ( header, StandardCharsets.UTF_8.decode ( payload ).toString() );
+			}
+		} );
+
+		TextMessage decoded = ( TextMessage ) appliance.decodeMessage ( frame );
+
+		Assertions.assertEquals ( MessageCategory.NOTIFICATION, decoded.getHeader().getCategory() );
+		Assertions.assertEquals ( "abc", decoded.getText() );
+	}
+
+	@Test
+	public void testRegistryDispatch() throws Exception
+	{
+		MessageRegistry registry = new MessageRegistry ( TextMessage::new );
+		registry.register ( MessageType.COMMAND, MessageCategory.DEBUG, ( header, payload ) -> new TextMessage ( header, "Debug Command" ) );
+		registry.register ( null, MessageCategory.OPERATION, ( header, payload ) -> new TextMessage ( header, "Operation" ) );
+
+		MessageApplicance appliance = new MessageApplicance ( registry );
+
+		Assertions.assertEquals ( "Debug Command", decode ( appliance, MessageType.COMMAND, MessageCategory.DEBUG ) );
+		Assertions.assertEquals ( "Payload",       decode ( appliance, MessageType.REQUEST, MessageCategory.DEBUG ) );
+		Assertions.assertEquals ( "Operation",     decode ( appliance, MessageType.REQUEST, MessageCategory.OPERATION ) );
+		Assertions.assertEquals ( "Operation",     decode ( appliance, MessageType.COMMAND, MessageCategory.OPERATION ) );
+
+		MessageApplicance empty = new MessageApplicance ( new MessageRegistry() );
+
+		Assertions.assertThrows ( ProtocolException.class, () -> decode ( empty, MessageType.REQUEST, MessageCategory.STATUS ) );
+	}
+
+	@Test
+	public void testUnknownHeaderValues()
+	{
+		MessageApplicance appliance = new MessageApplicance ( TextMessage::new );
+
+		Assertions.assertThrows ( ProtocolException.class, () -> appliance.decodeMessage ( new byte[] { 0, 2, 0, 0, 0, 0, 1 } ) );
+		Assertions.assertThrows ( ProtocolException.class, () -> appliance.decodeMessage ( new byte[] { 0, 0, 6, 0, 0, 0, 1 } ) );
+		Assertions.assertThrows ( ProtocolException.class, () -> appliance.decodeMessage ( new byte[] { 0, 0, 0 } ) );
+	}
+
+	private static String decode ( MessageApplicance appliance, MessageType type, MessageCategory category ) throws Exception
+	{
+		byte[] encoded = ( byte[] ) appliance.encodeMessage ( new TextMessage ( new Header ( false, type, category, 7 ), "Payload" ) );
+		return ( ( TextMessage ) appliance.decodeMessage ( encoded ) ).getText();
+	}
+
+	@Test
+	public void testBufferTooSmall()
+	{
+		MessageApplicance appliance = new MessageApplicance ( TextMessage::new, new ByteBufferPool ( 8, 1 ) );
+		TextMessage message = new TextMessage ( new Header ( false, MessageType.REQUEST, MessageCategory.DEBUG, 1 ), "Too Long" );
+
+		Assertions.assertThrows ( ProtocolException.class, () -> appliance.encodeMessage ( message ) );
+	}
+}
@@ -0,0 +1,163 @@
+package utility.protocol.gmp;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import utility.protocol.Protocol;
+import utility.protocol.gmp.MessageApplicanceTest.TextMessage;
+import utility.protocol.gmp.MessageDispatcher.OverflowPolicy;
+import utility.protocol.gmp.MessageDispatcher.Subscription;
+import utility.protocol.gmp.messages.Header;
+import utility.protocol.gmp.messages.Message;
+import utility.protocol.gmp.messages.MessageCategory;
+import utility.protocol.gmp.messages.MessageType;
+
+public class MessageDispatcherTest
+{
+	private static Message message ( MessageType type, MessageCategory category, String text )
+	{
+		return new TextMessage ( new Header ( false, type, category, 0 ), text );
+	}
+
+	@Test
+	public void testRouting() throws Exception
+	{
+		Protocol protocol = new Protocol();
+		MessageDispatcher dispatcher = new MessageDispatcher ( protocol );
+
+		Subscription status = dispatcher.subscribe ( null, MessageCategory.STATUS, 16, OverflowPolicy.DROP_NEWEST );
+		Subscription commands = dispatcher.subscribe ( MessageType.COMMAND, null, 16, OverflowPolicy.DROP_NEWEST );
+
+		protocol.receive ( message ( MessageType.REQUEST, MessageCategory.STATUS, "a" ) );
+		protocol.receive ( message ( MessageType.COMMAND, MessageCategory.STATUS, "b" ) );
+		protocol.receive ( message ( MessageType.COMMAND, MessageCategory.DEBUG, "c" ) );
+		protocol.receive ( message ( MessageType.REQUEST, MessageCategory.DEBUG, "d" ) );
+
+		// Both frames arriving before either subscriber looks are kept.
+		Assertions.assertEquals ( "a", ( ( TextMessage ) status.poll() ).getText() );
+		Assertions.assertEquals ( "b", ( ( TextMessage ) status.poll() ).getText() );
+		Assertions.assertNull ( status.poll() );
+
+		Assertions.assertEquals ( "b", ( ( TextMessage ) commands.poll() ).getText() );
+		Assertions.assertEquals ( "c", ( ( TextMessage ) commands.poll ( 1, TimeUnit.SECONDS ) ).getText() );
+		Assertions.assertNull ( commands.poll ( 10, TimeUnit.MILLISECONDS ) );
+
+		Assertions.assertEquals ( 1, dispatcher.getUnsubscribed() );
+
+		dispatcher.unsubscribe ( status );
+		protocol.receive ( message ( MessageType.REQUEST, MessageCategory.STATUS, "e" ) );
+
+		Assertions.assertTrue ( status.isClosed() );
+		Assertions.assertNull ( status.poll() );
+	}
+
+	@Test
+	public void testOverflow()
+	{
+		MessageDispatcher dispatcher = new MessageDispatcher();
+
+		Subscription oldest = dispatcher.subscribe ( null, null, 2, OverflowPolicy.DROP_OLDEST );
+		Subscription newest = dispatcher.subscribe ( null, null, 2, OverflowPolicy.DROP_NEWEST );
+
+		for ( String text : new String[] { "1", "2", "3", "4" } )
+			dispatcher.dispatch ( message ( MessageType.REQUEST, MessageCategory.OPERATION, text ) );
+
+		Assertions.assertEquals ( 2, oldest.getDropped() );
+		Assertions.assertEquals ( "3", ( ( TextMessage ) oldest.poll() ).getText() );
+		Assertions.assertEquals ( "4", ( ( TextMessage ) oldest.poll() ).getText() );
+
+		Assertions.assertEquals ( 2, newest.getDropped() );
+		Assertions.assertEquals ( "1", ( ( TextMessage ) newest.poll() ).getText() );
+		Assertions.assertEquals ( "2", ( ( TextMessage ) newest.poll() ).getText() );
+	}
+
+	@Test
+	public void testExactCapacity()
+	{
+		MessageDispatcher dispatcher = new MessageDispatcher();
+		Subscription subscription = dispatcher.subscribe ( null, null, 3, OverflowPolicy.DROP_NEWEST );
+
+		for ( String text : new String[] { "1", "2", "3", "4", "5" } )
+			dispatcher.dispatch ( message ( MessageType.REQUEST, MessageCategory.OPERATION, text ) );
+
+		// A capacity of 3 is not rounded up to 4.
+		Assertions.assertEquals ( 3, subscription.getQueueDepth() );
+		Assertions.assertEquals ( 2, subscription.getDropped() );
+	}
+
+	@Test
+	public void testBlockReleasedByUnsubscribe() throws Exception
+	{
+		MessageDispatcher dispatcher = new MessageDispatcher();
+		Subscription subscription = dispatcher.subscribe ( null, null, 1, OverflowPolicy.BLOCK );
+
+		dispatcher.dispatch ( message ( MessageType.REQUEST, MessageCategory.OPERATION, "1" ) );
+
+		Thread rx = new Thread ( () -> dispatcher.dispatch ( message ( MessageType.REQUEST, MessageCategory.OPERATION, "2" ) ) );
+		rx.start();
+
+		// The RX thread stays parked while the queue is full ...
+		rx.join ( 100 );
+		Assertions.assertTrue ( rx.isAlive() );
+
+		// ... until the subscription is removed, when its message is dropped.
+		dispatcher.unsubscribe ( subscription );
+		rx.join ( 5000 );
+
+		Assertions.assertFalse ( rx.isAlive() );
+		Assertions.assertEquals ( 1, subscription.getDropped() );
+	}
+
+	@Test
+	public void testBlock() throws Exception
+	{
+		MessageDispatcher dispatcher = new MessageDispatcher();
+		Subscription subscription = dispatcher.subscribe ( null, null, 1, OverflowPolicy.BLOCK );
+
+		Thread rx = new Thread ( () ->
+		{
+			for ( int i = 0; i < 100; ++i )
+				dispatcher.dispatch ( message ( MessageType.REQUEST, MessageCategory.OPERATION, Integer.toString ( i ) ) );
+		} );
+
+		rx.start();
+
+		for ( int i = 0; i < 100; ++i )
+			Assertions.assertEquals ( Integer.toString ( i ), ( ( TextMessage ) subscription.poll ( 5, TimeUnit.SECONDS ) ).getText() );
+
+		rx.join ( 5000 );
+		Assertions.assertEquals ( 0, subscription.getDropped() );
+	}
+
+	@Test
+	public void testExecutorDelivery() throws Exception
+	{
+		ExecutorService executor = Executors.newFixedThreadPool ( 4 );
+
+		try
+		{
+			MessageDispatcher dispatcher = new MessageDispatcher();
+			BlockingQueue<String> delivered = new LinkedBlockingQueue<>();
+
+			dispatcher.subscribe ( MessageType.REQUEST, MessageCategory.NOTIFICATION, 1024, OverflowPolicy.BLOCK,
+					m -> delivered.add ( ( ( TextMessage ) m ).getText() ), executor );
+
+			for ( int i = 0; i < 1000; ++i )
+				dispatcher.dispatch ( message ( MessageType.REQUEST, MessageCategory.NOTIFICATION, Integer.toString ( i ) ) );
+
+			// Delivered in order, despite the pool having several threads.
+			for ( int i = 0; i < 1000; ++i )
+				Assertions.assertEquals ( Integer.toString ( i ), delivered.poll ( 5, TimeUnit.SECONDS ) );
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,144 @@
+package utility.protocol.gmp;
+
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import utility.protocol.ByteBufferPool;
+import utility.protocol.Recycler;
+import utility.protocol.gmp.messages.Header;
+import utility.protocol.gmp.messages.Message;
+import utility.protocol.gmp.messages.MessageCategory;
+import utility.protocol.gmp.messages.MessageType;
+
+public class PooledMessageFactoryTest
+{
+	/**
+	 * A message whose payload is a single long, decoded straight from the payload view.
+	 */
+	public static class CounterMessage extends Message
+	{
+		private long count;
+
+		public CounterMessage()
+		{}
+
+		public CounterMessage ( Header header, long count )
+		{
+			super ( header );
+			this.count = count;
+		}
+
+		public long getCount()
+		{
+			return count;
+		}
+
+		@Override
+		public void encodePayload()
+		{
+			setPayload ( ByteBuffer.allocate ( 8 ).putLong ( 0, count ) );
+		}
+
+		@Override
+		public void decodePayload()
+		{
+			ByteBuffer payload = getPayloadBuffer();
+			count = ( payload.remaining() >= 8 ) ? payload.getLong ( payload.position() ) : -1;
+		}
+
+		@Override
+		public void clear()
+		{
+			super.clear();
+			count = 0;
+		}
+
+		@Override
+		public String payloadString()
+		{
+			return Long.toString ( count );
+		}
+	}
+
+	@Test
+	public void testSteadyState() throws Exception
+	{
+		ByteBufferPool payloads = new ByteBufferPool ( 64, 4 );
+		PooledMessageFactory factory = new PooledMessageFactory ( CounterMessage::new, 4, payloads );
+		Recycler<Header> headers = new Recycler<> ( Header::new, null, 4, true );
+		MessageApplicance appliance = new MessageApplicance ( new MessageRegistry ( factory ), null, headers );
+
+		byte[] encoded = ( byte[] ) appliance.encodeMessage ( new CounterMessage ( new Header ( true, MessageType.REQUEST, MessageCategory.STATUS, 7 ), 0 ) );
+		ByteBuffer frame = ByteBuffer.wrap ( encoded );
+		Message first = null;
+
+		for ( long i = 0; i < 10_000; ++i )
+		{
+			frame.putLong ( HeaderAppliance.HEADER_LENGTH, i ).clear();
+
+			CounterMessage message = ( CounterMessage ) appliance.decodeMessage ( frame );
+
+			Assertions.assertEquals ( i, message.getCount() );
+			Assertions.assertEquals ( 7, message.getHeader().getId() );
+			Assertions.assertTrue ( message.getHeader().isHighPriority() );
+
+			if ( first == null )
+				first = message;
+			else
+				Assertions.assertSame ( first, message );
+
+			appliance.release ( message );
+		}
+
+		Assertions.assertEquals ( 1, factory.getRecycler().getAllocations() );
+		Assertions.assertEquals ( 1, headers.getAllocations() );
+		Assertions.assertEquals ( 1, payloads.getAllocations() );
+		Assertions.assertEquals ( 0, headers.getOutstanding() );
+
+		// A released message is cleared, and releasing a header which was never acquired is detected.
+		Assertions.assertNull ( first.getHeader() );
+		Assertions.assertThrows ( IllegalStateException.class, () -> headers.release ( new Header() ) );
+	}
+
+	@Test
+	public void testOversizePayload()
+	{
+		ByteBufferPool payloads = new ByteBufferPool ( 4, 4 );
+		PooledMessageFactory factory = new PooledMessageFactory ( CounterMessage::new, 4, payloads );
+		Header header = new Header ( false, MessageType.COMMAND, MessageCategory.DEBUG, 1 );
+
+		CounterMessage message = ( CounterMessage ) factory.createMessage ( header, ByteBuffer.allocate ( 8 ).putLong ( 0, 42 ) );
+
+		Assertions.assertEquals ( 42, message.getCount() );
+
+		factory.releaseMessage ( message );
+
+		Assertions.assertEquals ( 0, payloads.getAllocations() );
+		Assertions.assertEquals ( 0, message.getPayloadLength() );
+	}
+
+	@Test
+	public void testLeakDetection() throws Exception
+	{
+		Recycler<Header> headers = new Recycler<> ( Header::new, null, 4, true );
+
+		Header released = headers.acquire();
+		headers.acquire();
+
+		headers.release ( released );
+		Assertions.assertThrows ( IllegalStateException.class, () -> headers.release ( released ) );
+		Assertions.assertEquals ( 1, headers.getOutstanding() );
+
+		for ( int i = 0; i < 100 && headers.getLeaks() == 0; ++i )
+		{
+			System.gc();
+			Thread.sleep ( 10 );
+			headers.detectLeaks();
+		}
+
+		Assertions.assertEquals ( 1, headers.getLeaks() );
+		Assertions.assertEquals ( 0, headers.getOutstanding() );
+	}
+}
@@ -0,0 +1,203 @@
+package utility.protocol.gmp;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import utility.protocol.Appliance;
+import utility.protocol.gmp.MessageApplicanceTest.TextMessage;
+import utility.protocol.gmp.SequenceTracker.Result;
+import utility.protocol.gmp.messages.Header;
+import utility.protocol.gmp.messages.Message;
+import utility.protocol.gmp.messages.MessageCategory;
+import utility.protocol.gmp.messages.MessageType;
+
+public class SequenceTrackerTest
+{
+	@Test
+	public void testAllocatorWraparound() throws Exception
+	{
+		SequenceAllocator allocator = new SequenceAllocator ( Integer.MAX_VALUE - 1 );
+
+		Assertions.assertEquals ( Integer.MAX_VALUE - 1, allocator.next() );
+		Assertions.assertEquals ( Integer.MAX_VALUE, allocator.next() );
+		Assertions.assertEquals ( Integer.MIN_VALUE, allocator.peek() );
+
+		Message message = new TextMessage ( new Header ( false, MessageType.COMMAND, MessageCategory.OPERATION, 0 ), "Text" );
+
+		Assertions.assertSame ( message, allocator.stamper().apply ( message ) );
+		Assertions.assertEquals ( Integer.MIN_VALUE, message.getHeader().getId() );
+		Assertions.assertEquals ( 2, SequenceAllocator.distance ( Integer.MAX_VALUE, Integer.MIN_VALUE + 1 ) );
+		Assertions.assertEquals ( -2, SequenceAllocator.distance ( Integer.MIN_VALUE + 1, Integer.MAX_VALUE ) );
+	}
+
+	@Test
+	public void testClassification()
+	{
+		SequenceTracker tracker = new SequenceTracker ( 64 );
+
+		Assertions.assertEquals ( Result.IN_ORDER, tracker.record ( 10 ) );
+		Assertions.assertEquals ( Result.IN_ORDER, tracker.record ( 11 ) );
+		Assertions.assertEquals ( Result.GAP, tracker.record ( 15 ) );
+		Assertions.assertEquals ( Result.REORDERED, tracker.record ( 13 ) );
+		Assertions.assertEquals ( Result.DUPLICATE, tracker.record ( 13 ) );
+		Assertions.assertEquals ( Result.DUPLICATE, tracker.record ( 15 ) );
+		Assertions.assertEquals ( Result.LATE, tracker.record ( 9 ) );
+		Assertions.assertEquals ( Result.IN_ORDER, tracker.record ( 16 ) );
+
+		Assertions.assertEquals ( 8, tracker.getReceived() );
+		Assertions.assertEquals ( 3, tracker.getInOrder() );
+		Assertions.assertEquals ( 1, tracker.getGaps() );
+		Assertions.assertEquals ( 3, tracker.getSkipped() );
+		Assertions.assertEquals ( 1, tracker.getReordered() );
+		Assertions.assertEquals ( 2, tracker.getDuplicates() );
+		Assertions.assertEquals ( 1, tracker.getLate() );
+		Assertions.assertEquals ( 0, tracker.getLost() );
+		Assertions.assertEquals ( 16, tracker.getHighest() );
+	}
+
+	@Test
+	public void testLoss()
+	{
+		SequenceTracker tracker = new SequenceTracker ( 64 );
+
+		// 12 and 14 are missing: they are lost once they slide out of the window.
+		tracker.record ( 10 );
+		tracker.record ( 11 );
+		tracker.record ( 13 );
+		tracker.record ( 15 );
+
+		for ( int id = 16; id < 10 + 64 + 12 - 10; ++id )
+			tracker.record ( id );
+
+		Assertions.assertEquals ( 0, tracker.getLost() );
+
+		tracker.record ( 12 + 64 );
+		Assertions.assertEquals ( 1, tracker.getLost() );
+		Assertions.assertEquals ( Result.LATE, tracker.record ( 12 ) );
+
+		tracker.record ( 14 + 64 );
+		Assertions.assertEquals ( 2, tracker.getLost() );
+
+		// A jump beyond the window loses the missing id 77, and every id skipped which is not within the new window.
+		tracker.record ( 14 + 64 + 1000 );
+		Assertions.assertEquals ( 2 + 1 + 1000 - 64, tracker.getLost() );
+		Assertions.assertEquals ( Result.REORDERED, tracker.record ( 14 + 64 + 1000 - 63 ) );
+	}
+
+	@Test
+	public void testWraparound()
+	{
+		SequenceTracker tracker = new SequenceTracker();
+
+		Assertions.assertEquals ( Result.IN_ORDER, tracker.record ( Integer.MAX_VALUE - 1 ) );
+		Assertions.assertEquals ( Result.GAP, tracker.record ( Integer.MIN_VALUE ) );
+		Assertions.assertEquals ( Result.REORDERED, tracker.record ( Integer.MAX_VALUE ) );
+		Assertions.assertEquals ( Result.IN_ORDER, tracker.record ( Integer.MIN_VALUE + 1 ) );
+		Assertions.assertEquals ( Result.DUPLICATE, tracker.record ( Integer.MAX_VALUE ) );
+		Assertions.assertEquals ( Result.LATE, tracker.record ( Integer.MAX_VALUE - 2 ) );
+	}
+
+	@Test
+	public void testBeyondHalfTheIdSpace()
+	{
+		SequenceTracker tracker = new SequenceTracker ( 64, Integer.MAX_VALUE, Integer.MAX_VALUE );
+
+		for ( int id = 0; id < 100; ++id )
+			tracker.record ( id );
+
+		// More than 2^31 ids after the first, the first no longer "follows" every id in the window.
+		for ( long id = 100 + ( 1 << 20 ); id <= ( 1L << 31 ) + 100; id += 1 << 20 )
+			tracker.record ( ( int ) id );
+
+		int highest = tracker.getHighest();
+
+		Assertions.assertTrue ( SequenceAllocator.distance ( 0, highest ) < 0 );
+		Assertions.assertEquals ( Result.GAP, tracker.record ( highest + 2 ) );
+		Assertions.assertEquals ( Result.REORDERED, tracker.record ( highest + 1 ) );
+
+		for ( int n = 3; n < 3 + 64; ++n )
+			tracker.record ( highest + n );
+
+		// highest + 67 is missing: it is lost once it slides out of the window.
+		long lost = tracker.getLost();
+
+		for ( int n = 68; n <= 67 + 64; ++n )
+			tracker.record ( highest + n );
+
+		Assertions.assertEquals ( lost + 1, tracker.getLost() );
+		Assertions.assertEquals ( Result.LATE, tracker.record ( highest + 67 ) );
+	}
+
+	@Test
+	public void testResync()
+	{
+		SequenceTracker tracker = new SequenceTracker ( 64, 1000, 3 );
+
+		for ( int id = 5000; id < 5100; ++id )
+			tracker.record ( id );
+
+		// The peer restarts its sequence: after a run of late ids, tracking starts again from the last of them.
+		Assertions.assertEquals ( Result.LATE, tracker.record ( 1 ) );
+		Assertions.assertEquals ( Result.LATE, tracker.record ( 2 ) );
+		Assertions.assertEquals ( Result.RESYNC, tracker.record ( 3 ) );
+		Assertions.assertEquals ( Result.IN_ORDER, tracker.record ( 4 ) );
+		Assertions.assertEquals ( Result.LATE, tracker.record ( 2 ) );
+		Assertions.assertEquals ( 3, tracker.getLate() );
+		Assertions.assertEquals ( 1, tracker.getResyncs() );
+
+		// An id within the window ends a run of late ids.
+		Assertions.assertEquals ( Result.LATE, tracker.record ( 1 ) );
+		Assertions.assertEquals ( Result.DUPLICATE, tracker.record ( 4 ) );
+		Assertions.assertEquals ( Result.LATE, tracker.record ( 1 ) );
+		Assertions.assertEquals ( 1, tracker.getResyncs() );
+
+		// A jump beyond the resync distance is not counted as loss.
+		Assertions.assertEquals ( Result.GAP, tracker.record ( 4 + 1000 ) );
+		Assertions.assertEquals ( Result.RESYNC, tracker.record ( 4 + 1000 + 1001 ) );
+		Assertions.assertEquals ( Result.IN_ORDER, tracker.record ( 4 + 1000 + 1002 ) );
+		Assertions.assertEquals ( 2, tracker.getResyncs() );
+		Assertions.assertEquals ( 1000 - 64, tracker.getLost() );
+		Assertions.assertEquals ( 100 + 11, tracker.getReceived() );
+
+		Assertions.assertThrows ( IllegalArgumentException.class, () -> new SequenceTracker ( 64, 63, 1 ) );
+		Assertions.assertThrows ( IllegalArgumentException.class, () -> new SequenceTracker ( 64, 64, 0 ) );
+	}
+
+	@Test
+	public void testRecorder() throws Exception
+	{
+		HeaderAppliance headerAppliance = new HeaderAppliance();
+		SequenceTracker tracker = new SequenceTracker();
+		Appliance recorder = tracker.recorder ( true );
+		List<Object> passed = new ArrayList<>();
+
+		for ( int id : new int [] { 10, 11, 11, 13, 12, 1 } )
+		{
+			ByteBuffer frame = ByteBuffer.allocate ( HeaderAppliance.HEADER_LENGTH );
+
+			headerAppliance.encodeHeader ( new Header ( false, MessageType.COMMAND, MessageCategory.STATUS, id ), frame );
+			frame.flip();
+
+			Object result = recorder.apply ( frame );
+
+			if ( result != null )
+				passed.add ( result );
+		}
+
+		// The late frame is passed on: only the duplicate is dropped.
+		Assertions.assertEquals ( 5, passed.size() );
+		Assertions.assertEquals ( 1, tracker.getDuplicates() );
+		Assertions.assertEquals ( 1, tracker.getReordered() );
+		Assertions.assertEquals ( 1, tracker.getLate() );
+
+		Message duplicate = new TextMessage ( new Header ( false, MessageType.COMMAND, MessageCategory.STATUS, 13 ), "Text" );
+
+		Assertions.assertNull ( recorder.apply ( duplicate ) );
+		Assertions.assertSame ( duplicate, tracker.recorder ( false ).apply ( duplicate ) );
+		Assertions.assertThrows ( IllegalArgumentException.class, () -> recorder.apply ( "Text" ) );
+	}
+}
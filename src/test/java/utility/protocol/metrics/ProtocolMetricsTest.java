@@ -0,0 +1,169 @@
+package utility.protocol.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import utility.protocol.Appliance;
+import utility.protocol.LengthPrefixFramer;
+import utility.protocol.LengthPrefixFramer.Prefix;
+import utility.protocol.Protocol;
+import utility.protocol.SplittingAppliance;
+
+public class ProtocolMetricsTest
+{
+	@Test
+	public void testHistogram()
+	{
+		LatencyHistogram histogram = new LatencyHistogram();
+
+		for ( long n = 1; n <= 1000; ++n )
+			histogram.record ( n * 1000 );
+
+		Assertions.assertEquals ( 1000, histogram.getCount() );
+		Assertions.assertEquals ( 1_000_000, histogram.getMax() );
+		Assertions.assertEquals ( 500_500, histogram.getMean(), 0.001 );
+
+		// Within the 1/32 resolution of the buckets.
+		Assertions.assertEquals ( 500_000, histogram.getValueAtPercentile ( 50 ), 500_000 / 32 );
+		Assertions.assertEquals ( 990_000, histogram.getValueAtPercentile ( 99 ), 990_000 / 32 );
+		Assertions.assertEquals ( 1_000_000, histogram.getValueAtPercentile ( 100 ) );
+
+		for ( long value : new long[] { 0, 1, 63, 64, 65, 1000, 123_456_789, Long.MAX_VALUE } )
+		{
+			long high = LatencyHistogram.highestValue ( LatencyHistogram.bucket ( value ) );
+			Assertions.assertTrue ( high >= value && high - value <= value / 32, value + " -> " + high );
+		}
+
+		histogram.reset();
+		Assertions.assertEquals ( 0, histogram.getValueAtPercentile ( 50 ) );
+	}
+
+	@Test
+	public void testInstrumentation() throws Exception
+	{
+		LengthPrefixFramer framer = new LengthPrefixFramer ( Prefix.FIXED32, 1024 );
+		Protocol protocol = new Protocol();
+
+		protocol.getTxChain().add ( s -> ( ( String ) s ).getBytes ( StandardCharsets.UTF_8 ) );
+		protocol.getTxChain().add ( framer::encodeFrame );
+		protocol.getTxChain().add ( d -> { protocol.receive ( d ); return null; } );
+
+		protocol.getRxChain().add ( framer.decoder() );
+		protocol.getRxChain().add ( b -> StandardCharsets.UTF_8.decode ( ( ByteBuffer ) b ).toString() );
+		protocol.getRxChain().add ( s -> { if ( "bad".equals ( s ) ) throw new IllegalStateException(); return s; } );
+
+		Appliance decoder = protocol.getRxChain().get ( 0 );
+		ProtocolMetrics metrics = ProtocolMetrics.instrument ( protocol, "test" );
+
+		try
+		{
+			Assertions.assertTrue ( protocol.getRxChain().get ( 0 ) instanceof SplittingAppliance );
+
+			protocol.sendAsync ( "hello" );
+			protocol.sendAsync ( "bad" );
+
+			Map<String,StageMetrics.Snapshot> snapshot = metrics.snapshot();
+
+			Assertions.assertEquals ( 6, snapshot.size() );
+			Assertions.assertEquals ( 2, snapshot.get ( "TX[0]" ).getCalls() );
+			Assertions.assertEquals ( 8, snapshot.get ( "TX[0]" ).getBytesOut() );
+			Assertions.assertEquals ( 16, snapshot.get ( "TX[1]" ).getBytesOut() );
+			Assertions.assertEquals ( 16, snapshot.get ( "RX[0]" ).getBytesIn() );
+			Assertions.assertEquals ( 8, snapshot.get ( "RX[0]" ).getBytesOut() );
+
+			// The failing stage is charged with the error, not the stages it was called from.
+			Assertions.assertEquals ( 1, snapshot.get ( "RX[2]" ).getErrors() );
+			Assertions.assertEquals ( 0, snapshot.get ( "RX[0]" ).getErrors() );
+			Assertions.assertEquals ( 2, snapshot.get ( "RX[2]" ).getCalls() );
+			Assertions.assertTrue ( snapshot.get ( "RX[1]" ).getMaxLatencyNanos() > 0 );
+
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName ( "utility.protocol:type=Stage,protocol=\"test\",chain=RX,index=2" );
+
+			Assertions.assertEquals ( 1L, server.getAttribute ( name, "Errors" ) );
+
+			metrics.close();
+
+			Assertions.assertSame ( decoder, protocol.getRxChain().get ( 0 ) );
+			Assertions.assertFalse ( server.isRegistered ( name ) );
+		}
+		finally
+		{
+			metrics.close();
+		}
+	}
+
+	@Test
+	public void testCloseLeavesOtherInstrumentation() throws Exception
+	{
+		Protocol protocol = new Protocol();
+		Appliance appliance = s -> s;
+		InstrumentedAppliance existing = InstrumentedAppliance.wrap ( appliance, new StageMetrics ( "existing" ) );
+
+		protocol.getRxChain().add ( existing );
+
+		ProtocolMetrics metrics = ProtocolMetrics.instrument ( protocol, "other" );
+
+		try
+		{
+			protocol.receive ( "data" );
+
+			Assertions.assertEquals ( 1, metrics.snapshot().get ( "RX[0]" ).getCalls() );
+			Assertions.assertEquals ( 1, existing.getMetrics().snapshot().getCalls() );
+		}
+		finally
+		{
+			metrics.close();
+		}
+
+		// Only the wrapper installed by the closed ProtocolMetrics is removed.
+		Assertions.assertSame ( existing, protocol.getRxChain().get ( 0 ) );
+	}
+
+	@Test
+	public void testCloseInnerInstrumentation() throws Exception
+	{
+		LengthPrefixFramer framer = new LengthPrefixFramer ( Prefix.FIXED32, 1024 );
+		Protocol protocol = new Protocol();
+
+		protocol.getTxChain().add ( s -> ( ( String ) s ).getBytes ( StandardCharsets.UTF_8 ) );
+		protocol.getTxChain().add ( framer::encodeFrame );
+		protocol.getTxChain().add ( d -> { protocol.receive ( d ); return null; } );
+		protocol.getRxChain().add ( framer.decoder() );
+
+		Appliance decoder = protocol.getRxChain().get ( 0 );
+		ProtocolMetrics inner = ProtocolMetrics.instrument ( protocol, "inner" );
+		ProtocolMetrics outer = ProtocolMetrics.instrument ( protocol, "outer" );
+
+		try
+		{
+			Assertions.assertSame ( decoder, InstrumentedAppliance.unwrap ( protocol.getRxChain().get ( 0 ) ) );
+
+			// The inner wrappers are spliced out, leaving the outer ones recording.
+			inner.close();
+			protocol.sendAsync ( "hello" );
+
+			Assertions.assertTrue ( protocol.getRxChain().get ( 0 ) instanceof SplittingAppliance );
+			Assertions.assertSame ( decoder, ( ( InstrumentedAppliance ) protocol.getRxChain().get ( 0 ) ).getAppliance() );
+			Assertions.assertEquals ( 1, outer.snapshot().get ( "RX[0]" ).getCalls() );
+			Assertions.assertEquals ( 0, inner.snapshot().get ( "RX[0]" ).getCalls() );
+
+			outer.close();
+
+			Assertions.assertSame ( decoder, protocol.getRxChain().get ( 0 ) );
+		}
+		finally
+		{
+			inner.close();
+			outer.close();
+		}
+	}
+}
@@ -0,0 +1,177 @@
+package utility.protocol.nio;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import utility.protocol.LengthPrefixFramer;
+import utility.protocol.LengthPrefixFramer.Prefix;
+import utility.protocol.Protocol;
+
+public class ProtocolReactorTest
+{
+	private static Protocol stringProtocol ( BlockingQueue<String> received )
+	{
+		Protocol protocol = new Protocol();
+
+		protocol.getTxChain().add ( s -> ( ( String ) s ).getBytes ( StandardCharsets.UTF_8 ) );
+
+		protocol.getRxChain().add ( b -> StandardCharsets.UTF_8.decode ( ( ByteBuffer ) b ).toString() );
+		protocol.getRxChain().add ( s -> { received.add ( ( String ) s ); return s; } );
+
+		return protocol;
+	}
+
+	@Test
+	public void testPipes() throws Exception
+	{
+		try ( ProtocolReactor reactor = new ProtocolReactor ( 2 ) )
+		{
+			List<BlockingQueue<String>> queues = new ArrayList<>();
+			List<Protocol> protocols = new ArrayList<>();
+
+			for ( int i = 0; i < 50; ++i )
+			{
+				BlockingQueue<String> received = new LinkedBlockingQueue<>();
+				Protocol protocol = stringProtocol ( received );
+				Pipe pipe = Pipe.open();
+
+				reactor.register ( protocol, pipe.source(), pipe.sink() );
+
+				queues.add ( received );
+				protocols.add ( protocol );
+			}
+
+			for ( int i = 0; i < protocols.size(); ++i )
+				protocols.get ( i ).sendAsync ( "Link" + i );
+
+			for ( int i = 0; i < queues.size(); ++i )
+				Assertions.assertEquals ( "Link" + i, queues.get ( i ).poll ( 5, TimeUnit.SECONDS ) );
+		}
+	}
+
+	@Test
+	public void testBatching() throws Exception
+	{
+		try ( ProtocolReactor reactor = new ProtocolReactor ( 1 ) )
+		{
+			BlockingQueue<String> received = new LinkedBlockingQueue<>();
+			LengthPrefixFramer framer = new LengthPrefixFramer ( Prefix.VARINT, 1024 );
+			Protocol protocol = new Protocol();
+
+			protocol.getTxChain().add ( s -> ( ( String ) s ).getBytes ( StandardCharsets.UTF_8 ) );
+			protocol.getTxChain().add ( framer::encodeFrame );
+
+			protocol.getRxChain().add ( framer.decoder() );
+			protocol.getRxChain().add ( b -> StandardCharsets.UTF_8.decode ( ( ByteBuffer ) b ).toString() );
+			protocol.getRxChain().add ( s -> { received.add ( ( String ) s ); return s; } );
+
+			Pipe pipe = Pipe.open();
+			ChannelLink link = reactor.register ( protocol, pipe.source(), pipe.sink() );
+			link.setBatching ( 50, TimeUnit.MILLISECONDS, 64 * 1024 );
+
+			List<String> batch = new ArrayList<>();
+
+			for ( int i = 0; i < 200; ++i )
+				batch.add ( "Message" + i );
+
+			protocol.sendBatchAsync ( batch.subList ( 0, 100 ) );
+
+			for ( String message : batch.subList ( 100, 200 ) )
+				protocol.sendAsync ( message );
+
+			for ( String message : batch )
+				Assertions.assertEquals ( message, received.poll ( 5, TimeUnit.SECONDS ) );
+
+			Assertions.assertTrue ( link.getWrites() < 10, "Writes: " + link.getWrites() );
+
+			// A batch reaching the byte budget is flushed without waiting for its window.
+			link.setBatching ( 1, TimeUnit.HOURS, 16 );
+			protocol.sendBatchAsync ( Collections.nCopies ( 4, "Budget" ) );
+
+			Assertions.assertEquals ( "Budget", received.poll ( 5, TimeUnit.SECONDS ) );
+		}
+	}
+
+	@Test
+	public void testBudgetFlushEndsWindow() throws Exception
+	{
+		try ( ProtocolReactor reactor = new ProtocolReactor ( 1 ) )
+		{
+			BlockingQueue<String> received = new LinkedBlockingQueue<>();
+			LengthPrefixFramer framer = new LengthPrefixFramer ( Prefix.VARINT, 1024 );
+			Protocol protocol = new Protocol();
+
+			protocol.getTxChain().add ( s -> ( ( String ) s ).getBytes ( StandardCharsets.UTF_8 ) );
+			protocol.getTxChain().add ( framer::encodeFrame );
+
+			protocol.getRxChain().add ( framer.decoder() );
+			protocol.getRxChain().add ( b -> StandardCharsets.UTF_8.decode ( ( ByteBuffer ) b ).toString() );
+			protocol.getRxChain().add ( s -> { received.add ( ( String ) s ); return s; } );
+
+			Pipe pipe = Pipe.open();
+			ChannelLink link = reactor.register ( protocol, pipe.source(), pipe.sink() );
+			link.setBatching ( 2, TimeUnit.SECONDS, 16 );
+
+			// The first message starts a window, and the rest of the batch reaches the budget.
+			protocol.sendAsync ( "Budget" );
+			protocol.sendBatchAsync ( Collections.nCopies ( 3, "Budget" ) );
+
+			for ( int i = 0; i < 4; ++i )
+				Assertions.assertEquals ( "Budget", received.poll ( 5, TimeUnit.SECONDS ) );
+
+			// The next batch waits for its own window, not the remainder of the flushed batch's window.
+			Thread.sleep ( 500 );
+			protocol.sendAsync ( "Window" );
+
+			Assertions.assertNull ( received.poll ( 1700, TimeUnit.MILLISECONDS ) );
+			Assertions.assertEquals ( "Window", received.poll ( 5, TimeUnit.SECONDS ) );
+		}
+	}
+
+	@Test
+	public void testSocket() throws Exception
+	{
+		try ( ProtocolReactor reactor = new ProtocolReactor ( 1 );
+			  ServerSocketChannel server = ServerSocketChannel.open() )
+		{
+			server.bind ( new InetSocketAddress ( "127.0.0.1", 0 ) );
+
+			SocketChannel client = SocketChannel.open ( server.getLocalAddress() );
+			SocketChannel accepted = server.accept();
+
+			BlockingQueue<String> clientReceived = new LinkedBlockingQueue<>();
+			BlockingQueue<String> serverReceived = new LinkedBlockingQueue<>();
+
+			Protocol clientProtocol = stringProtocol ( clientReceived );
+			Protocol serverProtocol = stringProtocol ( serverReceived );
+
+			ChannelLink clientLink = reactor.register ( clientProtocol, client );
+			reactor.register ( serverProtocol, accepted );
+
+			clientProtocol.sendAsync ( "ping" );
+			Assertions.assertEquals ( "ping", serverReceived.poll ( 5, TimeUnit.SECONDS ) );
+
+			serverProtocol.sendAsync ( "pong" );
+			Assertions.assertEquals ( "pong", clientReceived.poll ( 5, TimeUnit.SECONDS ) );
+
+			clientLink.close();
+			Thread.sleep ( 100 );
+
+			Assertions.assertTrue ( clientLink.isClosed() );
+			Assertions.assertFalse ( clientProtocol.getTxChain().contains ( clientLink.transmitter() ) );
+		}
+	}
+}
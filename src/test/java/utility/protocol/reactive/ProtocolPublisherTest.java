@@ -0,0 +1,279 @@
+package utility.protocol.reactive;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import utility.protocol.LengthPrefixFramer;
+import utility.protocol.LengthPrefixFramer.Prefix;
+import utility.protocol.Protocol;
+import utility.protocol.nio.ChannelLink;
+import utility.protocol.nio.ProtocolReactor;
+
+public class ProtocolPublisherTest
+{
+	private static class QueueSubscriber implements Subscriber<String>
+	{
+		private final BlockingQueue<String>	received	= new LinkedBlockingQueue<>();
+		private volatile Subscription		subscription;
+		private volatile boolean			complete;
+
+		@Override
+		public void onSubscribe ( Subscription subscription )
+		{
+			this.subscription = subscription;
+		}
+
+		@Override
+		public void onNext ( String item )
+		{
+			received.add ( item );
+		}
+
+		@Override
+		public void onError ( Throwable error )
+		{
+			Assertions.fail ( error );
+		}
+
+		@Override
+		public void onComplete()
+		{
+			complete = true;
+		}
+	}
+
+	@Test
+	public void testDemand()
+	{
+		Protocol protocol = new Protocol();
+		ProtocolPublisher<String> publisher = new ProtocolPublisher<> ( protocol, String.class, 16, 8, 2 );
+		List<Boolean> readStates = new ArrayList<>();
+		QueueSubscriber subscriber = new QueueSubscriber();
+
+		publisher.setReadControl ( readStates::add );
+		publisher.subscribe ( subscriber );
+
+		for ( int i = 0; i < 8; ++i )
+			protocol.receive ( "Item" + i );
+
+		protocol.receive ( 42 );
+
+		// Nothing is delivered before it is requested, and reaching the high watermark suspends reads.
+		Assertions.assertTrue ( subscriber.received.isEmpty() );
+		Assertions.assertEquals ( Boolean.TRUE, readStates.get ( readStates.size() - 1 ) );
+
+		subscriber.subscription.request ( 7 );
+
+		Assertions.assertEquals ( 7, subscriber.received.size() );
+		Assertions.assertEquals ( Boolean.FALSE, readStates.get ( readStates.size() - 1 ) );
+
+		for ( int i = 8; i < 30; ++i )
+			protocol.receive ( "Item" + i );
+
+		// 1 + 22 items, for a buffer of 16.
+		Assertions.assertEquals ( 7, publisher.getDropped() );
+
+		publisher.complete();
+		Assertions.assertFalse ( subscriber.complete );
+
+		subscriber.subscription.request ( Long.MAX_VALUE );
+
+		Assertions.assertEquals ( 23, subscriber.received.size() );
+		Assertions.assertTrue ( subscriber.complete );
+		Assertions.assertEquals ( 0, publisher.getSubscriberCount() );
+	}
+
+	@Test
+	public void testReadSuspension() throws Exception
+	{
+		try ( ProtocolReactor reactor = new ProtocolReactor ( 1 ) )
+		{
+			LengthPrefixFramer framer = new LengthPrefixFramer ( Prefix.VARINT, 1024 );
+			Protocol protocol = new Protocol();
+
+			protocol.getTxChain().add ( s -> ( ( String ) s ).getBytes ( StandardCharsets.UTF_8 ) );
+			protocol.getTxChain().add ( framer::encodeFrame );
+
+			protocol.getRxChain().add ( framer.decoder() );
+			protocol.getRxChain().add ( b -> StandardCharsets.UTF_8.decode ( ( ByteBuffer ) b ).toString() );
+
+			ProtocolPublisher<String> publisher = new ProtocolPublisher<> ( protocol, String.class, 4096, 64, 16 );
+			QueueSubscriber subscriber = new QueueSubscriber();
+
+			Pipe pipe = Pipe.open();
+			ChannelLink link = reactor.register ( protocol, pipe.source(), pipe.sink() );
+
+			publisher.setReadControl ( link );
+			publisher.subscribe ( subscriber );
+
+			for ( int i = 0; i < 1000; ++i )
+				protocol.sendAsync ( "Message" + i );
+
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos ( 5 );
+
+			while ( !link.isReadsSuspended() && System.nanoTime() < deadline )
+				Thread.sleep ( 10 );
+
+			Assertions.assertTrue ( link.isReadsSuspended() );
+
+			subscriber.subscription.request ( Long.MAX_VALUE );
+
+			for ( int i = 0; i < 1000; ++i )
+				Assertions.assertEquals ( "Message" + i, subscriber.received.poll ( 5, TimeUnit.SECONDS ) );
+
+			Assertions.assertFalse ( link.isReadsSuspended() );
+			Assertions.assertEquals ( 0, publisher.getDropped() );
+		}
+	}
+
+	@Test
+	public void testExactCapacity()
+	{
+		Protocol protocol = new Protocol();
+		ProtocolPublisher<String> publisher = new ProtocolPublisher<> ( protocol, String.class, 5, 4, 1 );
+		QueueSubscriber subscriber = new QueueSubscriber();
+
+		publisher.subscribe ( subscriber );
+
+		for ( int i = 0; i < 7; ++i )
+			protocol.receive ( "Item" + i );
+
+		// A capacity of 5 is not rounded up to 8.
+		Assertions.assertEquals ( 2, publisher.getDropped() );
+
+		subscriber.subscription.request ( Long.MAX_VALUE );
+		Assertions.assertEquals ( 5, subscriber.received.size() );
+	}
+
+	@Test
+	public void testInvalidRequestIsSerialized()
+	{
+		Protocol protocol = new Protocol();
+		ProtocolPublisher<String> publisher = new ProtocolPublisher<> ( protocol, String.class, 16, 8, 2 );
+		List<String> signals = new ArrayList<>();
+
+		publisher.subscribe ( new Subscriber<String>()
+		{
+			private Subscription subscription;
+
+			@Override
+			public void onSubscribe ( Subscription subscription )
+			{
+				this.subscription = subscription;
+				subscription.request ( 2 );
+			}
+
+			@Override
+			public void onNext ( String item )
+			{
+				signals.add ( "onNext " + item );
+				subscription.request ( 0 );
+				signals.add ( "onNext returned" );
+			}
+
+			@Override
+			public void onError ( Throwable error )
+			{
+				signals.add ( "onError " + error.getClass().getSimpleName() );
+			}
+
+			@Override
+			public void onComplete()
+			{
+				signals.add ( "onComplete" );
+			}
+		} );
+
+		protocol.receive ( "A" );
+		protocol.receive ( "B" );
+
+		// The error is signalled only after onNext returns, and nothing follows it.
+		Assertions.assertEquals ( Arrays.asList ( "onNext A", "onNext returned", "onError IllegalArgumentException" ), signals );
+		Assertions.assertEquals ( 0, publisher.getSubscriberCount() );
+	}
+
+	@Test
+	public void testSubscriber() throws Exception
+	{
+		List<Object> sent = new ArrayList<>();
+		Protocol protocol = new Protocol();
+
+		protocol.getTxChain().add ( s -> { sent.add ( s ); return null; } );
+
+		List<String> items = IntStream.range ( 0, 100 ).mapToObj ( i -> "Item" + i ).collect ( Collectors.toList() );
+		IterablePublisher publisher = new IterablePublisher ( items );
+		ProtocolSubscriber subscriber = new ProtocolSubscriber ( protocol, 10 );
+
+		publisher.subscribe ( subscriber );
+
+		Assertions.assertEquals ( 100L, subscriber.getCompletion().get ( 5, TimeUnit.SECONDS ) );
+		Assertions.assertEquals ( items, sent );
+		Assertions.assertTrue ( publisher.maxOutstanding <= 10, "Outstanding: " + publisher.maxOutstanding );
+	}
+
+	/**
+	 * A synchronous publisher of a list, which records the largest number of items requested but not yet delivered.
+	 */
+	private static class IterablePublisher implements Publisher<Object>
+	{
+		private final Iterator<String>	iterator;
+		private final AtomicLong		outstanding	= new AtomicLong();
+		private long					maxOutstanding;
+		private boolean					emitting;
+
+		IterablePublisher ( List<String> items )
+		{
+			this.iterator = items.iterator();
+		}
+
+		@Override
+		public void subscribe ( Subscriber<? super Object> subscriber )
+		{
+			subscriber.onSubscribe ( new Subscription()
+			{
+				@Override
+				public void request ( long n )
+				{
+					maxOutstanding = Math.max ( maxOutstanding, outstanding.addAndGet ( n ) );
+
+					if ( emitting )
+						return;
+
+					emitting = true;
+
+					while ( outstanding.get() > 0 && iterator.hasNext() )
+					{
+						outstanding.decrementAndGet();
+						subscriber.onNext ( iterator.next() );
+					}
+
+					emitting = false;
+
+					if ( !iterator.hasNext() )
+						subscriber.onComplete();
+				}
+
+				@Override
+				public void cancel()
+				{}
+			} );
+		}
+	}
+}
@@ -0,0 +1,299 @@
+package utility.protocol.transport;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import utility.protocol.Protocol;
+import utility.protocol.gmp.MessageApplicance;
+import utility.protocol.gmp.MessageApplicanceTest.TextMessage;
+import utility.protocol.gmp.MessageCorrelator;
+import utility.protocol.gmp.messages.Header;
+import utility.protocol.gmp.messages.Message;
+import utility.protocol.gmp.messages.MessageCategory;
+import utility.protocol.gmp.messages.MessageType;
+
+public class ProtocolPoolTest
+{
+	private static final LoopbackTransport.Address ADDRESS = new LoopbackTransport.Address ( "gateway" );
+
+	private static Protocol gmpProtocol()
+	{
+		MessageApplicance appliance = new MessageApplicance ( TextMessage::new );
+		Protocol protocol = new Protocol();
+
+		protocol.getTxChain().add ( appliance::encodeMessage );
+		protocol.getRxChain().add ( appliance::decodeMessage );
+		protocol.setCorrelator ( new MessageCorrelator() );
+
+		return protocol;
+	}
+
+	/**
+	 * @return A gateway which answers each request with its text reversed, or holds requests (other than pings) in
+	 * {@code held} if it is given.
+	 */
+	private static Protocol gateway ( BlockingQueue<Runnable> held )
+	{
+		Protocol protocol = gmpProtocol();
+
+		protocol.registerDataListener ( data ->
+		{
+			TextMessage request = ( TextMessage ) data;
+			TextMessage response = new TextMessage ( request.getHeader(), new StringBuilder ( request.getText() ).reverse().toString() );
+			Runnable reply = () ->
+			{
+				try
+				{
+					protocol.sendAsync ( response );
+				}
+				catch ( Exception e )
+				{
+					protocol.reportException ( e );
+				}
+			};
+
+			if ( held == null || request.getText().equals ( "ping" ) )
+				reply.run();
+			else
+				held.add ( reply );
+		} );
+
+		return protocol;
+	}
+
+	private static Message request ( String text )
+	{
+		return new TextMessage ( new Header ( false, MessageType.REQUEST, MessageCategory.OPERATION, 0 ), text );
+	}
+
+	private static CompletionStage<Object> ping ( Protocol protocol, int id ) throws Exception
+	{
+		Message ping = request ( "ping" );
+
+		MessageCorrelator.setRequestId ( ping, id );
+		return protocol.sendRequest ( ping, 1, TimeUnit.SECONDS );
+	}
+
+	private static void await ( BooleanSupplier condition ) throws InterruptedException
+	{
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos ( 5 );
+
+		while ( !condition.getAsBoolean() && System.nanoTime() < deadline )
+			Thread.sleep ( 5 );
+
+		Assertions.assertTrue ( condition.getAsBoolean() );
+	}
+
+	@Test
+	public void testMultiplexing() throws Exception
+	{
+		LoopbackTransport transport = new LoopbackTransport ( new LinkModel ( 0, 1, 0, TimeUnit.MILLISECONDS, 0 ), 0 );
+		ExecutorService executor = Executors.newFixedThreadPool ( 8 );
+
+		try ( Listener listener = transport.listen ( ADDRESS, () -> gateway ( null ) );
+			  ProtocolPool pool = new ProtocolPool ( () -> transport.connect ( gmpProtocol(), ADDRESS ), 1, 3, 1, TimeUnit.SECONDS ) )
+		{
+			pool.setIdAssigner ( MessageCorrelator::setRequestId );
+			pool.setMaxRequestsPerConnection ( 4 );
+
+			List<Future<?>> clients = new ArrayList<>();
+
+			for ( int t = 0; t < 8; ++t )
+			{
+				int thread = t;
+
+				clients.add ( executor.submit ( () ->
+				{
+					List<CompletableFuture<Object>> responses = new ArrayList<>();
+
+					for ( int i = 0; i < 50; ++i )
+						responses.add ( pool.sendRequest ( request ( "T" + thread + "R" + i ) ) );
+
+					for ( int i = 0; i < 50; ++i )
+						Assertions.assertEquals ( new StringBuilder ( "T" + thread + "R" + i ).reverse().toString(), ( ( TextMessage ) responses.get ( i ).get ( 5, TimeUnit.SECONDS ) ).getText() );
+
+					return null;
+				} ) );
+			}
+
+			for ( Future<?> client : clients )
+				client.get ( 10, TimeUnit.SECONDS );
+
+			Assertions.assertEquals ( 3, pool.getConnectionCount() );
+			Assertions.assertEquals ( 3, listener.getAccepted() );
+			Assertions.assertEquals ( 0, pool.getOutstandingRequests() );
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testLeastOutstanding() throws Exception
+	{
+		LoopbackTransport transport = new LoopbackTransport();
+		BlockingQueue<Runnable> held = new LinkedBlockingQueue<>();
+		List<Protocol> protocols = new ArrayList<>();
+
+		try ( Listener listener = transport.listen ( ADDRESS, () -> gateway ( held ) );
+			  ProtocolPool pool = new ProtocolPool ( () ->
+			  {
+				  Protocol protocol = gmpProtocol();
+				  protocols.add ( protocol );
+				  return transport.connect ( protocol, ADDRESS );
+			  }, 2, 2, 1, TimeUnit.SECONDS ) )
+		{
+			pool.setIdAssigner ( MessageCorrelator::setRequestId );
+
+			for ( int i = 0; i < 10; ++i )
+				pool.sendRequest ( request ( "Request" + i ) );
+
+			Assertions.assertEquals ( 5, protocols.get ( 0 ).getOutstandingRequests() );
+			Assertions.assertEquals ( 5, protocols.get ( 1 ).getOutstandingRequests() );
+			Assertions.assertEquals ( 2, listener.getAccepted() );
+
+			await ( () -> held.size() == 10 );
+			held.forEach ( Runnable::run );
+
+			await ( () -> pool.getOutstandingRequests() == 0 );
+		}
+	}
+
+	@Test
+	public void testIdleEviction() throws Exception
+	{
+		LoopbackTransport transport = new LoopbackTransport();
+		BlockingQueue<Runnable> held = new LinkedBlockingQueue<>();
+
+		try ( Listener listener = transport.listen ( ADDRESS, () -> gateway ( held ) );
+			  ProtocolPool pool = new ProtocolPool ( () -> transport.connect ( gmpProtocol(), ADDRESS ), 1, 4, 20, TimeUnit.MILLISECONDS ) )
+		{
+			pool.setIdAssigner ( MessageCorrelator::setRequestId );
+			pool.setMaxRequestsPerConnection ( 1 );
+			pool.setIdleTimeout ( 50, TimeUnit.MILLISECONDS );
+
+			List<CompletableFuture<Object>> responses = new ArrayList<>();
+
+			for ( int i = 0; i < 4; ++i )
+				responses.add ( pool.sendRequest ( request ( "Request" + i ) ) );
+
+			Assertions.assertEquals ( 4, pool.getConnectionCount() );
+			Assertions.assertEquals ( 4, listener.getAccepted() );
+
+			// Busy connections are never idle.
+			Thread.sleep ( 100 );
+			Assertions.assertEquals ( 4, pool.getConnectionCount() );
+
+			await ( () -> held.size() == 4 );
+			held.forEach ( Runnable::run );
+
+			for ( CompletableFuture<Object> response : responses )
+				response.get ( 5, TimeUnit.SECONDS );
+
+			await ( () -> pool.getConnectionCount() == 1 );
+			Assertions.assertEquals ( 3, pool.getEvictions() );
+		}
+	}
+
+	@Test
+	public void testHealthCheck() throws Exception
+	{
+		LoopbackTransport transport = new LoopbackTransport();
+		List<LoopbackTransport.LoopbackConnection> opened = new CopyOnWriteArrayList<>();
+
+		try ( Listener listener = transport.listen ( ADDRESS, () -> gateway ( null ) );
+			  ProtocolPool pool = new ProtocolPool ( () ->
+			  {
+				  LoopbackTransport.LoopbackConnection connection = transport.connect ( gmpProtocol(), ADDRESS );
+				  opened.add ( connection );
+				  return connection;
+			  }, 2, 2, 20, TimeUnit.MILLISECONDS ) )
+		{
+			// A ping: healthy connections answer it.
+			pool.setHealthCheck ( ProtocolPoolTest::ping, 1, TimeUnit.SECONDS );
+
+			// A connection whose peer has gone, and one whose peer no longer answers, are replaced.
+			opened.get ( 0 ).getPeer().close();
+			opened.get ( 1 ).getPeer().getProtocol().getTxChain().add ( 0, data -> null );
+
+			await ( () -> pool.getEvictions() == 2 && pool.getConnectionCount() == 2 );
+
+			Assertions.assertEquals ( 4, opened.size() );
+			Assertions.assertEquals ( 4, listener.getAccepted() );
+			Assertions.assertTrue ( opened.get ( 0 ).isClosed() );
+			Assertions.assertTrue ( opened.get ( 1 ).isClosed() );
+
+			CompletableFuture<Object> response = pool.sendRequest ( request ( "olleh" ) );
+
+			Assertions.assertEquals ( "hello", ( ( TextMessage ) response.get ( 5, TimeUnit.SECONDS ) ).getText() );
+		}
+	}
+
+	@Test
+	public void testHealthCheckAmongRequests() throws Exception
+	{
+		LoopbackTransport transport = new LoopbackTransport();
+		BlockingQueue<Runnable> held = new LinkedBlockingQueue<>();
+
+		try ( Listener listener = transport.listen ( ADDRESS, () -> gateway ( held ) );
+			  ProtocolPool pool = new ProtocolPool ( () -> transport.connect ( gmpProtocol(), ADDRESS ), 1, 1, 20, TimeUnit.MILLISECONDS ) )
+		{
+			pool.setIdAssigner ( MessageCorrelator::setRequestId );
+
+			// Pings are keyed by the connection's ids, so they never collide with the outstanding request.
+			CompletableFuture<Object> response = pool.sendRequest ( request ( "olleh" ) );
+
+			pool.setHealthCheck ( ProtocolPoolTest::ping, 1, TimeUnit.SECONDS );
+			Thread.sleep ( 200 );
+
+			Assertions.assertEquals ( 0, pool.getEvictions() );
+			Assertions.assertEquals ( 1, listener.getAccepted() );
+
+			await ( () -> held.size() == 1 );
+			held.forEach ( Runnable::run );
+
+			Assertions.assertEquals ( "hello", ( ( TextMessage ) response.get ( 5, TimeUnit.SECONDS ) ).getText() );
+		}
+	}
+
+	@Test
+	public void testReplaceClosedWithinMaximum() throws Exception
+	{
+		LoopbackTransport transport = new LoopbackTransport();
+		List<LoopbackTransport.LoopbackConnection> opened = new CopyOnWriteArrayList<>();
+
+		try ( Listener listener = transport.listen ( ADDRESS, () -> gateway ( null ) );
+			  ProtocolPool pool = new ProtocolPool ( () ->
+			  {
+				  LoopbackTransport.LoopbackConnection connection = transport.connect ( gmpProtocol(), ADDRESS );
+				  opened.add ( connection );
+				  return connection;
+			  }, 1, 1, 1, TimeUnit.HOURS ) )
+		{
+			opened.get ( 0 ).getPeer().close();
+			await ( () -> opened.get ( 0 ).isClosed() );
+
+			// Before maintenance has evicted it, the closed connection is replaced, rather than added to.
+			CompletableFuture<Object> response = pool.sendRequest ( request ( "olleh" ) );
+
+			Assertions.assertEquals ( "hello", ( ( TextMessage ) response.get ( 5, TimeUnit.SECONDS ) ).getText() );
+			Assertions.assertEquals ( 1, pool.getConnectionCount() );
+			Assertions.assertEquals ( 1, pool.getEvictions() );
+			Assertions.assertEquals ( 2, listener.getAccepted() );
+		}
+	}
+}
@@ -0,0 +1,243 @@
+package utility.protocol.transport;
+
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import utility.protocol.LengthPrefixFramer;
+import utility.protocol.LengthPrefixFramer.Prefix;
+import utility.protocol.Protocol;
+import utility.protocol.metrics.InstrumentedAppliance;
+import utility.protocol.metrics.ProtocolMetrics;
+import utility.protocol.nio.ProtocolReactor;
+
+public class TransportTest
+{
+	@TempDir
+	Path directory;
+
+	/**
+	 * @return A framed {@link Protocol} of Strings, which adds those it receives to a queue.
+	 */
+	private static Protocol stringProtocol ( BlockingQueue<String> received )
+	{
+		LengthPrefixFramer framer = new LengthPrefixFramer ( Prefix.VARINT, 1024 );
+		Protocol protocol = new Protocol();
+
+		protocol.getTxChain().add ( s -> ( ( String ) s ).getBytes ( StandardCharsets.UTF_8 ) );
+		protocol.getTxChain().add ( framer::encodeFrame );
+
+		protocol.getRxChain().add ( framer.decoder() );
+		protocol.getRxChain().add ( b -> StandardCharsets.UTF_8.decode ( ( ByteBuffer ) b ).toString() );
+		protocol.registerDataListener ( s -> received.add ( ( String ) s ) );
+
+		return protocol;
+	}
+
+	/**
+	 * @return A framed {@link Protocol} which echoes each String it receives.
+	 */
+	private static Protocol echoProtocol()
+	{
+		LengthPrefixFramer framer = new LengthPrefixFramer ( Prefix.VARINT, 1024 );
+		Protocol protocol = new Protocol();
+
+		protocol.getTxChain().add ( s -> ( ( String ) s ).getBytes ( StandardCharsets.UTF_8 ) );
+		protocol.getTxChain().add ( framer::encodeFrame );
+
+		protocol.getRxChain().add ( framer.decoder() );
+		protocol.getRxChain().add ( b -> StandardCharsets.UTF_8.decode ( ( ByteBuffer ) b ).toString() );
+		protocol.registerDataListener ( s -> protocol.sendAsync ( "Echo:" + s ) );
+
+		return protocol;
+	}
+
+	private static void echo ( Transport transport, SocketAddress address ) throws Exception
+	{
+		try ( Listener listener = transport.listen ( address, TransportTest::echoProtocol ) )
+		{
+			BlockingQueue<String> received = new LinkedBlockingQueue<>();
+			Protocol protocol = stringProtocol ( received );
+
+			try ( Connection connection = transport.connect ( protocol, listener.getLocalAddress() ) )
+			{
+				for ( int i = 0; i < 100; ++i )
+					protocol.sendAsync ( "Message" + i );
+
+				for ( int i = 0; i < 100; ++i )
+					Assertions.assertEquals ( "Echo:Message" + i, received.poll ( 5, TimeUnit.SECONDS ) );
+
+				Assertions.assertEquals ( 1, listener.getAccepted() );
+				Assertions.assertFalse ( connection.isClosed() );
+			}
+		}
+	}
+
+	@Test
+	public void testTcp() throws Exception
+	{
+		try ( ProtocolReactor reactor = new ProtocolReactor ( 1 ) )
+		{
+			echo ( new TcpTransport ( reactor ), new InetSocketAddress ( InetAddress.getLoopbackAddress(), 0 ) );
+		}
+	}
+
+	@Test
+	public void testUnixDomain() throws Exception
+	{
+		Assumptions.assumeTrue ( UnixDomainTransport.isAvailable() );
+
+		try ( ProtocolReactor reactor = new ProtocolReactor ( 1 ) )
+		{
+			echo ( new UnixDomainTransport ( reactor ), UnixDomainTransport.address ( directory.resolve ( "echo.sock" ) ) );
+		}
+
+		Assertions.assertFalse ( directory.resolve ( "echo.sock" ).toFile().exists() );
+	}
+
+	@Test
+	public void testLoopback() throws Exception
+	{
+		LoopbackTransport transport = new LoopbackTransport();
+
+		echo ( transport, new LoopbackTransport.Address ( "echo" ) );
+
+		Assertions.assertThrows ( ConnectException.class, () -> transport.connect ( new Protocol(), new LoopbackTransport.Address ( "echo" ) ) );
+	}
+
+	@Test
+	public void testLoopbackTakesOwnership() throws Exception
+	{
+		BlockingQueue<Object> received = new LinkedBlockingQueue<>();
+		Protocol sender = new Protocol();
+		Protocol receiver = new Protocol();
+		ByteBuffer buffer = ByteBuffer.wrap ( "Owned".getBytes ( StandardCharsets.UTF_8 ) );
+
+		receiver.registerDataListener ( received::add );
+
+		try ( Connection connection = new LoopbackTransport().connect ( sender, receiver ) )
+		{
+			Assertions.assertSame ( sender, connection.getProtocol() );
+
+			// The buffer is queued by reference, and delivered as it was sent.
+			sender.sendAsync ( buffer );
+			Assertions.assertSame ( buffer, received.poll ( 5, TimeUnit.SECONDS ) );
+		}
+	}
+
+	@Test
+	public void testCloseInstrumentedLink() throws Exception
+	{
+		LoopbackTransport transport = new LoopbackTransport();
+		Protocol sender = new Protocol();
+		Connection connection = transport.connect ( sender, new Protocol() );
+
+		try ( ProtocolMetrics first = ProtocolMetrics.instrument ( sender, "first" );
+			  ProtocolMetrics second = ProtocolMetrics.instrument ( sender, "second" ) )
+		{
+			InstrumentedAppliance outer = ( InstrumentedAppliance ) sender.getTxChain().get ( 0 );
+			InstrumentedAppliance inner = ( InstrumentedAppliance ) outer.getAppliance();
+
+			Assertions.assertSame ( second.getStages ( ProtocolMetrics.Chain.TX ).get ( 0 ), outer.getMetrics() );
+			Assertions.assertSame ( first.getStages ( ProtocolMetrics.Chain.TX ).get ( 0 ), inner.getMetrics() );
+
+			// The transmitter is found through both layers of instrumentation.
+			connection.close();
+
+			Assertions.assertTrue ( connection.isClosed() );
+			Assertions.assertTrue ( sender.getTxChain().isEmpty() );
+		}
+	}
+
+	@Test
+	public void testLatencyAndBandwidth() throws Exception
+	{
+		// 20ms each way, and 1 Mbit/s: a 12,500 byte frame takes 100ms to send.
+		LoopbackTransport transport = new LoopbackTransport ( new LinkModel ( 1_000_000, 20, 5, TimeUnit.MILLISECONDS, 0 ), 42 );
+		BlockingQueue<Long> arrivals = new LinkedBlockingQueue<>();
+		Protocol sender = new Protocol();
+		Protocol receiver = new Protocol();
+
+		receiver.registerDataListener ( data -> arrivals.add ( System.nanoTime() ) );
+
+		try ( Connection connection = transport.connect ( sender, receiver ) )
+		{
+			Assertions.assertSame ( sender, connection.getProtocol() );
+
+			long start = System.nanoTime();
+
+			sender.sendAsync ( new byte [ 10 ] );
+			long first = arrivals.poll ( 5, TimeUnit.SECONDS ) - start;
+
+			Assertions.assertTrue ( first >= TimeUnit.MILLISECONDS.toNanos ( 20 ), "Arrived after " + first + "ns" );
+
+			start = System.nanoTime();
+
+			for ( int i = 0; i < 3; ++i )
+				sender.sendAsync ( new byte [ 12_500 ] );
+
+			for ( int i = 0; i < 3; ++i )
+				arrivals.poll ( 5, TimeUnit.SECONDS );
+
+			long elapsed = System.nanoTime() - start;
+
+			Assertions.assertTrue ( elapsed >= TimeUnit.MILLISECONDS.toNanos ( 320 ), "Delivered in " + elapsed + "ns" );
+		}
+	}
+
+	@Test
+	public void testDeterministicLoss() throws Exception
+	{
+		List<List<Integer>> runs = new ArrayList<>();
+
+		for ( int run = 0; run < 2; ++run )
+		{
+			LoopbackTransport transport = new LoopbackTransport ( new LinkModel ( 0, 0, 2, TimeUnit.MILLISECONDS, 0.3 ), 1234 );
+			BlockingQueue<Integer> received = new LinkedBlockingQueue<>();
+			Protocol sender = new Protocol();
+			Protocol receiver = new Protocol();
+
+			receiver.registerDataListener ( data -> received.add ( ( int ) ( ( ByteBuffer ) data ).get ( 0 ) ) );
+
+			try ( LoopbackTransport.LoopbackConnection connection = transport.connect ( sender, receiver ) )
+			{
+				for ( int i = 0; i < 100; ++i )
+					sender.sendAsync ( new byte [] { ( byte ) i } );
+
+				long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos ( 5 );
+
+				while ( connection.getDelivered() + connection.getLost() < 100 && System.nanoTime() < deadline )
+					Thread.sleep ( 5 );
+
+				Assertions.assertEquals ( 100, connection.getSent() );
+				Assertions.assertEquals ( 100, connection.getDelivered() + connection.getLost() );
+				Assertions.assertTrue ( connection.getLost() > 10 && connection.getLost() < 60, "Lost " + connection.getLost() );
+			}
+
+			List<Integer> frames = new ArrayList<>();
+			received.drainTo ( frames );
+
+			// Jitter never reorders frames.
+			for ( int i = 1; i < frames.size(); ++i )
+				Assertions.assertTrue ( frames.get ( i - 1 ) < frames.get ( i ) );
+
+			runs.add ( frames );
+		}
+
+		Assertions.assertEquals ( runs.get ( 0 ), runs.get ( 1 ) );
+	}
+}
@@ -0,0 +1,140 @@
+package utility.state;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Runs every {@link StateTest} against the same {@link StateModel}s once they are compiled.
+ */
+public class CompiledStateTest extends StateTest
+{
+    @BeforeAll
+    public static void beforeAll()
+    {
+        setupMocks();
+        createABCModel();
+        
+        abcModel.compile();
+        
+        fsm = new StateMachine ( abcModel );
+    }
+    
+    @Test
+    public void testCompiled()
+    {
+        Assertions.assertTrue ( abcModel.isCompiled() );
+        Assertions.assertTrue ( xyModel.isCompiled() );
+        Assertions.assertTrue ( pqModel.isCompiled() );
+        
+        Assertions.assertEquals ( sA, abcModel.states().get ( 0 ) );
+        Assertions.assertEquals ( 4, abcModel.states().size() );
+        
+        Assertions.assertThrows ( UnsupportedOperationException.class, () -> sA.reactions().put ( toA, new Reaction() ) );
+    }
+    
+    @Test
+    public void testEqualEvents()
+    {
+        State on = new State ( "On" );
+        State off = new State ( "Off" );
+        
+        on.reactions().put ( new Event ( "toggle" ), new Reaction ( off ) );
+        off.reactions().put ( new Event ( "toggle" ), new Reaction ( on ) );
+        
+        StateModel model = new StateModel ( off ).compile();
+        List<Event> newEvents = new ArrayList<>();
+        
+        model.react ( Event.INITIALIZE_EVENT, newEvents );
+        
+        // Any Event equal to the key finds the Reaction, including one never seen before.
+        for ( int i = 0; i < 3; ++i )
+            model.react ( new Event ( "toggle" ), newEvents );
+        
+        Assertions.assertEquals ( on, model.currentState() );
+        
+        model.react ( new Event ( "unknown" ), newEvents );
+        
+        Assertions.assertEquals ( on, model.currentState() );
+        Assertions.assertTrue ( newEvents.isEmpty() );
+    }
+    
+    @Test
+    public void testEventOrdinals()
+    {
+        State on = new State ( "On" );
+        State off = new State ( "Off" );
+        
+        on.reactions().put ( new Event ( "ordinalsOff" ), new Reaction ( off ) );
+        
+        // EventTypes created before the model, to which it does not react, take no place in its tables.
+        for ( int i = 0; i < 100; ++i )
+            new Event ( "ordinalsUnused" + i );
+        
+        off.reactions().put ( new Event ( "ordinalsOn" ), new Reaction ( on ) );
+        
+        StateModel model = new StateModel ( off ).compile();
+        List<Event> newEvents = new ArrayList<>();
+        
+        model.react ( Event.INITIALIZE_EVENT, newEvents );
+        model.react ( new Event ( "ordinalsUnused50" ), newEvents );
+        model.react ( new Event ( "ordinalsOff" ), newEvents );
+        
+        Assertions.assertEquals ( off, model.currentState() );
+        
+        model.react ( new Event ( "ordinalsOn" ), newEvents );
+        
+        Assertions.assertEquals ( on, model.currentState() );
+        
+        // An EventType created after the model was compiled has no ordinal in it.
+        model.react ( new Event ( "ordinalsLater" ), newEvents );
+        model.react ( new Event ( "ordinalsOff" ), newEvents );
+        
+        Assertions.assertEquals ( off, model.currentState() );
+    }
+    
+    private static class Command extends Event
+    {
+        Command ( String name )
+        {
+            super ( name );
+        }
+    }
+    
+    @Test
+    public void testEventClasses()
+    {
+        State on = new State ( "On" );
+        State off = new State ( "Off" );
+        State standby = new State ( "Standby" );
+        
+        // Keys of the same name, but different classes, are different Events.
+        off.reactions().put ( new Command ( "toggle" ), new Reaction ( on ) );
+        on.reactions().put ( new Event ( "toggle" ), new Reaction ( off ) );
+        on.reactions().put ( new Command ( "toggle" ), new Reaction ( standby ) );
+        
+        StateModel model = new StateModel ( off ).compile();
+        List<Event> newEvents = new ArrayList<>();
+        
+        model.react ( Event.INITIALIZE_EVENT, newEvents );
+        model.react ( new Event ( "toggle" ), newEvents );
+        
+        Assertions.assertEquals ( off, model.currentState() );
+        
+        model.react ( new Command ( "toggle" ), newEvents );
+        
+        Assertions.assertEquals ( on, model.currentState() );
+        
+        model.react ( new Event ( "toggle" ), newEvents );
+        
+        Assertions.assertEquals ( off, model.currentState() );
+        
+        model.react ( new Command ( "toggle" ), newEvents );
+        model.react ( new Command ( "toggle" ), newEvents );
+        
+        Assertions.assertEquals ( standby, model.currentState() );
+    }
+}
@@ -0,0 +1,52 @@
+package utility.state;
+
+import java.util.Collections;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class EventTest
+{
+    private static final EventType PING = EventType.of ( "ping" );
+    
+    @Test
+    public void testInterning()
+    {
+        Assertions.assertSame ( PING, EventType.of ( "ping" ) );
+        Assertions.assertSame ( PING, EventType.of ( PING.id() ) );
+        Assertions.assertNotSame ( PING, EventType.of ( "pong" ) );
+        Assertions.assertTrue ( PING.id() < EventType.count() );
+        
+        Assertions.assertThrows ( IllegalArgumentException.class, () -> EventType.of ( "" ) );
+        Assertions.assertThrows ( IllegalArgumentException.class, () -> EventType.of ( EventType.count() ) );
+        
+        Event named = new Event ( "ping" );
+        Event typed = new Event ( PING );
+        
+        Assertions.assertSame ( PING, named.type() );
+        Assertions.assertEquals ( named, typed );
+        Assertions.assertEquals ( named.hashCode(), typed.hashCode() );
+        Assertions.assertEquals ( "ping", typed.toString() );
+        Assertions.assertTrue ( typed.equals ( "ping" ) );
+        Assertions.assertNotEquals ( typed, new Event ( "pong" ) );
+    }
+    
+    @Test
+    public void testPayload()
+    {
+        Event event = new Event ( PING, 42 );
+        
+        Assertions.assertEquals ( 42, event.payload() );
+        Assertions.assertEquals ( Integer.valueOf ( 42 ), event.payload ( Integer.class ) );
+        Assertions.assertThrows ( ClassCastException.class, () -> event.payload ( String.class ) );
+        
+        Assertions.assertFalse ( event.hasData() );
+        Assertions.assertNull ( event.data );
+        
+        event.data().put ( "key", "value" );
+        
+        Assertions.assertTrue ( event.hasData() );
+        Assertions.assertEquals ( "value", new Event ( "ping", event.data() ).data().get ( "key" ) );
+        Assertions.assertFalse ( new Event ( "ping", Collections.emptyMap() ).hasData() );
+    }
+}
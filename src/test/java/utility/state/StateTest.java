@@ -123,7 +123,7 @@ public class StateTest
         fsm = new StateMachine ( abcModel );
     }
 
-    private static void createABCModel()
+    static void createABCModel()
     {
         toA = new Event ( "-a" );
         toB = new Event ( "-b" );
@@ -185,7 +185,7 @@ public class StateTest
         xyModel = new StateModel ( sX );
     }
     
-    private static void setupMocks()
+    static void setupMocks()
     {    	
         aEnter = createMock ( FuncClass.class );
         aExit  = createMock ( FuncClass.class );
@@ -0,0 +1,187 @@
+package utility.state.context;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import utility.state.Event;
+import utility.state.EventType;
+import utility.state.Reaction;
+import utility.state.State;
+import utility.state.StateMachine;
+import utility.state.StateModel;
+
+public class MpscMailboxTest
+{
+	@Test
+	public void testBounded()
+	{
+		MpscMailbox<Integer> mailbox = MpscMailbox.bounded ( 3 );
+		
+		Assertions.assertEquals ( 4, mailbox.capacity() );
+		Assertions.assertTrue ( mailbox.isEmpty() );
+		Assertions.assertNull ( mailbox.poll() );
+		
+		// Several laps of the ring.
+		for ( int lap = 0; lap < 3; ++lap )
+		{
+			for ( int i = 0; i < 4; ++i )
+				Assertions.assertTrue ( mailbox.offer ( i ) );
+			
+			Assertions.assertFalse ( mailbox.offer ( 4 ) );
+			Assertions.assertEquals ( 4, mailbox.size() );
+			
+			Assertions.assertEquals ( 0, mailbox.poll() );
+			Assertions.assertTrue ( mailbox.offer ( 4 ) );
+			
+			List<Integer> drained = new ArrayList<>();
+			
+			Assertions.assertEquals ( 3, mailbox.drain ( drained::add, 3 ) );
+			Assertions.assertEquals ( 1, mailbox.drain ( drained::add, 10 ) );
+			Assertions.assertEquals ( Arrays.asList ( 1, 2, 3, 4 ), drained );
+			Assertions.assertTrue ( mailbox.isEmpty() );
+		}
+		
+		Assertions.assertThrows ( NullPointerException.class, () -> mailbox.offer ( null ) );
+	}
+	
+	@Test
+	public void testUnbounded()
+	{
+		MpscMailbox<Integer> mailbox = MpscMailbox.unbounded ( 4 );
+		
+		for ( int i = 0; i < 100; ++i )
+			Assertions.assertTrue ( mailbox.offer ( i ) );
+		
+		Assertions.assertEquals ( 100, mailbox.size() );
+		
+		for ( int i = 0; i < 100; ++i )
+			Assertions.assertEquals ( i, mailbox.poll() );
+		
+		Assertions.assertNull ( mailbox.poll() );
+	}
+	
+	private static void producers ( MpscMailbox<Integer> mailbox, int producers, int count ) throws Exception
+	{
+		List<Thread> threads = new ArrayList<>();
+		
+		for ( int p = 0; p < producers; ++p )
+		{
+			int producer = p;
+			Thread thread = new Thread ( () ->
+			{
+				for ( int i = 0; i < count; ++i )
+					while ( !mailbox.offer ( producer * count + i ) )
+						Thread.yield();
+			} );
+			
+			threads.add ( thread );
+			thread.start();
+		}
+		
+		// Each producer's elements arrive in the order it offered them, and none is lost or repeated.
+		int[] next = new int [ producers ];
+		int taken = 0;
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos ( 30 );
+		
+		while ( taken < producers * count && System.nanoTime() < deadline )
+		{
+			Integer element = mailbox.poll();
+			
+			if ( element == null )
+				continue;
+			
+			int producer = element / count;
+			
+			Assertions.assertEquals ( next [ producer ]++, element % count );
+			++taken;
+		}
+		
+		for ( Thread thread : threads )
+			thread.join();
+		
+		Assertions.assertEquals ( producers * count, taken );
+		Assertions.assertTrue ( mailbox.isEmpty() );
+	}
+	
+	@Test
+	public void testConcurrentBounded() throws Exception
+	{
+		producers ( MpscMailbox.bounded ( 64 ), 4, 20_000 );
+	}
+	
+	@Test
+	public void testConcurrentUnbounded() throws Exception
+	{
+		producers ( MpscMailbox.unbounded ( 16 ), 4, 20_000 );
+	}
+	
+	@Test
+	public void testActiveContext() throws Exception
+	{
+		EventType ping = EventType.of ( "mailbox-ping" );
+		AtomicInteger pings = new AtomicInteger();
+		State idle = new State ( "Idle" );
+		
+		idle.reactions().put ( new Event ( ping ), new Reaction ( event -> { pings.incrementAndGet(); return null; } ) );
+		
+		for ( IdleStrategy strategy : new IdleStrategy[] { IdleStrategy.spin(), IdleStrategy.yielding(), IdleStrategy.parking ( 1, TimeUnit.SECONDS ), IdleStrategy.parking(), IdleStrategy.backoff ( 10, 2 ) } )
+		{
+			ActiveStateMachineExecutionContext context = new ActiveStateMachineExecutionContext ( MpscMailbox.bounded ( 1024 ), strategy, 16 );
+			StateMachine machine = new StateMachine ( new StateModel ( idle ), context );
+			
+			pings.set ( 0 );
+			
+			// The parked thread is woken by each Event, so none waits out the park.
+			for ( int i = 0; i < 100; ++i )
+			{
+				machine.react ( new Event ( ping ) );
+				
+				long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos ( 500 );
+				
+				while ( pings.get() <= i && System.nanoTime() < deadline )
+					Thread.yield();
+			}
+			
+			Assertions.assertEquals ( 100, pings.get() );
+			context.stop();
+		}
+	}
+	
+	@Test
+	public void testActiveContextSurvivesFailure() throws Exception
+	{
+		EventType ping = EventType.of ( "mailbox-ping" );
+		EventType fail = EventType.of ( "mailbox-fail" );
+		AtomicInteger pings = new AtomicInteger();
+		State idle = new State ( "Idle" );
+		
+		idle.reactions().put ( new Event ( ping ), new Reaction ( event -> { pings.incrementAndGet(); return null; } ) );
+		idle.reactions().put ( new Event ( fail ), new Reaction ( event -> { throw new IllegalStateException ( "Failed" ); } ) );
+		
+		ActiveStateMachineExecutionContext context = new ActiveStateMachineExecutionContext();
+		StateMachine machine = new StateMachine ( new StateModel ( idle ), context );
+		
+		try
+		{
+			machine.react ( new Event ( fail ) );
+			machine.react ( new Event ( ping ) );
+			
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos ( 5 );
+			
+			while ( pings.get() == 0 && System.nanoTime() < deadline )
+				Thread.yield();
+			
+			Assertions.assertEquals ( 1, pings.get() );
+		}
+		finally
+		{
+			context.stop();
+		}
+	}
+}
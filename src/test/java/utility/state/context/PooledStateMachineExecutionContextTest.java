@@ -0,0 +1,145 @@
+package utility.state.context;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import utility.state.Event;
+import utility.state.EventType;
+import utility.state.Reaction;
+import utility.state.State;
+import utility.state.StateMachine;
+import utility.state.StateModel;
+
+public class PooledStateMachineExecutionContextTest
+{
+	private static final EventType TOGGLE = EventType.of ( "pooled-toggle" );
+	private static final EventType ECHO = EventType.of ( "pooled-echo" );
+	
+	/**
+	 * @return A machine which toggles between two states, counting its transitions, and whose ECHO generates a TOGGLE.
+	 */
+	private static StateModel toggleModel ( AtomicInteger transitions, AtomicInteger concurrent )
+	{
+		State on = new State ( "On" );
+		State off = new State ( "Off" );
+		
+		on.reactions().put ( new Event ( TOGGLE ), new Reaction ( off ) );
+		off.reactions().put ( new Event ( TOGGLE ), new Reaction ( on ) );
+		
+		on.setEntry ( event ->
+		{
+			// Detects two workers running the same machine at once.
+			if ( concurrent.incrementAndGet() != 1 )
+				throw new IllegalStateException ( "Concurrent access" );
+			
+			transitions.incrementAndGet();
+			concurrent.decrementAndGet();
+			return null;
+		} );
+		
+		off.setEntry ( event ->
+		{
+			transitions.incrementAndGet();
+			return null;
+		} );
+		
+		Reaction echo = new Reaction ( event -> Collections.singletonList ( new Event ( TOGGLE ) ) );
+		
+		on.reactions().put ( new Event ( ECHO ), echo );
+		off.reactions().put ( new Event ( ECHO ), echo );
+		
+		return new StateModel ( off ).compile();
+	}
+	
+	@Test
+	public void testManyMachines() throws Exception
+	{
+		try ( StateMachineWorkerPool pool = new StateMachineWorkerPool ( 4 ) )
+		{
+			List<StateMachine> machines = new ArrayList<>();
+			List<AtomicInteger> transitions = new ArrayList<>();
+			
+			for ( int i = 0; i < 10_000; ++i )
+			{
+				AtomicInteger count = new AtomicInteger();
+				
+				transitions.add ( count );
+				machines.add ( new StateMachine ( toggleModel ( count, new AtomicInteger() ), new PooledStateMachineExecutionContext ( pool ) ) );
+			}
+			
+			for ( int round = 0; round < 10; ++round )
+				for ( StateMachine machine : machines )
+					machine.react ( new Event ( round % 2 == 0 ? TOGGLE : ECHO ) );
+			
+			Assertions.assertTrue ( pool.awaitQuiescence ( 30, TimeUnit.SECONDS ) );
+			
+			for ( int i = 0; i < machines.size(); ++i )
+			{
+				// Initialization enters Off, and each of the ten rounds toggles.
+				Assertions.assertEquals ( 11, transitions.get ( i ).get() );
+				Assertions.assertEquals ( "Off", machines.get ( i ).currentState().toString() );
+			}
+		}
+	}
+	
+	@Test
+	public void testSingleWriter() throws Exception
+	{
+		try ( StateMachineWorkerPool pool = new StateMachineWorkerPool ( 4 ) )
+		{
+			AtomicInteger transitions = new AtomicInteger();
+			AtomicInteger concurrent = new AtomicInteger();
+			StateMachine machine = new StateMachine ( toggleModel ( transitions, concurrent ), new PooledStateMachineExecutionContext ( pool, 1 << 16, 8 ) );
+			List<Thread> senders = new ArrayList<>();
+			
+			for ( int t = 0; t < 4; ++t )
+			{
+				Thread sender = new Thread ( () ->
+				{
+					for ( int i = 0; i < 5_000; ++i )
+						machine.react ( new Event ( TOGGLE ) );
+				} );
+				
+				senders.add ( sender );
+				sender.start();
+			}
+			
+			for ( Thread sender : senders )
+				sender.join();
+			
+			Assertions.assertTrue ( pool.awaitQuiescence ( 30, TimeUnit.SECONDS ) );
+			Assertions.assertEquals ( 1 + 20_000, transitions.get() );
+			Assertions.assertEquals ( 0, concurrent.get() );
+		}
+	}
+	
+	@Test
+	public void testBoundedMailbox()
+	{
+		try ( StateMachineWorkerPool pool = new StateMachineWorkerPool ( 1 ) )
+		{
+			StateMachine machine = new StateMachine ( toggleModel ( new AtomicInteger(), new AtomicInteger() ), new PooledStateMachineExecutionContext ( pool, 4, 1 ) );
+			
+			// Occupy the only worker, so the mailbox fills.
+			Object lock = new Object();
+			
+			synchronized ( lock )
+			{
+				pool.execute ( () -> { synchronized ( lock ) {} } );
+				
+				Assertions.assertThrows ( RejectedExecutionException.class, () ->
+				{
+					for ( int i = 0; i < 5; ++i )
+						machine.react ( new Event ( TOGGLE ) );
+				} );
+			}
+		}
+	}
+}
@@ -0,0 +1,113 @@
+package utility.state.trace;
+
+import java.util.List;
+import java.util.function.Predicate;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import utility.state.Event;
+import utility.state.EventType;
+import utility.state.Reaction;
+import utility.state.State;
+import utility.state.StateMachine;
+import utility.state.StateModel;
+import utility.state.trace.TraceRingBuffer.Entry;
+import utility.state.trace.TraceRingBuffer.Kind;
+
+public class TraceRingBufferTest
+{
+    private static final EventType TOGGLE = EventType.of ( "toggle" );
+    private static final EventType LOCKED_TOGGLE = EventType.of ( "locked-toggle" );
+    
+    @Test
+    public void testTrace()
+    {
+        State on = new State ( "On" );
+        State off = new State ( "Off" );
+        
+        off.reactions().put ( new Event ( TOGGLE ), new Reaction ( on ) );
+        off.reactions().put ( new Event ( LOCKED_TOGGLE ), new Reaction ( ( Predicate<Event> ) event -> false, on ) );
+        on.reactions().put ( new Event ( TOGGLE ), new Reaction ( off ) );
+        
+        StateMachine fsm = new StateMachine ( new StateModel ( off ).compile() );
+        TraceRingBuffer trace = new TraceRingBuffer ( 8 );
+        
+        fsm.setListener ( trace );
+        fsm.react ( new Event ( LOCKED_TOGGLE ) );
+        fsm.react ( new Event ( TOGGLE ) );
+        
+        List<Entry> entries = trace.snapshot();
+        
+        Assertions.assertEquals ( 6, entries.size() );
+        
+        Assertions.assertEquals ( Kind.EVENT, entries.get ( 0 ).kind() );
+        Assertions.assertEquals ( Kind.GUARD_REJECTED, entries.get ( 1 ).kind() );
+        Assertions.assertEquals ( off, entries.get ( 1 ).state() );
+        
+        Assertions.assertEquals ( Kind.EVENT, entries.get ( 2 ).kind() );
+        Assertions.assertEquals ( Kind.REACTION, entries.get ( 3 ).kind() );
+        Assertions.assertEquals ( on, entries.get ( 3 ).destination() );
+        Assertions.assertEquals ( Kind.EXIT, entries.get ( 4 ).kind() );
+        Assertions.assertEquals ( off, entries.get ( 4 ).state() );
+        Assertions.assertEquals ( Kind.ENTER, entries.get ( 5 ).kind() );
+        Assertions.assertEquals ( on, entries.get ( 5 ).state() );
+        Assertions.assertEquals ( TOGGLE, entries.get ( 5 ).event().type() );
+        Assertions.assertEquals ( "5 ENTER On per toggle", entries.get ( 5 ).toString() );
+        
+        // Only the most recent entries are retained.
+        fsm.react ( new Event ( TOGGLE ) );
+        
+        entries = trace.snapshot();
+        
+        Assertions.assertEquals ( 10, trace.written() );
+        Assertions.assertEquals ( 7, entries.size() );
+        Assertions.assertEquals ( 3, entries.get ( 0 ).sequence() );
+        Assertions.assertEquals ( 9, entries.get ( 6 ).sequence() );
+        
+        fsm.setListener ( new LoggingStateMachineListener() );
+        fsm.react ( new Event ( TOGGLE ) );
+        
+        Assertions.assertEquals ( 10, trace.written() );
+        Assertions.assertEquals ( on, fsm.currentState() );
+    }
+    
+    @Test
+    public void testConcurrentSnapshot() throws Exception
+    {
+        State[] states = { new State ( "A" ), new State ( "B" ), new State ( "C" ) };
+        Event event = new Event ( TOGGLE );
+        TraceRingBuffer trace = new TraceRingBuffer ( 16 );
+        
+        // Entry n records states [ n % 3 ], so a torn copy would pair a sequence with the wrong State.
+        Thread writer = new Thread ( () ->
+        {
+            for ( int n = 0; n < 200_000; ++n )
+                trace.onEnter ( states [ n % states.length ], event );
+        } );
+        
+        writer.start();
+        
+        while ( writer.isAlive() )
+        {
+            List<Entry> entries = trace.snapshot();
+            
+            for ( int i = 0; i < entries.size(); ++i )
+            {
+                Entry entry = entries.get ( i );
+                
+                Assertions.assertSame ( states [ ( int ) ( entry.sequence() % states.length ) ], entry.state() );
+                Assertions.assertEquals ( Kind.ENTER, entry.kind() );
+                
+                if ( i > 0 )
+                    Assertions.assertTrue ( entry.sequence() > entries.get ( i - 1 ).sequence() );
+            }
+        }
+        
+        writer.join();
+        
+        // The oldest entry is the next to be overwritten, so is never copied once the ring is full.
+        Assertions.assertEquals ( 15, trace.snapshot().size() );
+        Assertions.assertEquals ( 200_000, trace.written() );
+    }
+}